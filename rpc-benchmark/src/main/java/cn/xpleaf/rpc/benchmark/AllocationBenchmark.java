@@ -0,0 +1,114 @@
+package cn.xpleaf.rpc.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.xpleaf.rpc.benchmark.service.BenchmarkService;
+import cn.xpleaf.rpc.benchmark.service.BenchmarkServiceImpl;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import cn.xpleaf.rpc.common.utils.RPCDecoder;
+import cn.xpleaf.rpc.common.utils.RPCEncoder;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import cn.xpleaf.rpc.server.executor.ServiceExecutors;
+import cn.xpleaf.rpc.server.invoker.MethodTable;
+import cn.xpleaf.rpc.server.invoker.ServiceInvoker;
+import cn.xpleaf.rpc.server.limit.ServiceLimiters;
+import cn.xpleaf.rpc.server.netty.RPCServerHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * 一次调用在请求和响应路径上产生的垃圾，需要配合JMH的GC分析器运行，关注gc.alloc.rate.norm（每次调用分配的字节数）：
+ *
+ * java -jar rpc-benchmark-1.0-SNAPSHOT-jar-with-dependencies.jar AllocationBenchmark -prof gc
+ *
+ * 通过EmbeddedChannel走完客户端编码、服务端解码、分发（direct线程池）、编码响应、客户端解码的完整流程，不涉及网络I/O，
+ * 请求与RPCClient一样从对象池中获取、编码后回收，参数和结果都是同一个字符串，
+ * 所以分配的字节数主要是解码出来的请求、响应及其参数和结果，以及服务端调用统计等必要的对象
+ *
+ * @author yeyonghao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+    private ServiceExecutors serviceExecutors;
+    // 客户端的编码器和解码器
+    private EmbeddedChannel clientEncoder;
+    private EmbeddedChannel clientDecoder;
+    // 服务端的完整pipeline
+    private EmbeddedChannel server;
+    // 请求的参数
+    private Object[] parameters;
+    // 协商好的方法编号
+    private int methodId;
+    private long requestId;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, ServiceInvoker> serviceInvokerMap = new HashMap<>();
+        serviceInvokerMap.put(BenchmarkService.class.getName(),
+                new ServiceInvoker(BenchmarkService.class, new BenchmarkServiceImpl()));
+        MethodTable methodTable = new MethodTable(serviceInvokerMap);
+        serviceExecutors = new ServiceExecutors(ServiceExecutors.DIRECT, 0, 0);
+        server = new EmbeddedChannel(new RPCDecoder(), new RPCEncoder(), new RPCServerHandler(serviceInvokerMap,
+                methodTable, serviceExecutors, new ServiceLimiters(), -1));
+        clientEncoder = new EmbeddedChannel(new RPCEncoder());
+        clientDecoder = new EmbeddedChannel(new RPCDecoder());
+
+        RPCRequest request = Payloads.echoRequest(16);
+        parameters = request.getParameters();
+        String signature = RPCProtocol.signatureOf(request.getInterfaceName(), request.getMethodName(),
+                request.getParameterTypes());
+        String[] signatures = methodTable.getSignatures();
+        for (int i = 0; i < signatures.length; i++) {
+            if (signatures[i].equals(signature)) {
+                methodId = i + 1;
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientEncoder.finishAndReleaseAll();
+        clientDecoder.finishAndReleaseAll();
+        server.finishAndReleaseAll();
+        serviceExecutors.shutdown();
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        RPCRequest message = RPCRequest.newInstance();
+        message.setRequestId(++requestId);
+        message.setMethodId(methodId);
+        message.setParameters(parameters);
+        clientEncoder.writeOutbound(message);
+        message.recycle();
+        ByteBuf requestFrame = clientEncoder.readOutbound();
+
+        server.writeInbound(requestFrame);
+        ByteBuf responseFrame = server.readOutbound();
+
+        clientDecoder.writeInbound(responseFrame);
+        RPCResponse response = clientDecoder.readInbound();
+        return response.getResult();
+    }
+}
@@ -0,0 +1,56 @@
+package cn.xpleaf.rpc.benchmark;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+import cn.xpleaf.rpc.benchmark.service.BenchmarkServiceImpl;
+import cn.xpleaf.rpc.common.registry.MemoryRegistry;
+import cn.xpleaf.rpc.server.netty.RPCServer;
+
+/**
+ * 在当前进程中启动一个发布了BenchmarkService的RPC服务端，供端到端的基准测试使用
+ *
+ * RPCServer的启动是异步的，等待getStartFuture结束即表示端口绑定成功并且服务已经注册
+ *
+ * @author yeyonghao
+ */
+public class BenchmarkServer {
+
+    // 已经启动的服务端地址，同一个进程中只启动一次
+    private static String startedAddress;
+
+    /**
+     * 启动服务端，该方法会阻塞直到服务注册完毕
+     *
+     * @param serverAddress 服务端地址，格式为 host:port
+     * @param threadPool    执行服务方法的线程池类型，shared、virtual或者direct
+     * @param transport     传输类型，auto、nio或者epoll
+     */
+    public static synchronized void start(String serverAddress, String threadPool, String transport)
+            throws Exception {
+        if (startedAddress != null) {
+            return;
+        }
+        // 通过spring发布服务实现类，与正常使用时一样由RPCServer扫描RPCService注解
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBeanDefinition("benchmarkService", new RootBeanDefinition(BenchmarkServiceImpl.class));
+        context.refresh();
+
+        RPCServer server = new RPCServer(serverAddress, new MemoryRegistry());
+        server.setThreadPool(threadPool);
+        server.setTransport(transport);
+        server.setApplicationContext(context);
+        server.afterPropertiesSet();
+        try {
+            server.getStartFuture().get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            server.shutdown();
+            throw new IllegalStateException("启动服务端失败[" + serverAddress + "]", e);
+        }
+        startedAddress = serverAddress;
+    }
+}
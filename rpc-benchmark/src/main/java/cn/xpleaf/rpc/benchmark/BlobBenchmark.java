@@ -0,0 +1,69 @@
+package cn.xpleaf.rpc.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.xpleaf.rpc.benchmark.service.BenchmarkService;
+import cn.xpleaf.rpc.client.netty.RPCClientPool;
+import cn.xpleaf.rpc.client.proxy.RPCProxy;
+import cn.xpleaf.rpc.common.pojo.Blob;
+import cn.xpleaf.rpc.common.registry.MemoryRegistry;
+import cn.xpleaf.rpc.common.transport.Transport;
+
+/**
+ * 大块二进制数据上传的端到端基准测试，对比作为byte[]参数序列化传输和作为Blob附件传输的吞吐量，
+ * 可以同时通过JMH的-prof gc参数对比两者每次调用分配的内存
+ *
+ * @author yeyonghao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlobBenchmark {
+
+    @Param({"65536", "4194304"})
+    public int payload;
+
+    private BenchmarkService service;
+    private byte[] data;
+
+    @Setup
+    public void setup() throws Exception {
+        String transport = System.getProperty("benchmark.transport", Transport.AUTO);
+        BenchmarkServer.start("127.0.0.1:" + Integer.getInteger("benchmark.port", 29880),
+                System.getProperty("benchmark.threadPool", "shared"), transport);
+        RPCProxy proxy = new RPCProxy(new MemoryRegistry(), new RPCClientPool(2, transport, 0));
+        // 服务端与客户端在同一个JVM中，显式关闭本地调用，保证测到的是网络和编解码
+        proxy.setLocalInvocation(RPCProxy.LOCAL_NONE);
+        service = proxy.getProxy(BenchmarkService.class);
+        data = new byte[payload];
+        ThreadLocalRandom.current().nextBytes(data);
+        // 预先建立连接并完成握手
+        service.sizeOfBlob(Blob.of(data));
+    }
+
+    @Benchmark
+    public int bytes() {
+        return service.sizeOfBytes(data);
+    }
+
+    @Benchmark
+    public int blob() {
+        return service.sizeOfBlob(Blob.of(data));
+    }
+}
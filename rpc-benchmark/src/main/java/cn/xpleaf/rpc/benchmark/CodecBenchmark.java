@@ -0,0 +1,87 @@
+package cn.xpleaf.rpc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.utils.JdkSerializer;
+import cn.xpleaf.rpc.common.utils.RPCDecoder;
+import cn.xpleaf.rpc.common.utils.RPCEncoder;
+import cn.xpleaf.rpc.common.utils.SerializerFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * RPCEncoder和RPCDecoder的吞吐量基准测试，通过EmbeddedChannel驱动编解码器，不涉及网络I/O
+ *
+ * @author yeyonghao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int payload;
+
+    @Param({"protostuff", "jdk", "protostuff-graph"})
+    public String serializer;
+
+    private RPCRequest request;
+    // 编码后的完整消息帧
+    private byte[] frame;
+    private EmbeddedChannel encoderChannel;
+    private EmbeddedChannel decoderChannel;
+
+    @Setup
+    public void setup() {
+        // jdk序列化器默认不注册
+        SerializerFactory.register(new JdkSerializer());
+        request = Payloads.echoRequest(payload);
+        request.setSerializer(SerializerFactory.getSerializer(serializer).getCode());
+        encoderChannel = new EmbeddedChannel(new RPCEncoder());
+        decoderChannel = new EmbeddedChannel(new RPCDecoder());
+        encoderChannel.writeOutbound(request);
+        ByteBuf buf = encoderChannel.readOutbound();
+        frame = ByteBufUtil.getBytes(buf);
+        buf.release();
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoderChannel.finishAndReleaseAll();
+        decoderChannel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int encode() {
+        encoderChannel.writeOutbound(request);
+        ByteBuf buf = encoderChannel.readOutbound();
+        int length = buf.readableBytes();
+        buf.release();
+        return length;
+    }
+
+    @Benchmark
+    public Object decode() {
+        decoderChannel.writeInbound(Unpooled.wrappedBuffer(frame));
+        return decoderChannel.readInbound();
+    }
+}
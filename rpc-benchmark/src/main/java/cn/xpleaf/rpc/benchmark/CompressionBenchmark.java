@@ -0,0 +1,92 @@
+package cn.xpleaf.rpc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.utils.CompressorFactory;
+import cn.xpleaf.rpc.common.utils.RPCDecoder;
+import cn.xpleaf.rpc.common.utils.RPCEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * 压缩算法的基准测试，对类似业务数据的文本进行编码和解码，比较压缩消耗的CPU时间与节省的传输字节数，
+ * 压缩后的消息帧大小在setup时打印出来
+ *
+ * @author yeyonghao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"1024", "65536", "524288"})
+    public int payload;
+
+    @Param({"none", "deflate", "snappy"})
+    public String compressor;
+
+    private RPCRequest request;
+    // 编码后的完整消息帧
+    private byte[] frame;
+    private EmbeddedChannel encoderChannel;
+    private EmbeddedChannel decoderChannel;
+
+    @Setup
+    public void setup() {
+        request = Payloads.echoRequest(Payloads.text(payload));
+        RPCEncoder encoder = new RPCEncoder();
+        RPCDecoder decoder = new RPCDecoder();
+        if (!"none".equals(compressor)) {
+            // 阈值为0，所有消息都进行压缩，解码器只接受协商好的压缩算法
+            encoder.setCompression(CompressorFactory.getCompressor(compressor), 0);
+            decoder.setCompressor(CompressorFactory.getCompressor(compressor));
+        }
+        encoderChannel = new EmbeddedChannel(encoder);
+        decoderChannel = new EmbeddedChannel(decoder);
+        encoderChannel.writeOutbound(request);
+        ByteBuf buf = encoderChannel.readOutbound();
+        frame = ByteBufUtil.getBytes(buf);
+        buf.release();
+        System.out.println("[" + compressor + "] payload " + payload + " -> frame " + frame.length + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoderChannel.finishAndReleaseAll();
+        decoderChannel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public int encode() {
+        encoderChannel.writeOutbound(request);
+        ByteBuf buf = encoderChannel.readOutbound();
+        int length = buf.readableBytes();
+        buf.release();
+        return length;
+    }
+
+    @Benchmark
+    public Object decode() {
+        decoderChannel.writeInbound(Unpooled.wrappedBuffer(frame));
+        return decoderChannel.readInbound();
+    }
+}
@@ -0,0 +1,99 @@
+package cn.xpleaf.rpc.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.xpleaf.rpc.benchmark.service.BenchmarkService;
+import cn.xpleaf.rpc.benchmark.service.BenchmarkServiceImpl;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import cn.xpleaf.rpc.server.executor.ServiceExecutors;
+import cn.xpleaf.rpc.server.invoker.MethodTable;
+import cn.xpleaf.rpc.server.invoker.ServiceInvoker;
+import cn.xpleaf.rpc.server.limit.ServiceLimiters;
+import cn.xpleaf.rpc.server.netty.RPCServerHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * RPCServerHandler分发请求的基准测试，包括按方法名查找、按协商好的方法编号查找，
+ * 以及通过EmbeddedChannel走完channelRead到回写响应的完整流程（direct线程池，在当前线程上执行）
+ *
+ * @author yeyonghao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private RPCServerHandler handler;
+    private ServiceExecutors serviceExecutors;
+    private EmbeddedChannel channel;
+    // 携带接口名称、方法名称和参数类型的请求
+    private RPCRequest namedRequest;
+    // 携带方法编号的请求
+    private RPCRequest compactRequest;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, ServiceInvoker> serviceInvokerMap = new HashMap<>();
+        serviceInvokerMap.put(BenchmarkService.class.getName(),
+                new ServiceInvoker(BenchmarkService.class, new BenchmarkServiceImpl()));
+        MethodTable methodTable = new MethodTable(serviceInvokerMap);
+        serviceExecutors = new ServiceExecutors(ServiceExecutors.DIRECT, 0, 0);
+        ServiceLimiters serviceLimiters = new ServiceLimiters();
+        handler = new RPCServerHandler(serviceInvokerMap, methodTable, serviceExecutors, serviceLimiters, -1);
+        channel = new EmbeddedChannel(
+                new RPCServerHandler(serviceInvokerMap, methodTable, serviceExecutors, serviceLimiters, -1));
+
+        namedRequest = Payloads.echoRequest(16);
+        compactRequest = new RPCRequest();
+        compactRequest.setRequestId(1);
+        compactRequest.setParameters(namedRequest.getParameters());
+        String signature = RPCProtocol.signatureOf(namedRequest.getInterfaceName(), namedRequest.getMethodName(),
+                namedRequest.getParameterTypes());
+        String[] signatures = methodTable.getSignatures();
+        for (int i = 0; i < signatures.length; i++) {
+            if (signatures[i].equals(signature)) {
+                compactRequest.setMethodId(i + 1);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        serviceExecutors.shutdown();
+    }
+
+    @Benchmark
+    public Object dispatchByName() throws Throwable {
+        return handler.findMethodInvoker(namedRequest).invoke(namedRequest.getParameters());
+    }
+
+    @Benchmark
+    public Object dispatchById() throws Throwable {
+        return handler.findMethodInvoker(compactRequest).invoke(compactRequest.getParameters());
+    }
+
+    @Benchmark
+    public Object channelRead() {
+        channel.writeInbound(compactRequest);
+        return channel.readOutbound();
+    }
+}
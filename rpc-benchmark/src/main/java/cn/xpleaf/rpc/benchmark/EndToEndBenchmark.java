@@ -0,0 +1,79 @@
+package cn.xpleaf.rpc.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.xpleaf.rpc.benchmark.service.BenchmarkService;
+import cn.xpleaf.rpc.client.netty.RPCClientPool;
+import cn.xpleaf.rpc.client.proxy.RPCProxy;
+import cn.xpleaf.rpc.common.registry.MemoryRegistry;
+import cn.xpleaf.rpc.common.transport.Transport;
+
+/**
+ * 通过RPCProxy调用本机回环地址上的RPC服务端的端到端基准测试，使用进程内的服务注册和发现，不需要zookeeper
+ *
+ * 传输类型通过-Dbenchmark.transport指定（auto、nio或者epoll），客户端和服务端使用相同的传输类型，
+ * 同步调用同时给出吞吐量和延迟分布，可以通过JMH的-t参数指定并发调用的线程数；
+ * 异步调用每次连续发起BATCH个请求再等待全部完成，用于测量请求在同一条连接上流水线发送时的吞吐量
+ *
+ * @author yeyonghao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    // 异步调用每次连续发起的请求数
+    private static final int BATCH = 64;
+
+    @Param({"16", "1024"})
+    public int payload;
+
+    private BenchmarkService service;
+    private String message;
+
+    @Setup
+    public void setup() throws Exception {
+        String transport = System.getProperty("benchmark.transport", Transport.AUTO);
+        BenchmarkServer.start("127.0.0.1:" + Integer.getInteger("benchmark.port", 29880),
+                System.getProperty("benchmark.threadPool", "shared"), transport);
+        RPCProxy proxy = new RPCProxy(new MemoryRegistry(), new RPCClientPool(2, transport, 0));
+        // 服务端与客户端在同一个JVM中，显式关闭本地调用，保证测到的是网络和编解码
+        proxy.setLocalInvocation(RPCProxy.LOCAL_NONE);
+        service = proxy.getProxy(BenchmarkService.class);
+        message = Payloads.string(payload);
+        // 预先建立连接并完成握手
+        service.echo(message);
+    }
+
+    @Benchmark
+    public String syncEcho() {
+        return service.echo(message);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object asyncEcho() throws Exception {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            futures[i] = service.echoAsync(message);
+        }
+        return CompletableFuture.allOf(futures).get();
+    }
+}
@@ -0,0 +1,70 @@
+package cn.xpleaf.rpc.benchmark;
+
+import java.util.Arrays;
+
+import cn.xpleaf.rpc.benchmark.service.BenchmarkService;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+
+/**
+ * 基准测试使用的消息构建工具
+ *
+ * @author yeyonghao
+ */
+public final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * 生成指定长度的字符串
+     */
+    public static String string(int size) {
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
+    /**
+     * 生成指定长度的类似业务数据的文本，内容有重复但不是单一字符，用于衡量压缩的效果
+     */
+    public static String text(int size) {
+        StringBuilder sb = new StringBuilder(size + 64);
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"user-").append(i % 97)
+                    .append("\",\"status\":\"").append(i % 3 == 0 ? "ACTIVE" : "INACTIVE").append("\"},");
+        }
+        sb.setLength(size);
+        return sb.toString();
+    }
+
+    /**
+     * 构建调用BenchmarkService.echo的请求，参数为指定长度的字符串
+     */
+    public static RPCRequest echoRequest(int size) {
+        return echoRequest(string(size));
+    }
+
+    /**
+     * 构建调用BenchmarkService.echo的请求，参数为给定的字符串
+     */
+    public static RPCRequest echoRequest(String value) {
+        RPCRequest request = new RPCRequest();
+        request.setRequestId(1);
+        request.setInterfaceName(BenchmarkService.class.getName());
+        request.setMethodName("echo");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setParameters(new Object[]{value});
+        return request;
+    }
+
+    /**
+     * 构建与echo请求对应的响应，结果为指定长度的字符串
+     */
+    public static RPCResponse echoResponse(int size) {
+        RPCResponse response = new RPCResponse();
+        response.setRequestId(1);
+        response.setResult(string(size));
+        return response;
+    }
+}
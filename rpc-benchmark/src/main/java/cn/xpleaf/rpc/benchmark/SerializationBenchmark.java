@@ -0,0 +1,69 @@
+package cn.xpleaf.rpc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import cn.xpleaf.rpc.common.utils.SerializationUtil;
+
+/**
+ * SerializationUtil序列化和反序列化RPCRequest、RPCResponse的基准测试，payload为参数或者结果字符串的长度
+ *
+ * @author yeyonghao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int payload;
+
+    private RPCRequest request;
+    private byte[] requestBytes;
+    private RPCResponse response;
+    private byte[] responseBytes;
+
+    @Setup
+    public void setup() {
+        request = Payloads.echoRequest(payload);
+        requestBytes = SerializationUtil.serialize(request);
+        response = Payloads.echoResponse(payload);
+        responseBytes = SerializationUtil.serialize(response);
+    }
+
+    @Benchmark
+    public byte[] serializeRequest() {
+        return SerializationUtil.serialize(request);
+    }
+
+    @Benchmark
+    public RPCRequest deserializeRequest() {
+        return SerializationUtil.deserialize(requestBytes, RPCRequest.class);
+    }
+
+    @Benchmark
+    public RPCRequest roundTripRequest() {
+        return SerializationUtil.deserialize(SerializationUtil.serialize(request), RPCRequest.class);
+    }
+
+    @Benchmark
+    public RPCResponse roundTripResponse() {
+        return SerializationUtil.deserialize(SerializationUtil.serialize(response), RPCResponse.class);
+    }
+}
@@ -0,0 +1,39 @@
+package cn.xpleaf.rpc.benchmark.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import cn.xpleaf.rpc.common.pojo.Blob;
+
+/**
+ * 基准测试使用的服务接口
+ *
+ * @author yeyonghao
+ */
+public interface BenchmarkService {
+
+    /**
+     * 原样返回字符串
+     */
+    String echo(String message);
+
+    /**
+     * 原样返回字节数组
+     */
+    byte[] echoBytes(byte[] data);
+
+    /**
+     * 返回字节数组的长度，用于与附件方式的上传进行对比
+     */
+    int sizeOfBytes(byte[] data);
+
+    /**
+     * 返回附件的长度
+     */
+    int sizeOfBlob(Blob data);
+
+    /**
+     * 异步方法，原样返回字符串
+     */
+    CompletableFuture<String> echoAsync(String message);
+
+}
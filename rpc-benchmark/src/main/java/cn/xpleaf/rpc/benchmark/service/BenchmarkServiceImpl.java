@@ -0,0 +1,41 @@
+package cn.xpleaf.rpc.benchmark.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import cn.xpleaf.rpc.common.pojo.Blob;
+import cn.xpleaf.rpc.server.annotation.RPCService;
+
+/**
+ * 基准测试使用的服务实现类，不做任何计算，测量的只是RPC框架本身的开销
+ *
+ * @author yeyonghao
+ */
+@RPCService(BenchmarkService.class)
+public class BenchmarkServiceImpl implements BenchmarkService {
+
+    @Override
+    public String echo(String message) {
+        return message;
+    }
+
+    @Override
+    public byte[] echoBytes(byte[] data) {
+        return data;
+    }
+
+    @Override
+    public int sizeOfBytes(byte[] data) {
+        return data.length;
+    }
+
+    @Override
+    public int sizeOfBlob(Blob data) {
+        return data.length();
+    }
+
+    @Override
+    public CompletableFuture<String> echoAsync(String message) {
+        return CompletableFuture.completedFuture(message);
+    }
+
+}
@@ -0,0 +1,321 @@
+package cn.xpleaf.rpc.client.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cn.xpleaf.rpc.common.metrics.RPCMetrics;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.utils.Serializer;
+
+/**
+ * 客户端的方法结果缓存，用于读多写少、参数重复度高的幂等方法，命中时不再发现服务、发起远程调用
+ *
+ * 1.缓存的key为参数值序列化后的字节，每个方法（接口名称+方法签名）一个缓存，参数值相同即命中
+ * 2.缓存的是调用结果的future，同一个key的并发调用只有第一个会发起远程调用，其余的等待同一个结果，
+ *   热点key在缓存失效的瞬间也不会产生大量的远程调用；调用失败的结果不缓存
+ * 3.容量满时按LRU淘汰，超过有效期（从发起远程调用开始计算）的结果在下一次访问时失效
+ * 4.为了减少锁竞争，缓存按key的哈希值分为多个段，每个段是一个按访问顺序排列的LinkedHashMap，各自加锁
+ *
+ * 缓存的结果对象会被所有命中的调用方共享，调用方不能修改返回的对象
+ *
+ * 命中率等统计数据注册到JMX，ObjectName如cn.xpleaf.rpc:type=cache,service=..,method="..."
+ *
+ * @author yeyonghao
+ */
+public class ResultCache implements ResultCacheMBean {
+
+    // 最大的段数
+    private static final int MAX_SEGMENTS = 16;
+    // 所有方法的结果缓存，key为方法签名
+    private static final Map<String, ResultCache> CACHE_MAP = new ConcurrentHashMap<>();
+    // 返回给调用方的是缓存中future的依赖future，避免调用方完成或取消缓存中的future
+    private static final Function<Object, Object> IDENTITY = Function.identity();
+
+    // 接口名称
+    private final String service;
+    // 方法签名（不含接口名称）
+    private final String method;
+    // 有效期（纳秒）
+    private final long ttlNanos;
+    // 最大容量
+    private final int maxSize;
+    // 缓存的段
+    private final Segment[] segments;
+    // 命中次数，包括等待同一个正在进行的远程调用
+    private final LongAdder hits = new LongAdder();
+    // 未命中次数，即发起远程调用的次数
+    private final LongAdder misses = new LongAdder();
+    // 因容量满而淘汰的次数
+    private final LongAdder evictions = new LongAdder();
+    // log4j日志记录
+    private Logger logger = LoggerFactory.getLogger(ResultCache.class);
+
+    /**
+     * 构造方法
+     *
+     * @param service   接口名称
+     * @param method    方法签名（不含接口名称）
+     * @param ttlMillis 有效期（毫秒）
+     * @param maxSize   最大容量，按段平均分配
+     */
+    public ResultCache(String service, String method, long ttlMillis, int maxSize) {
+        if (ttlMillis <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("结果缓存的参数不正确: ttlMillis=" + ttlMillis + ", maxSize=" + maxSize);
+        }
+        this.service = service;
+        this.method = method;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxSize = maxSize;
+        // 段数为2的幂，并且不超过最大容量
+        int count = Integer.highestOneBit(Math.min(MAX_SEGMENTS, maxSize));
+        int capacity = (maxSize + count - 1) / count;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * 获取方法的结果缓存，不存在则创建并注册到JMX，同一个方法的所有代理对象共享一个缓存，以第一次创建时的参数为准
+     *
+     * @param signature 方法签名，见RPCProtocol.signatureOf
+     * @param ttlMillis 有效期（毫秒）
+     * @param maxSize   最大容量
+     */
+    public static ResultCache get(String signature, long ttlMillis, int maxSize) {
+        ResultCache cache = CACHE_MAP.get(signature);
+        if (cache != null) {
+            return cache;
+        }
+        synchronized (CACHE_MAP) {
+            cache = CACHE_MAP.get(signature);
+            if (cache == null) {
+                int index = signature.indexOf('#');
+                cache = new ResultCache(signature.substring(0, index), signature.substring(index + 1), ttlMillis,
+                        maxSize);
+                RPCMetrics.registerMBean(cache, "cache", cache.service, cache.method);
+                CACHE_MAP.put(signature, cache);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 获取调用结果，命中时直接返回缓存的结果，否则通过loader发起远程调用并缓存其结果
+     *
+     * @param args       方法的参数值
+     * @param serializer 用于将参数值序列化为缓存key的序列化器
+     * @param loader     发起远程调用
+     * @return 调用结果的future
+     */
+    public CompletableFuture<Object> get(Object[] args, Serializer serializer,
+                                         Supplier<CompletableFuture<Object>> loader) {
+        final Key key;
+        try {
+            key = keyOf(args, serializer);
+        } catch (IOException | RuntimeException e) {
+            // 参数无法序列化时不使用缓存
+            logger.warn("方法[{}#{}]的参数无法序列化为缓存key，跳过缓存[{}]...", service, method, e.toString());
+            return loader.get();
+        }
+        final Segment segment = segments[key.hash & (segments.length - 1)];
+        final Entry entry;
+        long now = System.nanoTime();
+        synchronized (segment) {
+            Entry cached = segment.get(key);
+            if (cached != null && now - cached.expireAt < 0) {
+                hits.increment();
+                return cached.future.thenApply(IDENTITY);
+            }
+            // 先放入一个未完成的future，之后相同key的调用会等待同一个结果
+            entry = new Entry(new CompletableFuture<Object>(), now + ttlNanos);
+            segment.put(key, entry);
+        }
+        misses.increment();
+
+        CompletableFuture<Object> future;
+        try {
+            future = loader.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete(new BiConsumer<Object, Throwable>() {
+
+            @Override
+            public void accept(Object result, Throwable t) {
+                if (t != null) {
+                    // 调用失败的结果不缓存，下一次调用重新发起远程调用
+                    synchronized (segment) {
+                        if (segment.get(key) == entry) {
+                            segment.remove(key);
+                        }
+                    }
+                    entry.future.completeExceptionally(t);
+                } else {
+                    entry.future.complete(result);
+                }
+            }
+        });
+        return entry.future.thenApply(IDENTITY);
+    }
+
+    /**
+     * 将参数值序列化为缓存key，参数值放在RPCRequest中序列化，与发送请求时使用相同的序列化方式
+     */
+    private static Key keyOf(Object[] args, Serializer serializer) throws IOException {
+        RPCRequest holder = new RPCRequest();
+        holder.setParameters(args);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        serializer.serialize(holder, out);
+        return new Key(out.toByteArray());
+    }
+
+    @Override
+    public String getService() {
+        return service;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getTtlMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    /**
+     * 清空缓存，如数据更新后需要立即失效时调用
+     */
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return service + "#" + method + "[hits=" + getHits() + ", misses=" + getMisses() + ", evictions="
+                + getEvictions() + ", size=" + getSize() + "]";
+    }
+
+    /**
+     * 缓存的段，按访问顺序排列，容量满时淘汰最久没有访问的结果
+     */
+    private final class Segment extends LinkedHashMap<Key, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 缓存的结果及其失效时间
+     */
+    private static final class Entry {
+
+        final CompletableFuture<Object> future;
+        final long expireAt;
+
+        Entry(CompletableFuture<Object> future, long expireAt) {
+            this.future = future;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 缓存key，即参数值序列化后的字节，哈希值预先计算好
+     */
+    private static final class Key {
+
+        final byte[] bytes;
+        final int hash;
+
+        Key(byte[] bytes) {
+            this.bytes = bytes;
+            // 再次散列，使低位也能均匀地用于选择段
+            int h = Arrays.hashCode(bytes);
+            this.hash = h ^ (h >>> 16);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(bytes, ((Key) obj).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package cn.xpleaf.rpc.client.cache;
+
+/**
+ * 结果缓存的JMX接口
+ *
+ * @author yeyonghao
+ */
+public interface ResultCacheMBean {
+
+    String getService();
+
+    String getMethod();
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRate();
+
+    long getEvictions();
+
+    int getSize();
+
+    int getMaxSize();
+
+    long getTtlMillis();
+
+    void clear();
+}
@@ -0,0 +1,52 @@
+package cn.xpleaf.rpc.client.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import cn.xpleaf.rpc.client.loadbalance.LoadBalancer;
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+
+/**
+ * 集群容错策略的公共方法
+ *
+ * @author yeyonghao
+ */
+public abstract class AbstractCluster implements Cluster {
+
+    /**
+     * 请求是否失败并且可以发往其它服务提供者重试：传输失败（如连接断开、建立连接失败）或者被服务端拒绝，
+     * 服务方法本身抛出的异常是调用的正常结果，不重试；调用超时说明截止时间已过，重试也没有意义
+     *
+     * @param response 响应，传输失败时为null
+     * @param t        传输失败的原因
+     */
+    protected static boolean isRetryable(RPCResponse response, Throwable t) {
+        if (t == null) {
+            return response.isRejected();
+        }
+        if (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return !(t instanceof RPCException && ((RPCException) t).getCode() == RPCException.TIMEOUT);
+    }
+
+    /**
+     * 从没有调用过的服务提供者中选择一个，所有服务提供者都调用过时从全部服务提供者中选择
+     *
+     * @param providers 服务提供者列表
+     * @param selected  已经调用过的服务提供者
+     */
+    protected static Provider select(List<Provider> providers, List<Provider> selected, RPCRequest request,
+                                     LoadBalancer loadBalancer) {
+        if (selected.isEmpty()) {
+            return loadBalancer.select(providers, request);
+        }
+        List<Provider> candidates = new ArrayList<>(providers);
+        candidates.removeAll(selected);
+        return loadBalancer.select(candidates.isEmpty() ? providers : candidates, request);
+    }
+}
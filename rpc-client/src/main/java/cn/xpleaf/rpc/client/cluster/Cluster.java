@@ -0,0 +1,32 @@
+package cn.xpleaf.rpc.client.cluster;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import cn.xpleaf.rpc.client.loadbalance.LoadBalancer;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+
+/**
+ * 集群容错策略SPI，决定一次调用向哪些服务提供者发送请求，以及请求失败后如何处理
+ *
+ * 内置的实现见ClusterFactory，实现类需要是线程安全的，同一个实例会被所有调用线程共享，
+ * 重试等额外发出的请求需要从RetryBudget中获取额度，避免服务端过载时重试进一步放大负载
+ *
+ * @author yeyonghao
+ */
+public interface Cluster {
+
+    /**
+     * 发起调用
+     *
+     * @param providers    服务提供者列表，不可变且不为空
+     * @param request      本次调用的请求对象
+     * @param loadBalancer 负载均衡策略，用于选择服务提供者
+     * @param invoker      向指定的服务提供者发送请求
+     * @return 最终采用的响应的future，所有请求都失败时以最后一次失败的原因完成
+     */
+    CompletableFuture<RPCResponse> invoke(List<Provider> providers, RPCRequest request, LoadBalancer loadBalancer,
+                                          ProviderInvoker invoker);
+}
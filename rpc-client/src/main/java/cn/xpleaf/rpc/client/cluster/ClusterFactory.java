@@ -0,0 +1,45 @@
+package cn.xpleaf.rpc.client.cluster;
+
+/**
+ * 集群容错策略工厂，按名称创建内置的集群容错策略
+ *
+ * 内置的集群容错策略有：
+ * failfast（默认）：快速失败，只调用一次，任何方法都可以安全使用
+ * failover：失败自动切换，传输失败或者被服务端拒绝时重试其它服务提供者，连接在请求发出之后断开时也会重试，
+ * 所以只适用于幂等的方法，需要通过RPCMethod(cluster = "failover")或者RPCProxy.setCluster显式开启
+ * forking：并行调用多个服务提供者，以第一个成功的响应为准
+ *
+ * 需要指定重试次数、并行请求数时直接构造对应的实现类
+ *
+ * @author yeyonghao
+ */
+public final class ClusterFactory {
+
+    private ClusterFactory() {
+    }
+
+    /**
+     * 创建默认的集群容错策略
+     */
+    public static Cluster getDefault() {
+        return new FailfastCluster();
+    }
+
+    /**
+     * 根据名称创建集群容错策略
+     *
+     * @param name 集群容错策略名称
+     * @return 集群容错策略
+     * @throws IllegalArgumentException 不存在该名称的集群容错策略
+     */
+    public static Cluster getCluster(String name) {
+        if (name == null || FailfastCluster.NAME.equals(name)) {
+            return new FailfastCluster();
+        } else if (FailoverCluster.NAME.equals(name)) {
+            return new FailoverCluster();
+        } else if (ForkingCluster.NAME.equals(name)) {
+            return new ForkingCluster();
+        }
+        throw new IllegalArgumentException("不存在名称为[" + name + "]的集群容错策略");
+    }
+}
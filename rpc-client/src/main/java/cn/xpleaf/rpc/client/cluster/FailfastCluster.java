@@ -0,0 +1,27 @@
+package cn.xpleaf.rpc.client.cluster;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import cn.xpleaf.rpc.client.loadbalance.LoadBalancer;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+
+/**
+ * 快速失败，只发送一次请求，失败后立即返回，默认的集群容错策略，非幂等的方法（如新增记录）也可以安全使用
+ *
+ * @author yeyonghao
+ */
+public class FailfastCluster extends AbstractCluster {
+
+    public static final String NAME = "failfast";
+
+    @Override
+    public CompletableFuture<RPCResponse> invoke(List<Provider> providers, RPCRequest request,
+                                                 LoadBalancer loadBalancer, ProviderInvoker invoker) {
+        // 本身不重试，但开启了对冲请求的方法也从重试预算中取出额度，所以正常请求同样需要存入额度
+        RetryBudget.get(request.getInterfaceName()).deposit();
+        return invoker.invoke(loadBalancer.select(providers, request));
+    }
+}
@@ -0,0 +1,92 @@
+package cn.xpleaf.rpc.client.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cn.xpleaf.rpc.client.loadbalance.LoadBalancer;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+
+/**
+ * 失败自动切换，请求传输失败或者被服务端拒绝时，换一个服务提供者重试
+ *
+ * 服务提供者滚动重启时，正在重启的服务提供者上的请求会失败，重试到其它服务提供者后调用方不会感知到失败。
+ * 连接断开时请求可能已经被执行，所以只适用于幂等的方法，默认的集群容错策略是failfast，
+ * 幂等的方法需要通过RPCMethod(cluster = "failover")显式开启
+ *
+ * @author yeyonghao
+ */
+public class FailoverCluster extends AbstractCluster {
+
+    public static final String NAME = "failover";
+    // 默认的重试次数，不包括第一次调用
+    public static final int DEFAULT_RETRIES = 2;
+
+    // 重试次数
+    private final int retries;
+    // log4j日志记录
+    private Logger logger = LoggerFactory.getLogger(FailoverCluster.class);
+
+    public FailoverCluster() {
+        this(DEFAULT_RETRIES);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param retries 重试次数，不包括第一次调用
+     */
+    public FailoverCluster(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries不能小于0: " + retries);
+        }
+        this.retries = retries;
+    }
+
+    @Override
+    public CompletableFuture<RPCResponse> invoke(List<Provider> providers, RPCRequest request,
+                                                 LoadBalancer loadBalancer, ProviderInvoker invoker) {
+        RetryBudget budget = RetryBudget.get(request.getInterfaceName());
+        budget.deposit();
+        CompletableFuture<RPCResponse> result = new CompletableFuture<>();
+        attempt(providers, request, loadBalancer, invoker, budget, new ArrayList<Provider>(), result);
+        return result;
+    }
+
+    /**
+     * 选择一个没有调用过的服务提供者发送请求，失败后在重试次数和重试预算允许时继续重试
+     */
+    private void attempt(final List<Provider> providers, final RPCRequest request, final LoadBalancer loadBalancer,
+                         final ProviderInvoker invoker, final RetryBudget budget, final List<Provider> selected,
+                         final CompletableFuture<RPCResponse> result) {
+        final Provider provider = select(providers, selected, request, loadBalancer);
+        selected.add(provider);
+        invoker.invoke(provider).whenComplete(new BiConsumer<RPCResponse, Throwable>() {
+
+            @Override
+            public void accept(RPCResponse response, Throwable t) {
+                if (isRetryable(response, t) && selected.size() <= retries) {
+                    if (budget.tryWithdraw()) {
+                        logger.warn("调用服务提供者[{}]失败，准备第{}次重试...", provider, selected.size());
+                        // 回调可能在I/O线程上执行，获取连接和发送请求都是异步的，可以直接在回调中重试
+                        attempt(providers, request, loadBalancer, invoker, budget, selected, result);
+                        return;
+                    }
+                    logger.warn("调用服务提供者[{}]失败，服务[{}]的重试预算已经用完，不再重试...", provider,
+                            request.getInterfaceName());
+                }
+                if (t != null) {
+                    result.completeExceptionally(t);
+                } else {
+                    result.complete(response);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package cn.xpleaf.rpc.client.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import cn.xpleaf.rpc.client.loadbalance.LoadBalancer;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+
+/**
+ * 并行调用，同时向forks个服务提供者发送请求，以第一个成功的响应为准，所有请求都失败时才失败，
+ * 适用于对实时性要求较高的读操作，代价是成倍的服务端负载，所以第一个之外的请求都需要从重试预算中获取额度，
+ * 预算不足时减少并行的请求数
+ *
+ * @author yeyonghao
+ */
+public class ForkingCluster extends AbstractCluster {
+
+    public static final String NAME = "forking";
+    // 默认的并行请求数
+    public static final int DEFAULT_FORKS = 2;
+
+    // 并行请求数
+    private final int forks;
+
+    public ForkingCluster() {
+        this(DEFAULT_FORKS);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param forks 并行请求数
+     */
+    public ForkingCluster(int forks) {
+        if (forks <= 0) {
+            throw new IllegalArgumentException("forks必须大于0: " + forks);
+        }
+        this.forks = forks;
+    }
+
+    @Override
+    public CompletableFuture<RPCResponse> invoke(List<Provider> providers, RPCRequest request,
+                                                 LoadBalancer loadBalancer, ProviderInvoker invoker) {
+        RetryBudget budget = RetryBudget.get(request.getInterfaceName());
+        budget.deposit();
+        // 选择不重复的服务提供者
+        int count = Math.min(forks, providers.size());
+        List<Provider> selected = new ArrayList<>(count);
+        selected.add(loadBalancer.select(providers, request));
+        while (selected.size() < count && budget.tryWithdraw()) {
+            selected.add(select(providers, selected, request, loadBalancer));
+        }
+
+        final CompletableFuture<RPCResponse> result = new CompletableFuture<>();
+        // 尚未完成的请求数，为0时说明所有请求都已经失败，以最后一个失败的结果完成
+        final AtomicInteger outstanding = new AtomicInteger(selected.size());
+        BiConsumer<RPCResponse, Throwable> onComplete = new BiConsumer<RPCResponse, Throwable>() {
+
+            @Override
+            public void accept(RPCResponse response, Throwable t) {
+                if (!isRetryable(response, t) || outstanding.decrementAndGet() == 0) {
+                    if (t != null) {
+                        result.completeExceptionally(t);
+                    } else {
+                        result.complete(response);
+                    }
+                }
+            }
+        };
+        for (Provider provider : selected) {
+            invoker.invoke(provider).whenComplete(onComplete);
+        }
+        return result;
+    }
+}
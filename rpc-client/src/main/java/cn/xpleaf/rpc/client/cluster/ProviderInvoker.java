@@ -0,0 +1,22 @@
+package cn.xpleaf.rpc.client.cluster;
+
+import java.util.concurrent.CompletableFuture;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+
+/**
+ * 向指定的服务提供者发送一次请求，由RPCProxy提供给集群容错策略使用
+ *
+ * @author yeyonghao
+ */
+public interface ProviderInvoker {
+
+    /**
+     * 向服务提供者发送请求
+     *
+     * @param provider 服务提供者
+     * @return 响应的future，该方法不抛出异常，建立连接失败等错误也通过future返回
+     */
+    CompletableFuture<RPCResponse> invoke(Provider provider);
+}
@@ -0,0 +1,129 @@
+package cn.xpleaf.rpc.client.cluster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算，限制重试、分叉、对冲等额外请求占正常请求的比例，避免服务端过载时重试把负载放大数倍
+ *
+ * 每个正常请求向预算中存入ratio次重试的额度，每次额外请求取出一次重试的额度，额度不足时不再重试，
+ * 所以无论失败率多高，额外请求最多只占正常请求的ratio（默认10%）。预算有初始额度，
+ * 冷启动时也可以少量重试；同时有上限，避免长时间正常运行积累的额度在故障时集中用于重试。
+ * 另外每秒保底允许minPerSecond次重试，请求量很小的服务也能够重试
+ *
+ * 预算按服务（接口名称）保存，一个服务过载不会耗尽其它服务的重试额度
+ *
+ * @author yeyonghao
+ */
+public class RetryBudget {
+
+    // 默认每个正常请求存入的重试额度（次）
+    public static final double DEFAULT_RATIO = 0.1;
+    // 默认的初始额度（次）
+    public static final int DEFAULT_INITIAL = 10;
+    // 默认的额度上限（次）
+    public static final int DEFAULT_MAX = 100;
+    // 默认每秒保底允许的重试次数
+    public static final int DEFAULT_MIN_PER_SECOND = 10;
+    // 一次重试对应的额度，额度以整数保存，避免浮点数的原子操作
+    private static final long UNIT = 1000;
+    // 所有服务的重试预算，key为接口名称
+    private static final Map<String, RetryBudget> BUDGET_MAP = new ConcurrentHashMap<>();
+
+    // 每个正常请求存入的额度
+    private final long deposit;
+    // 额度上限
+    private final long max;
+    // 当前的额度
+    private final AtomicLong balance;
+    // 每秒保底允许的重试次数
+    private final int minPerSecond;
+    // 保底额度所在的秒
+    private final AtomicLong reserveSecond = new AtomicLong();
+    // 这一秒已经使用的保底额度
+    private final AtomicInteger reserveUsed = new AtomicInteger();
+
+    /**
+     * 构造方法
+     *
+     * @param ratio        每个正常请求存入的重试额度（次），即额外请求最多占正常请求的比例
+     * @param initial      初始额度（次）
+     * @param max          额度上限（次）
+     * @param minPerSecond 每秒保底允许的重试次数
+     */
+    public RetryBudget(double ratio, int initial, int max, int minPerSecond) {
+        if (ratio < 0 || initial < 0 || max < initial || minPerSecond < 0) {
+            throw new IllegalArgumentException("重试预算的参数不正确: ratio=" + ratio + ", initial=" + initial
+                    + ", max=" + max + ", minPerSecond=" + minPerSecond);
+        }
+        this.minPerSecond = minPerSecond;
+        this.deposit = (long) (ratio * UNIT);
+        this.max = max * UNIT;
+        this.balance = new AtomicLong(initial * UNIT);
+    }
+
+    /**
+     * 获取服务的重试预算，不存在则使用默认参数创建
+     *
+     * @param interfaceName 接口名称
+     */
+    public static RetryBudget get(String interfaceName) {
+        RetryBudget budget = BUDGET_MAP.get(interfaceName);
+        if (budget == null) {
+            budget = new RetryBudget(DEFAULT_RATIO, DEFAULT_INITIAL, DEFAULT_MAX, DEFAULT_MIN_PER_SECOND);
+            RetryBudget exists = BUDGET_MAP.putIfAbsent(interfaceName, budget);
+            if (exists != null) {
+                budget = exists;
+            }
+        }
+        return budget;
+    }
+
+    /**
+     * 正常请求存入额度，并发时可能略微超过上限，不影响限制的效果
+     */
+    public void deposit() {
+        if (balance.get() < max) {
+            balance.addAndGet(deposit);
+        }
+    }
+
+    /**
+     * 尝试取出一次重试的额度
+     *
+     * @return 额度充足返回true，否则返回false，不应再发出额外请求
+     */
+    public boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < UNIT) {
+                return tryReserve();
+            }
+            if (balance.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 额度不足时使用这一秒的保底额度
+     */
+    private boolean tryReserve() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long last = reserveSecond.get();
+        if (second != last && reserveSecond.compareAndSet(last, second)) {
+            reserveUsed.set(0);
+        }
+        return reserveUsed.incrementAndGet() <= minPerSecond;
+    }
+
+    /**
+     * 当前剩余的重试次数
+     */
+    public double getBalance() {
+        return (double) balance.get() / UNIT;
+    }
+}
@@ -0,0 +1,26 @@
+package cn.xpleaf.rpc.client.filter;
+
+import java.util.concurrent.CompletableFuture;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * 客户端调用过滤器SPI，在RPCProxy发起远程调用的前后加入统计、链路追踪、限流、缓存等横切逻辑，
+ * 通过RPCProxy.setFilters配置，按配置的顺序执行，排在前面的过滤器包在外层
+ *
+ * 过滤器作用于经过网络的普通调用，即服务发现、集群容错和结果缓存之前，本地直接调用和流式调用不经过过滤器；
+ * 实现类需要是线程安全的，同一个实例会被所有调用线程共享
+ *
+ * @author yeyonghao
+ */
+public interface ClientFilter {
+
+    /**
+     * 处理一次调用
+     *
+     * @param request 本次调用的请求对象，已经设置好接口名称、方法名称、参数和方法签名
+     * @param chain   后续的过滤器，调用chain.proceed(request)继续调用，不调用则不会发出请求
+     * @return 调用结果的future，调用失败时以RPCException或者服务方法抛出的异常完成
+     */
+    CompletableFuture<Object> invoke(RPCRequest request, ClientFilterChain chain);
+}
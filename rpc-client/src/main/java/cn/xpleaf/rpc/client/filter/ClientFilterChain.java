@@ -0,0 +1,59 @@
+package cn.xpleaf.rpc.client.filter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * 客户端过滤器链，所有过滤器保存在一个数组中，最后一个元素是真正发起远程调用的过滤器
+ *
+ * 过滤器链在第一次调用某个方法时构建一次，数组中的每个位置对应一个共享同一个数组的ClientFilterChain，
+ * 保存的只是下标，proceed按下标调用过滤器，并把下一个位置的ClientFilterChain交给它，所以每次调用不会再创建对象；
+ * 没有配置过滤器时不构建过滤器链，RPCProxy直接发起远程调用，与没有过滤器功能时完全一样
+ *
+ * @author yeyonghao
+ */
+public final class ClientFilterChain {
+
+    // 按顺序执行的所有过滤器，最后一个是真正发起远程调用的过滤器
+    private final ClientFilter[] filters;
+    // 每个位置对应的过滤器链，与filters的长度相同
+    private final ClientFilterChain[] chains;
+    // 当前位置的下标
+    private final int index;
+
+    private ClientFilterChain(ClientFilter[] filters, ClientFilterChain[] chains, int index) {
+        this.filters = filters;
+        this.chains = chains;
+        this.index = index;
+    }
+
+    /**
+     * 构建过滤器链
+     *
+     * @param filters  按顺序执行的过滤器
+     * @param terminal 真正发起远程调用的过滤器，不会再调用chain
+     * @return 过滤器链，没有过滤器时返回null
+     */
+    public static ClientFilterChain build(List<ClientFilter> filters, ClientFilter terminal) {
+        if (filters == null || filters.isEmpty()) {
+            return null;
+        }
+        ClientFilter[] array = filters.toArray(new ClientFilter[filters.size() + 1]);
+        array[filters.size()] = terminal;
+        ClientFilterChain[] chains = new ClientFilterChain[array.length];
+        for (int i = 0; i < array.length; i++) {
+            chains[i] = new ClientFilterChain(array, chains, i);
+        }
+        return chains[0];
+    }
+
+    /**
+     * 交给当前位置的过滤器处理
+     */
+    public CompletableFuture<Object> proceed(RPCRequest request) {
+        int next = index + 1;
+        return filters[index].invoke(request, next < chains.length ? chains[next] : null);
+    }
+}
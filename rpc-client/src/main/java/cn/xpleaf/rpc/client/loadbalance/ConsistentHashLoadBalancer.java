@@ -0,0 +1,115 @@
+package cn.xpleaf.rpc.client.loadbalance;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * 一致性哈希负载均衡，根据指定位置的参数值选择服务提供者，参数值相同的请求总是落到同一个服务提供者上，
+ * 可以提高服务提供者本地缓存的命中率，服务提供者上线或下线时，也只有少部分参数值会被重新分配
+ *
+ * 每个服务提供者在哈希环上有多个虚拟节点，使得参数值的分布更加均匀，
+ * 由于服务发现返回的是不可变的地址列表快照，所以只有列表发生变化（快照对象不同）时才需要重建哈希环
+ *
+ * @author yeyonghao
+ */
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "consistenthash";
+
+    // 每个服务提供者的虚拟节点数
+    private static final int VIRTUAL_NODES = 160;
+
+    // 用于计算哈希值的参数位置
+    private final int argumentIndex;
+    // 每个接口的哈希环，key为接口名称
+    private final Map<String, HashRing> rings = new ConcurrentHashMap<>();
+
+    public ConsistentHashLoadBalancer() {
+        this(0);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param argumentIndex 用于计算哈希值的参数位置，从0开始，方法没有该位置的参数时使用方法名计算
+     */
+    public ConsistentHashLoadBalancer(int argumentIndex) {
+        this.argumentIndex = argumentIndex;
+    }
+
+    @Override
+    public Provider select(List<Provider> providers, RPCRequest request) {
+        if (providers.size() == 1) {
+            return providers.get(0);
+        }
+        HashRing ring = rings.get(request.getInterfaceName());
+        if (ring == null || ring.providers != providers) {
+            ring = new HashRing(providers);
+            rings.put(request.getInterfaceName(), ring);
+        }
+        Object[] parameters = request.getParameters();
+        String key = parameters != null && parameters.length > argumentIndex
+                ? String.valueOf(parameters[argumentIndex]) : request.getMethodName();
+        return ring.select(hash(md5(key), 0));
+    }
+
+    /**
+     * 哈希环，构建后只读
+     */
+    private static class HashRing {
+
+        // 构建哈希环时的服务提供者列表快照
+        private final List<Provider> providers;
+        // 哈希环，key为虚拟节点的哈希值
+        private final TreeMap<Long, Provider> ring = new TreeMap<>();
+
+        HashRing(List<Provider> providers) {
+            this.providers = providers;
+            for (Provider provider : providers) {
+                // 一次MD5计算得到16个字节，可以生成4个虚拟节点的哈希值
+                for (int i = 0; i < VIRTUAL_NODES / 4; i++) {
+                    byte[] digest = md5(provider.getAddress() + "#" + i);
+                    for (int j = 0; j < 4; j++) {
+                        ring.put(hash(digest, j), provider);
+                    }
+                }
+            }
+        }
+
+        Provider select(long hash) {
+            Map.Entry<Long, Provider> entry = ring.ceilingEntry(hash);
+            if (entry == null) {
+                entry = ring.firstEntry();
+            }
+            return entry.getValue();
+        }
+    }
+
+    /**
+     * 取MD5摘要中的第index组4个字节作为一个32位无符号哈希值
+     */
+    private static long hash(byte[] digest, int index) {
+        return (((long) (digest[3 + index * 4] & 0xFF) << 24)
+                | ((long) (digest[2 + index * 4] & 0xFF) << 16)
+                | ((long) (digest[1 + index * 4] & 0xFF) << 8)
+                | (digest[index * 4] & 0xFF))
+                & 0xFFFFFFFFL;
+    }
+
+    private static byte[] md5(String value) {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            return md5.digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
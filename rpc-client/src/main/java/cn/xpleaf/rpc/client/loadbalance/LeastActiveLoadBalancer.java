@@ -0,0 +1,46 @@
+package cn.xpleaf.rpc.client.loadbalance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * 最少活跃请求数负载均衡，选择本客户端正在执行的请求数最少的服务提供者，
+ * 处理得慢的服务提供者积压的请求多，自然会少分到新的请求，请求数相同的服务提供者之间按权重随机选择
+ *
+ * @author yeyonghao
+ */
+public class LeastActiveLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "leastactive";
+
+    @Override
+    public Provider select(List<Provider> providers, RPCRequest request) {
+        int size = providers.size();
+        if (size == 1) {
+            return providers.get(0);
+        }
+        Provider selected = null;
+        int leastActive = Integer.MAX_VALUE;
+        // 请求数同为最少的服务提供者的权重之和，用于在其中按权重随机选择（加权蓄水池抽样）
+        int leastWeight = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (Provider provider : providers) {
+            int active = ProviderStats.get(provider.getAddress()).getActive();
+            int weight = provider.getWeight();
+            if (active < leastActive) {
+                leastActive = active;
+                leastWeight = weight;
+                selected = provider;
+            } else if (active == leastActive) {
+                leastWeight += weight;
+                if (random.nextInt(leastWeight) < weight) {
+                    selected = provider;
+                }
+            }
+        }
+        return selected;
+    }
+}
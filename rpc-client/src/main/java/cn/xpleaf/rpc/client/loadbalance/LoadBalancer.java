@@ -0,0 +1,25 @@
+package cn.xpleaf.rpc.client.loadbalance;
+
+import java.util.List;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * 负载均衡策略SPI，从服务提供者列表中选择一个服务提供者处理本次请求
+ *
+ * 内置的实现见LoadBalancerFactory，实现类需要是线程安全的，同一个实例会被所有调用线程共享
+ *
+ * @author yeyonghao
+ */
+public interface LoadBalancer {
+
+    /**
+     * 选择服务提供者
+     *
+     * @param providers 服务提供者列表，不可变且不为空
+     * @param request   本次调用的请求对象
+     * @return 选中的服务提供者
+     */
+    Provider select(List<Provider> providers, RPCRequest request);
+}
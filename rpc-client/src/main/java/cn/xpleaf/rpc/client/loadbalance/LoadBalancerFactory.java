@@ -0,0 +1,48 @@
+package cn.xpleaf.rpc.client.loadbalance;
+
+/**
+ * 负载均衡策略工厂，按名称创建内置的负载均衡策略
+ *
+ * 内置的负载均衡策略有：
+ * random（默认）：加权随机
+ * roundrobin：平滑加权轮询
+ * leastactive：最少活跃请求数
+ * consistenthash：按第一个参数一致性哈希，需要指定其它参数位置时直接构造ConsistentHashLoadBalancer
+ * p2c：Power of Two Choices，按EWMA响应时间和活跃请求数选择
+ *
+ * @author yeyonghao
+ */
+public final class LoadBalancerFactory {
+
+    private LoadBalancerFactory() {
+    }
+
+    /**
+     * 创建默认的负载均衡策略
+     */
+    public static LoadBalancer getDefault() {
+        return new RandomLoadBalancer();
+    }
+
+    /**
+     * 根据名称创建负载均衡策略
+     *
+     * @param name 负载均衡策略名称
+     * @return 负载均衡策略
+     * @throws IllegalArgumentException 不存在该名称的负载均衡策略
+     */
+    public static LoadBalancer getLoadBalancer(String name) {
+        if (name == null || RandomLoadBalancer.NAME.equals(name)) {
+            return new RandomLoadBalancer();
+        } else if (WeightedRoundRobinLoadBalancer.NAME.equals(name)) {
+            return new WeightedRoundRobinLoadBalancer();
+        } else if (LeastActiveLoadBalancer.NAME.equals(name)) {
+            return new LeastActiveLoadBalancer();
+        } else if (ConsistentHashLoadBalancer.NAME.equals(name)) {
+            return new ConsistentHashLoadBalancer();
+        } else if (P2CLoadBalancer.NAME.equals(name)) {
+            return new P2CLoadBalancer();
+        }
+        throw new IllegalArgumentException("不存在名称为[" + name + "]的负载均衡策略");
+    }
+}
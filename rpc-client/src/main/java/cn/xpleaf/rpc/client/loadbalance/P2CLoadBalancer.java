@@ -0,0 +1,54 @@
+package cn.xpleaf.rpc.client.loadbalance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * Power of Two Choices负载均衡，随机选出两个服务提供者，再选择其中负载较低的一个
+ *
+ * 负载 = EWMA响应时间 * (正在执行的请求数 + 1)，既考虑了服务提供者最近的响应速度，也考虑了已经积压的请求，
+ * 只比较两个服务提供者，开销与随机负载均衡相当，但能有效避开变慢或者过载的节点，
+ * 同时又不会像直接选择负载最低的节点那样，让所有客户端在同一时刻涌向同一个节点
+ *
+ * @author yeyonghao
+ */
+public class P2CLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "p2c";
+
+    @Override
+    public Provider select(List<Provider> providers, RPCRequest request) {
+        int size = providers.size();
+        if (size == 1) {
+            return providers.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        // 在其余的服务提供者中随机选择第二个，保证两个不相同
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Provider a = providers.get(first);
+        Provider b = providers.get(second);
+        return cost(a) <= cost(b) ? a : b;
+    }
+
+    /**
+     * 计算服务提供者的负载，还没有统计数据并且空闲的服务提供者负载为0，会被优先选择以尽快获得统计数据，
+     * 还没有统计数据但已经有请求在执行的服务提供者按惩罚响应时间计算，负载随积压的请求数增长，
+     * 避免一个卡住的新服务提供者因为一直没有完成的调用而赢得所有比较
+     */
+    private static double cost(Provider provider) {
+        ProviderStats stats = ProviderStats.get(provider.getAddress());
+        double ewma = stats.getEwmaNanos();
+        int active = stats.getActive();
+        if (ewma == 0) {
+            return (double) ProviderStats.PENALTY_NANOS * active / provider.getWeight();
+        }
+        return ewma * (active + 1) / provider.getWeight();
+    }
+}
@@ -0,0 +1,91 @@
+package cn.xpleaf.rpc.client.loadbalance;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务提供者的调用统计，包括正在执行的请求数和指数加权移动平均（EWMA）的响应时间，
+ * 由RPCProxy在每次调用开始和结束时更新，供LeastActiveLoadBalancer和P2CLoadBalancer等负载均衡策略使用
+ *
+ * 统计按服务提供者地址保存，与服务发现的地址列表快照无关，所以服务提供者列表刷新后统计数据不会丢失
+ *
+ * @author yeyonghao
+ */
+public class ProviderStats {
+
+    // EWMA的平滑系数，越大表示越看重最近的响应时间
+    private static final double ALPHA = 0.2;
+    // 惩罚响应时间（纳秒），调用失败时按该耗时计入EWMA，没有统计数据的服务提供者有请求积压时也按该耗时计算负载，
+    // 避免快速失败或者卡住的服务提供者因为响应时间低（或者为0）而吸走所有请求
+    public static final long PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // 所有服务提供者的调用统计，key为服务提供者地址host:port
+    private static final Map<String, ProviderStats> STATS_MAP = new ConcurrentHashMap<>();
+
+    // 正在执行的请求数
+    private final AtomicInteger active = new AtomicInteger();
+    // EWMA响应时间（纳秒），以double的bit形式保存，0表示还没有统计数据
+    private final AtomicLong ewmaBits = new AtomicLong(Double.doubleToLongBits(0));
+
+    /**
+     * 获取服务提供者的调用统计，不存在则创建
+     *
+     * @param address 服务提供者地址host:port
+     */
+    public static ProviderStats get(String address) {
+        ProviderStats stats = STATS_MAP.get(address);
+        if (stats == null) {
+            stats = new ProviderStats();
+            ProviderStats exists = STATS_MAP.putIfAbsent(address, stats);
+            if (exists != null) {
+                stats = exists;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 调用开始
+     */
+    public void beginCall() {
+        active.incrementAndGet();
+    }
+
+    /**
+     * 调用结束，失败的调用（传输失败、超时、被服务端拒绝）按惩罚响应时间计入EWMA，
+     * 否则快速失败的服务提供者的响应时间反而最低
+     *
+     * @param elapsedNanos 本次调用的耗时（纳秒）
+     * @param failed       本次调用是否失败
+     */
+    public void endCall(long elapsedNanos, boolean failed) {
+        active.decrementAndGet();
+        if (failed) {
+            elapsedNanos = Math.max(elapsedNanos, PENALTY_NANOS);
+        }
+        while (true) {
+            long bits = ewmaBits.get();
+            double ewma = Double.longBitsToDouble(bits);
+            double updated = ewma == 0 ? elapsedNanos : ewma + ALPHA * (elapsedNanos - ewma);
+            if (ewmaBits.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 正在执行的请求数
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * EWMA响应时间（纳秒），0表示还没有统计数据
+     */
+    public double getEwmaNanos() {
+        return Double.longBitsToDouble(ewmaBits.get());
+    }
+}
@@ -0,0 +1,48 @@
+package cn.xpleaf.rpc.client.loadbalance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * 加权随机负载均衡，默认的负载均衡策略，所有服务提供者权重相同时即为简单随机
+ *
+ * @author yeyonghao
+ */
+public class RandomLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "random";
+
+    @Override
+    public Provider select(List<Provider> providers, RPCRequest request) {
+        int size = providers.size();
+        if (size == 1) {
+            return providers.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // 计算总权重，同时判断权重是否都相同
+        int totalWeight = 0;
+        boolean sameWeight = true;
+        for (int i = 0; i < size; i++) {
+            int weight = providers.get(i).getWeight();
+            totalWeight += weight;
+            if (sameWeight && i > 0 && weight != providers.get(i - 1).getWeight()) {
+                sameWeight = false;
+            }
+        }
+        if (sameWeight || totalWeight <= 0) {
+            return providers.get(random.nextInt(size));
+        }
+        // 在总权重范围内随机一个数，落在哪个服务提供者的权重区间就选择哪个
+        int offset = random.nextInt(totalWeight);
+        for (Provider provider : providers) {
+            offset -= provider.getWeight();
+            if (offset < 0) {
+                return provider;
+            }
+        }
+        return providers.get(size - 1);
+    }
+}
@@ -0,0 +1,74 @@
+package cn.xpleaf.rpc.client.loadbalance;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * 平滑加权轮询负载均衡（与nginx的算法相同）
+ *
+ * 每次选择时，每个服务提供者的当前权重都加上其配置的权重，选择当前权重最大的服务提供者，然后将其当前权重减去总权重，
+ * 这样权重为5、1、1的三个服务提供者的选择顺序为a、a、b、a、c、a、a，而不是a、a、a、a、a、b、c，请求分布更加均匀
+ *
+ * @author yeyonghao
+ */
+public class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "roundrobin";
+
+    // 每个接口各个服务提供者的当前权重，key为接口名称，value的key为服务提供者地址
+    private final Map<String, Map<String, int[]>> currentWeights = new ConcurrentHashMap<>();
+
+    @Override
+    public Provider select(List<Provider> providers, RPCRequest request) {
+        if (providers.size() == 1) {
+            return providers.get(0);
+        }
+        Map<String, int[]> weights = currentWeights.get(request.getInterfaceName());
+        if (weights == null) {
+            weights = new ConcurrentHashMap<>();
+            Map<String, int[]> exists = currentWeights.putIfAbsent(request.getInterfaceName(), weights);
+            if (exists != null) {
+                weights = exists;
+            }
+        }
+        // 同一个接口的选择过程需要互斥，不同接口之间互不影响
+        synchronized (weights) {
+            int totalWeight = 0;
+            Provider selected = null;
+            int[] selectedWeight = null;
+            for (Provider provider : providers) {
+                int[] current = weights.get(provider.getAddress());
+                if (current == null) {
+                    current = new int[1];
+                    weights.put(provider.getAddress(), current);
+                }
+                current[0] += provider.getWeight();
+                totalWeight += provider.getWeight();
+                if (selected == null || current[0] > selectedWeight[0]) {
+                    selected = provider;
+                    selectedWeight = current;
+                }
+            }
+            selectedWeight[0] -= totalWeight;
+            // 已经下线的服务提供者不再保留其当前权重
+            if (weights.size() > providers.size()) {
+                weights.keySet().retainAll(addressesOf(providers));
+            }
+            return selected;
+        }
+    }
+
+    private static Set<String> addressesOf(List<Provider> providers) {
+        Set<String> addresses = new HashSet<>();
+        for (Provider provider : providers) {
+            addresses.add(provider.getAddress());
+        }
+        return addresses;
+    }
+}
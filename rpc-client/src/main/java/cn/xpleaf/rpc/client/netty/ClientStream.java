@@ -0,0 +1,145 @@
+package cn.xpleaf.rpc.client.netty;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+
+/**
+ * 客户端的流式调用，即流式调用的方法返回给调用方的Iterator
+ *
+ * 服务端发送的元素由I/O线程放入队列，调用方通过hasNext/next逐个取出，队列为空时hasNext会阻塞，直到下一个元素到达或者流结束。
+ * 队列中的元素数不会超过初始信用window：调用方每消费掉window的一半，就向服务端补充同样数量的信用，
+ * 所以调用方消费得慢时，服务端会因为信用用完而暂停发送，而不是把元素堆积在客户端的内存中
+ *
+ * 流中途出现异常（服务端异常、连接断开等）时，hasNext会抛出RPCException；
+ * 调用方不再需要剩余的元素时，应当调用close取消流，服务端会停止发送并关闭其Iterator
+ *
+ * 该类不是线程安全的，同一个流只能由一个线程消费
+ *
+ * @author yeyonghao
+ */
+public class ClientStream<T> implements Iterator<T>, Closeable {
+
+    // 流结束的标记
+    private static final Object END = new Object();
+
+    // 发起流式调用的连接
+    private final RPCClient client;
+    // 流式调用请求的ID
+    private final long requestId;
+    // 初始信用，也是队列中最多缓冲的元素数
+    private final int window;
+    // 已经到达、尚未被消费的元素，最后一个为END或者异常
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    // 自上次补充信用以来消费的元素数
+    private int consumed;
+    // 下一个元素，hasNext取出后暂存，null表示还没有取出
+    private Object next;
+    // 是否已经结束（正常结束、出现异常或者被取消）
+    private boolean finished;
+
+    ClientStream(RPCClient client, long requestId, int window) {
+        this.client = client;
+        this.requestId = requestId;
+        this.window = window;
+    }
+
+    /**
+     * 接收到服务端发送的元素，在I/O线程上调用
+     */
+    void onElement(Object element) {
+        // LinkedBlockingQueue不允许null元素，用队列本身作为null的占位
+        queue.offer(element != null ? element : queue);
+    }
+
+    /**
+     * 流结束，在I/O线程上或者请求失败的线程上调用
+     *
+     * @param response 表示流结束的响应，失败时为null
+     * @param t        请求失败的原因，成功时为null
+     */
+    void onComplete(RPCResponse response, Throwable t) {
+        if (t != null) {
+            queue.offer(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+        } else if (response.isError()) {
+            queue.offer(response.getError());
+        } else {
+            queue.offer(END);
+        }
+    }
+
+    /**
+     * 是否还有下一个元素，队列为空时阻塞等待
+     *
+     * @throws RPCException 流中途出现异常，或者等待时线程被中断
+     */
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        Object item;
+        try {
+            item = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new RPCException(RPCException.UNKNOWN, "等待流式调用[" + requestId + "]的元素时被中断", e);
+        }
+        if (item == END) {
+            finished = true;
+            return false;
+        }
+        if (item instanceof Throwable) {
+            finished = true;
+            Throwable t = (Throwable) item;
+            throw t instanceof RPCException ? (RPCException) t
+                    : new RPCException(RPCException.UNKNOWN, "流式调用失败: " + t, t);
+        }
+        next = item;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object item = next;
+        next = null;
+        // 消费掉一半的窗口后再补充信用，避免每个元素都发送一次信用消息
+        if (++consumed >= Math.max(window / 2, 1)) {
+            client.sendCredit(requestId, consumed);
+            consumed = 0;
+        }
+        return item == queue ? null : (T) item;
+    }
+
+    /**
+     * 取消流，流已经结束时不做任何事情
+     */
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        next = null;
+        queue.clear();
+        client.cancelStream(requestId);
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+}
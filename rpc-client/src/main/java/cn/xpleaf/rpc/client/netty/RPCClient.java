@@ -1,36 +1,90 @@
 package cn.xpleaf.rpc.client.netty;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.metrics.MethodMetrics;
+import cn.xpleaf.rpc.common.metrics.RPCMetrics;
+import cn.xpleaf.rpc.common.pojo.RPCHandshake;
 import cn.xpleaf.rpc.common.pojo.RPCRequest;
 import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import cn.xpleaf.rpc.common.pojo.RPCStreamCredit;
+import cn.xpleaf.rpc.common.pojo.RPCStreamElement;
+import cn.xpleaf.rpc.common.transport.Transport;
+import cn.xpleaf.rpc.common.utils.BatchWriter;
+import cn.xpleaf.rpc.common.utils.Compressor;
+import cn.xpleaf.rpc.common.utils.CompressorFactory;
 import cn.xpleaf.rpc.common.utils.RPCDecoder;
 import cn.xpleaf.rpc.common.utils.RPCEncoder;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * RPC客户端，用于连接RPC服务端，向服务端发送请求
- * 主要是netty的模板代码
+ * RPC客户端，代表与某一个RPC服务端之间的一条长连接，用于向服务端发送请求
+ *
+ * 与最初每次调用都新建线程组、建立连接、等待连接关闭的方式不同，现在连接建立后会一直保持，
+ * 多个请求可以同时复用这一条连接（多路复用），服务端的响应通过requestId与发起请求的调用方对应起来，
+ * 请求通过BatchWriter写出，并发的请求会合并为一次flush，
+ * 连接建立后会先与服务端握手，协商好每个方法的编号和压缩算法，之后的请求只需要携带方法编号和参数值，
+ * 请求携带了超时时间时，通过时间轮定时器在超时后让调用方失败返回，连接本身由RPCClientPool统一创建和管理
+ *
+ * 流式调用通过openStream发起，服务端发送的元素按requestId交给对应的ClientStream，表示流结束的响应则与普通请求一样处理
  *
  * @author yeyonghao
  */
-public class RPCClient extends SimpleChannelInboundHandler<RPCResponse> {
+public class RPCClient extends SimpleChannelInboundHandler<Object> {
+
+    // 等待握手完成的超时时间（毫秒），超时后仍然可以使用连接，只是请求中需要携带完整的方法信息
+    private static final long HANDSHAKE_TIMEOUT = 3000;
 
     // RPC服务端的地址
     private String host;
     // RPC服务端的端口号
     private int port;
-    // RPCResponse响应对象
-    private RPCResponse response;
+    // 请求超时使用的定时器，由连接池共享
+    private Timer timer;
+    // 希望使用的压缩算法名称，null表示不压缩
+    private String compressor;
+    // 压缩阈值，请求的消息体小于该长度时不压缩
+    private int compressThreshold = RPCProtocol.DEFAULT_COMPRESS_THRESHOLD;
+    // 与RPC服务端之间的连接
+    private volatile Channel channel;
+    // 批量写出器，多个调用方同时发送的请求会合并起来写出，减少flush的次数
+    private volatile BatchWriter batchWriter;
+    // 尚未收到响应的请求，key为requestId，value为等待响应结果的future
+    private Map<Long, CompletableFuture<RPCResponse>> pendingRequests = new ConcurrentHashMap<>();
+    // 正在接收元素的流式调用，key为requestId
+    private Map<Long, ClientStream<?>> streams = new ConcurrentHashMap<>();
+    // requestId生成器，requestId只需要在一条连接上唯一
+    private AtomicLong requestIdGenerator = new AtomicLong();
+    // 握手时协商好的方法编号，key为方法签名，value为方法编号，握手完成前为空
+    private volatile Map<String, Integer> methodIds = Collections.emptyMap();
+    // 等待握手完成的future
+    private CompletableFuture<Void> handshakeFuture = new CompletableFuture<>();
     // log4j日志记录
     private Logger logger = LoggerFactory.getLogger(RPCClient.class);
 
@@ -38,89 +92,407 @@ public class RPCClient extends SimpleChannelInboundHandler<RPCResponse> {
      * 构造方法
      *
      * @param host RPC服务端的地址
-     * @param port RPC服务端的端口号
+     * @param port  RPC服务端的端口号
+     * @param timer 请求超时使用的定时器
      */
-    public RPCClient(String host, int port) {
+    public RPCClient(String host, int port, Timer timer) {
         this.host = host;
         this.port = port;
+        this.timer = timer;
+    }
+
+    /**
+     * 设置希望使用的压缩算法和压缩阈值，需要在建立连接之前设置，实际使用的压缩算法由握手协商决定
+     *
+     * @param compressor        压缩算法名称，如deflate、snappy，null表示不压缩
+     * @param compressThreshold 压缩阈值，请求的消息体小于该长度时不压缩
+     */
+    public void setCompression(String compressor, int compressThreshold) {
+        this.compressor = compressor;
+        this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * 使用给定的线程组与RPC服务端建立连接，该方法是同步阻塞的，连接建立并且握手完成（或者握手超时）后才返回
+     *
+     * @param transport 传输实现，需要与线程组的类型一致
+     * @param group     共享的客户端I/O线程组
+     * @param allocator ByteBuf分配器
+     * @throws Exception 建立连接失败时抛出
+     */
+    public void connect(Transport transport, EventLoopGroup group, ByteBufAllocator allocator) throws Exception {
+        try {
+            connectAsync(transport, group, allocator).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
     }
 
     /**
-     * 向RPC服务端发送请求方法
+     * 使用给定的线程组与RPC服务端异步建立连接，该方法不会阻塞，连接建立并且握手完成后返回的future才完成，
+     * 握手超时时连接仍然可以使用，future同样正常完成，只是请求中需要携带完整的方法信息
+     *
+     * @param transport 传输实现，需要与线程组的类型一致
+     * @param group     共享的客户端I/O线程组
+     * @param allocator ByteBuf分配器
+     * @return 连接可用时完成的future，建立连接失败或者握手完成前连接断开时以异常完成
+     */
+    public CompletableFuture<RPCClient> connectAsync(Transport transport, EventLoopGroup group,
+                                                     ByteBufAllocator allocator) {
+        final CompletableFuture<RPCClient> result = new CompletableFuture<>();
+        Bootstrap b = new Bootstrap();
+        b.group(group).channel(transport.socketChannelClass()).option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.ALLOCATOR, allocator)
+                // 设置TCP连接超时时间
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
+                // 长连接，开启TCP保活
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        // 添加解码器（同时负责切分消息帧），RPC客户端需要解码的是RPCResponse对象，因为需要接收服务端发送过来的响应
+                        ch.pipeline().addLast(new RPCDecoder());
+                        // 添加编码器
+                        ch.pipeline().addLast(new RPCEncoder());
+                        // 添加业务处理handler，本类继承了SimpleChannelInboundHandler
+                        // RPCClient继承了SimpleChannelInboundHandler，所以可以直接传入本类对象
+                        ch.pipeline().addLast(RPCClient.this);
+                    }
+                });
+        transport.configure(b);
+        // 发起连接操作（注意服务端是bind，客户端则需要connect）
+        logger.info("准备与RPC服务端建立连接[{}:{}]", host, port);
+        b.connect(host, port).addListener(new ChannelFutureListener() {
+
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                if (!f.isSuccess()) {
+                    logger.error("与RPC服务端建立连接失败[{}:{}]", host, port);
+                    result.completeExceptionally(f.cause());
+                    return;
+                }
+                batchWriter = new BatchWriter(f.channel());
+                channel = f.channel();
+                logger.info("与RPC服务端的连接建立成功[{}:{}]，准备握手...", host, port);
+                handshake(result);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 与RPC服务端握手，获取服务端所有方法的编号并协商压缩算法，握手超时不影响连接的使用，
+     * 等待握手的超时由共享的定时器处理，不阻塞任何线程
+     *
+     * @param result 连接可用时完成的future
+     */
+    private void handshake(final CompletableFuture<RPCClient> result) {
+        RPCHandshake handshake = new RPCHandshake();
+        if (compressor != null) {
+            handshake.setCompressors(new String[]{compressor});
+        }
+        batchWriter.write(handshake);
+        final Timeout timeout = timer.newTimeout(new TimerTask() {
+
+            @Override
+            public void run(Timeout t) throws Exception {
+                if (result.complete(RPCClient.this)) {
+                    logger.warn("与RPC服务端握手超时[{}:{}]，请求将携带完整的方法信息...", host, port);
+                }
+            }
+        }, HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+        handshakeFuture.whenComplete(new BiConsumer<Void, Throwable>() {
+
+            @Override
+            public void accept(Void v, Throwable t) {
+                timeout.cancel();
+                if (t != null) {
+                    // 握手完成前连接就断开了，连接不可用
+                    result.completeExceptionally(t);
+                } else if (result.complete(RPCClient.this)) {
+                    logger.info("与RPC服务端握手成功[{}:{}]，协商了{}个方法的编号", host, port, methodIds.size());
+                }
+            }
+        });
+    }
+
+    /**
+     * 向RPC服务端发送请求方法，该方法会阻塞直到收到对应的响应
      *
      * @param request RPC客户端向RPC服务端发送的request对象
      * @return
      */
     public RPCResponse sendRequest(RPCRequest request) throws Exception {
-
-        // 配置客户端NIO线程组
-        EventLoopGroup group = new NioEventLoopGroup();
+        // 需要注意的是，如果没有接收到服务端返回数据，那么会一直停在这里等待
         try {
-            Bootstrap b = new Bootstrap();
-            b.group(group).channel(NioSocketChannel.class).option(ChannelOption.TCP_NODELAY, true)
-                    // 设置TCP连接超时时间
-                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
-                    .handler(new ChannelInitializer<SocketChannel>() {
-
-                        @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            // 添加解码器，RPC客户端需要解码的是RPCResponse对象，因为需要接收服务端发送过来的响应
-                            ch.pipeline().addLast(new RPCDecoder(RPCResponse.class));
-                            // 添加编码器
-                            ch.pipeline().addLast(new RPCEncoder());
-                            // 添加业务处理handler，本类继承了SimpleChannelInboundHandler
-                            // RPCClient继承了SimpleChannelInboundHandler，所以可以直接传入本类对象
-                            ch.pipeline().addLast(RPCClient.this);
-                        }
-                    });
-            // 发起异步连接操作（注意服务端是bind，客户端则需要connect）
-            logger.info("准备发起异步连接操作[{}:{}]", host, port);
-            ChannelFuture f = b.connect(host, port).sync();
-
-            // 判断连接是否成功的代码
-            // System.out.println(f.isSuccess());
-
-            // 向RPC服务端发起请求
-            logger.info("准备向RPC服务端发起请求...");
-            f.channel().writeAndFlush(request);
-
-
-            // 需要注意的是，如果没有接收到服务端返回数据，那么会一直停在这里等待
-            // 等待客户端链路关闭
-            logger.info("准备等待客户端链路关闭...");
-            f.channel().closeFuture().sync();
-        } finally {
-            // 优雅退出，释放NIO线程组
-            logger.info("优雅退出，释放NIO线程组...");
-            group.shutdownGracefully();
+            return sendRequestAsync(request).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
         }
+    }
+
+    /**
+     * 向RPC服务端异步发送请求方法，该方法不会阻塞，收到响应后返回的future会被完成
+     *
+     * @param request RPC客户端向RPC服务端发送的request对象
+     * @return 等待响应结果的future，发送失败、连接断开或者超时时会以异常完成
+     */
+    public CompletableFuture<RPCResponse> sendRequestAsync(RPCRequest request) {
+        return sendRequestAsync(request, request.getTimeout());
+    }
+
+    /**
+     * 向RPC服务端异步发送请求方法，使用给定的超时时间而不是请求中的超时时间，
+     * 同一个请求对象被并发地发送到多个服务提供者（重试、对冲）时，每次发送可以携带各自的剩余时间而不需要修改请求对象
+     *
+     * @param request RPC客户端向RPC服务端发送的request对象
+     * @param timeout 本次发送的超时时间（毫秒），0表示不超时
+     * @return 等待响应结果的future，发送失败、连接断开或者超时时会以异常完成
+     */
+    public CompletableFuture<RPCResponse> sendRequestAsync(RPCRequest request, int timeout) {
+        final long requestId = requestIdGenerator.incrementAndGet();
+        final CompletableFuture<RPCResponse> future = new CompletableFuture<>();
+        // 先登记等待响应的请求，再发送，避免响应先于登记到达
+        pendingRequests.put(requestId, future);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("准备向RPC服务端发起请求[{}]...", requestId);
+        }
+        RPCRequest message = toMessage(request, requestId, timeout);
+        if (timeout > 0) {
+            scheduleTimeout(requestId, future, timeout);
+        }
+        write(message, future);
+        return future;
+    }
+
+    /**
+     * 向RPC服务端发起流式调用，该方法不会阻塞，服务端发送的元素通过返回的ClientStream逐个获取
+     *
+     * 流式调用不设置整体的超时时间，导出大量数据可能需要很长时间，调用方不再需要剩余的元素时应当关闭ClientStream
+     *
+     * @param request RPC客户端向RPC服务端发送的request对象
+     * @param window  初始信用，即服务端在收到补充的信用之前最多可以发送的元素数
+     * @return 流式调用的元素
+     */
+    public <T> ClientStream<T> openStream(RPCRequest request, int window) {
+        final long requestId = requestIdGenerator.incrementAndGet();
+        final ClientStream<T> stream = new ClientStream<>(this, requestId, window);
+        final CompletableFuture<RPCResponse> future = new CompletableFuture<>();
+        // 流结束（收到结束响应、发送失败或者连接断开）时通知ClientStream
+        future.whenComplete(new BiConsumer<RPCResponse, Throwable>() {
+
+            @Override
+            public void accept(RPCResponse response, Throwable t) {
+                streams.remove(requestId);
+                stream.onComplete(response, t);
+            }
+        });
+        streams.put(requestId, stream);
+        pendingRequests.put(requestId, future);
 
-        return response;
+        logger.info("准备向RPC服务端发起流式调用[{}]，初始信用为{}...", requestId, window);
+        RPCRequest message = toMessage(request, requestId, 0);
+        message.setCredit(window);
+        write(message, future);
+        return stream;
     }
 
     /**
-     * 读取RPC服务端的响应结果，并赋值给response对象
+     * 补充流式调用的信用，由ClientStream在调用方消费了元素之后调用
+     */
+    void sendCredit(long requestId, int credit) {
+        batchWriter.write(new RPCStreamCredit(requestId, credit));
+    }
+
+    /**
+     * 取消流式调用，之后到达的元素和结束响应都会被丢弃
+     */
+    void cancelStream(long requestId) {
+        streams.remove(requestId);
+        CompletableFuture<RPCResponse> future = pendingRequests.remove(requestId);
+        if (future != null) {
+            future.cancel(false);
+        }
+        batchWriter.write(new RPCStreamCredit(requestId, RPCStreamCredit.CANCEL));
+    }
+
+    /**
+     * 写出请求，写出成功后记录请求的大小，写出失败时让等待响应的future失败，最后回收请求对象
+     */
+    private void write(final RPCRequest message, final CompletableFuture<RPCResponse> future) {
+        final long requestId = message.getRequestId();
+        final MethodMetrics metrics = RPCMetrics.client().get(message.getSignature());
+        // 多个请求在同一条连接上流水线式发送，不需要等待前一个请求的响应，flush由批量写出器合并
+        batchWriter.write(message).addListener(new ChannelFutureListener() {
+
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                if (f.isSuccess()) {
+                    // 请求编码后才知道消息体的大小
+                    metrics.recordRequestSize(message.getSize());
+                } else {
+                    // 发送失败时，直接唤醒等待中的调用方
+                    pendingRequests.remove(requestId);
+                    future.completeExceptionally(f.cause());
+                }
+                // 请求已经编码完毕（或者不会再被编码），放回对象池
+                message.recycle();
+            }
+        });
+    }
+
+    /**
+     * 超时后让调用方失败返回，请求先完成时取消定时任务，避免时间轮中积累大量已经无用的任务
+     */
+    private void scheduleTimeout(final long requestId, CompletableFuture<RPCResponse> future, final int timeout) {
+        final Timeout task = timer.newTimeout(new TimerTask() {
+
+            @Override
+            public void run(Timeout t) throws Exception {
+                CompletableFuture<RPCResponse> pending = pendingRequests.remove(requestId);
+                if (pending != null) {
+                    pending.completeExceptionally(new RPCException(RPCException.TIMEOUT,
+                            "请求[" + requestId + "]在" + timeout + "毫秒内没有收到响应[" + host + ":" + port + "]"));
+                }
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        future.whenComplete(new BiConsumer<RPCResponse, Throwable>() {
+
+            @Override
+            public void accept(RPCResponse response, Throwable t) {
+                task.cancel();
+            }
+        });
+    }
+
+    /**
+     * 生成真正发送到这条连接上的请求，requestId和方法编号都只在这条连接上有效，
+     * 所以不修改调用方传入的请求，同一个请求可以再发送到其它的连接上
+     *
+     * 方法已经协商了编号时，请求中只携带方法编号，不再携带接口名称、方法名称和参数类型，
+     * 生成的请求从对象池中获取，写出之后即被回收
+     *
+     * @param timeout 本次发送携带的超时时间（毫秒），服务端据此判断请求是否已经过期
+     */
+    private RPCRequest toMessage(RPCRequest request, long requestId, int timeout) {
+        String signature = request.getSignature();
+        if (signature == null) {
+            signature = RPCProtocol.signatureOf(request.getInterfaceName(), request.getMethodName(),
+                    request.getParameterTypes());
+        }
+        RPCRequest message = RPCRequest.newInstance();
+        message.setRequestId(requestId);
+        message.setSignature(signature);
+        message.setParameters(request.getParameters());
+        message.setSerializer(request.getSerializer());
+        message.setTimeout(timeout);
+        Integer methodId = methodIds.get(signature);
+        if (methodId != null) {
+            message.setMethodId(methodId);
+        } else {
+            message.setInterfaceName(request.getInterfaceName());
+            message.setMethodName(request.getMethodName());
+            message.setParameterTypes(request.getParameterTypes());
+        }
+        return message;
+    }
+
+    /**
+     * 读取RPC服务端的响应结果，根据requestId唤醒对应的调用方，握手消息则保存服务端回复的方法编号和压缩算法，
+     * 流式调用的元素交给对应的ClientStream
      */
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, RPCResponse msg) throws Exception {
-        logger.info("从RPC服务端接收到响应...");
-        this.response = msg;
-        // 关闭与服务端的连接，这样就可以执行f.channel().closeFuture().sync();之后的代码，即优雅退出
-        // 相当于是主动关闭连接
-        ctx.close();
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof RPCHandshake) {
+            RPCHandshake handshake = (RPCHandshake) msg;
+            // 只接受本端提出的压缩算法，解码器也只接受协商好的压缩算法
+            Compressor negotiated = compressor != null && compressor.equals(handshake.getCompressor())
+                    ? CompressorFactory.getCompressor(compressor) : null;
+            if (negotiated != null) {
+                ctx.pipeline().get(RPCDecoder.class).setCompressor(negotiated);
+                ctx.pipeline().get(RPCEncoder.class).setCompression(negotiated, compressThreshold);
+                logger.info("与RPC服务端协商使用压缩算法[{}]", negotiated.getName());
+            }
+            String[] methods = handshake.getMethods();
+            Map<String, Integer> ids = new HashMap<>();
+            if (methods != null) {
+                for (int i = 0; i < methods.length; i++) {
+                    ids.put(methods[i], i + 1);
+                }
+            }
+            methodIds = ids;
+            handshakeFuture.complete(null);
+            return;
+        }
+        if (msg instanceof RPCStreamElement) {
+            RPCStreamElement element = (RPCStreamElement) msg;
+            ClientStream<?> stream = streams.get(element.getRequestId());
+            if (stream == null) {
+                // 流已经被调用方取消，服务端在收到取消消息之前发送的元素直接丢弃
+                RPCProtocol.releaseAttachments(element);
+                return;
+            }
+            stream.onElement(element.getElement());
+            return;
+        }
+        RPCResponse response = (RPCResponse) msg;
+        CompletableFuture<RPCResponse> future = pendingRequests.remove(response.getRequestId());
+        if (future == null) {
+            logger.warn("接收到未知请求的响应[{}]，可能对应的请求已经失败...", response.getRequestId());
+            RPCProtocol.releaseAttachments(response);
+            return;
+        }
+        future.complete(response);
     }
 
-    /*
-    public static void main(String[] args) throws Exception {
-        int port = 21881;
-        if (args != null && args.length > 0) {
-            try {
-                port = Integer.valueOf(port);
-            } catch (NumberFormatException e) {
-                // 采用默认值
+    /**
+     * 连接断开时，所有尚未收到响应的请求都不会再有结果，需要让调用方失败返回
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        logger.info("与RPC服务端的连接已断开[{}:{}]", host, port);
+        IOException cause = new IOException("与RPC服务端的连接已断开[" + host + ":" + port + "]");
+        handshakeFuture.completeExceptionally(cause);
+        for (Long requestId : pendingRequests.keySet()) {
+            CompletableFuture<RPCResponse> future = pendingRequests.remove(requestId);
+            if (future != null) {
+                future.completeExceptionally(cause);
             }
         }
-        new RPCClient("localhost", port).sendRequest(new RPCRequest());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        logger.error("RPC客户端连接出现异常[{}:{}]，准备关闭连接...", host, port, cause);
+        ctx.close();
+    }
+
+    /**
+     * 连接是否可用
+     */
+    public boolean isActive() {
+        return channel != null && channel.isActive();
+    }
+
+    /**
+     * 关闭与RPC服务端之间的连接
+     */
+    public void close() {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
     }
-    */
 }
@@ -0,0 +1,352 @@
+package cn.xpleaf.rpc.client.netty;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import cn.xpleaf.rpc.common.transport.Transport;
+import cn.xpleaf.rpc.common.utils.CompressorFactory;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RPC客户端连接池，所有连接共享同一个I/O线程组，每个服务提供者（host:port）维护固定数量的长连接
+ *
+ * 默认在Linux上使用Netty的原生epoll传输，其它平台使用NIO，见Transport
+ *
+ * 每次调用时按轮询的方式从对应服务提供者的连接中取出一条，连接断开后会在下一次被取到时重新建立，
+ * 由于一条连接上可以同时跑多个请求，所以连接数一般设置得很小即可
+ *
+ * 连接的建立是异步的，每个槽位中保存的是连接的future，正在建立中的连接也会放到槽位中，
+ * 并发取到同一个槽位的调用共享这个future，整个过程不加锁，也不阻塞调用线程和I/O线程
+ *
+ * 建立连接失败后，同一个服务提供者在退避时间内不再发起连接，获取连接的调用直接以上一次失败的原因失败，
+ * 退避时间从initialBackoff开始按连续失败的次数翻倍，最长为maxBackoff，并加入随机抖动，
+ * 避免服务提供者宕机时每次调用都发起一次连接，也避免它重启时所有客户端同时重连；连接建立成功后退避状态被清除
+ *
+ * @author yeyonghao
+ */
+public class RPCClientPool {
+
+    // 默认每个服务提供者的连接数
+    private static final int DEFAULT_CONNECTIONS_PER_PROVIDER = 2;
+    // 默认的初始重连退避时间（毫秒）
+    private static final long DEFAULT_INITIAL_BACKOFF = 100;
+    // 默认的最长重连退避时间（毫秒）
+    private static final long DEFAULT_MAX_BACKOFF = 5000;
+    // 默认的全局连接池，RPCProxy没有指定连接池时使用
+    private static volatile RPCClientPool defaultPool;
+
+    // 使用的传输实现
+    private Transport transport;
+    // 共享的客户端I/O线程组，线程设置为守护线程，不会阻止JVM退出
+    private EventLoopGroup group;
+    // 连接使用的ByteBuf分配器
+    private volatile ByteBufAllocator allocator = Transport.allocator(Transport.POOLED);
+    // 共享的时间轮定时器，用于请求超时和对冲请求，精度为10毫秒，大量定时任务的添加和取消都是O(1)的
+    private HashedWheelTimer timer;
+    // 每个服务提供者的连接数
+    private int connectionsPerProvider;
+    // 保存各个服务提供者的连接，key为服务地址host:port
+    private Map<String, AtomicReferenceArray<CompletableFuture<RPCClient>>> clientMap = new ConcurrentHashMap<>();
+    // 建立连接失败的服务提供者的退避状态，key为服务地址host:port，连接建立成功后删除
+    private Map<String, Backoff> backoffMap = new ConcurrentHashMap<>();
+    // 初始重连退避时间（纳秒）
+    private volatile long initialBackoff = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_BACKOFF);
+    // 最长重连退避时间（纳秒）
+    private volatile long maxBackoff = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_BACKOFF);
+    // 希望使用的压缩算法名称，null表示不压缩
+    private volatile String compressor;
+    // 压缩阈值，请求的消息体小于该长度时不压缩
+    private volatile int compressThreshold = RPCProtocol.DEFAULT_COMPRESS_THRESHOLD;
+    // 轮询选择连接使用的计数器
+    private AtomicInteger counter = new AtomicInteger();
+    // log4j日志记录
+    private Logger logger = LoggerFactory.getLogger(RPCClientPool.class);
+
+    public RPCClientPool() {
+        this(DEFAULT_CONNECTIONS_PER_PROVIDER);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param connectionsPerProvider 每个服务提供者的连接数
+     */
+    public RPCClientPool(int connectionsPerProvider) {
+        this(connectionsPerProvider, Transport.AUTO, 0);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param connectionsPerProvider 每个服务提供者的连接数
+     * @param transport              传输类型，auto、nio或者epoll
+     * @param ioThreads              I/O线程数，0表示使用Netty的默认值（CPU核数的2倍）
+     */
+    public RPCClientPool(int connectionsPerProvider, String transport, int ioThreads) {
+        if (connectionsPerProvider <= 0) {
+            throw new IllegalArgumentException("connectionsPerProvider必须大于0: " + connectionsPerProvider);
+        }
+        this.connectionsPerProvider = connectionsPerProvider;
+        this.transport = Transport.create(transport);
+        this.group = this.transport.newEventLoopGroup(ioThreads, new DefaultThreadFactory("minidubbo-client", true));
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("minidubbo-client-timer", true), 10,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取默认的全局连接池
+     */
+    public static RPCClientPool getDefault() {
+        if (defaultPool == null) {
+            synchronized (RPCClientPool.class) {
+                if (defaultPool == null) {
+                    defaultPool = new RPCClientPool();
+                }
+            }
+        }
+        return defaultPool;
+    }
+
+    /**
+     * 获取与指定服务提供者之间的一条可用连接，如果连接还没有建立或者已经断开，则先建立连接，
+     * 该方法会阻塞到连接可用为止，只适合在调用方自己的线程中使用，I/O线程中应使用getClientAsync
+     *
+     * @param host 服务提供者的地址
+     * @param port 服务提供者的端口号
+     * @return 可用的RPC客户端连接
+     * @throws Exception 建立连接失败时抛出
+     */
+    public RPCClient getClient(String host, int port) throws Exception {
+        try {
+            return getClientAsync(host, port).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * 异步获取与指定服务提供者之间的一条可用连接，如果连接还没有建立或者已经断开，则发起建立连接，
+     * 该方法不会阻塞，连接已经可用时返回的future是已经完成的；服务提供者处于重连退避时间内时不发起连接，
+     * 返回以上一次建立连接失败的原因完成的future
+     *
+     * @param host 服务提供者的地址
+     * @param port 服务提供者的端口号
+     * @return 连接可用时完成的future，建立连接失败时以异常完成
+     */
+    public CompletableFuture<RPCClient> getClientAsync(String host, int port) {
+        final String address = host + ":" + port;
+        AtomicReferenceArray<CompletableFuture<RPCClient>> clients = clientMap.get(address);
+        if (clients == null) {
+            clients = new AtomicReferenceArray<>(connectionsPerProvider);
+            AtomicReferenceArray<CompletableFuture<RPCClient>> exists = clientMap.putIfAbsent(address, clients);
+            if (exists != null) {
+                clients = exists;
+            }
+        }
+
+        int index = (counter.getAndIncrement() & Integer.MAX_VALUE) % connectionsPerProvider;
+        CompletableFuture<RPCClient> current = clients.get(index);
+        if (current != null && isUsable(current)) {
+            return current;
+        }
+        // 连接不存在、建立失败或者已经断开，通过CAS放入新的future，只有成功放入的调用方负责建立连接，
+        // 其它并发的调用方直接共享槽位中的future，避免并发建立多条连接
+        final CompletableFuture<RPCClient> connecting = new CompletableFuture<>();
+        if (!clients.compareAndSet(index, current, connecting)) {
+            CompletableFuture<RPCClient> winner = clients.get(index);
+            return winner != null ? winner : getClientAsync(host, port);
+        }
+        if (current != null && current.isDone() && !current.isCompletedExceptionally()) {
+            current.join().close();
+        }
+        // 上一次建立连接失败，退避时间内直接失败，退避时间结束后只有一个调用方获得重连的机会
+        final Backoff backoff = backoffMap.get(address);
+        if (backoff != null && !backoff.tryAcquire()) {
+            connecting.completeExceptionally(backoff.cause);
+            return connecting;
+        }
+        logger.info("服务提供者[{}]的第{}条连接不可用，准备建立连接...", address, index);
+        RPCClient client = new RPCClient(host, port, timer);
+        client.setCompression(compressor, compressThreshold);
+        client.connectAsync(transport, group, allocator).whenComplete(new BiConsumer<RPCClient, Throwable>() {
+
+            @Override
+            public void accept(RPCClient c, Throwable t) {
+                if (t != null) {
+                    onConnectFailure(address, backoff, t);
+                    connecting.completeExceptionally(t);
+                } else {
+                    if (backoff != null) {
+                        backoffMap.remove(address, backoff);
+                    }
+                    connecting.complete(c);
+                }
+            }
+        });
+        return connecting;
+    }
+
+    /**
+     * 记录建立连接失败，计算下一次允许重连的时间
+     *
+     * @param backoff 发起连接时服务提供者的退避状态，第一次失败时为null
+     */
+    private void onConnectFailure(String address, Backoff backoff, Throwable cause) {
+        if (backoff == null) {
+            Backoff created = new Backoff(cause);
+            backoff = backoffMap.putIfAbsent(address, created);
+            if (backoff == null) {
+                backoff = created;
+            }
+        }
+        long delay = backoff.onFailure(cause, initialBackoff, maxBackoff);
+        logger.warn("与服务提供者[{}]建立连接失败，{}毫秒内不再重连: {}", address,
+                TimeUnit.NANOSECONDS.toMillis(delay), cause.toString());
+    }
+
+    /**
+     * 判断槽位中的连接是否可用，正在建立中的连接视为可用，建立失败或者已经断开的连接需要重新建立
+     */
+    private static boolean isUsable(CompletableFuture<RPCClient> future) {
+        if (!future.isDone()) {
+            return true;
+        }
+        return !future.isCompletedExceptionally() && future.join().isActive();
+    }
+
+    /**
+     * 设置希望使用的压缩算法和压缩阈值，只对之后建立的连接有效，实际使用的压缩算法由握手协商决定
+     *
+     * @param compressor        压缩算法名称，如deflate、snappy，null表示不压缩
+     * @param compressThreshold 压缩阈值，请求的消息体小于该长度时不压缩
+     */
+    public void setCompression(String compressor, int compressThreshold) {
+        if (compressor != null && CompressorFactory.getCompressor(compressor) == null) {
+            throw new IllegalArgumentException("不存在名称为[" + compressor + "]的压缩算法");
+        }
+        this.compressor = compressor;
+        this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * 设置建立连接失败后的重连退避时间，默认从100毫秒开始翻倍，最长为5秒
+     *
+     * @param initialBackoff 初始退避时间（毫秒）
+     * @param maxBackoff     最长退避时间（毫秒）
+     */
+    public void setReconnectBackoff(long initialBackoff, long maxBackoff) {
+        if (initialBackoff <= 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("重连退避时间不正确: initialBackoff=" + initialBackoff
+                    + ", maxBackoff=" + maxBackoff);
+        }
+        this.initialBackoff = TimeUnit.MILLISECONDS.toNanos(initialBackoff);
+        this.maxBackoff = TimeUnit.MILLISECONDS.toNanos(maxBackoff);
+    }
+
+    /**
+     * 设置连接使用的ByteBuf分配器类型，只对之后建立的连接有效，默认为pooled
+     *
+     * @param allocator pooled或者unpooled
+     */
+    public void setAllocator(String allocator) {
+        this.allocator = Transport.allocator(allocator);
+    }
+
+    /**
+     * 获取连接池共享的定时器
+     */
+    public Timer getTimer() {
+        return timer;
+    }
+
+    /**
+     * 关闭连接池，断开所有连接并释放I/O线程组
+     */
+    public void close() {
+        logger.info("准备关闭RPC客户端连接池...");
+        for (AtomicReferenceArray<CompletableFuture<RPCClient>> clients : clientMap.values()) {
+            for (int i = 0; i < clients.length(); i++) {
+                CompletableFuture<RPCClient> client = clients.get(i);
+                if (client != null) {
+                    // 正在建立中的连接在建立完成后关闭
+                    client.thenAccept(new Consumer<RPCClient>() {
+
+                        @Override
+                        public void accept(RPCClient c) {
+                            c.close();
+                        }
+                    });
+                }
+            }
+        }
+        clientMap.clear();
+        backoffMap.clear();
+        // 优雅退出，释放I/O线程组
+        group.shutdownGracefully();
+        timer.stop();
+    }
+
+    /**
+     * 一个服务提供者的重连退避状态，只在建立连接失败后创建，正常情况下获取连接不会访问
+     */
+    private static class Backoff {
+
+        // 连续建立连接失败的次数
+        private int failures;
+        // 允许下一次重连的时间（System.nanoTime），在onFailure设置之前不允许重连
+        private final AtomicLong retryAt = new AtomicLong(System.nanoTime() + TimeUnit.DAYS.toNanos(1));
+        // 最近一次建立连接失败的原因
+        volatile Throwable cause;
+
+        Backoff(Throwable cause) {
+            this.cause = cause;
+        }
+
+        /**
+         * 退避时间已经结束时，把下一次允许重连的时间推迟到很久以后，保证只有一个调用方发起重连，
+         * 重连的结果通过onFailure重新设置该时间，或者连接成功后整个退避状态被删除
+         *
+         * @return 调用方是否可以发起重连
+         */
+        boolean tryAcquire() {
+            long now = System.nanoTime();
+            long at = retryAt.get();
+            return now - at >= 0 && retryAt.compareAndSet(at, now + TimeUnit.DAYS.toNanos(1));
+        }
+
+        /**
+         * 记录一次建立连接失败，返回本次的退避时间（纳秒）
+         */
+        synchronized long onFailure(Throwable cause, long initialBackoff, long maxBackoff) {
+            this.cause = cause;
+            failures++;
+            // 每多失败一次退避时间翻倍，不超过最长退避时间
+            long delay = initialBackoff;
+            for (int i = 1; i < failures && delay < maxBackoff; i++) {
+                delay <<= 1;
+            }
+            delay = Math.min(delay, maxBackoff);
+            // 在[delay/2, delay]之间随机取值，避免所有客户端在同一时刻重连
+            delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+            retryAt.set(System.nanoTime() + delay);
+            return delay;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package cn.xpleaf.rpc.client.proxy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import cn.xpleaf.rpc.common.metrics.Histogram;
+import cn.xpleaf.rpc.common.metrics.RPCMetrics;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+/**
+ * 对冲请求的等待时间，即方法最近一段时间的p95耗时
+ *
+ * 计算分位数需要遍历直方图的所有桶，不能在每次调用时计算，所以由共享的定时器每秒计算一次，调用时只读取缓存的结果。
+ * 方法的耗时直方图记录的是启动以来的分布，每次计算时与上一次的快照相减得到这一秒的分布，
+ * 再与之前的分布按每秒减半的方式衰减合并，所以p95主要反映最近几秒的耗时，服务变快或者变慢后能够很快跟上
+ *
+ * 等待时间按方法签名保存，同一个方法的所有代理对象共享
+ *
+ * @author yeyonghao
+ */
+class HedgeDelay implements TimerTask {
+
+    // 重新计算的间隔（毫秒）
+    private static final long REFRESH_INTERVAL = 1000;
+    // 对冲请求需要的最少样本数（衰减之后），样本太少时p95不可靠
+    private static final long MIN_SAMPLES = 100;
+    // 对冲请求的最小等待时间（纳秒），小于定时器的精度没有意义
+    private static final long MIN_DELAY = TimeUnit.MILLISECONDS.toNanos(10);
+    // 所有方法的对冲等待时间，key为方法签名
+    private static final Map<String, HedgeDelay> DELAY_MAP = new ConcurrentHashMap<>();
+
+    // 方法签名
+    private final String signature;
+    // 方法在客户端的耗时直方图
+    private final Histogram latency;
+    // 执行计算的定时器
+    private final Timer timer;
+    // 上一次计算时直方图的快照，只在定时器线程中访问
+    private long[] previous;
+    // 衰减合并之后的分布，只在定时器线程中访问
+    private long[] decayed;
+    // 缓存的等待时间（纳秒），0表示样本不足，不发送对冲请求
+    private volatile long delayNanos;
+
+    private HedgeDelay(String signature, Timer timer) {
+        this.signature = signature;
+        this.latency = RPCMetrics.client().get(signature).getLatency();
+        this.timer = timer;
+    }
+
+    /**
+     * 获取方法的对冲等待时间，不存在则创建并在给定的定时器上开始定期计算
+     *
+     * @param signature 方法签名
+     * @param timer     执行计算的定时器，通常为连接池共享的定时器
+     */
+    static HedgeDelay get(String signature, Timer timer) {
+        HedgeDelay delay = DELAY_MAP.get(signature);
+        if (delay == null) {
+            delay = new HedgeDelay(signature, timer);
+            HedgeDelay exists = DELAY_MAP.putIfAbsent(signature, delay);
+            if (exists != null) {
+                return exists;
+            }
+            delay.refresh();
+            delay.schedule();
+        }
+        return delay;
+    }
+
+    /**
+     * 获取缓存的等待时间（纳秒），0表示样本不足，不应该发送对冲请求
+     */
+    long getDelayNanos() {
+        return delayNanos;
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+        refresh();
+        schedule();
+    }
+
+    /**
+     * 根据这一段时间的耗时分布重新计算p95
+     */
+    private synchronized void refresh() {
+        long[] current = latency.getCounts();
+        if (previous == null) {
+            previous = new long[current.length];
+            decayed = new long[current.length];
+        }
+        long total = 0;
+        for (int i = 0; i < current.length; i++) {
+            decayed[i] = (decayed[i] >>> 1) + (current[i] - previous[i]);
+            total += decayed[i];
+        }
+        previous = current;
+        delayNanos = total < MIN_SAMPLES ? 0 : Math.max(Histogram.valueAtQuantile(decayed, 0.95), MIN_DELAY);
+    }
+
+    private void schedule() {
+        try {
+            timer.newTimeout(this, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (IllegalStateException e) {
+            // 定时器已经停止（连接池已经关闭），移除后由之后的调用在新的定时器上重新创建
+            DELAY_MAP.remove(signature, this);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package cn.xpleaf.rpc.client.proxy;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * RPC调用上下文，与当前线程绑定
+ *
+ * 通过RPCProxy.getAsyncProxy获取的代理对象，方法调用会立即返回，调用的结果则保存在当前线程的上下文中，
+ * 可以在调用之后马上通过RPCContext.getFuture()获取，用法如下：
+ *
+ * <pre>
+ * itemService.getItem(1L);
+ * CompletableFuture&lt;Item&gt; future = RPCContext.getFuture();
+ * </pre>
+ *
+ * @author yeyonghao
+ */
+public class RPCContext {
+
+    // 保存当前线程最近一次异步调用的future
+    private static final ThreadLocal<CompletableFuture<?>> FUTURE = new ThreadLocal<>();
+
+    private RPCContext() {
+    }
+
+    /**
+     * 获取当前线程最近一次异步调用的future，获取后即从上下文中清除
+     *
+     * @return 最近一次异步调用的future，如果没有则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> getFuture() {
+        CompletableFuture<T> future = (CompletableFuture<T>) FUTURE.get();
+        FUTURE.remove();
+        return future;
+    }
+
+    static void setFuture(CompletableFuture<?> future) {
+        FUTURE.set(future);
+    }
+}
@@ -1,16 +1,59 @@
 package cn.xpleaf.rpc.client.proxy;
 
-import cn.xpleaf.rpc.client.discovery.ServiceDiscovery;
+import cn.xpleaf.rpc.client.cache.ResultCache;
+import cn.xpleaf.rpc.client.cluster.Cluster;
+import cn.xpleaf.rpc.client.cluster.ClusterFactory;
+import cn.xpleaf.rpc.client.cluster.ProviderInvoker;
+import cn.xpleaf.rpc.client.cluster.RetryBudget;
+import cn.xpleaf.rpc.client.filter.ClientFilter;
+import cn.xpleaf.rpc.client.filter.ClientFilterChain;
+import cn.xpleaf.rpc.client.loadbalance.LoadBalancer;
+import cn.xpleaf.rpc.client.loadbalance.LoadBalancerFactory;
+import cn.xpleaf.rpc.client.loadbalance.ProviderStats;
 import cn.xpleaf.rpc.client.netty.RPCClient;
+import cn.xpleaf.rpc.client.netty.RPCClientPool;
+import cn.xpleaf.rpc.common.annotation.RPCMethod;
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.local.LocalInvoker;
+import cn.xpleaf.rpc.common.local.LocalService;
+import cn.xpleaf.rpc.common.local.LocalServices;
+import cn.xpleaf.rpc.common.metrics.MethodMetrics;
+import cn.xpleaf.rpc.common.metrics.RPCMetrics;
+import cn.xpleaf.rpc.common.pojo.Provider;
 import cn.xpleaf.rpc.common.pojo.RPCRequest;
 import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import cn.xpleaf.rpc.common.registry.Registry;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import cn.xpleaf.rpc.common.utils.Serializer;
+import cn.xpleaf.rpc.common.utils.SerializerFactory;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 动态代理对象类，用于根据接口创建动态代理对象
@@ -19,28 +62,114 @@ import java.util.UUID;
  */
 public class RPCProxy {
 
-    // 用于发现服务的对象
-    private ServiceDiscovery serviceDiscovery;
+    // 默认的调用超时时间（毫秒）
+    public static final long DEFAULT_TIMEOUT = 3000;
+    // 流式调用默认的初始信用
+    public static final int DEFAULT_STREAM_WINDOW = 256;
+    // 本地调用方式：服务在本地发布时直接调用服务实现类对象，参数和返回值都不复制
+    public static final String LOCAL_DIRECT = "direct";
+    // 本地调用方式：服务在本地发布时直接调用，但参数和返回值会通过序列化器复制一份，与远程调用一样互不影响
+    public static final String LOCAL_COPY = "copy";
+    // 本地调用方式：不进行本地调用，总是通过网络调用
+    public static final String LOCAL_NONE = "none";
+
+    // 用于发现服务的注册中心，通常为zookeeper，见Registry
+    private Registry registry;
+    // RPC客户端连接池，所有代理对象共享与服务提供者之间的长连接
+    private RPCClientPool clientPool;
+    // 默认使用的序列化器，可以在获取代理对象时为每个服务单独指定
+    private Serializer serializer = SerializerFactory.getDefault();
+    // 负载均衡策略，默认为加权随机
+    private LoadBalancer loadBalancer = LoadBalancerFactory.getDefault();
+    // 集群容错策略，默认为快速失败，可以通过RPCMethod注解为每个方法单独设置
+    private Cluster cluster = ClusterFactory.getDefault();
+    // 默认的调用超时时间（毫秒），可以通过RPCMethod注解为每个方法单独设置，0表示不超时
+    private long timeout = DEFAULT_TIMEOUT;
+    // 服务在本地发布时是否直接调用，默认总是通过网络调用
+    private boolean localInvocation = false;
+    // 本地调用时是否复制参数和返回值
+    private boolean localCopy = false;
+    // 流式调用的初始信用，即客户端最多缓冲的元素数
+    private int streamWindow = DEFAULT_STREAM_WINDOW;
+    // 客户端的过滤器，按顺序执行，见ClientFilter
+    private List<ClientFilter> filters = Collections.emptyList();
+    // 方法调用参数的缓存，避免每次调用都拼接签名字符串、读取注解
+    private Map<Method, MethodOptions> optionsCache = new ConcurrentHashMap<>();
 
     // log4j日志记录
     private Logger logger = LoggerFactory.getLogger(RPCProxy.class);
 
     /**
-     * 构造函数，传入ServiceDiscovery对象
+     * 构造函数，传入注册中心，如ServiceDiscovery对象
+     */
+    public RPCProxy(Registry registry) {
+        this(registry, RPCClientPool.getDefault());
+    }
+
+    /**
+     * 构造函数，传入注册中心和RPC客户端连接池
      */
-    public RPCProxy(ServiceDiscovery serviceDiscovery) {
-        this.serviceDiscovery = serviceDiscovery;
+    public RPCProxy(Registry registry, RPCClientPool clientPool) {
+        this.registry = registry;
+        this.clientPool = clientPool;
     }
 
     /**
      * 获得动态代理对象的通用方法，实现思路是，该方法中，并不需要具体的实现类对象 因为在invoke方法中，并不会调用Method
      * method这个方法，只是获得其方法的名字 然后将其封装在Netty请求中，发送到Netty服务端中请求远程调用的结果
      *
+     * 如果接口方法的返回类型为CompletableFuture（或CompletionStage、Future），则该方法为异步方法，调用会立即返回future，
+     * 其余方法则同步阻塞，直到收到远程调用的结果
+     *
+     * 如果接口方法的返回类型为Iterator，则该方法为流式调用，调用会立即返回ClientStream，服务端逐个发送元素，
+     * 调用方通过Iterator逐个消费，不再需要的时候应当将其转换为Closeable并关闭
+     *
+     * 服务由同一个JVM中的RPCServer发布时，默认直接调用服务实现类对象，见setLocalInvocation
+     *
+     * 配置了过滤器时，远程调用先经过过滤器链，见setFilters
+     *
      * @param interfaceClass 需要被代理的接口的类型对象
      * @return proxy 对应接口的代理对象
      */
-    @SuppressWarnings("unchecked")
     public <T> T getProxy(Class<?> interfaceClass) {
+        return createProxy(interfaceClass, serializer, false);
+    }
+
+    /**
+     * 获得动态代理对象，并指定该服务使用的序列化器，服务端会使用相同的序列化器回写响应
+     *
+     * @param interfaceClass 需要被代理的接口的类型对象
+     * @param serializer     序列化器名称，如protostuff、jdk、protostuff-graph
+     * @return proxy 对应接口的代理对象
+     */
+    public <T> T getProxy(Class<?> interfaceClass, String serializer) {
+        return createProxy(interfaceClass, SerializerFactory.getSerializer(serializer), false);
+    }
+
+    /**
+     * 获得异步调用的动态代理对象，代理对象的所有方法调用都会立即返回（返回值为null或者基本类型的默认值），
+     * 调用的结果需要在调用之后马上通过RPCContext.getFuture()获取
+     *
+     * @param interfaceClass 需要被代理的接口的类型对象
+     * @return proxy 对应接口的异步代理对象
+     */
+    public <T> T getAsyncProxy(Class<?> interfaceClass) {
+        return createProxy(interfaceClass, serializer, true);
+    }
+
+    /**
+     * 获得异步调用的动态代理对象，并指定该服务使用的序列化器
+     *
+     * @param interfaceClass 需要被代理的接口的类型对象
+     * @param serializer     序列化器名称，如protostuff、jdk、protostuff-graph
+     * @return proxy 对应接口的异步代理对象
+     */
+    public <T> T getAsyncProxy(Class<?> interfaceClass, String serializer) {
+        return createProxy(interfaceClass, SerializerFactory.getSerializer(serializer), true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T createProxy(Class<?> interfaceClass, final Serializer serializer, final boolean async) {
 
         T proxy = (T) Proxy.newProxyInstance(RPCProxy.class.getClassLoader(), new Class<?>[]{interfaceClass},
                 new InvocationHandler() {
@@ -48,12 +177,24 @@ public class RPCProxy {
                     @Override
                     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 
-                        logger.info("准备构建RPCRequest对象...");
+                        // 服务由同一个JVM中的RPCServer发布时直接调用，不经过服务发现、序列化和网络
+                        if (localInvocation) {
+                            LocalService localService = LocalServices.get(method.getDeclaringClass().getName());
+                            if (localService != null) {
+                                LocalInvoker invoker = localService.getMethodInvoker(method.getName(),
+                                        optionsOf(method).parameterTypes);
+                                if (invoker != null) {
+                                    return invokeLocal(invoker, method, args, serializer, async);
+                                }
+                            }
+                        }
+
+                        logger.debug("准备构建RPCRequest对象...");
+                        final MethodOptions options = optionsOf(method);
 
                         // 构建RPCRequest对象
-                        RPCRequest request = new RPCRequest();
-                        // 设置requestId
-                        request.setRequestId(UUID.randomUUID().toString());
+                        final RPCRequest request = new RPCRequest();
+                        // requestId由发送请求的RPCClient在其连接上生成
                         // 设置接口名interfaceName
                         String interfaceName = method.getDeclaringClass().getName();
                         request.setInterfaceName(interfaceName);
@@ -69,53 +210,594 @@ public class RPCProxy {
                         // 设置方法名methodName
                         request.setMethodName(method.getName());
                         // 设置参数类型parameterTypes
-                        request.setParameterTypes(method.getParameterTypes());
+                        request.setParameterTypes(options.parameterTypes);
                         // 设置参数列表parameters
                         request.setParameters(args);
+                        // 设置序列化器，编号会写入消息头
+                        request.setSerializer(serializer.getCode());
+                        // 设置方法签名，用于查找与服务端协商好的方法编号
+                        request.setSignature(options.signature);
+
+                        logger.debug("RPCRequest对象构建完毕，准备发现服务[{}]...", interfaceName);
+
+                        // 流式调用，直接返回接收元素的Iterator
+                        if (options.stream) {
+                            return openStream(request);
+                        }
 
-                        logger.info("RPCRequest对象构建完毕，准备发现服务[{}]...", interfaceName);
+                        // 发起远程调用，得到远程调用结果的future，配置了过滤器时先经过过滤器链
+                        ClientFilterChain chain = options.chain;
+                        CompletableFuture<Object> future = chain != null ? chain.proceed(request)
+                                : invokeRemote(request, options);
 
-                        // 发现服务，得到服务地址，格式为 host:port
-                        String serverAddress = serviceDiscovery.discoverService(interfaceName);
-                        // 如果服务不存在，null，否则就构建RPC客户端进行远程调用
-                        if (serverAddress == null) {
-                            logger.error("服务[{}]的提供者不存在，发现服务失败...", interfaceName);
-                            return null;
+                        Class<?> returnType = method.getReturnType();
+                        if (isFutureType(returnType)) {
+                            // 接口方法本身就是异步方法，直接返回future
+                            return future;
+                        } else if (async) {
+                            // 异步代理对象，将future保存到调用上下文中，立即返回
+                            RPCContext.setFuture(future);
+                            return defaultValue(returnType);
                         } else {
+                            // 同步调用，等待远程调用的结果
+                            try {
+                                return future.get();
+                            } catch (ExecutionException e) {
+                                throw e.getCause();
+                            }
+                        }
+                    }
+                });
 
-                            logger.info("发现服务完毕，准备解析服务地址[{}]...", serverAddress);
+        return proxy;
+    }
+
+    /**
+     * 设置默认使用的序列化器，可以通过spring注入
+     *
+     * @param serializer 序列化器名称，如protostuff、jdk、protostuff-graph
+     */
+    public void setSerializer(String serializer) {
+        this.serializer = SerializerFactory.getSerializer(serializer);
+    }
+
+    /**
+     * 设置负载均衡策略，可以通过spring注入，也可以使用LoadBalancerFactory.getLoadBalancer(name)获取内置的策略
+     *
+     * @param loadBalancer 负载均衡策略
+     */
+    public void setLoadBalancer(LoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
+    }
+
+    /**
+     * 设置集群容错策略，可以通过spring注入，也可以使用ClusterFactory.getCluster(name)获取内置的策略，
+     * 默认为failfast；设置为failover会对所有没有单独设置的方法生效，只有这些方法都是幂等的时候才应该这样设置
+     *
+     * @param cluster 集群容错策略
+     */
+    public void setCluster(Cluster cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * 设置默认的调用超时时间（毫秒），可以通过spring注入，为0时不超时
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
 
-                            // 解析服务地址
-                            String[] array = serverAddress.split(":");
-                            String host = array[0];
-                            int port = Integer.valueOf(array[1]);
+    /**
+     * 设置本地调用方式，可以通过spring注入，默认为none
+     *
+     * 服务提供者和消费者在同一个JVM中时，direct通过服务端预先构建的方法调用器直接调用服务实现类对象，
+     * 调用方和服务方共享参数和返回值对象，服务方法抛出的异常也原样抛给调用方；
+     * copy在调用前后通过序列化器复制参数和返回值，保留远程调用时互不影响的语义；none总是通过网络调用
+     *
+     * 本地调用不经过客户端和服务端的过滤器，也不记录调用统计，所以需要显式开启
+     *
+     * @param localInvocation direct、copy或者none
+     */
+    public void setLocalInvocation(String localInvocation) {
+        if (LOCAL_DIRECT.equals(localInvocation)) {
+            this.localInvocation = true;
+            this.localCopy = false;
+        } else if (LOCAL_COPY.equals(localInvocation)) {
+            this.localInvocation = true;
+            this.localCopy = true;
+        } else if (LOCAL_NONE.equals(localInvocation)) {
+            this.localInvocation = false;
+            this.localCopy = false;
+        } else {
+            throw new IllegalArgumentException("不支持的本地调用方式: " + localInvocation);
+        }
+    }
 
-                            logger.info("服务地址解析完毕，准备构建RPC客户端...");
+    /**
+     * 设置流式调用的初始信用，可以通过spring注入，默认为256，
+     * 元素较大时可以调小以减少客户端缓冲的内存，元素较小而网络延迟较高时可以调大以提高吞吐量
+     */
+    public void setStreamWindow(int streamWindow) {
+        if (streamWindow <= 0) {
+            throw new IllegalArgumentException("streamWindow必须大于0: " + streamWindow);
+        }
+        this.streamWindow = streamWindow;
+    }
 
-                            // 构建RPC客户端
-                            RPCClient client = new RPCClient(host, port);
+    /**
+     * 设置客户端的过滤器，可以通过spring注入，按列表的顺序执行，排在前面的过滤器包在外层
+     *
+     * 每个方法的过滤器链在第一次调用时构建，之后的调用不再创建对象，没有配置过滤器时直接发起远程调用
+     *
+     * @param filters 客户端的过滤器
+     */
+    public void setFilters(List<ClientFilter> filters) {
+        this.filters = new ArrayList<>(filters);
+        // 已经构建的过滤器链需要重新构建
+        optionsCache.clear();
+    }
+
+    /**
+     * 通过本地发布的服务的方法调用器直接调用，返回值按照与远程调用相同的方式交给调用方：
+     * 异步方法返回future，异步代理对象将结果保存到RPCContext中，同步方法直接返回
+     *
+     * @param invoker    服务端预先构建的方法调用器
+     * @param serializer copy方式下用于复制参数和返回值的序列化器
+     */
+    private Object invokeLocal(LocalInvoker invoker, Method method, Object[] args, final Serializer serializer,
+                               boolean async) throws Throwable {
+        Class<?> returnType = method.getReturnType();
+        Object result;
+        try {
+            result = invoker.invoke(localCopy ? copyArguments(args, serializer) : args);
+        } catch (Throwable e) {
+            if (isFutureType(returnType) || async) {
+                CompletableFuture<Object> future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+                if (async && !isFutureType(returnType)) {
+                    RPCContext.setFuture(future);
+                    return defaultValue(returnType);
+                }
+                return future;
+            }
+            throw e;
+        }
+        if (!localCopy) {
+            if (async && !isFutureType(returnType)) {
+                RPCContext.setFuture(CompletableFuture.completedFuture(result));
+                return defaultValue(returnType);
+            }
+            return result;
+        }
 
-                            logger.info("RPC客户端构建完毕，准备向RPC服务端发送请求...");
+        Function<Object, Object> copier = new Function<Object, Object>() {
 
-                            // 向RPC服务端发送请求
-                            RPCResponse response = client.sendRequest(request);
+            @Override
+            public Object apply(Object value) {
+                return copyResult(value, serializer);
+            }
+        };
+        if (isFutureType(returnType)) {
+            // 只有CompletionStage可以在完成时复制结果，普通的Future原样返回
+            return result instanceof CompletionStage
+                    ? ((CompletionStage<?>) result).toCompletableFuture().thenApply(copier) : result;
+        }
+        if (RPCProtocol.isStreamType(returnType) && result != null) {
+            return copyElements((Iterator<?>) result, copier);
+        }
+        Object value = copier.apply(result);
+        if (async) {
+            RPCContext.setFuture(CompletableFuture.completedFuture(value));
+            return defaultValue(returnType);
+        }
+        return value;
+    }
 
-                            // 返回信息
-                            if (response.isError()) {
-                                // 如果进行远程调用时出现异常，[则抛出异常信息]--->直接返回null
-                                // throw response.getError();
-                                logger.error("[{}]远程过程调用出现异常，远程过程调用失败...", interfaceName);
-                                return null;
-                            } else {
-                                // 如果没有异常，则返回调用的结果
-                                logger.info("[{}]远程过程调用完毕，远程过程调用成功...", interfaceName);
-                                return response.getResult();
-                            }
+    /**
+     * 流式调用的元素在取出时逐个复制
+     */
+    private static Iterator<Object> copyElements(final Iterator<?> iterator, final Function<Object, Object> copier) {
+        return new Iterator<Object>() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return copier.apply(iterator.next());
+            }
+        };
+    }
+
+    /**
+     * 复制参数值，参数值放在RPCRequest中序列化，与发送请求时使用相同的序列化方式
+     */
+    private static Object[] copyArguments(Object[] args, Serializer serializer) {
+        if (args == null) {
+            return null;
+        }
+        RPCRequest holder = new RPCRequest();
+        holder.setParameters(args);
+        return copy(holder, serializer).getParameters();
+    }
+
+    /**
+     * 复制返回值，返回值放在RPCResponse中序列化，与回写响应时使用相同的序列化方式
+     */
+    private static Object copyResult(Object result, Serializer serializer) {
+        if (result == null) {
+            return null;
+        }
+        RPCResponse holder = new RPCResponse();
+        holder.setResult(result);
+        return copy(holder, serializer).getResult();
+    }
+
+    /**
+     * 通过序列化和反序列化复制对象
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T copy(T obj, Serializer serializer) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            serializer.serialize(obj, out);
+            return (T) serializer.deserialize(out.toByteArray(), 0, out.size(), obj.getClass());
+        } catch (IOException e) {
+            throw new RPCException(RPCException.UNKNOWN, "复制本地调用的参数或者返回值失败: " + e, e);
+        }
+    }
+
+    /**
+     * 发现服务并发起流式调用，元素到达之后就可能已经被调用方消费掉了，所以流式调用不经过集群容错策略重试，
+     * 只通过负载均衡策略选择一个服务提供者
+     *
+     * @param request 构建好的RPCRequest对象
+     * @return 接收元素的Iterator
+     * @throws RPCException 服务不存在或者与服务提供者建立连接失败
+     */
+    private Iterator<Object> openStream(RPCRequest request) {
+        String interfaceName = request.getInterfaceName();
+        List<Provider> providers = registry.getProviders(interfaceName);
+        if (providers.isEmpty()) {
+            logger.error("服务[{}]的提供者不存在，发现服务失败...", interfaceName);
+            throw new RPCException(RPCException.NO_PROVIDER, "服务[" + interfaceName + "]的提供者不存在");
+        }
+        Provider provider = loadBalancer.select(providers, request);
+        RPCClient client;
+        try {
+            client = clientPool.getClient(provider.getHost(), provider.getPort());
+        } catch (Exception e) {
+            logger.error("与服务提供者[{}]建立连接失败[{}]...", provider, e.toString());
+            throw new RPCException(RPCException.UNKNOWN, "与服务提供者[" + provider + "]建立连接失败: " + e, e);
+        }
+        return client.openStream(request, streamWindow);
+    }
+
+    /**
+     * 发起远程调用，开启了结果缓存的方法先查询缓存，缓存中没有时再发送请求
+     *
+     * @param request 构建好的RPCRequest对象
+     * @param options 方法的调用参数
+     * @return 远程调用结果的future
+     */
+    private CompletableFuture<Object> invokeRemote(final RPCRequest request, final MethodOptions options) {
+        if (options.cache == null) {
+            return invokeAsync(request, options);
+        }
+        // 过滤器可能替换了请求对象，所以参数和序列化器都从请求对象中获取
+        Serializer serializer = SerializerFactory.getSerializer(request.getSerializer());
+        return options.cache.get(request.getParameters(), serializer, new Supplier<CompletableFuture<Object>>() {
+
+            @Override
+            public CompletableFuture<Object> get() {
+                return invokeAsync(request, options);
+            }
+        });
+    }
+
+    /**
+     * 发现服务并通过集群容错策略异步发送请求，开启了对冲请求的方法在耗时超过p95后会再向另一个服务提供者发送一次请求
+     *
+     * @param request 构建好的RPCRequest对象
+     * @param options 方法的调用参数
+     * @return 远程调用结果的future，服务不存在、调用超时或者远程调用出现异常时以RPCException完成
+     */
+    private CompletableFuture<Object> invokeAsync(final RPCRequest request, final MethodOptions options) {
+        final String interfaceName = request.getInterfaceName();
+        // 方法的调用统计，耗时从发现服务开始计算
+        final MethodMetrics metrics = RPCMetrics.client().get(request.getSignature());
+        final long start = System.nanoTime();
+        metrics.beginCall();
+        // 调用的截止时间，重试、对冲请求与第一个请求共用同一个截止时间，0表示不超时
+        long timeoutMillis = options.timeout > 0 ? options.timeout : timeout;
+        final long deadline = timeoutMillis > 0 ? start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+
+        // 发现服务，得到本地缓存的服务提供者列表
+        final List<Provider> providers = registry.getProviders(interfaceName);
+        // 如果服务不存在，调用失败，否则就通过集群容错策略和负载均衡策略选择服务提供者进行远程调用
+        if (providers.isEmpty()) {
+            logger.error("服务[{}]的提供者不存在，发现服务失败...", interfaceName);
+            metrics.endCall(System.nanoTime() - start, true);
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            future.completeExceptionally(new RPCException(RPCException.NO_PROVIDER,
+                    "服务[" + interfaceName + "]的提供者不存在"));
+            return future;
+        }
+
+        logger.debug("发现服务完毕，准备向RPC服务端发送请求...");
+
+        Cluster cluster = options.cluster != null ? options.cluster : this.cluster;
+        CompletableFuture<RPCResponse> future = cluster.invoke(providers, request, loadBalancer,
+                new ProviderInvoker() {
+
+                    @Override
+                    public CompletableFuture<RPCResponse> invoke(Provider provider) {
+                        CompletableFuture<RPCResponse> future = send(provider, request, deadline);
+                        if (options.hedgeDelay != null && providers.size() > 1) {
+                            future = hedge(future, provider, providers, request, deadline, options.hedgeDelay);
                         }
+                        return future;
                     }
                 });
+        future.whenComplete(new BiConsumer<RPCResponse, Throwable>() {
 
-        return proxy;
+            @Override
+            public void accept(RPCResponse response, Throwable t) {
+                metrics.endCall(System.nanoTime() - start, t != null || response.isError());
+                if (response != null) {
+                    metrics.recordResponseSize(response.getSize());
+                }
+            }
+        });
+
+        // 收到最终的响应后再处理返回信息，调用失败时调用方得到的是RPCException
+        return future.handle(new BiFunction<RPCResponse, Throwable, Object>() {
+
+            @Override
+            public Object apply(RPCResponse response, Throwable t) {
+                if (t != null) {
+                    // 经过异步建立连接等组合之后，失败的原因可能被包装在CompletionException中
+                    if (t instanceof CompletionException && t.getCause() != null) {
+                        t = t.getCause();
+                    }
+                    logger.error("[{}]远程过程调用失败[{}]...", interfaceName, t.toString());
+                    throw new CompletionException(t instanceof RPCException ? t
+                            : new RPCException(RPCException.UNKNOWN, "远程过程调用失败: " + t, t));
+                } else if (response.isError()) {
+                    logger.error("[{}]远程过程调用出现异常，远程过程调用失败[{}]...", interfaceName,
+                            response.getErrorMessage());
+                    throw new CompletionException(response.getError());
+                } else {
+                    // 如果没有异常，则返回调用的结果
+                    logger.debug("[{}]远程过程调用完毕，远程过程调用成功...", interfaceName);
+                    return response.getResult();
+                }
+            }
+        });
+    }
+
+    /**
+     * 从连接池获取与服务提供者之间的长连接，并发送请求，请求中携带距离截止时间的剩余时间，
+     * 与服务提供者建立连接失败等错误也通过返回的future通知，由集群容错策略决定是否重试
+     */
+    private CompletableFuture<RPCResponse> send(final Provider provider, final RPCRequest request,
+                                                final long deadline) {
+        // 从连接池获取与服务提供者之间的长连接，服务地址在刷新服务提供者列表时已经解析好了，
+        // 连接已经可用时直接发送，否则在连接建立完成后再发送，不阻塞当前线程
+        CompletableFuture<RPCClient> connecting = clientPool.getClientAsync(provider.getHost(), provider.getPort());
+        if (connecting.isDone() && !connecting.isCompletedExceptionally()) {
+            return send(connecting.join(), provider, request, deadline);
+        }
+        return connecting.handle(new BiFunction<RPCClient, Throwable, CompletableFuture<RPCResponse>>() {
+
+            @Override
+            public CompletableFuture<RPCResponse> apply(RPCClient client, Throwable t) {
+                if (t == null) {
+                    return send(client, provider, request, deadline);
+                }
+                logger.error("与服务提供者[{}]建立连接失败[{}]...", provider, t.toString());
+                CompletableFuture<RPCResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(t instanceof CompletionException && t.getCause() != null
+                        ? t.getCause() : t);
+                return future;
+            }
+        }).thenCompose(Function.<CompletableFuture<RPCResponse>>identity());
+    }
+
+    /**
+     * 通过已经建立好的连接发送请求，请求中携带距离截止时间的剩余时间
+     */
+    private CompletableFuture<RPCResponse> send(RPCClient client, Provider provider, RPCRequest request,
+                                                long deadline) {
+        int timeout = 0;
+        if (deadline != 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                CompletableFuture<RPCResponse> future = new CompletableFuture<>();
+                future.completeExceptionally(new RPCException(RPCException.TIMEOUT,
+                        "调用[" + request.getSignature() + "]在发送请求前已经超时"));
+                return future;
+            }
+            // 同一个请求对象会被并发地发送给多个服务提供者（重试、对冲），所以剩余时间按每次发送传入，不修改请求对象
+            timeout = (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+
+        // 记录服务提供者的活跃调用数和响应时间，供leastactive、p2c等负载均衡策略使用
+        final ProviderStats stats = ProviderStats.get(provider.getAddress());
+        final long start = System.nanoTime();
+        stats.beginCall();
+        CompletableFuture<RPCResponse> future;
+        try {
+            future = client.sendRequestAsync(request, timeout);
+        } catch (RuntimeException e) {
+            stats.endCall(System.nanoTime() - start, true);
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        future.whenComplete(new BiConsumer<RPCResponse, Throwable>() {
+
+            @Override
+            public void accept(RPCResponse response, Throwable t) {
+                // 传输失败、超时或者被服务端拒绝时按惩罚响应时间统计，业务异常属于正常的响应
+                stats.endCall(System.nanoTime() - start, t != null || response.isRejected());
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 对冲请求：第一个请求的耗时超过该方法的p95后，向另一个服务提供者再发送一次请求，以先收到的响应为准，
+     * 单个服务提供者的GC停顿、网络抖动等造成的长尾延迟可以由另一个服务提供者消除
+     *
+     * 由于只有耗时超过p95的请求才会对冲，额外的请求量约为5%，并且受重试预算的限制，最近的调用样本不足时不对冲（见HedgeDelay）。
+     * 传输失败或者请求被服务端拒绝时，如果另一个请求还没有完成，则等待另一个请求的结果
+     *
+     * @param primary         第一个请求的future
+     * @param primaryProvider 第一个请求的服务提供者
+     * @return 先完成的响应的future
+     */
+    private CompletableFuture<RPCResponse> hedge(CompletableFuture<RPCResponse> primary,
+                                                 final Provider primaryProvider, final List<Provider> providers,
+                                                 final RPCRequest request, final long deadline,
+                                                 HedgeDelay hedgeDelay) {
+        // p95由定时器定期计算，这里只读取缓存的结果
+        long delay = hedgeDelay.getDelayNanos();
+        if (delay == 0) {
+            return primary;
+        }
+        if (deadline != 0 && System.nanoTime() + delay >= deadline) {
+            return primary;
+        }
+
+        final CompletableFuture<RPCResponse> result = new CompletableFuture<>();
+        // 尚未完成的请求数，为0时说明所有请求都已经失败
+        final AtomicInteger outstanding = new AtomicInteger(1);
+        final BiConsumer<RPCResponse, Throwable> onComplete = new BiConsumer<RPCResponse, Throwable>() {
+
+            @Override
+            public void accept(RPCResponse response, Throwable t) {
+                boolean failed = t != null || response.isRejected();
+                if (!failed || outstanding.decrementAndGet() == 0) {
+                    if (t != null) {
+                        result.completeExceptionally(t);
+                    } else {
+                        result.complete(response);
+                    }
+                }
+            }
+        };
+        primary.whenComplete(onComplete);
+
+        final Timeout timeout = clientPool.getTimer().newTimeout(new TimerTask() {
+
+            @Override
+            public void run(Timeout t) throws Exception {
+                // 获取连接和发送请求都是异步的，可以直接在定时器线程上发送对冲请求
+                // 结果已经确定、重试预算不足，或者第一个请求已经失败，不再对冲
+                if (result.isDone() || !RetryBudget.get(request.getInterfaceName()).tryWithdraw()
+                        || outstanding.getAndIncrement() == 0) {
+                    return;
+                }
+                List<Provider> others = new ArrayList<>(providers);
+                others.remove(primaryProvider);
+                Provider provider = loadBalancer.select(others, request);
+                logger.info("调用[{}]耗时超过p95，向服务提供者[{}]发送对冲请求...", request.getSignature(), provider);
+                send(provider, request, deadline).whenComplete(onComplete);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+        result.whenComplete(new BiConsumer<RPCResponse, Throwable>() {
+
+            @Override
+            public void accept(RPCResponse response, Throwable t) {
+                timeout.cancel();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 获取方法的调用参数，每个方法只解析一次
+     */
+    private MethodOptions optionsOf(Method method) {
+        MethodOptions options = optionsCache.get(method);
+        if (options == null) {
+            final MethodOptions opts = new MethodOptions(method);
+            if (opts.hedge) {
+                opts.hedgeDelay = HedgeDelay.get(opts.signature, clientPool.getTimer());
+            }
+            // 过滤器链的最后一个节点发起远程调用，每个方法构建一次
+            opts.chain = ClientFilterChain.build(filters, new ClientFilter() {
+
+                @Override
+                public CompletableFuture<Object> invoke(RPCRequest request, ClientFilterChain chain) {
+                    return invokeRemote(request, opts);
+                }
+            });
+            options = opts;
+            optionsCache.put(method, options);
+        }
+        return options;
+    }
+
+    /**
+     * 判断方法的返回类型是否为异步调用的future类型
+     */
+    private static boolean isFutureType(Class<?> returnType) {
+        return returnType == CompletableFuture.class || returnType == CompletionStage.class
+                || returnType == Future.class;
+    }
+
+    /**
+     * 异步代理对象的方法需要立即返回，基本类型不能返回null，因此返回其默认值
+     */
+    private static Object defaultValue(Class<?> returnType) {
+        if (!returnType.isPrimitive() || returnType == void.class) {
+            return null;
+        }
+        // 长度为1的基本类型数组中的元素即为该类型的默认值
+        return Array.get(Array.newInstance(returnType, 1), 0);
+    }
+
+    /**
+     * 方法的调用参数，由方法签名和方法上的RPCMethod注解确定
+     */
+    private static final class MethodOptions {
+
+        // 方法签名，用于查找与服务端协商好的方法编号
+        final String signature;
+        // 方法的参数类型，Method.getParameterTypes每次都会复制一个新的数组，所以只获取一次，所有请求共享
+        final Class<?>[] parameterTypes;
+        // 方法单独设置的超时时间（毫秒），0表示使用默认的超时时间
+        final long timeout;
+        // 是否开启对冲请求
+        final boolean hedge;
+        // 对冲请求的等待时间，在放入缓存之前设置，null表示没有开启对冲请求
+        HedgeDelay hedgeDelay;
+        // 方法单独设置的集群容错策略，null表示使用默认的集群容错策略
+        final Cluster cluster;
+        // 方法的结果缓存，null表示不缓存
+        final ResultCache cache;
+        // 是否为流式调用，即返回类型为Iterator
+        final boolean stream;
+        // 方法的过滤器链，在放入缓存之前设置，null表示没有配置过滤器
+        ClientFilterChain chain;
+
+        MethodOptions(Method method) {
+            this.parameterTypes = method.getParameterTypes();
+            this.signature = RPCProtocol.signatureOf(method.getDeclaringClass().getName(), method.getName(),
+                    parameterTypes);
+            RPCMethod rpcMethod = method.getAnnotation(RPCMethod.class);
+            this.timeout = rpcMethod != null ? rpcMethod.timeout() : 0;
+            this.hedge = rpcMethod != null && rpcMethod.hedge();
+            this.cluster = rpcMethod != null && !rpcMethod.cluster().isEmpty()
+                    ? ClusterFactory.getCluster(rpcMethod.cluster()) : null;
+            this.cache = rpcMethod != null && rpcMethod.cacheTtl() > 0
+                    ? ResultCache.get(signature, rpcMethod.cacheTtl(), rpcMethod.cacheSize()) : null;
+            this.stream = RPCProtocol.isStreamType(method.getReturnType());
+        }
     }
 
 }
@@ -0,0 +1,161 @@
+package cn.xpleaf.rpc.client.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.utils.ProtostuffSerializer;
+import cn.xpleaf.rpc.common.utils.Serializer;
+
+/**
+ * ResultCache的测试：命中、并发调用合并、失败不缓存、过期和LRU淘汰
+ *
+ * @author yeyonghao
+ */
+public class ResultCacheTest {
+
+    private final Serializer serializer = new ProtostuffSerializer();
+
+    @Test
+    public void hitAfterFirstCall() throws Exception {
+        ResultCache cache = new ResultCache("EchoService", "echo(java.lang.String)", 60000, 100);
+        CountingLoader loader = new CountingLoader();
+        assertEquals("result-1", cache.get(args("a"), serializer, loader).get());
+        assertEquals("result-1", cache.get(args("a"), serializer, loader).get());
+        // 参数值不同不会命中
+        assertEquals("result-2", cache.get(args("b"), serializer, loader).get());
+        assertEquals(2, loader.calls.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getSize());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals("result-3", cache.get(args("a"), serializer, loader).get());
+    }
+
+    @Test
+    public void concurrentCallsShareOneLoad() throws Exception {
+        ResultCache cache = new ResultCache("EchoService", "echo(java.lang.String)", 60000, 100);
+        final CompletableFuture<Object> remote = new CompletableFuture<>();
+        final AtomicInteger calls = new AtomicInteger();
+        Supplier<CompletableFuture<Object>> loader = new Supplier<CompletableFuture<Object>>() {
+
+            @Override
+            public CompletableFuture<Object> get() {
+                calls.incrementAndGet();
+                return remote;
+            }
+        };
+        // 远程调用还没有返回时，相同参数的调用等待同一个结果
+        CompletableFuture<Object> first = cache.get(args("a"), serializer, loader);
+        CompletableFuture<Object> second = cache.get(args("a"), serializer, loader);
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1, calls.get());
+
+        remote.complete("value");
+        assertEquals("value", first.get());
+        assertEquals("value", second.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void failureNotCached() throws Exception {
+        ResultCache cache = new ResultCache("EchoService", "echo(java.lang.String)", 60000, 100);
+        final AtomicInteger calls = new AtomicInteger();
+        Supplier<CompletableFuture<Object>> loader = new Supplier<CompletableFuture<Object>>() {
+
+            @Override
+            public CompletableFuture<Object> get() {
+                CompletableFuture<Object> future = new CompletableFuture<>();
+                if (calls.incrementAndGet() == 1) {
+                    future.completeExceptionally(new IllegalStateException("remote failure"));
+                } else {
+                    future.complete("value");
+                }
+                return future;
+            }
+        };
+        try {
+            cache.get(args("a"), serializer, loader).get();
+            fail("远程调用失败时应当返回失败的结果");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, cache.getSize());
+        assertEquals("value", cache.get(args("a"), serializer, loader).get());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void expiresAfterTtl() throws Exception {
+        ResultCache cache = new ResultCache("EchoService", "echo(java.lang.String)", 50, 100);
+        CountingLoader loader = new CountingLoader();
+        assertEquals("result-1", cache.get(args("a"), serializer, loader).get());
+        Thread.sleep(100);
+        assertEquals("result-2", cache.get(args("a"), serializer, loader).get());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        // 容量为1时只有一个段，淘汰的顺序是确定的
+        ResultCache cache = new ResultCache("EchoService", "echo(java.lang.String)", 60000, 1);
+        CountingLoader loader = new CountingLoader();
+        cache.get(args("a"), serializer, loader).get();
+        cache.get(args("b"), serializer, loader).get();
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, cache.getSize());
+        assertEquals("result-2", cache.get(args("b"), serializer, loader).get());
+        assertEquals("result-3", cache.get(args("a"), serializer, loader).get());
+        assertEquals(3, loader.calls.get());
+    }
+
+    @Test
+    public void callerCannotCompleteCachedFuture() throws Exception {
+        ResultCache cache = new ResultCache("EchoService", "echo(java.lang.String)", 60000, 100);
+        final CompletableFuture<Object> remote = new CompletableFuture<>();
+        Supplier<CompletableFuture<Object>> loader = new Supplier<CompletableFuture<Object>>() {
+
+            @Override
+            public CompletableFuture<Object> get() {
+                return remote;
+            }
+        };
+        // 调用方完成或者取消返回的future，不影响缓存中的结果和其它调用方
+        CompletableFuture<Object> first = cache.get(args("a"), serializer, loader);
+        first.cancel(false);
+        CompletableFuture<Object> second = cache.get(args("a"), serializer, loader);
+        assertFalse(second.isDone());
+        remote.complete("value");
+        assertEquals("value", second.get());
+        assertSame(second.get(), cache.get(args("a"), serializer, loader).get());
+    }
+
+    private static Object[] args(Object... args) {
+        return args;
+    }
+
+    /**
+     * 每次调用返回一个新的结果，并记录调用次数
+     */
+    private static class CountingLoader implements Supplier<CompletableFuture<Object>> {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Object> get() {
+            return CompletableFuture.<Object>completedFuture("result-" + calls.incrementAndGet());
+        }
+    }
+}
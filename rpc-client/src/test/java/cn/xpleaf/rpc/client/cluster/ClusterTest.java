@@ -0,0 +1,212 @@
+package cn.xpleaf.rpc.client.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import cn.xpleaf.rpc.client.loadbalance.LoadBalancer;
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+
+/**
+ * 集群容错策略的测试：failfast只调用一次，failover在传输失败或者被拒绝时换一个服务提供者重试，
+ * 业务异常和超时不重试，重试受重试预算限制，forking以第一个成功的响应为准
+ *
+ * @author yeyonghao
+ */
+public class ClusterTest {
+
+    // 每个测试使用不同的接口名称，重试预算按接口名称全局保存
+    private static final AtomicLong SERVICE_ID = new AtomicLong();
+
+    private final Provider a = new Provider("127.0.0.1", 20001, Provider.DEFAULT_WEIGHT);
+    private final Provider b = new Provider("127.0.0.1", 20002, Provider.DEFAULT_WEIGHT);
+    private final Provider c = new Provider("127.0.0.1", 20003, Provider.DEFAULT_WEIGHT);
+    private final List<Provider> providers = Arrays.asList(a, b, c);
+
+    // 总是选择列表中的第一个服务提供者，便于确定调用顺序
+    private final LoadBalancer first = new LoadBalancer() {
+
+        @Override
+        public Provider select(List<Provider> providers, RPCRequest request) {
+            return providers.get(0);
+        }
+    };
+
+    @Test
+    public void failfastInvokesOnce() throws Exception {
+        RecordingInvoker invoker = new RecordingInvoker();
+        invoker.fail(a, new IOException("connection reset"));
+
+        CompletableFuture<RPCResponse> result = new FailfastCluster().invoke(providers, newRequest(), first, invoker);
+        assertFailedWith(IOException.class, result);
+        assertEquals(Arrays.asList(a), invoker.invoked);
+    }
+
+    @Test
+    public void failoverRetriesOtherProviderOnTransportFailure() throws Exception {
+        RecordingInvoker invoker = new RecordingInvoker();
+        invoker.fail(a, new IOException("connection reset"));
+
+        RPCResponse response = new FailoverCluster().invoke(providers, newRequest(), first, invoker).get();
+        assertEquals("20002", response.getResult());
+        assertEquals(Arrays.asList(a, b), invoker.invoked);
+    }
+
+    @Test
+    public void failoverRetriesRejectedRequest() throws Exception {
+        RecordingInvoker invoker = new RecordingInvoker();
+        invoker.respond(a, new RPCException(RPCException.SERVER_BUSY, "busy"));
+        invoker.respond(b, new RPCException(RPCException.OVERLOADED, "overloaded"));
+
+        RPCResponse response = new FailoverCluster().invoke(providers, newRequest(), first, invoker).get();
+        assertEquals("20003", response.getResult());
+        assertEquals(Arrays.asList(a, b, c), invoker.invoked);
+    }
+
+    @Test
+    public void failoverDoesNotRetryServiceErrorOrTimeout() throws Exception {
+        RecordingInvoker invoker = new RecordingInvoker();
+        IllegalStateException error = new IllegalStateException("boom");
+        invoker.respond(a, error);
+        RPCResponse response = new FailoverCluster().invoke(providers, newRequest(), first, invoker).get();
+        assertSame(error, response.getError());
+        assertEquals(Arrays.asList(a), invoker.invoked);
+
+        invoker = new RecordingInvoker();
+        invoker.fail(a, new RPCException(RPCException.TIMEOUT, "timeout"));
+        assertFailedWith(RPCException.class, new FailoverCluster().invoke(providers, newRequest(), first, invoker));
+        assertEquals(Arrays.asList(a), invoker.invoked);
+    }
+
+    @Test
+    public void failoverGivesUpAfterRetries() throws Exception {
+        RecordingInvoker invoker = new RecordingInvoker();
+        invoker.fail(a, new IOException("a"));
+        invoker.fail(b, new IOException("b"));
+        invoker.fail(c, new IOException("c"));
+
+        assertFailedWith(IOException.class, new FailoverCluster(1).invoke(providers, newRequest(), first, invoker));
+        assertEquals(Arrays.asList(a, b), invoker.invoked);
+    }
+
+    @Test
+    public void retriesAreLimitedByBudget() throws Exception {
+        RecordingInvoker invoker = new RecordingInvoker();
+        invoker.fail(a, new IOException("a"));
+        invoker.fail(b, new IOException("b"));
+        invoker.fail(c, new IOException("c"));
+        RPCRequest request = newRequest();
+        FailoverCluster cluster = new FailoverCluster();
+
+        int calls = 100;
+        for (int i = 0; i < calls; i++) {
+            assertFailedWith(IOException.class, cluster.invoke(providers, request, first, invoker));
+        }
+        // 没有预算时每次调用会重试2次；预算只有初始额度、少量存入的额度以及每秒的保底额度
+        int retries = invoker.invoked.size() - calls;
+        assertTrue("retries: " + retries, retries < RetryBudget.DEFAULT_INITIAL + calls * RetryBudget.DEFAULT_RATIO
+                + 2 * RetryBudget.DEFAULT_MIN_PER_SECOND + 1);
+    }
+
+    @Test
+    public void forkingReturnsFirstSuccess() throws Exception {
+        RecordingInvoker invoker = new RecordingInvoker();
+        invoker.fail(a, new IOException("connection reset"));
+
+        RPCResponse response = new ForkingCluster(2).invoke(providers, newRequest(), first, invoker).get();
+        assertEquals("20002", response.getResult());
+        assertEquals(Arrays.asList(a, b), invoker.invoked);
+    }
+
+    @Test
+    public void forkingFailsWhenAllRequestsFail() throws Exception {
+        RecordingInvoker invoker = new RecordingInvoker();
+        invoker.fail(a, new IOException("a"));
+        invoker.fail(b, new IOException("b"));
+
+        assertFailedWith(IOException.class, new ForkingCluster(2).invoke(providers, newRequest(), first, invoker));
+    }
+
+    @Test
+    public void factoryCreatesByName() {
+        assertTrue(ClusterFactory.getDefault() instanceof FailfastCluster);
+        assertTrue(ClusterFactory.getCluster("failover") instanceof FailoverCluster);
+        assertTrue(ClusterFactory.getCluster("forking") instanceof ForkingCluster);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void factoryRejectsUnknownName() {
+        ClusterFactory.getCluster("unknown");
+    }
+
+    private static RPCRequest newRequest() {
+        RPCRequest request = new RPCRequest();
+        request.setInterfaceName("cn.xpleaf.rpc.test.Service" + SERVICE_ID.incrementAndGet());
+        request.setMethodName("echo");
+        return request;
+    }
+
+    private static void assertFailedWith(Class<? extends Throwable> type, CompletableFuture<RPCResponse> result)
+            throws InterruptedException {
+        try {
+            result.get();
+            fail("调用应该失败");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), type.isInstance(e.getCause()));
+        }
+    }
+
+    /**
+     * 记录调用顺序的ProviderInvoker，默认返回以端口号为结果的成功响应
+     */
+    private static class RecordingInvoker implements ProviderInvoker {
+
+        final List<Provider> invoked = new CopyOnWriteArrayList<>();
+        // 传输失败的服务提供者
+        final Map<Provider, Throwable> failures = new HashMap<>();
+        // 返回异常响应的服务提供者
+        final Map<Provider, Throwable> errors = new HashMap<>();
+
+        void fail(Provider provider, Throwable cause) {
+            failures.put(provider, cause);
+        }
+
+        void respond(Provider provider, Throwable error) {
+            errors.put(provider, error);
+        }
+
+        @Override
+        public CompletableFuture<RPCResponse> invoke(Provider provider) {
+            invoked.add(provider);
+            CompletableFuture<RPCResponse> future = new CompletableFuture<>();
+            if (failures.containsKey(provider)) {
+                future.completeExceptionally(failures.get(provider));
+                return future;
+            }
+            RPCResponse response = new RPCResponse();
+            if (errors.containsKey(provider)) {
+                response.setError(errors.get(provider));
+            } else {
+                response.setResult(String.valueOf(provider.getPort()));
+            }
+            future.complete(response);
+            return future;
+        }
+    }
+}
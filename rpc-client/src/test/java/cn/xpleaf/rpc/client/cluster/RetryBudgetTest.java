@@ -0,0 +1,98 @@
+package cn.xpleaf.rpc.client.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * RetryBudget的测试：初始额度、按比例存入、额度上限和每秒的保底额度
+ *
+ * @author yeyonghao
+ */
+public class RetryBudgetTest {
+
+    @Test
+    public void initialBalance() {
+        RetryBudget budget = new RetryBudget(0.1, 2, 10, 0);
+        assertEquals(2.0, budget.getBalance(), 0);
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+        assertEquals(0.0, budget.getBalance(), 0);
+    }
+
+    @Test
+    public void depositByRatio() {
+        RetryBudget budget = new RetryBudget(0.1, 0, 10, 0);
+        // 每10个正常请求才能换来一次重试
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertEquals(1.0, budget.getBalance(), 1e-9);
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void balanceIsCapped() {
+        RetryBudget budget = new RetryBudget(0.5, 0, 2, 0);
+        // 长时间正常运行也只能积累到上限
+        for (int i = 0; i < 1000; i++) {
+            budget.deposit();
+        }
+        assertEquals(2.0, budget.getBalance(), 1e-9);
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void minPerSecondReserve() throws InterruptedException {
+        RetryBudget budget = new RetryBudget(0.1, 0, 10, 3);
+        // 保底额度按System.nanoTime所在的秒计算，离下一秒太近时先等到下一秒，保证下面的调用在同一秒内
+        long second;
+        while (true) {
+            long now = System.nanoTime();
+            second = TimeUnit.NANOSECONDS.toSeconds(now);
+            long remaining = TimeUnit.SECONDS.toNanos(second + 1) - now;
+            if (remaining > TimeUnit.MILLISECONDS.toNanos(500)) {
+                break;
+            }
+            TimeUnit.NANOSECONDS.sleep(remaining + TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+        assertEquals(second, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()));
+
+        // 下一秒重新获得保底额度
+        TimeUnit.NANOSECONDS.sleep(TimeUnit.SECONDS.toNanos(second + 1) - System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(budget.tryWithdraw());
+    }
+
+    @Test
+    public void rejectsIllegalArguments() {
+        assertIllegal(-0.1, 0, 10, 0);
+        assertIllegal(0.1, -1, 10, 0);
+        assertIllegal(0.1, 20, 10, 0);
+        assertIllegal(0.1, 0, 10, -1);
+    }
+
+    private static void assertIllegal(double ratio, int initial, int max, int minPerSecond) {
+        try {
+            new RetryBudget(ratio, initial, max, minPerSecond);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("参数不正确时应当抛出IllegalArgumentException: ratio=" + ratio + ", initial="
+                + initial + ", max=" + max + ", minPerSecond=" + minPerSecond);
+    }
+}
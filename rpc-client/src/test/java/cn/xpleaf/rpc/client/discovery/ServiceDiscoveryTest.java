@@ -0,0 +1,218 @@
+package cn.xpleaf.rpc.client.discovery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.NIOServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+
+/**
+ * ServiceDiscovery的测试，每个测试都启动一个进程内的zookeeper服务端：
+ * 服务提供者上线、下线和地址变化后本地缓存能够通过监听刷新，缓存建立后调用不再访问zookeeper，
+ * 会话过期后能够重新订阅
+ *
+ * @author yeyonghao
+ */
+public class ServiceDiscoveryTest {
+
+    // 等待监听刷新本地缓存的最长时间（毫秒）
+    private static final long WAIT_TIMEOUT = 10000;
+    // 测试使用的接口名称
+    private static final String SERVICE = "cn.xpleaf.rpc.test.EchoService";
+    // 接口节点
+    private static final String SERVICE_NODE = "/minidubbo/" + SERVICE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ZooKeeperServer zkServer;
+    private NIOServerCnxnFactory cnxnFactory;
+    private String address;
+    private final List<ZooKeeper> clients = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        zkServer = new ZooKeeperServer(folder.newFolder("snapshot"), folder.newFolder("log"), 500);
+        cnxnFactory = new NIOServerCnxnFactory();
+        cnxnFactory.configure(new InetSocketAddress("127.0.0.1", 0), 100);
+        cnxnFactory.startup(zkServer);
+        address = "127.0.0.1:" + cnxnFactory.getLocalPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (ZooKeeper client : clients) {
+            client.close();
+        }
+        cnxnFactory.shutdown();
+        zkServer.shutdown();
+    }
+
+    @Test
+    public void providerAddedAndRemoved() throws Exception {
+        ServiceDiscovery discovery = new ServiceDiscovery(connect());
+        // 接口节点还不存在时，缓存空列表并监听接口节点的创建
+        assertTrue(discovery.getProviders(SERVICE).isEmpty());
+        assertNull(discovery.discoverService(SERVICE));
+
+        ZooKeeper providerA = connect();
+        register(providerA, "127.0.0.1:20001");
+        waitForProviders(discovery, "127.0.0.1:20001");
+        assertEquals("127.0.0.1:20001", discovery.discoverService(SERVICE));
+
+        ZooKeeper providerB = connect();
+        register(providerB, "127.0.0.1:20002?weight=50");
+        waitForProviders(discovery, "127.0.0.1:20001", "127.0.0.1:20002");
+        for (Provider provider : discovery.getProviders(SERVICE)) {
+            assertEquals(provider.getPort() == 20001 ? Provider.DEFAULT_WEIGHT : 50, provider.getWeight());
+        }
+
+        // 关闭连接，短暂节点被删除
+        providerB.close();
+        waitForProviders(discovery, "127.0.0.1:20001");
+        providerA.close();
+        waitForProviders(discovery);
+    }
+
+    @Test
+    public void providerAddressChanged() throws Exception {
+        ZooKeeper provider = connect();
+        String node = register(provider, "127.0.0.1:20001");
+        ServiceDiscovery discovery = new ServiceDiscovery(connect());
+        waitForProviders(discovery, "127.0.0.1:20001");
+
+        provider.setData(node, "127.0.0.1:20003".getBytes(), -1);
+        waitForProviders(discovery, "127.0.0.1:20003");
+    }
+
+    @Test
+    public void cachedLookupDoesNotTouchZooKeeper() throws Exception {
+        register(connect(), "127.0.0.1:20001");
+        ServiceDiscovery discovery = new ServiceDiscovery(connect());
+        List<Provider> providers = discovery.getProviders(SERVICE);
+        assertEquals(1, providers.size());
+        assertEquals("127.0.0.1:20001", providers.get(0).getAddress());
+
+        // zookeeper不可用后仍然从本地缓存返回同一个快照
+        cnxnFactory.shutdown();
+        assertSame(providers, discovery.getProviders(SERVICE));
+        assertEquals("127.0.0.1:20001", discovery.discoverService(SERVICE));
+    }
+
+    @Test
+    public void consumerResubscribesAfterSessionExpired() throws Exception {
+        Set<Long> sessions = sessions();
+        ServiceDiscovery discovery = new ServiceDiscovery(address);
+        assertTrue(discovery.getProviders(SERVICE).isEmpty());
+        long sessionId = newSession(sessions);
+
+        // 会话过期后原有的监听全部失效，重新连接后需要重新订阅，之后上线的服务提供者仍然能够被发现
+        zkServer.closeSession(sessionId);
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (sessions().size() <= sessions.size() || sessions().contains(sessionId)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("会话过期后没有重新连接");
+            }
+            Thread.sleep(50);
+        }
+
+        register(connect(), "127.0.0.1:20002");
+        waitForProviders(discovery, "127.0.0.1:20002");
+    }
+
+    /**
+     * 建立一个直接连接zookeeper的客户端，用于模拟服务提供者或者作为ServiceDiscovery使用的客户端
+     */
+    private ZooKeeper connect() throws Exception {
+        final CountDownLatch connected = new CountDownLatch(1);
+        ZooKeeper zk = new ZooKeeper(address, 2000, new Watcher() {
+
+            @Override
+            public void process(WatchedEvent event) {
+                if (event.getState() == Event.KeeperState.SyncConnected) {
+                    connected.countDown();
+                }
+            }
+        });
+        assertTrue(connected.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+        clients.add(zk);
+        return zk;
+    }
+
+    /**
+     * 按照ServiceRegistry的节点格式注册服务提供者，返回服务提供者节点
+     */
+    private static String register(ZooKeeper zk, String serverAddress) throws Exception {
+        for (String node : new String[]{"/minidubbo", SERVICE_NODE}) {
+            if (zk.exists(node, false) == null) {
+                zk.create(node, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+            }
+        }
+        return zk.create(SERVICE_NODE + "/server", serverAddress.getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE,
+                CreateMode.EPHEMERAL_SEQUENTIAL);
+    }
+
+    /**
+     * 获取服务端当前所有的会话
+     */
+    private Set<Long> sessions() {
+        return new HashSet<>(zkServer.getZKDatabase().getSessionWithTimeOuts().keySet());
+    }
+
+    /**
+     * 获取给定集合之外唯一的一个会话
+     */
+    private long newSession(Set<Long> before) {
+        Set<Long> sessions = sessions();
+        sessions.removeAll(before);
+        assertEquals(1, sessions.size());
+        return sessions.iterator().next();
+    }
+
+    /**
+     * 等待本地缓存刷新为给定的服务提供者列表
+     */
+    private static void waitForProviders(ServiceDiscovery discovery, String... addresses)
+            throws InterruptedException {
+        Set<String> expected = new HashSet<>(Arrays.asList(addresses));
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (true) {
+            List<Provider> providers = discovery.getProviders(SERVICE);
+            Set<String> actual = new HashSet<>();
+            for (Provider provider : providers) {
+                actual.add(provider.getAddress());
+            }
+            if (actual.equals(expected) && providers.size() == addresses.length) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("服务提供者列表没有刷新为" + expected + "，当前为" + providers);
+            }
+            Thread.sleep(20);
+        }
+    }
+}
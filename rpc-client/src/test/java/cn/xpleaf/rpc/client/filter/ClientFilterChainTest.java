@@ -0,0 +1,115 @@
+package cn.xpleaf.rpc.client.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * ClientFilterChain的测试：过滤器按配置的顺序包在外层，最后由终端过滤器发起调用，
+ * 过滤器可以不调用chain直接返回结果，没有过滤器时不构建过滤器链
+ *
+ * @author yeyonghao
+ */
+public class ClientFilterChainTest {
+
+    // 记录过滤器和终端过滤器的执行顺序
+    private final List<String> events = new ArrayList<>();
+
+    // 模拟发起远程调用的终端过滤器，返回第一个参数
+    private final ClientFilter terminal = new ClientFilter() {
+
+        @Override
+        public CompletableFuture<Object> invoke(RPCRequest request, ClientFilterChain chain) {
+            events.add("remote");
+            return CompletableFuture.completedFuture(request.getParameters()[0]);
+        }
+    };
+
+    @Test
+    public void filtersRunInOrderBeforeTerminal() throws Exception {
+        ClientFilterChain chain = ClientFilterChain.build(Arrays.asList(recording("a"), recording("b")), terminal);
+
+        assertEquals("hello", chain.proceed(newRequest("hello")).get());
+        assertEquals(Arrays.asList("a before", "b before", "remote", "b after", "a after"), events);
+
+        // 过滤器链可以重复使用
+        events.clear();
+        assertEquals("world", chain.proceed(newRequest("world")).get());
+        assertEquals(5, events.size());
+    }
+
+    @Test
+    public void filterCanShortCircuit() throws Exception {
+        ClientFilter cached = new ClientFilter() {
+
+            @Override
+            public CompletableFuture<Object> invoke(RPCRequest request, ClientFilterChain chain) {
+                return CompletableFuture.<Object>completedFuture("cached");
+            }
+        };
+        ClientFilterChain chain = ClientFilterChain.build(Arrays.asList(recording("a"), cached), terminal);
+
+        assertEquals("cached", chain.proceed(newRequest("hello")).get());
+        assertEquals(Arrays.asList("a before", "a after"), events);
+    }
+
+    @Test
+    public void filterCanReplaceRequest() throws Exception {
+        ClientFilter rewrite = new ClientFilter() {
+
+            @Override
+            public CompletableFuture<Object> invoke(RPCRequest request, ClientFilterChain chain) {
+                return chain.proceed(newRequest(request.getParameters()[0] + "!"));
+            }
+        };
+        ClientFilterChain chain = ClientFilterChain.build(Collections.singletonList(rewrite), terminal);
+
+        assertEquals("hello!", chain.proceed(newRequest("hello")).get());
+    }
+
+    @Test
+    public void noChainWithoutFilters() {
+        assertNull(ClientFilterChain.build(null, terminal));
+        assertNull(ClientFilterChain.build(Collections.<ClientFilter>emptyList(), terminal));
+    }
+
+    /**
+     * 记录调用前后事件的过滤器，调用后的事件在future完成时记录
+     */
+    private ClientFilter recording(final String name) {
+        return new ClientFilter() {
+
+            @Override
+            public CompletableFuture<Object> invoke(RPCRequest request, ClientFilterChain chain) {
+                events.add(name + " before");
+                return chain.proceed(request).thenApply(new Function<Object, Object>() {
+
+                    @Override
+                    public Object apply(Object result) {
+                        events.add(name + " after");
+                        return result;
+                    }
+                });
+            }
+        };
+    }
+
+    private static RPCRequest newRequest(String value) {
+        RPCRequest request = new RPCRequest();
+        request.setInterfaceName("cn.xpleaf.rpc.test.EchoService");
+        request.setMethodName("echo");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setParameters(new Object[]{value});
+        return request;
+    }
+}
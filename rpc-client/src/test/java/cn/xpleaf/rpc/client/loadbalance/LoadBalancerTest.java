@@ -0,0 +1,200 @@
+package cn.xpleaf.rpc.client.loadbalance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+
+/**
+ * 内置负载均衡策略的测试
+ *
+ * ProviderStats按服务提供者地址全局保存，每个测试使用不同的端口，避免相互影响
+ *
+ * @author yeyonghao
+ */
+public class LoadBalancerTest {
+
+    @Test
+    public void randomFollowsWeights() {
+        Provider heavy = new Provider("127.0.0.1", 21001, 300);
+        Provider light = new Provider("127.0.0.1", 21002, 100);
+        List<Provider> providers = Arrays.asList(heavy, light);
+
+        Map<Provider, Integer> counts = count(new RandomLoadBalancer(), providers, 40000);
+        double ratio = counts.get(heavy) / 40000.0;
+        assertTrue("权重为3:1时的选择比例: " + ratio, ratio > 0.72 && ratio < 0.78);
+    }
+
+    @Test
+    public void roundRobinIsSmooth() {
+        Provider a = new Provider("127.0.0.1", 21101, 5);
+        Provider b = new Provider("127.0.0.1", 21102, 1);
+        Provider c = new Provider("127.0.0.1", 21103, 1);
+        List<Provider> providers = Arrays.asList(a, b, c);
+        LoadBalancer loadBalancer = new WeightedRoundRobinLoadBalancer();
+
+        List<Provider> selected = new ArrayList<>();
+        for (int i = 0; i < 14; i++) {
+            selected.add(loadBalancer.select(providers, newRequest("key")));
+        }
+        List<Provider> round = Arrays.asList(a, a, b, a, c, a, a);
+        assertEquals(round, selected.subList(0, 7));
+        assertEquals(round, selected.subList(7, 14));
+    }
+
+    @Test
+    public void roundRobinForgetsRemovedProviders() {
+        Provider a = new Provider("127.0.0.1", 21201, 1);
+        Provider b = new Provider("127.0.0.1", 21202, 1);
+        Provider c = new Provider("127.0.0.1", 21203, 1);
+        LoadBalancer loadBalancer = new WeightedRoundRobinLoadBalancer();
+        for (int i = 0; i < 5; i++) {
+            loadBalancer.select(Arrays.asList(a, b, c), newRequest("key"));
+        }
+        // 服务提供者下线后只在剩余的服务提供者之间轮询，之前累积的当前权重最多造成一次偏差
+        Map<Provider, Integer> counts = count(loadBalancer, Arrays.asList(a, c), 10);
+        assertNull(counts.get(b));
+        assertTrue(Math.abs(counts.get(a) - counts.get(c)) <= 2);
+    }
+
+    @Test
+    public void leastActivePicksIdleProvider() {
+        Provider busy = new Provider("127.0.0.1", 21301, Provider.DEFAULT_WEIGHT);
+        Provider idle = new Provider("127.0.0.1", 21302, Provider.DEFAULT_WEIGHT);
+        ProviderStats.get(busy.getAddress()).beginCall();
+        ProviderStats.get(busy.getAddress()).beginCall();
+        try {
+            Map<Provider, Integer> counts = count(new LeastActiveLoadBalancer(), Arrays.asList(busy, idle), 100);
+            assertEquals(Integer.valueOf(100), counts.get(idle));
+        } finally {
+            ProviderStats.get(busy.getAddress()).endCall(0, false);
+            ProviderStats.get(busy.getAddress()).endCall(0, false);
+        }
+    }
+
+    @Test
+    public void consistentHashIsStableAndMovesFewKeys() {
+        List<Provider> providers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            providers.add(new Provider("127.0.0.1", 21401 + i, Provider.DEFAULT_WEIGHT));
+        }
+        LoadBalancer loadBalancer = new ConsistentHashLoadBalancer();
+        List<Provider> snapshot = Collections.unmodifiableList(providers);
+
+        Map<String, Provider> before = new HashMap<>();
+        Set<Provider> used = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = "user-" + i;
+            Provider provider = loadBalancer.select(snapshot, newRequest(key));
+            // 相同的参数总是选中同一个服务提供者
+            assertSame(provider, loadBalancer.select(snapshot, newRequest(key)));
+            before.put(key, provider);
+            used.add(provider);
+        }
+        assertEquals(5, used.size());
+
+        // 下线一个服务提供者，只有原来落在它上面的参数会被重新分配
+        Provider removed = providers.get(2);
+        List<Provider> remaining = new ArrayList<>(providers);
+        remaining.remove(removed);
+        remaining = Collections.unmodifiableList(remaining);
+        for (Map.Entry<String, Provider> entry : before.entrySet()) {
+            Provider provider = loadBalancer.select(remaining, newRequest(entry.getKey()));
+            if (entry.getValue() != removed) {
+                assertSame(entry.getValue(), provider);
+            }
+        }
+    }
+
+    @Test
+    public void p2cAvoidsSlowProvider() {
+        Provider fast = new Provider("127.0.0.1", 21501, Provider.DEFAULT_WEIGHT);
+        Provider slow = new Provider("127.0.0.1", 21502, Provider.DEFAULT_WEIGHT);
+        ProviderStats.get(fast.getAddress()).beginCall();
+        ProviderStats.get(fast.getAddress()).endCall(TimeUnit.MILLISECONDS.toNanos(1), false);
+        ProviderStats.get(slow.getAddress()).beginCall();
+        ProviderStats.get(slow.getAddress()).endCall(TimeUnit.MILLISECONDS.toNanos(100), false);
+
+        // 只有两个服务提供者时每次都会比较这两个
+        Map<Provider, Integer> counts = count(new P2CLoadBalancer(), Arrays.asList(fast, slow), 100);
+        assertEquals(Integer.valueOf(100), counts.get(fast));
+    }
+
+    @Test
+    public void p2cDoesNotFavorStuckNewProvider() {
+        Provider known = new Provider("127.0.0.1", 21601, Provider.DEFAULT_WEIGHT);
+        Provider stuck = new Provider("127.0.0.1", 21602, Provider.DEFAULT_WEIGHT);
+        ProviderStats.get(known.getAddress()).beginCall();
+        ProviderStats.get(known.getAddress()).endCall(TimeUnit.MILLISECONDS.toNanos(10), false);
+        // 新的服务提供者还没有完成过调用，但已经积压了请求，按惩罚响应时间计算负载
+        ProviderStats stuckStats = ProviderStats.get(stuck.getAddress());
+        stuckStats.beginCall();
+        try {
+            Map<Provider, Integer> counts = count(new P2CLoadBalancer(), Arrays.asList(known, stuck), 100);
+            assertEquals(Integer.valueOf(100), counts.get(known));
+        } finally {
+            stuckStats.endCall(0, true);
+        }
+    }
+
+    @Test
+    public void failedCallIsPenalized() {
+        ProviderStats stats = ProviderStats.get("127.0.0.1:" + 21701);
+        stats.beginCall();
+        assertEquals(1, stats.getActive());
+        stats.endCall(TimeUnit.MILLISECONDS.toNanos(1), true);
+        assertEquals(0, stats.getActive());
+        assertEquals(ProviderStats.PENALTY_NANOS, stats.getEwmaNanos(), 0);
+    }
+
+    @Test
+    public void factoryCreatesByName() {
+        assertTrue(LoadBalancerFactory.getDefault() instanceof RandomLoadBalancer);
+        assertTrue(LoadBalancerFactory.getLoadBalancer(null) instanceof RandomLoadBalancer);
+        assertTrue(LoadBalancerFactory.getLoadBalancer("roundrobin") instanceof WeightedRoundRobinLoadBalancer);
+        assertTrue(LoadBalancerFactory.getLoadBalancer("leastactive") instanceof LeastActiveLoadBalancer);
+        assertTrue(LoadBalancerFactory.getLoadBalancer("consistenthash") instanceof ConsistentHashLoadBalancer);
+        assertTrue(LoadBalancerFactory.getLoadBalancer("p2c") instanceof P2CLoadBalancer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void factoryRejectsUnknownName() {
+        LoadBalancerFactory.getLoadBalancer("fastest");
+    }
+
+    private static Map<Provider, Integer> count(LoadBalancer loadBalancer, List<Provider> providers, int times) {
+        Map<Provider, Integer> counts = new HashMap<>();
+        for (Provider provider : providers) {
+            counts.put(provider, 0);
+        }
+        for (int i = 0; i < times; i++) {
+            Provider provider = loadBalancer.select(providers, newRequest("key"));
+            counts.put(provider, counts.get(provider) + 1);
+        }
+        return counts;
+    }
+
+    private static RPCRequest newRequest(String key) {
+        RPCRequest request = new RPCRequest();
+        request.setInterfaceName("cn.xpleaf.rpc.test.EchoService");
+        request.setMethodName("echo");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setParameters(new Object[]{key});
+        return request;
+    }
+}
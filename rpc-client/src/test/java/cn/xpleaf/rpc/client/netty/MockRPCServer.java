@@ -0,0 +1,131 @@
+package cn.xpleaf.rpc.client.netty;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.xpleaf.rpc.common.pojo.RPCHandshake;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import cn.xpleaf.rpc.common.utils.RPCDecoder;
+import cn.xpleaf.rpc.common.utils.RPCEncoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+/**
+ * 测试用的RPC服务端，使用与RPCServer相同的编解码器，收到的请求交给RequestHandler处理，
+ * 由测试代码决定何时、以何种顺序写回响应，握手时回复setMethods设置的方法签名，
+ * 其它消息（如流式调用的信用）保存下来，由测试代码通过pollMessage取出
+ *
+ * @author yeyonghao
+ */
+public class MockRPCServer {
+
+    /**
+     * 请求处理逻辑，在I/O线程中调用
+     */
+    public interface RequestHandler {
+        void handle(ChannelHandlerContext ctx, RPCRequest request) throws Exception;
+    }
+
+    private RequestHandler handler;
+    // 握手时回复的方法签名，下标加1为方法编号
+    private volatile String[] methods = new String[0];
+    private EventLoopGroup group = new NioEventLoopGroup(1);
+    private Channel serverChannel;
+    // 收到的请求和握手之外的消息
+    private BlockingQueue<Object> messages = new LinkedBlockingQueue<>();
+    // 累计接受的连接数
+    private AtomicInteger acceptedConnections = new AtomicInteger();
+
+    public MockRPCServer(RequestHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * 在本机的随机端口上启动，返回监听的端口号
+     */
+    public int start() throws Exception {
+        return start(0);
+    }
+
+    /**
+     * 在本机的指定端口上启动，返回监听的端口号
+     */
+    public int start(int port) throws Exception {
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        acceptedConnections.incrementAndGet();
+                        ch.pipeline().addLast(new RPCDecoder());
+                        ch.pipeline().addLast(new RPCEncoder());
+                        ch.pipeline().addLast(new SimpleChannelInboundHandler<Object>() {
+
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+                                if (msg instanceof RPCHandshake) {
+                                    RPCHandshake handshake = new RPCHandshake();
+                                    handshake.setMethods(methods);
+                                    ctx.writeAndFlush(handshake);
+                                    return;
+                                }
+                                if (!(msg instanceof RPCRequest)) {
+                                    messages.offer(msg);
+                                    return;
+                                }
+                                handler.handle(ctx, (RPCRequest) msg);
+                            }
+                        });
+                    }
+                });
+        serverChannel = b.bind("127.0.0.1", port).sync().channel();
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    /**
+     * 设置握手时回复的方法签名，见RPCProtocol.signatureOf
+     */
+    public void setMethods(String... methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * 取出收到的请求和握手之外的消息，等待超时返回null
+     */
+    public Object pollMessage(long timeout, TimeUnit unit) throws InterruptedException {
+        return messages.poll(timeout, unit);
+    }
+
+    public int getAcceptedConnections() {
+        return acceptedConnections.get();
+    }
+
+    public void close() {
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        group.shutdownGracefully();
+    }
+
+    /**
+     * 构造与请求对应的成功响应
+     */
+    public static RPCResponse responseOf(RPCRequest request, Object result) {
+        RPCResponse response = new RPCResponse();
+        response.setRequestId(request.getRequestId());
+        response.setResult(result);
+        return response;
+    }
+}
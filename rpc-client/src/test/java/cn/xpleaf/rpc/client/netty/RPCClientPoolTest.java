@@ -0,0 +1,228 @@
+package cn.xpleaf.rpc.client.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * RPCClientPool和RPCClient的测试：多个请求复用同一条连接、响应按requestId匹配、连接断开后重新建立、
+ * 建立连接失败后在退避时间内不再重连
+ *
+ * @author yeyonghao
+ */
+public class RPCClientPoolTest {
+
+    private MockRPCServer server;
+    private RPCClientPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void concurrentRequestsShareOneConnection() throws Exception {
+        final int requests = 8;
+        // 收齐所有请求后按相反的顺序写回响应，调用方只能依靠requestId拿到自己的结果
+        final List<RPCRequest> received = new ArrayList<>();
+        server = new MockRPCServer(new MockRPCServer.RequestHandler() {
+
+            @Override
+            public void handle(ChannelHandlerContext ctx, RPCRequest request) {
+                received.add(request);
+                if (received.size() == requests) {
+                    for (int i = received.size() - 1; i >= 0; i--) {
+                        RPCRequest r = received.get(i);
+                        ctx.writeAndFlush(MockRPCServer.responseOf(r, r.getParameters()[0]));
+                    }
+                }
+            }
+        });
+        final int port = server.start();
+        pool = new RPCClientPool(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                final String value = "value-" + i;
+                results.add(executor.submit(new Callable<Object>() {
+
+                    @Override
+                    public Object call() throws Exception {
+                        RPCClient client = pool.getClient("127.0.0.1", port);
+                        return client.sendRequest(newRequest(value)).getResult();
+                    }
+                }));
+            }
+            for (int i = 0; i < requests; i++) {
+                assertEquals("value-" + i, results.get(i).get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, server.getAcceptedConnections());
+    }
+
+    @Test
+    public void connectionIsReusedAcrossCalls() throws Exception {
+        server = new MockRPCServer(echoHandler());
+        int port = server.start();
+        pool = new RPCClientPool(1);
+
+        RPCClient first = pool.getClient("127.0.0.1", port);
+        RPCClient second = pool.getClient("127.0.0.1", port);
+        assertSame(first, second);
+        assertEquals("a", second.sendRequest(newRequest("a")).getResult());
+        assertEquals(1, server.getAcceptedConnections());
+    }
+
+    @Test
+    public void reconnectsAfterConnectionClosed() throws Exception {
+        server = new MockRPCServer(echoHandler());
+        int port = server.start();
+        pool = new RPCClientPool(1);
+
+        RPCClient first = pool.getClient("127.0.0.1", port);
+        first.close();
+        waitUntilInactive(first);
+
+        RPCClient second = pool.getClient("127.0.0.1", port);
+        assertNotSame(first, second);
+        assertTrue(second.isActive());
+        assertEquals("b", second.sendRequest(newRequest("b")).getResult());
+        assertEquals(2, server.getAcceptedConnections());
+    }
+
+    @Test
+    public void pendingRequestFailsWhenConnectionClosed() throws Exception {
+        // 服务端收到请求后直接断开连接，不写回响应
+        server = new MockRPCServer(new MockRPCServer.RequestHandler() {
+
+            @Override
+            public void handle(ChannelHandlerContext ctx, RPCRequest request) {
+                ctx.close();
+            }
+        });
+        int port = server.start();
+        pool = new RPCClientPool(1);
+
+        RPCClient client = pool.getClient("127.0.0.1", port);
+        try {
+            client.sendRequest(newRequest("c"));
+            fail("连接断开后等待中的请求应该失败");
+        } catch (IOException expected) {
+            // 连接断开时由channelInactive唤醒
+        }
+    }
+
+    @Test
+    public void reconnectBacksOffAfterConnectFailure() throws Exception {
+        int port = freePort();
+        pool = new RPCClientPool(1);
+        pool.setReconnectBackoff(500, 1000);
+
+        // 服务提供者不可用，建立连接失败
+        IOException failure = null;
+        try {
+            pool.getClient("127.0.0.1", port);
+            fail("服务提供者不可用时应该建立连接失败");
+        } catch (IOException e) {
+            failure = e;
+        }
+        long failedAt = System.nanoTime();
+
+        // 服务提供者恢复后，退避时间内仍然直接失败，不会发起连接
+        server = new MockRPCServer(echoHandler());
+        server.start(port);
+        try {
+            pool.getClient("127.0.0.1", port);
+            fail("退避时间内应该直接失败");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(0, server.getAcceptedConnections());
+
+        // 退避时间结束后重新建立连接
+        RPCClient client = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client == null && System.currentTimeMillis() < deadline) {
+            try {
+                client = pool.getClient("127.0.0.1", port);
+            } catch (IOException e) {
+                Thread.sleep(20);
+            }
+        }
+        assertTrue(client != null && client.isActive());
+        // 第一次失败的退避时间在[250, 500]毫秒之间
+        assertTrue(System.nanoTime() - failedAt >= TimeUnit.MILLISECONDS.toNanos(250));
+        assertEquals("d", client.sendRequest(newRequest("d")).getResult());
+        assertEquals(1, server.getAcceptedConnections());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIllegalReconnectBackoff() {
+        pool = new RPCClientPool(1);
+        pool.setReconnectBackoff(1000, 500);
+    }
+
+    private static MockRPCServer.RequestHandler echoHandler() {
+        return new MockRPCServer.RequestHandler() {
+
+            @Override
+            public void handle(ChannelHandlerContext ctx, RPCRequest request) {
+                RPCResponse response = MockRPCServer.responseOf(request, request.getParameters()[0]);
+                ctx.writeAndFlush(response);
+            }
+        };
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static void waitUntilInactive(RPCClient client) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.isActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static RPCRequest newRequest(String value) {
+        RPCRequest request = new RPCRequest();
+        request.setInterfaceName("cn.xpleaf.service.EchoService");
+        request.setMethodName("echo");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setParameters(new Object[]{value});
+        return request;
+    }
+}
@@ -0,0 +1,205 @@
+package cn.xpleaf.rpc.client.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import cn.xpleaf.rpc.common.pojo.RPCStreamCredit;
+import cn.xpleaf.rpc.common.pojo.RPCStreamElement;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * RPCClient的测试：连接建立时通过握手协商方法编号，之后的请求只携带方法编号，
+ * requestId由每条连接上的计数器生成，调用方传入的请求对象不会被修改，
+ * 请求携带本次发送的超时时间，超时后调用方以RPCException失败返回，
+ * 流式调用的元素按requestId交给ClientStream，消费了一半的窗口后补充信用，关闭时通知服务端取消
+ *
+ * @author yeyonghao
+ */
+public class RPCClientTest {
+
+    private static final String SERVICE = "cn.xpleaf.rpc.test.EchoService";
+
+    // 服务端收到的请求
+    private final List<RPCRequest> received = new CopyOnWriteArrayList<>();
+    // 服务端收到的流式调用请求及其连接
+    private final BlockingQueue<RPCRequest> streamRequests = new LinkedBlockingQueue<>();
+    private volatile ChannelHandlerContext streamContext;
+    private MockRPCServer server;
+    private RPCClientPool pool;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockRPCServer(new MockRPCServer.RequestHandler() {
+
+            @Override
+            public void handle(ChannelHandlerContext ctx, RPCRequest request) {
+                received.add(request);
+                if (request.getCredit() > 0) {
+                    // 流式调用，由测试代码发送元素
+                    streamContext = ctx;
+                    streamRequests.offer(request);
+                    return;
+                }
+                if ("silent".equals(request.getParameters()[0])) {
+                    // 不回写响应，用来测试请求超时
+                    return;
+                }
+                ctx.writeAndFlush(MockRPCServer.responseOf(request, request.getParameters()[0]));
+            }
+        });
+        server.setMethods(RPCProtocol.signatureOf(SERVICE, "other", new Class<?>[]{int.class}),
+                RPCProtocol.signatureOf(SERVICE, "echo", new Class<?>[]{String.class}));
+        port = server.start();
+        pool = new RPCClientPool(1);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        server.close();
+    }
+
+    @Test
+    public void negotiatedMethodIsSentById() throws Exception {
+        RPCClient client = pool.getClient("127.0.0.1", port);
+        RPCRequest request = newRequest("echo", String.class, "hello");
+        assertEquals("hello", client.sendRequest(request).getResult());
+
+        RPCRequest message = received.get(0);
+        // 签名在握手消息中的下标加1即为方法编号
+        assertEquals(2, message.getMethodId());
+        assertNull(message.getInterfaceName());
+        assertNull(message.getMethodName());
+        assertNull(message.getParameterTypes());
+    }
+
+    @Test
+    public void unknownMethodCarriesFullSignature() throws Exception {
+        RPCClient client = pool.getClient("127.0.0.1", port);
+        assertEquals("hello", client.sendRequest(newRequest("unknown", String.class, "hello")).getResult());
+
+        RPCRequest message = received.get(0);
+        assertEquals(0, message.getMethodId());
+        assertEquals(SERVICE, message.getInterfaceName());
+        assertEquals("unknown", message.getMethodName());
+        assertEquals(String.class, message.getParameterTypes()[0]);
+    }
+
+    @Test
+    public void requestIdIsPerConnectionCounter() throws Exception {
+        RPCClient client = pool.getClient("127.0.0.1", port);
+        RPCRequest request = newRequest("echo", String.class, "hello");
+        client.sendRequest(request);
+        // 同一个请求对象可以再次发送
+        client.sendRequest(request);
+
+        assertEquals(0, request.getRequestId());
+        assertEquals(1, received.get(0).getRequestId());
+        assertEquals(2, received.get(1).getRequestId());
+    }
+
+    @Test
+    public void requestFailsWithTimeoutAndCarriesIt() throws Exception {
+        RPCClient client = pool.getClient("127.0.0.1", port);
+        CompletableFuture<RPCResponse> future = client.sendRequestAsync(
+                newRequest("echo", String.class, "silent"), 100);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("没有收到响应的请求应该超时");
+        } catch (ExecutionException e) {
+            assertEquals(RPCException.TIMEOUT, ((RPCException) e.getCause()).getCode());
+        }
+        assertEquals(100, received.get(0).getTimeout());
+
+        // 超时不影响连接上的其它请求
+        assertEquals("hello", client.sendRequest(newRequest("echo", String.class, "hello")).getResult());
+    }
+
+    @Test
+    public void streamReceivesElementsAndReplenishesCredit() throws Exception {
+        RPCClient client = pool.getClient("127.0.0.1", port);
+        ClientStream<Integer> stream = client.openStream(newRequest("echo", String.class, "stream"), 4);
+        RPCRequest message = streamRequests.poll(5, TimeUnit.SECONDS);
+        assertEquals(4, message.getCredit());
+        assertEquals(stream.getRequestId(), message.getRequestId());
+
+        for (int i = 0; i < 4; i++) {
+            streamContext.writeAndFlush(new RPCStreamElement(message.getRequestId(), i, message.getSerializer()));
+        }
+        assertEquals(Integer.valueOf(0), stream.next());
+        assertEquals(Integer.valueOf(1), stream.next());
+        // 消费了一半的窗口，补充同样数量的信用
+        RPCStreamCredit credit = (RPCStreamCredit) server.pollMessage(5, TimeUnit.SECONDS);
+        assertEquals(message.getRequestId(), credit.getRequestId());
+        assertEquals(2, credit.getCredit());
+
+        streamContext.writeAndFlush(MockRPCServer.responseOf(message, null));
+        assertEquals(Integer.valueOf(2), stream.next());
+        assertEquals(Integer.valueOf(3), stream.next());
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void streamFailsWithServerError() throws Exception {
+        RPCClient client = pool.getClient("127.0.0.1", port);
+        ClientStream<Integer> stream = client.openStream(newRequest("echo", String.class, "stream"), 4);
+        RPCRequest message = streamRequests.poll(5, TimeUnit.SECONDS);
+
+        streamContext.writeAndFlush(new RPCStreamElement(message.getRequestId(), 0, message.getSerializer()));
+        RPCResponse response = MockRPCServer.responseOf(message, null);
+        response.setError(new RPCException(RPCException.SERVICE_ERROR, "cursor closed"));
+        streamContext.writeAndFlush(response);
+
+        assertEquals(Integer.valueOf(0), stream.next());
+        try {
+            stream.hasNext();
+            fail("服务端出现异常时流应该失败");
+        } catch (RPCException e) {
+            assertEquals(RPCException.SERVICE_ERROR, e.getCode());
+        }
+    }
+
+    @Test
+    public void closingStreamCancelsIt() throws Exception {
+        RPCClient client = pool.getClient("127.0.0.1", port);
+        ClientStream<Integer> stream = client.openStream(newRequest("echo", String.class, "stream"), 4);
+        RPCRequest message = streamRequests.poll(5, TimeUnit.SECONDS);
+        streamContext.writeAndFlush(new RPCStreamElement(message.getRequestId(), 0, message.getSerializer()));
+        assertEquals(Integer.valueOf(0), stream.next());
+
+        stream.close();
+        RPCStreamCredit cancel = (RPCStreamCredit) server.pollMessage(5, TimeUnit.SECONDS);
+        assertEquals(message.getRequestId(), cancel.getRequestId());
+        assertTrue(cancel.isCancel());
+        assertFalse(stream.hasNext());
+    }
+
+    private static RPCRequest newRequest(String methodName, Class<?> parameterType, Object parameter) {
+        RPCRequest request = new RPCRequest();
+        request.setInterfaceName(SERVICE);
+        request.setMethodName(methodName);
+        request.setParameterTypes(new Class<?>[]{parameterType});
+        request.setParameters(new Object[]{parameter});
+        return request;
+    }
+}
@@ -0,0 +1,215 @@
+package cn.xpleaf.rpc.client.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.client.discovery.ServiceDiscovery;
+import cn.xpleaf.rpc.client.netty.RPCClientPool;
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.local.LocalInvoker;
+import cn.xpleaf.rpc.common.local.LocalService;
+import cn.xpleaf.rpc.common.local.LocalServices;
+import cn.xpleaf.rpc.common.pojo.Provider;
+
+/**
+ * 本地调用的测试：服务在本地发布时，direct方式通过登记的方法调用器直接调用服务实现类对象，copy方式复制参数和返回值，
+ * none方式（默认）总是通过网络调用，异步方法和异步代理对象与远程调用一样得到future
+ *
+ * @author yeyonghao
+ */
+public class LocalInvocationTest {
+
+    public interface ListService {
+
+        List<String> append(List<String> values, String value);
+
+        CompletableFuture<List<String>> appendAsync(List<String> values, String value);
+
+        String fail(String message);
+    }
+
+    private final ListService serviceBean = new ListService() {
+
+        @Override
+        public List<String> append(List<String> values, String value) {
+            // 直接修改参数并返回，用来区分调用方拿到的是不是同一个对象
+            values.add(value);
+            return values;
+        }
+
+        @Override
+        public CompletableFuture<List<String>> appendAsync(List<String> values, String value) {
+            return CompletableFuture.completedFuture(append(values, value));
+        }
+
+        @Override
+        public String fail(String message) {
+            throw new IllegalStateException(message);
+        }
+    };
+
+    // 本地服务，代替服务端预先构建的服务调用器，记录方法调用器被调用的次数
+    private final AtomicInteger localInvocations = new AtomicInteger();
+    private final LocalService localService = new LocalService() {
+
+        @Override
+        public LocalInvoker getMethodInvoker(String methodName, Class<?>[] parameterTypes) {
+            final Method method;
+            try {
+                method = ListService.class.getMethod(methodName, parameterTypes);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+            return new LocalInvoker() {
+
+                @Override
+                public Object invoke(Object[] parameters) throws Throwable {
+                    localInvocations.incrementAndGet();
+                    try {
+                        return method.invoke(serviceBean, parameters);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public Object getServiceBean() {
+            return serviceBean;
+        }
+    };
+
+    private RPCClientPool pool;
+    private RPCProxy rpcProxy;
+
+    @Before
+    public void setUp() {
+        LocalServices.export(ListService.class.getName(), localService);
+        pool = new RPCClientPool(1);
+        // 注册中心中没有服务提供者，通过网络调用时会失败
+        rpcProxy = new RPCProxy(new ServiceDiscovery("127.0.0.1:2181") {
+
+            @Override
+            public List<Provider> getProviders(String interfaceName) {
+                return Collections.emptyList();
+            }
+        }, pool);
+    }
+
+    @After
+    public void tearDown() {
+        LocalServices.unexport(ListService.class.getName(), localService);
+        pool.close();
+    }
+
+    @Test
+    public void directInvocationSharesObjects() {
+        rpcProxy.setLocalInvocation(RPCProxy.LOCAL_DIRECT);
+        ListService service = rpcProxy.getProxy(ListService.class);
+
+        List<String> values = new ArrayList<>(Arrays.asList("a"));
+        List<String> result = service.append(values, "b");
+        assertSame(values, result);
+        assertEquals(Arrays.asList("a", "b"), values);
+        assertEquals(1, localInvocations.get());
+    }
+
+    @Test
+    public void copyInvocationCopiesArgumentsAndResult() throws Exception {
+        rpcProxy.setLocalInvocation(RPCProxy.LOCAL_COPY);
+        ListService service = rpcProxy.getProxy(ListService.class);
+
+        List<String> values = new ArrayList<>(Arrays.asList("a"));
+        List<String> result = service.append(values, "b");
+        assertNotSame(values, result);
+        assertEquals(Arrays.asList("a", "b"), result);
+        // 服务方修改的是参数的副本
+        assertEquals(Arrays.asList("a"), values);
+
+        List<String> asyncResult = service.appendAsync(values, "c").get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("a", "c"), asyncResult);
+        assertEquals(Arrays.asList("a"), values);
+    }
+
+    @Test
+    public void asyncProxyExposesLocalResultThroughContext() throws Exception {
+        rpcProxy.setLocalInvocation(RPCProxy.LOCAL_DIRECT);
+        ListService service = rpcProxy.getAsyncProxy(ListService.class);
+
+        assertNull(service.append(new ArrayList<String>(), "a"));
+        CompletableFuture<List<String>> future = RPCContext.getFuture();
+        assertEquals(Arrays.asList("a"), future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void serviceExceptionIsThrownToCaller() {
+        rpcProxy.setLocalInvocation(RPCProxy.LOCAL_DIRECT);
+        ListService service = rpcProxy.getProxy(ListService.class);
+        try {
+            service.fail("boom");
+            fail("服务方法抛出的异常应该抛给调用方");
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+    }
+
+    @Test
+    public void noneAlwaysGoesOverNetwork() {
+        rpcProxy.setLocalInvocation(RPCProxy.LOCAL_NONE);
+        ListService service = rpcProxy.getProxy(ListService.class);
+        try {
+            service.append(new ArrayList<String>(), "a");
+            fail("没有服务提供者时通过网络调用应该失败");
+        } catch (RPCException e) {
+            assertEquals(RPCException.NO_PROVIDER, e.getCode());
+        }
+    }
+
+    @Test
+    public void defaultGoesOverNetwork() {
+        ListService service = rpcProxy.getProxy(ListService.class);
+        try {
+            service.append(new ArrayList<String>(), "a");
+            fail("默认不进行本地调用，没有服务提供者时通过网络调用应该失败");
+        } catch (RPCException e) {
+            assertEquals(RPCException.NO_PROVIDER, e.getCode());
+        }
+        assertEquals(0, localInvocations.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownLocalInvocation() {
+        rpcProxy.setLocalInvocation("unknown");
+    }
+
+    @Test
+    public void unexportedServiceGoesOverNetwork() {
+        rpcProxy.setLocalInvocation(RPCProxy.LOCAL_DIRECT);
+        ListService service = rpcProxy.getProxy(ListService.class);
+        LocalServices.unexport(ListService.class.getName(), localService);
+        try {
+            service.append(new ArrayList<String>(), "a");
+            fail("取消登记之后应该通过网络调用");
+        } catch (RPCException e) {
+            assertEquals(RPCException.NO_PROVIDER, e.getCode());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package cn.xpleaf.rpc.client.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.client.discovery.ServiceDiscovery;
+import cn.xpleaf.rpc.client.netty.MockRPCServer;
+import cn.xpleaf.rpc.client.netty.RPCClientPool;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * RPCProxy异步调用的测试：返回CompletableFuture的方法立即返回，异步代理对象通过RPCContext获取结果
+ *
+ * @author yeyonghao
+ */
+public class RPCProxyAsyncTest {
+
+    public interface EchoService {
+
+        String echo(String value);
+
+        int length(String value);
+
+        CompletableFuture<String> echoAsync(String value);
+    }
+
+    // 服务端收到请求后等待该信号再写回响应，用来确认调用在响应到达之前就已经返回
+    private CountDownLatch release = new CountDownLatch(1);
+    private MockRPCServer server;
+    private RPCClientPool pool;
+    private RPCProxy rpcProxy;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockRPCServer(new MockRPCServer.RequestHandler() {
+
+            @Override
+            public void handle(final ChannelHandlerContext ctx, final RPCRequest request) {
+                // 不能阻塞I/O线程，在其它线程中等待信号
+                new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        String value = (String) request.getParameters()[0];
+                        Object result = "length".equals(request.getMethodName()) ? (Object) value.length() : value;
+                        ctx.writeAndFlush(MockRPCServer.responseOf(request, result));
+                    }
+                }).start();
+            }
+        });
+        final int port = server.start();
+        pool = new RPCClientPool(1);
+        rpcProxy = new RPCProxy(new ServiceDiscovery("127.0.0.1:2181") {
+
+            @Override
+            public List<Provider> getProviders(String interfaceName) {
+                return Collections.singletonList(new Provider("127.0.0.1", port, Provider.DEFAULT_WEIGHT));
+            }
+        }, pool);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        pool.close();
+        server.close();
+    }
+
+    @Test
+    public void futureReturningMethodReturnsBeforeResponse() throws Exception {
+        EchoService service = rpcProxy.getProxy(EchoService.class);
+
+        CompletableFuture<String> future = service.echoAsync("hello");
+        assertFalse(future.isDone());
+
+        release.countDown();
+        assertEquals("hello", future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void asyncProxyExposesFutureThroughContext() throws Exception {
+        EchoService service = rpcProxy.getAsyncProxy(EchoService.class);
+
+        assertNull(service.echo("hello"));
+        CompletableFuture<String> echo = RPCContext.getFuture();
+        // 基本类型的返回值为默认值
+        assertEquals(0, service.length("hello"));
+        CompletableFuture<Integer> length = RPCContext.getFuture();
+        assertFalse(echo.isDone());
+
+        release.countDown();
+        assertEquals("hello", echo.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(5), length.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void syncProxyWaitsForResult() throws Exception {
+        EchoService service = rpcProxy.getProxy(EchoService.class);
+
+        release.countDown();
+        assertEquals("hello", service.echo("hello"));
+    }
+}
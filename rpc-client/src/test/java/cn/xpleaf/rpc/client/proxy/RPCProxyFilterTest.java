@@ -0,0 +1,134 @@
+package cn.xpleaf.rpc.client.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.client.discovery.ServiceDiscovery;
+import cn.xpleaf.rpc.client.filter.ClientFilter;
+import cn.xpleaf.rpc.client.filter.ClientFilterChain;
+import cn.xpleaf.rpc.client.netty.MockRPCServer;
+import cn.xpleaf.rpc.client.netty.RPCClientPool;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * RPCProxy过滤器的测试：远程调用按配置的顺序经过过滤器，过滤器可以修改结果或者不发出请求直接返回，
+ * 重新设置过滤器后已经调用过的方法也使用新的过滤器
+ *
+ * @author yeyonghao
+ */
+public class RPCProxyFilterTest {
+
+    public interface EchoService {
+
+        String echo(String value);
+
+        CompletableFuture<String> echoAsync(String value);
+    }
+
+    // 服务端收到的请求数
+    private final AtomicInteger requests = new AtomicInteger();
+    // 过滤器看到的调用
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private MockRPCServer server;
+    private RPCClientPool pool;
+    private RPCProxy rpcProxy;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockRPCServer(new MockRPCServer.RequestHandler() {
+
+            @Override
+            public void handle(ChannelHandlerContext ctx, RPCRequest request) {
+                requests.incrementAndGet();
+                ctx.writeAndFlush(MockRPCServer.responseOf(request, request.getParameters()[0]));
+            }
+        });
+        final int port = server.start();
+        pool = new RPCClientPool(1);
+        rpcProxy = new RPCProxy(new ServiceDiscovery("127.0.0.1:2181") {
+
+            @Override
+            public List<Provider> getProviders(String interfaceName) {
+                return Collections.singletonList(new Provider("127.0.0.1", port, Provider.DEFAULT_WEIGHT));
+            }
+        }, pool);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        server.close();
+    }
+
+    @Test
+    public void filtersWrapRemoteInvocationInOrder() throws Exception {
+        rpcProxy.setFilters(Arrays.asList(suffix("a"), suffix("b")));
+        EchoService service = rpcProxy.getProxy(EchoService.class);
+
+        // 排在前面的过滤器包在外层，最后处理结果
+        assertEquals("hello-b-a", service.echo("hello"));
+        assertEquals("world-b-a", service.echoAsync("world").get());
+        assertEquals(Arrays.asList("a echo", "b echo", "a echoAsync", "b echoAsync"), events);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void filterCanAnswerWithoutRemoteCall() {
+        rpcProxy.setFilters(Collections.<ClientFilter>singletonList(new ClientFilter() {
+
+            @Override
+            public CompletableFuture<Object> invoke(RPCRequest request, ClientFilterChain chain) {
+                return CompletableFuture.<Object>completedFuture("local");
+            }
+        }));
+        EchoService service = rpcProxy.getProxy(EchoService.class);
+
+        assertEquals("local", service.echo("hello"));
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    public void filtersCanBeReplaced() {
+        EchoService service = rpcProxy.getProxy(EchoService.class);
+        assertEquals("hello", service.echo("hello"));
+        assertTrue(events.isEmpty());
+
+        rpcProxy.setFilters(Collections.singletonList(suffix("a")));
+        assertEquals("hello-a", service.echo("hello"));
+        assertEquals(Collections.singletonList("a echo"), events);
+    }
+
+    /**
+     * 记录调用的方法，并在结果后面追加名称的过滤器
+     */
+    private ClientFilter suffix(final String name) {
+        return new ClientFilter() {
+
+            @Override
+            public CompletableFuture<Object> invoke(RPCRequest request, ClientFilterChain chain) {
+                events.add(name + " " + request.getMethodName());
+                return chain.proceed(request).thenApply(new Function<Object, Object>() {
+
+                    @Override
+                    public Object apply(Object result) {
+                        return result + "-" + name;
+                    }
+                });
+            }
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package cn.xpleaf.rpc.client.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.client.discovery.ServiceDiscovery;
+import cn.xpleaf.rpc.client.loadbalance.LoadBalancer;
+import cn.xpleaf.rpc.client.netty.MockRPCServer;
+import cn.xpleaf.rpc.client.netty.RPCClientPool;
+import cn.xpleaf.rpc.common.annotation.RPCMethod;
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * RPCProxy调用截止时间和对冲请求的测试：超过方法的超时时间后调用以RPCException失败，
+ * 开启了对冲请求的方法耗时超过p95后，由另一个服务提供者返回结果
+ *
+ * @author yeyonghao
+ */
+public class RPCProxyHedgeTest {
+
+    public interface HedgeService {
+
+        @RPCMethod(timeout = 200)
+        String echo(String value);
+
+        @RPCMethod(hedge = true)
+        String hedged(String value);
+    }
+
+    // 慢服务端是否暂缓回写响应
+    private volatile boolean slow = false;
+    // 慢服务端暂缓的响应在收到该信号后再写回
+    private CountDownLatch release = new CountDownLatch(1);
+    // 快服务端收到的请求数
+    private AtomicInteger fastRequests = new AtomicInteger();
+    private MockRPCServer slowServer;
+    private MockRPCServer fastServer;
+    private RPCClientPool pool;
+    private RPCProxy rpcProxy;
+
+    @Before
+    public void setUp() throws Exception {
+        slowServer = new MockRPCServer(new MockRPCServer.RequestHandler() {
+
+            @Override
+            public void handle(final ChannelHandlerContext ctx, final RPCRequest request) {
+                if (!slow) {
+                    ctx.writeAndFlush(MockRPCServer.responseOf(request, "slow-" + request.getParameters()[0]));
+                    return;
+                }
+                // 不能阻塞I/O线程，在其它线程中等待信号
+                new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        ctx.writeAndFlush(MockRPCServer.responseOf(request, "slow-" + request.getParameters()[0]));
+                    }
+                }).start();
+            }
+        });
+        fastServer = new MockRPCServer(new MockRPCServer.RequestHandler() {
+
+            @Override
+            public void handle(ChannelHandlerContext ctx, RPCRequest request) {
+                fastRequests.incrementAndGet();
+                ctx.writeAndFlush(MockRPCServer.responseOf(request, "fast-" + request.getParameters()[0]));
+            }
+        });
+        final List<Provider> providers = Arrays.asList(
+                new Provider("127.0.0.1", slowServer.start(), Provider.DEFAULT_WEIGHT),
+                new Provider("127.0.0.1", fastServer.start(), Provider.DEFAULT_WEIGHT));
+        pool = new RPCClientPool(1);
+        rpcProxy = new RPCProxy(new ServiceDiscovery("127.0.0.1:2181") {
+
+            @Override
+            public List<Provider> getProviders(String interfaceName) {
+                return providers;
+            }
+        }, pool);
+        // 总是先选择列表中的第一个服务提供者，即慢服务端
+        rpcProxy.setLoadBalancer(new LoadBalancer() {
+
+            @Override
+            public Provider select(List<Provider> providers, RPCRequest request) {
+                return providers.get(0);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        pool.close();
+        slowServer.close();
+        fastServer.close();
+    }
+
+    @Test
+    public void callFailsAfterMethodTimeout() {
+        HedgeService service = rpcProxy.getProxy(HedgeService.class);
+        slow = true;
+
+        long start = System.nanoTime();
+        try {
+            service.echo("hello");
+            fail("超过截止时间的调用应该失败");
+        } catch (RPCException e) {
+            assertEquals(RPCException.TIMEOUT, e.getCode());
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    public void slowCallIsHedgedToAnotherProvider() throws Exception {
+        HedgeService service = rpcProxy.getProxy(HedgeService.class);
+        String signature = RPCProtocol.signatureOf(HedgeService.class.getName(), "hedged",
+                new Class<?>[]{String.class});
+        HedgeDelay hedgeDelay = HedgeDelay.get(signature, pool.getTimer());
+        // 积累足够的样本，直到定时器计算出p95
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (hedgeDelay.getDelayNanos() == 0 && System.nanoTime() < deadline) {
+            assertEquals("slow-warmup", service.hedged("warmup"));
+        }
+        assertTrue(hedgeDelay.getDelayNanos() > 0);
+        assertEquals(0, fastRequests.get());
+
+        // 慢服务端不再回写响应，超过p95后对冲请求由快服务端返回结果
+        slow = true;
+        assertEquals("fast-hello", service.hedged("hello"));
+        assertEquals(1, fastRequests.get());
+    }
+}
@@ -0,0 +1,31 @@
+package cn.xpleaf.rpc.common.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * RPC方法注解，标注在服务接口的方法上，用于设置该方法的调用参数，没有标注的方法使用RPCProxy的默认设置
+ *
+ * @author yeyonghao
+ */
+@Target(value = ElementType.METHOD)     // 标注在服务接口的方法上
+@Retention(RetentionPolicy.RUNTIME)    // 客户端在运行期间通过反射读取
+public @interface RPCMethod {
+
+    // 调用超时时间（毫秒），超时后调用以RPCException失败，同时发送给服务端，已经超时的请求服务端不再执行，为0时使用RPCProxy的默认超时时间
+    long timeout() default 0;
+
+    // 是否开启对冲请求，调用耗时超过该方法的p95后，向另一个服务提供者再发送一次请求，以先到的响应为准，只能用于幂等的方法
+    boolean hedge() default false;
+
+    // 集群容错策略，failover、failfast或者forking，为空时使用RPCProxy的默认策略（failfast），只有幂等的方法可以使用failover
+    String cluster() default "";
+
+    // 结果缓存的有效期（毫秒），大于0时在客户端缓存调用结果，参数值相同的调用直接返回缓存的结果，只能用于幂等的方法
+    long cacheTtl() default 0;
+
+    // 结果缓存的最大容量，容量满时淘汰最久没有访问的结果，只在cacheTtl大于0时有效
+    int cacheSize() default 1000;
+}
@@ -0,0 +1,50 @@
+package cn.xpleaf.rpc.common.exception;
+
+/**
+ * RPC调用异常，code用于区分异常的类型，服务端会将code写入RPCResponse的status中返回给客户端
+ *
+ * @author yeyonghao
+ */
+public class RPCException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    // 未知异常
+    public static final byte UNKNOWN = 1;
+    // 服务方法执行时抛出了异常
+    public static final byte SERVICE_ERROR = 2;
+    // 服务端业务线程池已满，请求被拒绝
+    public static final byte SERVER_BUSY = 3;
+    // 服务的并发数超过了服务端自适应估算的限制，请求被拒绝
+    public static final byte OVERLOADED = 4;
+    // 调用超时，客户端没有在超时时间内收到响应，或者请求在服务端排队时已经超时
+    public static final byte TIMEOUT = 5;
+    // 没有可用的服务提供者，只在客户端产生
+    public static final byte NO_PROVIDER = 6;
+    // 服务端正在关闭，不再接收新的请求，请求被拒绝
+    public static final byte SHUTTING_DOWN = 7;
+
+    // 异常类型
+    private final byte code;
+
+    public RPCException(byte code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    public RPCException(byte code, String message, Throwable cause) {
+        super(message, cause);
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * 服务端是否拒绝了该请求（请求没有被执行），被拒绝的请求可以安全地发往其它服务提供者重试
+     */
+    public boolean isRejected() {
+        return code == SERVER_BUSY || code == OVERLOADED || code == SHUTTING_DOWN;
+    }
+}
@@ -0,0 +1,18 @@
+package cn.xpleaf.rpc.common.local;
+
+/**
+ * 本地服务某一个方法的调用器，由服务端在启动时预先构建，同一个JVM中的消费者直接调用，不再通过反射
+ *
+ * @author yeyonghao
+ */
+public interface LocalInvoker {
+
+    /**
+     * 调用服务方法
+     *
+     * @param parameters 方法的参数值，没有参数时可以为null
+     * @return 方法的返回值，void方法返回null
+     * @throws Throwable 服务方法抛出的异常，原样抛出，不会被包装为InvocationTargetException
+     */
+    Object invoke(Object[] parameters) throws Throwable;
+}
@@ -0,0 +1,23 @@
+package cn.xpleaf.rpc.common.local;
+
+/**
+ * 本地发布的服务，登记在LocalServices中，提供服务接口每一个方法的调用器
+ *
+ * @author yeyonghao
+ */
+public interface LocalService {
+
+    /**
+     * 根据方法名和参数类型查找方法调用器
+     *
+     * @param methodName     方法名
+     * @param parameterTypes 参数类型
+     * @return 对应的方法调用器，不存在则返回null
+     */
+    LocalInvoker getMethodInvoker(String methodName, Class<?>[] parameterTypes);
+
+    /**
+     * 获取服务实现类对象
+     */
+    Object getServiceBean();
+}
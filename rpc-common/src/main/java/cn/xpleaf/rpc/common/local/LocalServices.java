@@ -0,0 +1,53 @@
+package cn.xpleaf.rpc.common.local;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地服务表，保存当前JVM中的RPCServer发布的服务
+ *
+ * 服务提供者和消费者部署在同一个JVM（同一个spring容器）中并开启了本地调用时，RPCProxy先在这里查找服务，
+ * 找到时通过服务端预先构建的方法调用器直接调用，不再经过服务发现、序列化和网络，见RPCProxy.setLocalInvocation
+ *
+ * rpc-client不依赖rpc-server，所以该表放在rpc-common中，由RPCServer在发布服务时登记
+ *
+ * @author yeyonghao
+ */
+public final class LocalServices {
+
+    // 本地发布的服务，key为接口名称
+    private static final Map<String, LocalService> SERVICES = new ConcurrentHashMap<>();
+
+    private LocalServices() {
+    }
+
+    /**
+     * 登记本地发布的服务
+     *
+     * @param interfaceName 接口名称
+     * @param service       本地发布的服务
+     */
+    public static void export(String interfaceName, LocalService service) {
+        SERVICES.put(interfaceName, service);
+    }
+
+    /**
+     * 取消登记本地发布的服务，服务端关闭时调用
+     *
+     * @param interfaceName 接口名称
+     * @param service       本地发布的服务，只有登记的是同一个对象时才取消登记
+     */
+    public static void unexport(String interfaceName, LocalService service) {
+        SERVICES.remove(interfaceName, service);
+    }
+
+    /**
+     * 获取本地发布的服务
+     *
+     * @param interfaceName 接口名称
+     * @return 本地发布的服务，没有在本地发布时返回null
+     */
+    public static LocalService get(String interfaceName) {
+        return SERVICES.get(interfaceName);
+    }
+}
@@ -0,0 +1,142 @@
+package cn.xpleaf.rpc.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的直方图，用于统计调用耗时和消息大小的分布，并计算p50、p99、p999等分位数
+ *
+ * 参考HdrHistogram的对数-线性分桶方式：小于32的值每个值一个桶，之后每个2的幂次区间再均分为32个桶，
+ * 所以任意值的相对误差都不超过1/32（约3%），而桶的总数是固定的，覆盖了long的全部取值范围，
+ * 记录一个值只需要计算桶的下标，再对该桶执行一次原子自增，不需要加锁，也不会分配内存
+ *
+ * 读取分位数时需要遍历所有的桶，开销较大，但只在拉取统计数据或者定时任务中才会执行，不应该在每次调用中读取
+ *
+ * @author yeyonghao
+ */
+public class Histogram {
+
+    // 每个2的幂次区间内桶个数的位数
+    private static final int SUB_BUCKET_BITS = 5;
+    // 每个2的幂次区间内桶的个数
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 桶的总数，覆盖0到Long.MAX_VALUE
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    // 每个桶中记录的值的个数
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    // 记录的值的个数
+    private final LongAdder count = new LongAdder();
+    // 记录的值的总和
+    private final LongAdder sum = new LongAdder();
+    // 记录的最大值
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一个值，负数按0记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 获取分位数，返回的是该分位数所在桶的上界
+     *
+     * @param quantile 分位，如0.99
+     * @return 分位数，没有记录任何值时返回0
+     */
+    public long getValueAtQuantile(double quantile) {
+        return Math.min(valueAtQuantile(getCounts(), quantile), getMax());
+    }
+
+    /**
+     * 获取每个桶中记录的值的个数的快照，两次快照相减即为这段时间内的分布，
+     * 可以用于计算最近一段时间的分位数，而不是从启动以来的分位数
+     */
+    public long[] getCounts() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 根据每个桶中的个数计算分位数，返回的是该分位数所在桶的上界
+     *
+     * @param counts   每个桶中的个数，长度与getCounts返回的数组相同
+     * @param quantile 分位，如0.99
+     * @return 分位数，个数都为0时返回0
+     */
+    public static long valueAtQuantile(long[] counts, double quantile) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(counts.length - 1);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * 计算值所在桶的下标
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 计算桶的上界，即该桶能够记录的最大值
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,180 @@
+package cn.xpleaf.rpc.common.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 某一个服务方法在客户端或者服务端的调用统计，包括调用次数、失败次数、正在执行的调用数、耗时分布和消息大小分布
+ *
+ * 所有的计数都使用LongAdder和无锁的Histogram记录，多个线程同时记录时不会互相阻塞
+ *
+ * @author yeyonghao
+ */
+public class MethodMetrics implements MethodMetricsMBean {
+
+    // 服务接口名称
+    private final String service;
+    // 方法名称和参数类型，如getUser(java.lang.String)
+    private final String method;
+    // 调用次数
+    private final LongAdder calls = new LongAdder();
+    // 失败次数
+    private final LongAdder errors = new LongAdder();
+    // 正在执行的调用数
+    private final LongAdder inFlight = new LongAdder();
+    // 调用耗时（纳秒）的分布
+    private final Histogram latency = new Histogram();
+    // 请求消息体大小（字节）的分布
+    private final Histogram requestSize = new Histogram();
+    // 响应消息体大小（字节）的分布
+    private final Histogram responseSize = new Histogram();
+
+    /**
+     * 构造方法
+     *
+     * @param service 服务接口名称
+     * @param method  方法名称和参数类型
+     */
+    public MethodMetrics(String service, String method) {
+        this.service = service;
+        this.method = method;
+    }
+
+    /**
+     * 调用开始
+     */
+    public void beginCall() {
+        inFlight.increment();
+    }
+
+    /**
+     * 调用结束
+     *
+     * @param elapsedNanos 调用耗时（纳秒）
+     * @param error        调用是否失败
+     */
+    public void endCall(long elapsedNanos, boolean error) {
+        inFlight.decrement();
+        calls.increment();
+        if (error) {
+            errors.increment();
+        }
+        latency.record(elapsedNanos);
+    }
+
+    /**
+     * 记录请求消息体的大小
+     */
+    public void recordRequestSize(int size) {
+        requestSize.record(size);
+    }
+
+    /**
+     * 记录响应消息体的大小
+     */
+    public void recordResponseSize(int size) {
+        responseSize.record(size);
+    }
+
+    @Override
+    public String getService() {
+        return service;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        return latency.getMean() / 1000;
+    }
+
+    @Override
+    public long getP50LatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getValueAtQuantile(0.5));
+    }
+
+    @Override
+    public long getP99LatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getValueAtQuantile(0.99));
+    }
+
+    @Override
+    public long getP999LatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getValueAtQuantile(0.999));
+    }
+
+    @Override
+    public long getMaxLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getMax());
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return requestSize.getSum();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseSize.getSum();
+    }
+
+    @Override
+    public double getMeanRequestSize() {
+        return requestSize.getMean();
+    }
+
+    @Override
+    public double getMeanResponseSize() {
+        return responseSize.getMean();
+    }
+
+    @Override
+    public long getP99RequestSize() {
+        return requestSize.getValueAtQuantile(0.99);
+    }
+
+    @Override
+    public long getP99ResponseSize() {
+        return responseSize.getValueAtQuantile(0.99);
+    }
+
+    /**
+     * 调用耗时（纳秒）的分布，可以获取任意分位数
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public Histogram getRequestSize() {
+        return requestSize;
+    }
+
+    public Histogram getResponseSize() {
+        return responseSize;
+    }
+
+    @Override
+    public String toString() {
+        return service + "#" + method + "[calls=" + getCalls() + ", errors=" + getErrors() + ", inFlight="
+                + getInFlight() + ", p50=" + getP50LatencyMicros() + "us, p99=" + getP99LatencyMicros()
+                + "us, p999=" + getP999LatencyMicros() + "us]";
+    }
+}
@@ -0,0 +1,42 @@
+package cn.xpleaf.rpc.common.metrics;
+
+/**
+ * 方法调用统计的JMX接口，耗时的单位为微秒，消息大小的单位为字节
+ *
+ * @author yeyonghao
+ */
+public interface MethodMetricsMBean {
+
+    String getService();
+
+    String getMethod();
+
+    long getCalls();
+
+    long getErrors();
+
+    long getInFlight();
+
+    double getMeanLatencyMicros();
+
+    long getP50LatencyMicros();
+
+    long getP99LatencyMicros();
+
+    long getP999LatencyMicros();
+
+    long getMaxLatencyMicros();
+
+    long getRequestBytes();
+
+    long getResponseBytes();
+
+    double getMeanRequestSize();
+
+    double getMeanResponseSize();
+
+    long getP99RequestSize();
+
+    long getP99ResponseSize();
+
+}
@@ -0,0 +1,114 @@
+package cn.xpleaf.rpc.common.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * 客户端或者服务端所有服务方法的调用统计
+ *
+ * 统计数据可以通过两种方式获取：
+ * 1.拉取，通过RPCMetrics.client().getAll()或者RPCMetrics.server().getAll()获取所有方法的MethodMetrics
+ * 2.JMX，每个方法的MethodMetrics第一次被使用时会注册为MBean，ObjectName如
+ *   cn.xpleaf.rpc:type=server,service=cn.xpleaf.service.UserService,method="getUser(java.lang.String)"，
+ *   可以直接通过jconsole、VisualVM等工具查看
+ *
+ * @author yeyonghao
+ */
+public class RPCMetrics {
+
+    // JMX中的域名
+    public static final String DOMAIN = "cn.xpleaf.rpc";
+
+    private static final RPCMetrics CLIENT = new RPCMetrics("client");
+    private static final RPCMetrics SERVER = new RPCMetrics("server");
+
+    // client或者server
+    private final String type;
+    // 所有方法的调用统计，key为方法签名，见RPCProtocol.signatureOf
+    private final Map<String, MethodMetrics> metricsMap = new ConcurrentHashMap<>();
+
+    private RPCMetrics(String type) {
+        this.type = type;
+    }
+
+    /**
+     * 客户端的调用统计
+     */
+    public static RPCMetrics client() {
+        return CLIENT;
+    }
+
+    /**
+     * 服务端的调用统计
+     */
+    public static RPCMetrics server() {
+        return SERVER;
+    }
+
+    /**
+     * 获取方法的调用统计，不存在则创建并注册到JMX
+     *
+     * @param signature 方法签名，见RPCProtocol.signatureOf
+     * @return 方法的调用统计
+     */
+    public MethodMetrics get(String signature) {
+        MethodMetrics metrics = metricsMap.get(signature);
+        if (metrics != null) {
+            return metrics;
+        }
+        synchronized (this) {
+            metrics = metricsMap.get(signature);
+            if (metrics == null) {
+                int index = signature.indexOf('#');
+                metrics = new MethodMetrics(signature.substring(0, index), signature.substring(index + 1));
+                register(metrics);
+                metricsMap.put(signature, metrics);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * 获取所有方法的调用统计，key为方法签名
+     */
+    public Map<String, MethodMetrics> getAll() {
+        return Collections.unmodifiableMap(metricsMap);
+    }
+
+    /**
+     * 注册到JMX，注册失败不影响统计
+     */
+    private void register(MethodMetrics metrics) {
+        registerMBean(metrics, type, metrics.getService(), metrics.getMethod());
+    }
+
+    /**
+     * 将服务方法相关的MBean注册到JMX，ObjectName如cn.xpleaf.rpc:type=client,service=..,method="..."，
+     * 同名的MBean已经存在时不重复注册，注册失败只记录日志
+     *
+     * @param mbean   MBean对象
+     * @param type    MBean的类型，如client、server
+     * @param service 接口名称
+     * @param method  方法签名（不含接口名称）
+     */
+    public static void registerMBean(Object mbean, String type, String service, String method) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=" + type + ",service=" + service + ",method="
+                    + ObjectName.quote(method));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mbean, name);
+            }
+        } catch (Exception e) {
+            LoggerFactory.getLogger(RPCMetrics.class).warn("注册方法[{}#{}]的{}到JMX失败: {}", service, method, type,
+                    e.getMessage());
+        }
+    }
+}
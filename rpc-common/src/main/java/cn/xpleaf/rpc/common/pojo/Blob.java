@@ -0,0 +1,180 @@
+package cn.xpleaf.rpc.common.pojo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
+
+/**
+ * 二进制附件，用于在RPC调用中传输大块的二进制数据或者文件内容
+ *
+ * 作为方法参数或者返回值直接传输byte[]时，数据会先被序列化器复制到消息体中，再被复制到发送的ByteBuf中，
+ * 接收方反序列化时又会复制一次。使用Blob时，消息体中只序列化附件的长度，数据本身紧跟在消息帧之后，
+ * 作为原始的附件帧（见RPCProtocol.TYPE_ATTACHMENT）发送，不经过序列化器，也不会被压缩：
+ * 1.文件通过FileRegion发送，操作系统支持时使用sendfile，文件内容不需要读入用户态内存
+ * 2.ByteBuffer和byte[]被包装为ByteBuf后以切片的方式发送，不复制数据
+ *
+ * 接收方收到的Blob直接引用解码器切分出来的ByteBuf，通过asByteBuffer获取只读的ByteBuffer，或者通过openStream以流的方式读取，
+ * 都不会复制数据。接收到的Blob占用的是池化的内存，使用完毕后需要调用close释放；
+ * 服务端会在服务方法返回后自动释放请求中的Blob，服务方法需要在返回之后继续使用数据时，应当先复制一份，
+ * 服务方法返回的Blob也由服务端在写出之后释放；客户端作为参数发送的Blob可能会被重试发送多次，由调用方在调用结束后自行释放
+ *
+ * Blob只能作为方法的参数（不能嵌套在其它对象中）、返回值或者流式调用的元素，单个Blob的长度不能超过2GB
+ *
+ * @author yeyonghao
+ */
+public final class Blob implements Serializable, Closeable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 附件的长度，是唯一被序列化到消息体中的字段
+    private int length;
+    // 发送方的文件，文件附件时不为null
+    private transient File file;
+    // 附件的数据，发送方的ByteBuffer、byte[]包装而来，或者接收方从附件帧中切分出来
+    private transient ByteBuf content;
+    // 是否已经释放
+    private transient boolean released;
+
+    private Blob() {
+    }
+
+    private Blob(File file, ByteBuf content, int length) {
+        this.file = file;
+        this.content = content;
+        this.length = length;
+    }
+
+    /**
+     * 以文件的全部内容作为附件，发送时使用FileRegion
+     *
+     * @param file 文件
+     * @return 文件附件
+     * @throws IllegalArgumentException 文件不存在或者超过2GB
+     */
+    public static Blob of(File file) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("文件不存在: " + file);
+        }
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("附件的长度不能超过2GB: " + file);
+        }
+        return new Blob(file, null, (int) length);
+    }
+
+    /**
+     * 以ByteBuffer中剩余的数据作为附件，不复制数据，发送完成之前不能修改ByteBuffer的内容
+     */
+    public static Blob of(ByteBuffer buffer) {
+        return of(Unpooled.wrappedBuffer(buffer.slice()));
+    }
+
+    /**
+     * 以字节数组作为附件，不复制数据，发送完成之前不能修改数组的内容
+     */
+    public static Blob of(byte[] data) {
+        return of(Unpooled.wrappedBuffer(data));
+    }
+
+    /**
+     * 以ByteBuf中可读的数据作为附件，Blob接管ByteBuf的所有权，close时释放
+     */
+    public static Blob of(ByteBuf buf) {
+        return new Blob(null, buf, buf.readableBytes());
+    }
+
+    /**
+     * 附件的长度（字节）
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 以只读的ByteBuffer获取附件的数据，文件附件会以只读的方式映射到内存中，都不复制数据，
+     * 只有接收方的附件被拆分为多个附件帧（超过RPCProtocol.ATTACHMENT_CHUNK_SIZE）时，才需要合并为一个ByteBuffer
+     *
+     * @return 只读的ByteBuffer
+     * @throws IOException 映射文件失败
+     */
+    public ByteBuffer asByteBuffer() throws IOException {
+        if (file != null) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            }
+        }
+        return checkContent().nioBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * 以流的方式读取附件的数据，不复制数据，可以多次调用，每次返回一个从头开始读取的新的流
+     *
+     * @return 输入流
+     * @throws IOException 打开文件失败
+     */
+    public InputStream openStream() throws IOException {
+        if (file != null) {
+            return new FileInputStream(file);
+        }
+        return new ByteBufInputStream(checkContent().duplicate());
+    }
+
+    /**
+     * 创建附件中指定部分的发送载体，文件附件为FileRegion，其余为ByteBuf的切片，供RPCEncoder使用
+     *
+     * @param offset 起始位置
+     * @param count  长度
+     * @return 可以直接写入Channel的FileRegion或者ByteBuf，写出后由Netty释放
+     */
+    public Object newPayload(int offset, int count) {
+        if (file != null) {
+            return new DefaultFileRegion(file, offset, count);
+        }
+        ByteBuf buf = checkContent();
+        return buf.retainedSlice(buf.readerIndex() + offset, count);
+    }
+
+    /**
+     * 设置接收到的附件数据，供RPCDecoder使用
+     */
+    public void setContent(ByteBuf content) {
+        this.content = content;
+    }
+
+    /**
+     * 释放附件的数据，可以重复调用
+     */
+    @Override
+    public void close() {
+        if (released) {
+            return;
+        }
+        released = true;
+        if (content != null) {
+            content.release();
+        }
+    }
+
+    private ByteBuf checkContent() {
+        if (released || content == null) {
+            throw new IllegalStateException("附件的数据已经被释放或者还没有接收完毕");
+        }
+        return content;
+    }
+
+    @Override
+    public String toString() {
+        return "Blob[" + (file != null ? file + ", " : "") + "length=" + length + "]";
+    }
+}
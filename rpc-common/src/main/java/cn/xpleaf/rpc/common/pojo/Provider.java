@@ -0,0 +1,89 @@
+package cn.xpleaf.rpc.common.pojo;
+
+/**
+ * 服务提供者信息，即注册到zookeeper上的服务提供者节点数据解析之后的结果
+ *
+ * 节点数据的格式为 host:port 或者 host:port?weight=100，weight为负载均衡时使用的权重，没有指定时为默认权重，
+ * 服务发现时只在服务提供者列表发生变化时解析一次，调用时直接使用解析好的host和port，不需要每次都解析地址
+ *
+ * @author yeyonghao
+ */
+public class Provider {
+
+    // 默认权重
+    public static final int DEFAULT_WEIGHT = 100;
+
+    // 服务提供者的地址，格式为 host:port
+    private final String address;
+    // 服务提供者的主机地址
+    private final String host;
+    // 服务提供者的端口号
+    private final int port;
+    // 负载均衡的权重
+    private final int weight;
+
+    public Provider(String host, int port, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("服务提供者的权重必须大于0: " + weight);
+        }
+        this.address = host + ":" + port;
+        this.host = host;
+        this.port = port;
+        this.weight = weight;
+    }
+
+    /**
+     * 解析服务提供者节点数据
+     *
+     * @param data 节点数据，格式为 host:port 或者 host:port?weight=100
+     * @return 服务提供者信息
+     * @throws IllegalArgumentException 数据格式不正确时抛出
+     */
+    public static Provider parse(String data) {
+        String address = data;
+        int weight = DEFAULT_WEIGHT;
+        int queryIndex = data.indexOf('?');
+        if (queryIndex >= 0) {
+            address = data.substring(0, queryIndex);
+            for (String param : data.substring(queryIndex + 1).split("&")) {
+                if (param.startsWith("weight=")) {
+                    weight = Integer.parseInt(param.substring("weight=".length()));
+                }
+            }
+        }
+        int portIndex = address.lastIndexOf(':');
+        if (portIndex <= 0) {
+            throw new IllegalArgumentException("服务提供者地址格式不正确: " + data);
+        }
+        return new Provider(address.substring(0, portIndex), Integer.parseInt(address.substring(portIndex + 1)),
+                weight);
+    }
+
+    /**
+     * 转换为注册到zookeeper上的节点数据
+     */
+    public String toData() {
+        return weight == DEFAULT_WEIGHT ? address : address + "?weight=" + weight;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return toData();
+    }
+}
@@ -0,0 +1,51 @@
+package cn.xpleaf.rpc.common.pojo;
+
+import java.io.Serializable;
+
+/**
+ * 握手消息，连接建立后由客户端发送给服务端，用于协商方法编号和压缩算法
+ *
+ * 服务端回复的握手消息中携带了其所有服务方法的签名（见RPCProtocol.signatureOf），
+ * 签名在数组中的下标加1即为该方法的编号，之后客户端只需要在请求中携带方法编号，服务端直接根据编号从数组中找到方法调用器
+ *
+ * 客户端发送的握手消息中按优先顺序携带了其希望使用的压缩算法，服务端从中选择第一个自己支持的压缩算法回复给客户端，
+ * 没有共同支持的压缩算法时双方都不压缩
+ *
+ * @author yeyonghao
+ */
+public class RPCHandshake implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 服务方法的签名，下标加1为方法编号
+    private String[] methods;
+    // 客户端希望使用的压缩算法名称，按优先顺序排列
+    private String[] compressors;
+    // 服务端选择的压缩算法名称，null表示不压缩
+    private String compressor;
+
+    public String[] getMethods() {
+        return methods;
+    }
+
+    public void setMethods(String[] methods) {
+        this.methods = methods;
+    }
+
+    public String[] getCompressors() {
+        return compressors;
+    }
+
+    public void setCompressors(String[] compressors) {
+        this.compressors = compressors;
+    }
+
+    public String getCompressor() {
+        return compressor;
+    }
+
+    public void setCompressor(String compressor) {
+        this.compressor = compressor;
+    }
+
+}
@@ -1,15 +1,44 @@
 package cn.xpleaf.rpc.common.pojo;
 
+import java.io.Serializable;
+
+import io.netty.util.Recycler;
+
 /**
  * RPCRequest是client向server端发送数据的传输载体，将需要进行传输的pojo对象统一封装到RPCRequest对象中，
  * 这样会为编解码工作带来很大的方便性和统一性，同时也可以携带其它信息， 对于后面对程序进行扩展会有非常大的帮助
  *
+ * 连接建立时客户端和服务端会通过RPCHandshake协商好每个方法的编号methodId，协商成功后，
+ * 请求只需要携带methodId，不再需要传输接口名称、方法名称和参数类型，它们通常比参数值本身还要大；
+ * methodId为0时表示没有协商，服务端仍然按照接口名称、方法名称和参数类型查找方法
+ *
+ * 流式调用（返回类型为Iterator的方法，见RPCProtocol.isStreamType）的请求携带初始信用credit，
+ * 即服务端在收到客户端补充的信用之前最多可以发送的元素数，普通调用的credit为0
+ *
+ * 客户端每次发送都会生成一个只在这条连接上使用的请求（见RPCClient.toMessage），这些请求通过newInstance从对象池中获取，
+ * 写出之后通过recycle回收，高QPS时不会因为每次调用都创建请求对象而增加GC的压力
+ *
  * @author yeyonghao
  */
-public class RPCRequest {
+public class RPCRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
-    // 请求的ID，为UUID
-    private String requestId;
+    // 请求对象池
+    private static final Recycler<RPCRequest> RECYCLER = new Recycler<RPCRequest>() {
+
+        @Override
+        protected RPCRequest newObject(Handle<RPCRequest> handle) {
+            return new RPCRequest(handle);
+        }
+    };
+
+    // 请求的ID，由每条连接上自增的计数器生成
+    private long requestId;
+    // 连接建立时协商好的方法编号，0表示没有协商
+    private int methodId;
+    // 调用的剩余超时时间（毫秒），0表示不超时，服务端据此丢弃已经超时的请求，使用相对时间是因为两端的时钟不一定同步
+    private int timeout;
     // 接口名称
     private String interfaceName;
     // 调用的方法名称
@@ -18,18 +47,79 @@ public class RPCRequest {
     private Class<?>[] parameterTypes;
     // 方法的参数值
     private Object[] parameters;
+    // 流式调用的初始信用，0表示不是流式调用
+    private int credit;
+    // 消息体使用的序列化器编号，写在消息头中而不是消息体中，所以声明为transient，0表示使用默认的序列化器
+    private transient byte serializer;
+    // 消息体序列化后的大小（字节），由编解码器设置，不参与序列化
+    private transient int size;
+    // 方法签名，客户端用于查找协商好的methodId，不参与序列化，见RPCProtocol.signatureOf
+    private transient String signature;
+    // 对象池的句柄，直接创建的对象为null，不参与序列化
+    private transient Recycler.Handle<RPCRequest> handle;
+
+    public RPCRequest() {
+    }
+
+    private RPCRequest(Recycler.Handle<RPCRequest> handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * 从对象池中获取请求对象，使用完毕后应当调用recycle回收
+     */
+    public static RPCRequest newInstance() {
+        return RECYCLER.get();
+    }
+
+    /**
+     * 清空所有字段并放回对象池，回收之后不能再使用该对象，直接创建的对象调用本方法没有任何效果
+     */
+    public void recycle() {
+        if (handle == null) {
+            return;
+        }
+        requestId = 0;
+        methodId = 0;
+        timeout = 0;
+        interfaceName = null;
+        methodName = null;
+        parameterTypes = null;
+        parameters = null;
+        credit = 0;
+        serializer = 0;
+        size = 0;
+        signature = null;
+        handle.recycle(this);
+    }
 
     /**
      * 上面几个数据就可以唯一地确定某一个类（接口）中的某一个具体的方法
      */
-    public String getRequestId() {
+    public long getRequestId() {
         return requestId;
     }
 
-    public void setRequestId(String requestId) {
+    public void setRequestId(long requestId) {
         this.requestId = requestId;
     }
 
+    public int getMethodId() {
+        return methodId;
+    }
+
+    public void setMethodId(int methodId) {
+        this.methodId = methodId;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
     public String getInterfaceName() {
         return interfaceName;
     }
@@ -62,4 +152,36 @@ public class RPCRequest {
         this.parameters = parameters;
     }
 
+    public int getCredit() {
+        return credit;
+    }
+
+    public void setCredit(int credit) {
+        this.credit = credit;
+    }
+
+    public byte getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(byte serializer) {
+        this.serializer = serializer;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+
 }
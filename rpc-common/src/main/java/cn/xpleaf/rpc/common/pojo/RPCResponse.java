@@ -1,35 +1,138 @@
 package cn.xpleaf.rpc.common.pojo;
 
+import java.io.Serializable;
+
+import cn.xpleaf.rpc.common.exception.RPCException;
+import io.netty.util.Recycler;
+
 /**
  * RPCResponse是server向client端发送数据的传输载体，将需要进行传输的pojo对象统一封装到RPCResponse对象中，
  * 这样会为编解码工作带来很大的方便性和统一性，同时也可以携带其它信息， 对于后面对程序进行扩展会有非常大的帮助
  *
+ * 调用失败时，传输的是状态码status和异常信息errorMessage，而不是异常对象本身：
+ * 异常对象的cause默认指向自身，protostuff序列化时会无限递归，并且客户端也不一定有服务端异常的类，
+ * 所以客户端通过getError()得到的是根据状态码和异常信息重新构建的RPCException
+ *
+ * 服务端回写的响应通过newInstance从对象池中获取，写出之后通过recycle回收，
+ * 客户端收到的响应会交给调用方，所以由反序列化器创建，不回收
+ *
  * @author yeyonghao
  */
-public class RPCResponse {
+public class RPCResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
-    private String requestId;
-    private Throwable error;
+    // 调用成功的状态码，其余状态码见RPCException
+    public static final byte OK = 0;
+
+    // 响应对象池
+    private static final Recycler<RPCResponse> RECYCLER = new Recycler<RPCResponse>() {
+
+        @Override
+        protected RPCResponse newObject(Handle<RPCResponse> handle) {
+            return new RPCResponse(handle);
+        }
+    };
+
+    private long requestId;
+    // 状态码，OK表示调用成功
+    private byte status = OK;
+    // 调用失败时的异常信息
+    private String errorMessage;
     private Object result;
+    // 调用失败时的异常对象，不参与序列化
+    private transient Throwable error;
+    // 消息体使用的序列化器编号，写在消息头中而不是消息体中，所以声明为transient，0表示使用默认的序列化器
+    private transient byte serializer;
+    // 消息体序列化后的大小（字节），由编解码器设置，不参与序列化
+    private transient int size;
+    // 对象池的句柄，直接创建的对象为null，不参与序列化
+    private transient Recycler.Handle<RPCResponse> handle;
+
+    public RPCResponse() {
+    }
+
+    private RPCResponse(Recycler.Handle<RPCResponse> handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * 从对象池中获取响应对象，写出之后应当调用recycle回收
+     */
+    public static RPCResponse newInstance() {
+        return RECYCLER.get();
+    }
+
+    /**
+     * 清空所有字段并放回对象池，回收之后不能再使用该对象，直接创建的对象调用本方法没有任何效果
+     */
+    public void recycle() {
+        if (handle == null) {
+            return;
+        }
+        requestId = 0;
+        status = OK;
+        errorMessage = null;
+        result = null;
+        error = null;
+        serializer = 0;
+        size = 0;
+        handle.recycle(this);
+    }
 
     public boolean isError() {
-        return error != null;
+        return status != OK;
+    }
+
+    /**
+     * 请求是否被服务端拒绝（没有被执行），被拒绝的请求可以安全地发往其它服务提供者重试
+     */
+    public boolean isRejected() {
+        Throwable error = getError();
+        return error instanceof RPCException && ((RPCException) error).isRejected();
     }
 
-    public String getRequestId() {
+    public long getRequestId() {
         return requestId;
     }
 
-    public void setRequestId(String requestId) {
+    public void setRequestId(long requestId) {
         this.requestId = requestId;
     }
 
+    public byte getStatus() {
+        return status;
+    }
+
+    public void setStatus(byte status) {
+        this.status = status;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * 获取调用失败时的异常，在客户端得到的是根据状态码和异常信息重新构建的RPCException
+     */
     public Throwable getError() {
+        if (error == null && isError()) {
+            error = new RPCException(status, errorMessage);
+        }
         return error;
     }
 
+    /**
+     * 设置调用失败时的异常，RPCException会保留其状态码，其余异常均视为服务方法执行时抛出的异常
+     */
     public void setError(Throwable error) {
         this.error = error;
+        this.status = error instanceof RPCException ? ((RPCException) error).getCode() : RPCException.SERVICE_ERROR;
+        this.errorMessage = error.toString();
     }
 
     public Object getResult() {
@@ -40,4 +143,20 @@ public class RPCResponse {
         this.result = result;
     }
 
+    public byte getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(byte serializer) {
+        this.serializer = serializer;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
 }
@@ -0,0 +1,56 @@
+package cn.xpleaf.rpc.common.pojo;
+
+import java.io.Serializable;
+
+/**
+ * 流式调用的信用消息，由客户端发送给服务端，用于基于信用的流量控制
+ *
+ * 客户端在请求中携带初始信用（即允许服务端发送的元素数，见RPCRequest.credit），服务端每发送一个元素消耗一个信用，
+ * 信用用完后暂停发送；客户端每消费掉一部分元素，就通过该消息把相应数量的信用补充给服务端，
+ * 所以一个很快的服务端也不会把一个很慢的客户端的内存撑满，两端缓冲的元素数最多为初始信用
+ *
+ * credit为CANCEL时表示客户端取消了该流，服务端停止发送并关闭服务方法返回的Iterator
+ *
+ * @author yeyonghao
+ */
+public class RPCStreamCredit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 取消流
+    public static final int CANCEL = -1;
+
+    // 流式调用请求的ID
+    private long requestId;
+    // 补充的信用，CANCEL表示取消流
+    private int credit;
+
+    public RPCStreamCredit() {
+    }
+
+    public RPCStreamCredit(long requestId, int credit) {
+        this.requestId = requestId;
+        this.credit = credit;
+    }
+
+    public boolean isCancel() {
+        return credit == CANCEL;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    public int getCredit() {
+        return credit;
+    }
+
+    public void setCredit(int credit) {
+        this.credit = credit;
+    }
+
+}
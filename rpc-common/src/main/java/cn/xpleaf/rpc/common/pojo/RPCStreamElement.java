@@ -0,0 +1,58 @@
+package cn.xpleaf.rpc.common.pojo;
+
+import java.io.Serializable;
+
+/**
+ * 流式调用的元素消息，由服务端发送给客户端，每个元素单独作为一个消息帧发送，通过requestId与发起调用的请求对应起来
+ *
+ * 服务方法返回的Iterator中的元素会被逐个取出并发送，两端都不需要在内存中保存完整的结果，
+ * 服务端发送的元素数量受客户端授予的信用（见RPCStreamCredit）限制，
+ * 所有元素发送完毕后，服务端再发送一个普通的RPCResponse表示流结束，流中途出现异常时则发送携带异常信息的RPCResponse
+ *
+ * @author yeyonghao
+ */
+public class RPCStreamElement implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // 流式调用请求的ID
+    private long requestId;
+    // 元素的值
+    private Object element;
+    // 消息体使用的序列化器编号，写在消息头中而不是消息体中，所以声明为transient，0表示使用默认的序列化器
+    private transient byte serializer;
+
+    public RPCStreamElement() {
+    }
+
+    public RPCStreamElement(long requestId, Object element, byte serializer) {
+        this.requestId = requestId;
+        this.element = element;
+        this.serializer = serializer;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    public Object getElement() {
+        return element;
+    }
+
+    public void setElement(Object element) {
+        this.element = element;
+    }
+
+    public byte getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(byte serializer) {
+        this.serializer = serializer;
+    }
+
+}
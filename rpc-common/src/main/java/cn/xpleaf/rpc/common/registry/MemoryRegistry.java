@@ -0,0 +1,91 @@
+package cn.xpleaf.rpc.common.registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+
+/**
+ * 进程内的注册中心，服务注册到静态map中，同一个命名空间下的MemoryRegistry对象共享注册的服务，
+ * 所以同一个进程中的服务端和客户端各自创建MemoryRegistry对象即可，测试和基准测试不需要启动zookeeper，
+ * 不同的测试使用不同的命名空间就可以互不影响
+ *
+ * @author yeyonghao
+ */
+public class MemoryRegistry implements Registry {
+
+    // 默认的命名空间
+    public static final String DEFAULT_NAMESPACE = "default";
+
+    // 各个命名空间注册的服务，key为命名空间，value的key为接口名称，value为不可变的服务提供者列表快照
+    private static final Map<String, Map<String, List<Provider>>> NAMESPACES = new ConcurrentHashMap<>();
+
+    // 本对象所在命名空间注册的服务
+    private final Map<String, List<Provider>> providers;
+    // 本对象注册的服务提供者，key为接口名称
+    private final Map<String, Provider> registered = new ConcurrentHashMap<>();
+
+    public MemoryRegistry() {
+        this(DEFAULT_NAMESPACE);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param namespace 命名空间
+     */
+    public MemoryRegistry(String namespace) {
+        Map<String, List<Provider>> providers = NAMESPACES.get(namespace);
+        if (providers == null) {
+            NAMESPACES.putIfAbsent(namespace, new ConcurrentHashMap<String, List<Provider>>());
+            providers = NAMESPACES.get(namespace);
+        }
+        this.providers = providers;
+    }
+
+    @Override
+    public void register(String serverAddress, Collection<String> interfaceNames, int weight) {
+        Provider address = Provider.parse(serverAddress);
+        Provider provider = new Provider(address.getHost(), address.getPort(), weight);
+        synchronized (providers) {
+            for (String interfaceName : interfaceNames) {
+                List<Provider> list = new ArrayList<>(getProviders(interfaceName));
+                list.add(provider);
+                // 注册新的服务提供者时整体替换
+                providers.put(interfaceName, Collections.unmodifiableList(list));
+                registered.put(interfaceName, provider);
+            }
+        }
+    }
+
+    @Override
+    public void unregister() {
+        synchronized (providers) {
+            for (Map.Entry<String, Provider> entry : registered.entrySet()) {
+                List<Provider> list = new ArrayList<>(getProviders(entry.getKey()));
+                list.remove(entry.getValue());
+                providers.put(entry.getKey(), Collections.unmodifiableList(list));
+            }
+            registered.clear();
+        }
+    }
+
+    @Override
+    public List<Provider> getProviders(String interfaceName) {
+        List<Provider> list = providers.get(interfaceName);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return list;
+    }
+
+    @Override
+    public void close() {
+        unregister();
+    }
+
+}
@@ -0,0 +1,50 @@
+package cn.xpleaf.rpc.common.registry;
+
+import java.util.Collection;
+import java.util.List;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+
+/**
+ * 注册中心，服务端通过register发布服务提供者，客户端通过getProviders发现服务提供者
+ *
+ * 提供了以下几种实现：
+ * 1.ZooKeeperRegistry：使用zookeeper作为注册中心，服务端的ServiceRegistry和客户端的ServiceDiscovery都是它的子类
+ * 2.MemoryRegistry：进程内的注册中心，用于测试和基准测试，不需要启动zookeeper
+ * 3.StaticRegistry：固定的服务提供者地址列表，不需要注册中心
+ * 4.SnapshotRegistry：包装其它注册中心，将最近一次发现的服务提供者保存到本地文件，
+ *   客户端冷启动时先使用本地快照，不需要等待注册中心，注册中心不可用时继续使用最近一次的服务提供者列表
+ *
+ * @author yeyonghao
+ */
+public interface Registry {
+
+    /**
+     * 注册服务提供者的所有服务
+     *
+     * @param serverAddress  服务提供者的地址，格式为 host:port
+     * @param interfaceNames 注册的服务，完整接口名称
+     * @param weight         服务提供者的权重，客户端进行负载均衡时使用
+     */
+    void register(String serverAddress, Collection<String> interfaceNames, int weight);
+
+    /**
+     * 注销本对象注册的所有服务，服务端关闭时在断开连接之前调用
+     */
+    void unregister();
+
+    /**
+     * 获取接口的服务提供者列表，调用时会频繁执行，实现类应当返回本地缓存的结果，
+     * 列表只在服务提供者发生变化时才被替换为新的快照，负载均衡策略可以据此缓存基于列表计算的结果
+     *
+     * @param interfaceName 接口名称
+     * @return 不可变的服务提供者列表，不存在服务提供者时为空列表
+     */
+    List<Provider> getProviders(String interfaceName);
+
+    /**
+     * 关闭注册中心，释放连接等资源
+     */
+    void close();
+
+}
@@ -0,0 +1,225 @@
+package cn.xpleaf.rpc.common.registry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 包装其它注册中心，将最近一次发现的服务提供者列表保存到本地文件，服务端的注册和注销直接交给被包装的注册中心
+ *
+ * 客户端冷启动时，如果本地快照中有接口的服务提供者，直接使用快照中的列表，同时在后台向注册中心查询，
+ * 所以启动不需要等待注册中心，注册中心较慢或者不可用时也能正常调用。注册中心第一次返回了非空的服务提供者列表之后，
+ * 就一直使用注册中心的结果（注册中心不可用期间其实现类会保留本地缓存），列表发生变化时在后台写入快照文件
+ *
+ * 快照文件为properties格式，key为接口名称，value为逗号分隔的服务提供者节点数据，写入时先写临时文件再替换，不会出现写了一半的文件
+ *
+ * @author yeyonghao
+ */
+public class SnapshotRegistry implements Registry {
+
+    // 注册中心返回空列表时，两次后台查询之间的最小间隔（毫秒）
+    private static final long RETRY_INTERVAL = 1000;
+
+    // 被包装的注册中心
+    private final Registry delegate;
+    // 快照文件
+    private final File file;
+    // 启动时从快照文件中读取的服务提供者列表
+    private final Map<String, List<Provider>> snapshot = new ConcurrentHashMap<>();
+    // 需要保存到快照文件中的服务提供者列表
+    private final Map<String, List<Provider>> saved = new ConcurrentHashMap<>();
+    // 注册中心已经返回了非空服务提供者列表的接口，之后直接使用注册中心的结果
+    private final Set<String> live = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // 各个接口下一次允许后台查询的时间
+    private final Map<String, Long> nextQuery = new ConcurrentHashMap<>();
+    // 是否有还没有写入快照文件的变化
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    // 执行后台查询和写入快照文件的线程
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new DefaultThreadFactory("minidubbo-snapshot", true));
+    // log4j日志记录
+    private Logger logger = LoggerFactory.getLogger(SnapshotRegistry.class);
+
+    /**
+     * 构造方法，会读取已经存在的快照文件
+     *
+     * @param delegate 被包装的注册中心，如ZooKeeperRegistry
+     * @param file     快照文件的路径，如 ${user.home}/.minidubbo/registry.cache
+     */
+    public SnapshotRegistry(Registry delegate, String file) {
+        this.delegate = delegate;
+        this.file = new File(file);
+        load();
+    }
+
+    @Override
+    public void register(String serverAddress, Collection<String> interfaceNames, int weight) {
+        delegate.register(serverAddress, interfaceNames, weight);
+    }
+
+    @Override
+    public void unregister() {
+        delegate.unregister();
+    }
+
+    @Override
+    public List<Provider> getProviders(final String interfaceName) {
+        if (live.contains(interfaceName)) {
+            List<Provider> providers = delegate.getProviders(interfaceName);
+            // 注册中心的实现类只在列表变化时替换快照，所以比较引用即可
+            if (providers != saved.get(interfaceName)) {
+                save(interfaceName, providers);
+            }
+            return providers;
+        }
+        List<Provider> cached = snapshot.get(interfaceName);
+        if (cached == null) {
+            // 没有本地快照，只能等待注册中心
+            List<Provider> providers = delegate.getProviders(interfaceName);
+            if (!providers.isEmpty()) {
+                live.add(interfaceName);
+                save(interfaceName, providers);
+            }
+            return providers;
+        }
+        // 有本地快照，在后台向注册中心查询，查询到之前使用快照
+        long now = System.currentTimeMillis();
+        Long next = nextQuery.get(interfaceName);
+        // 同一个接口同一时间只有一个线程发起后台查询
+        boolean query = next == null ? nextQuery.putIfAbsent(interfaceName, now + RETRY_INTERVAL) == null
+                : now >= next && nextQuery.replace(interfaceName, next, now + RETRY_INTERVAL);
+        if (query) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        if (!delegate.getProviders(interfaceName).isEmpty()) {
+                            live.add(interfaceName);
+                            logger.info("已经从注册中心获取到接口[{}]的服务提供者，不再使用本地快照", interfaceName);
+                        }
+                    } catch (Exception e) {
+                        logger.warn("从注册中心获取接口[{}]的服务提供者失败，继续使用本地快照: {}", interfaceName, e.toString());
+                    }
+                }
+            });
+        }
+        return cached;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    /**
+     * 读取快照文件
+     */
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            logger.warn("读取服务提供者快照文件[{}]失败: {}", file, e.toString());
+            return;
+        }
+        for (String interfaceName : properties.stringPropertyNames()) {
+            List<Provider> providers = new ArrayList<>();
+            for (String data : properties.getProperty(interfaceName).split(",")) {
+                try {
+                    if (!data.isEmpty()) {
+                        providers.add(Provider.parse(data));
+                    }
+                } catch (IllegalArgumentException e) {
+                    logger.warn("快照文件中接口[{}]的服务提供者数据格式不正确: {}", interfaceName, data);
+                }
+            }
+            if (!providers.isEmpty()) {
+                providers = Collections.unmodifiableList(providers);
+                snapshot.put(interfaceName, providers);
+                saved.put(interfaceName, providers);
+            }
+        }
+        logger.info("从快照文件[{}]中读取了{}个接口的服务提供者", file, snapshot.size());
+    }
+
+    /**
+     * 记录接口的服务提供者列表，在后台写入快照文件，多次变化只写一次
+     */
+    private void save(String interfaceName, List<Provider> providers) {
+        saved.put(interfaceName, providers);
+        if (dirty.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    dirty.set(false);
+                    write();
+                }
+            });
+        }
+    }
+
+    /**
+     * 将服务提供者列表写入快照文件
+     */
+    private void write() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, List<Provider>> entry : saved.entrySet()) {
+            StringBuilder data = new StringBuilder();
+            for (Provider provider : entry.getValue()) {
+                if (data.length() > 0) {
+                    data.append(',');
+                }
+                data.append(provider.toData());
+            }
+            properties.setProperty(entry.getKey(), data.toString());
+        }
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("无法创建目录" + dir);
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                properties.store(out, "minidubbo provider snapshot");
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("写入服务提供者快照文件[{}]失败: {}", file, e.toString());
+        }
+    }
+
+}
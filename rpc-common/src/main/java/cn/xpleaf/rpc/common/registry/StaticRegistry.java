@@ -0,0 +1,82 @@
+package cn.xpleaf.rpc.common.registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+
+/**
+ * 固定的服务提供者地址列表，不需要注册中心，适用于服务提供者地址固定的环境，或者注册中心完全不可用时的兜底配置
+ *
+ * 地址列表的格式为逗号分隔的服务提供者节点数据，如 192.168.1.101:21881,192.168.1.102:21881?weight=200，
+ * 构造时传入的列表适用于所有接口，也可以通过setProviders为某个接口单独指定；服务端的注册和注销不做任何事情
+ *
+ * @author yeyonghao
+ */
+public class StaticRegistry implements Registry {
+
+    // 所有接口共用的服务提供者列表
+    private final List<Provider> defaultProviders;
+    // 单独指定的服务提供者列表，key为接口名称
+    private final Map<String, List<Provider>> providers = new ConcurrentHashMap<>();
+
+    /**
+     * 构造方法
+     *
+     * @param addresses 所有接口共用的服务提供者地址列表，逗号分隔，可以为空
+     */
+    public StaticRegistry(String addresses) {
+        this.defaultProviders = parse(addresses);
+    }
+
+    /**
+     * 为接口单独指定服务提供者地址列表，可以通过spring注入
+     *
+     * @param providers key为接口名称，value为逗号分隔的服务提供者地址列表
+     */
+    public void setProviders(Map<String, String> providers) {
+        for (Map.Entry<String, String> entry : providers.entrySet()) {
+            this.providers.put(entry.getKey(), parse(entry.getValue()));
+        }
+    }
+
+    /**
+     * 解析逗号分隔的服务提供者地址列表
+     */
+    private static List<Provider> parse(String addresses) {
+        if (addresses == null || addresses.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Provider> list = new ArrayList<>();
+        for (String address : addresses.split(",")) {
+            if (!address.trim().isEmpty()) {
+                list.add(Provider.parse(address.trim()));
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public void register(String serverAddress, Collection<String> interfaceNames, int weight) {
+        // 地址列表是固定的，不需要注册
+    }
+
+    @Override
+    public void unregister() {
+    }
+
+    @Override
+    public List<Provider> getProviders(String interfaceName) {
+        List<Provider> list = providers.get(interfaceName);
+        return list != null ? list : defaultProviders;
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,422 @@
+package cn.xpleaf.rpc.common.registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+import org.apache.zookeeper.AsyncCallback;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooKeeper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 使用zookeeper作为注册中心，服务信息保存在/minidubbo/接口名称/server序列号节点上，节点数据的格式见Provider
+ *
+ * 注册：同一个会话中的请求由zookeeper按发送顺序执行，所以父节点、接口节点和服务提供者节点的创建请求以异步的方式一次全部发出，
+ * 再统一等待结果，注册耗时约为一次网络往返，不会随着服务数量的增加而增加。已经注册的服务提供者节点会被记录下来，
+ * 服务端关闭时通过unregister先删除，消费者可以在连接断开之前就将其从服务提供者列表中移除
+ *
+ * 发现：与最初每执行一次调用都查询一次zookeeper不同，现在会像dubbo那样将interfaceName和服务地址列表缓存在本地：
+ * 某个接口第一次被调用时向zookeeper查询其服务提供者列表，同时在接口节点上注册子节点监听，在服务提供者节点上注册数据监听，
+ * 之后服务提供者上线、下线或者地址变化时，zookeeper会通知客户端刷新本地缓存，
+ * 所以调用时只需要读取本地不可变的地址列表快照，不会再访问zookeeper
+ *
+ * 建立连接最多等待connectTimeout，超时后zookeeper客户端在后台继续重连，连接建立之后会重新获取所有接口的服务提供者列表；
+ * zookeeper不可用期间继续使用本地缓存。会话过期后重新建立连接，重新订阅所有接口，并重新注册服务提供者
+ *
+ * 另外，显然我这里都是使用zookeeper较为原生的API，原因很简单，当初入手zookeeper API时就是先从原生的学起，之后就直接应用在minidubbo上，
+ * 在我的另外一个项目中[分布式爬虫系统]，使用的是较为高层次的API，即curator，如果有兴趣，可以参考一下使用方式：https://github.com/xpleaf/ispider
+ *
+ * @author yeyonghao
+ */
+public class ZooKeeperRegistry implements Registry {
+
+    // zookeeper中保存服务信息的父节点
+    private final String parentNode = "/minidubbo";
+    // zookeeper中服务提供者的序列化名称
+    private final String serverName = "server";
+    // zookeeper的地址，由spring构造对象时传入
+    private String registryAddress;
+    // 连接zookeeper的超时时间
+    private int sessionTimeout = 2000;
+    // 等待建立连接的最长时间（毫秒）
+    private long connectTimeout = 5000;
+    // 等待一批异步操作完成的超时时间（毫秒）
+    private long operationTimeout = 10000;
+    // 连接zookeeper的客户端
+    private volatile ZooKeeper zkClient = null;
+    // 用来确保zookeeper连接成功后才进行后续的操作
+    private volatile CountDownLatch latch;
+    // 本地缓存的服务提供者列表，key为接口名称，value为不可变的服务提供者列表快照
+    private Map<String, List<Provider>> providerCache = new ConcurrentHashMap<>();
+    // 各个接口的监听器，接口节点及其服务提供者节点发生变化时刷新对应接口的本地缓存
+    private Map<String, Watcher> watcherMap = new ConcurrentHashMap<>();
+    // 已经注册的服务提供者节点
+    private final List<String> registeredNodes = Collections.synchronizedList(new ArrayList<String>());
+    // 最近一次注册的参数，会话过期后重新注册
+    private volatile Registration registration;
+    // log4j日志记录
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * 构造方法
+     *
+     * @param registryAddress zookeeper的地址，格式为 host:port
+     */
+    public ZooKeeperRegistry(String registryAddress) {
+        this.registryAddress = registryAddress;
+    }
+
+    /**
+     * 构造方法，直接使用已经建立好连接的zookeeper客户端，如连接到进程内嵌的zookeeper服务端的客户端，
+     * 此时会话过期后不会自动重连
+     *
+     * @param zkClient 已经建立好连接的zookeeper客户端
+     */
+    public ZooKeeperRegistry(ZooKeeper zkClient) {
+        this.zkClient = zkClient;
+    }
+
+    /**
+     * 向zookeeper批量注册服务，所有节点的创建请求一次全部发出，再统一等待结果
+     *
+     * @throws IllegalStateException 没有连接到zookeeper、有节点创建失败，或者没有在超时时间内完成
+     */
+    @Override
+    public void register(String serverAddress, Collection<String> interfaceNames, int weight) {
+        // 节点数据的格式为 host:port?weight=N，见Provider
+        Provider provider = Provider.parse(serverAddress);
+        byte[] data = new Provider(provider.getHost(), provider.getPort(), weight).toData().getBytes();
+        ZooKeeper zkClient = connect();
+        logger.info("zookeeper连接建立成功，准备在zookeeper上为{}个服务创建相关节点...", interfaceNames.size());
+        final CountDownLatch done = new CountDownLatch(1 + interfaceNames.size() * 2);
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        // 父节点和接口节点是永久节点，已经存在时不算失败
+        AsyncCallback.StringCallback persistentCallback = new AsyncCallback.StringCallback() {
+
+            @Override
+            public void processResult(int rc, String path, Object ctx, String name) {
+                KeeperException.Code code = KeeperException.Code.get(rc);
+                if (code != KeeperException.Code.OK && code != KeeperException.Code.NODEEXISTS) {
+                    errors.add(path + ": " + code);
+                }
+                done.countDown();
+            }
+        };
+        // 服务提供者节点是短暂序列化节点，记录实际创建的节点名称，关闭时删除
+        AsyncCallback.StringCallback providerCallback = new AsyncCallback.StringCallback() {
+
+            @Override
+            public void processResult(int rc, String path, Object ctx, String name) {
+                KeeperException.Code code = KeeperException.Code.get(rc);
+                if (code == KeeperException.Code.OK) {
+                    registeredNodes.add(name);
+                } else {
+                    errors.add(path + ": " + code);
+                }
+                done.countDown();
+            }
+        };
+        // 先创建父节点，再创建接口节点（即/minidubbo/interfacename），
+        // 最后创建接口节点下的服务提供者节点（即/minidubbo/interfacename/server00001），zookeeper按发送顺序执行
+        zkClient.create(parentNode, new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT, persistentCallback,
+                null);
+        for (String interfaceName : interfaceNames) {
+            zkClient.create(parentNode + "/" + interfaceName, new byte[0], Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT, persistentCallback, null);
+        }
+        for (String interfaceName : interfaceNames) {
+            zkClient.create(parentNode + "/" + interfaceName + "/" + serverName, data, Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.EPHEMERAL_SEQUENTIAL, providerCallback, null);
+        }
+        await(done, "注册服务");
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("向zookeeper注册服务失败: " + errors);
+        }
+        registration = new Registration(serverAddress, new ArrayList<>(interfaceNames), weight);
+        logger.info("zookeeper上相关节点已经创建成功...");
+    }
+
+    /**
+     * 删除本对象注册的所有服务提供者节点，删除请求同样一次全部发出
+     */
+    @Override
+    public void unregister() {
+        registration = null;
+        List<String> nodes;
+        synchronized (registeredNodes) {
+            nodes = new ArrayList<>(registeredNodes);
+            registeredNodes.clear();
+        }
+        if (nodes.isEmpty() || zkClient == null) {
+            return;
+        }
+        logger.info("准备从zookeeper上删除{}个服务提供者节点...", nodes.size());
+        final CountDownLatch done = new CountDownLatch(nodes.size());
+        AsyncCallback.VoidCallback callback = new AsyncCallback.VoidCallback() {
+
+            @Override
+            public void processResult(int rc, String path, Object ctx) {
+                KeeperException.Code code = KeeperException.Code.get(rc);
+                if (code != KeeperException.Code.OK && code != KeeperException.Code.NONODE) {
+                    logger.warn("删除服务提供者节点[{}]失败: {}", path, code);
+                }
+                done.countDown();
+            }
+        };
+        for (String node : nodes) {
+            zkClient.delete(node, -1, callback, null);
+        }
+        await(done, "注销服务");
+    }
+
+    /**
+     * 获取接口的服务提供者列表，第一次获取时会查询zookeeper并订阅变化，之后直接返回本地缓存
+     */
+    @Override
+    public List<Provider> getProviders(String interfaceName) {
+        List<Provider> providers = providerCache.get(interfaceName);
+        if (providers != null) {
+            return providers;
+        }
+        synchronized (this) {
+            providers = providerCache.get(interfaceName);
+            if (providers == null) {
+                try {
+                    connect();
+                } catch (IllegalStateException e) {
+                    // 连接建立之后会重新获取所有已经缓存的接口
+                    logger.error(e.getMessage());
+                    providerCache.put(interfaceName, Collections.<Provider>emptyList());
+                    return Collections.emptyList();
+                }
+                logger.info("本地没有接口[{}]的服务提供者缓存，准备从zookeeper获取并订阅...", interfaceName);
+                refreshProviders(interfaceName);
+                providers = providerCache.get(interfaceName);
+            }
+        }
+        return providers;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (zkClient != null) {
+            try {
+                zkClient.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 设置等待建立连接的最长时间（毫秒），默认为5秒，超时后zookeeper客户端在后台继续重连
+     */
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * 设置zookeeper的会话超时时间（毫秒），默认为2秒
+     */
+    public void setSessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    /**
+     * 获取已经连接的zookeeper客户端，如果连接未建立，则先建立连接
+     *
+     * @throws IllegalStateException 没有在connectTimeout内建立连接
+     */
+    private synchronized ZooKeeper connect() {
+        if (this.zkClient == null) {
+            logger.info("未连接zookeeper，准备建立连接...");
+            connectServer();
+        }
+        if (latch != null) {
+            try {
+                if (!latch.await(connectTimeout, TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException("在" + connectTimeout + "毫秒内没有连接到zookeeper[" + registryAddress + "]");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待连接zookeeper时被中断", e);
+            }
+        }
+        return zkClient;
+    }
+
+    /**
+     * 建立连接，不等待连接成功
+     */
+    private void connectServer() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        this.latch = latch;
+        try {
+            zkClient = new ZooKeeper(registryAddress, sessionTimeout, new Watcher() {
+
+                // 注册监听事件，连接成功后会调用process方法
+                // 此时再调用latch的countDown方法使CountDownLatch计数器减1
+                // 因为构造CountDownLatch对象时设置的值为1，减1后变为0，所以执行该方法后latch.await()将会中断
+                // 从而确保连接成功后才会执行后续zookeeper的相关操作
+                @Override
+                public void process(WatchedEvent event) {
+                    // 如果状态为已连接，则使用CountDownLatch计数器减1
+                    if (event.getState() == Event.KeeperState.SyncConnected) {
+                        latch.countDown();
+                        // 连接断开期间获取失败的接口没有注册监听，重新获取一次
+                        for (String interfaceName : providerCache.keySet()) {
+                            refreshProviders(interfaceName);
+                        }
+                    } else if (event.getState() == Event.KeeperState.Expired) {
+                        // 会话过期后，之前注册的监听和短暂节点都会失效，需要重新连接并重新订阅、重新注册
+                        reconnect();
+                    }
+                }
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException("连接zookeeper[" + registryAddress + "]失败", e);
+        }
+    }
+
+    /**
+     * 会话过期后重新连接zookeeper，重新订阅所有已经缓存的接口，重新订阅完成之前继续使用原有的缓存，
+     * 如果注册过服务提供者，还会重新注册
+     */
+    private void reconnect() {
+        if (registryAddress == null) {
+            logger.error("zookeeper会话已过期，由于使用的是外部传入的客户端，无法自动重连...");
+            return;
+        }
+        logger.warn("zookeeper会话已过期，准备重新建立连接并重新订阅服务...");
+        synchronized (this) {
+            try {
+                zkClient.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            registeredNodes.clear();
+            connectServer();
+        }
+        // 注册时不能持有锁，否则新连接的事件线程在重新订阅时会等待锁，无法回调注册的结果
+        Registration registration = this.registration;
+        if (registration != null) {
+            try {
+                register(registration.serverAddress, registration.interfaceNames, registration.weight);
+            } catch (IllegalStateException e) {
+                logger.error("会话过期后重新注册服务失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 从zookeeper获取接口的服务提供者地址列表并更新本地缓存，同时注册监听，节点发生变化时会再次调用本方法
+     *
+     * @param interfaceName 接口名称
+     */
+    private synchronized void refreshProviders(String interfaceName) {
+        // 构建需要查询的节点的完整名称
+        String node = parentNode + "/" + interfaceName;
+        Watcher watcher = getWatcher(interfaceName);
+        try {
+            // 先获取接口名节点的子节点，子节点下是服务器的列表，同时监听子节点的变化（服务提供者的上线和下线）
+            List<String> children = zkClient.getChildren(node, watcher);
+            List<Provider> providers = new ArrayList<>(children.size());
+            for (String child : children) {
+                try {
+                    // 获取服务提供者节点的数据，得到serverAddress，同时监听数据的变化
+                    byte[] serverAddressByte = zkClient.getData(node + "/" + child, watcher, null);
+                    // 只在这里解析一次服务提供者地址，调用时直接使用解析结果
+                    providers.add(Provider.parse(new String(serverAddressByte)));
+                } catch (KeeperException.NoNodeException e) {
+                    // 获取子节点列表之后该服务提供者已经下线，忽略即可，子节点监听会触发下一次刷新
+                } catch (IllegalArgumentException e) {
+                    logger.error("服务提供者节点[{}]的数据格式不正确，忽略该服务提供者...", node + "/" + child);
+                }
+            }
+            providerCache.put(interfaceName, Collections.unmodifiableList(providers));
+            logger.info("接口[{}]的服务提供者列表已更新{}", interfaceName, providers);
+        } catch (KeeperException.NoNodeException e) {
+            // 接口节点还不存在，监听其创建事件，创建后再刷新
+            logger.error("节点[{}]不存在，无法获取服务提供者地址...", node);
+            providerCache.put(interfaceName, Collections.<Provider>emptyList());
+            try {
+                zkClient.exists(node, watcher);
+            } catch (Exception ex) {
+                logger.error(ex.getMessage());
+            }
+        } catch (Exception e) {
+            // 其它异常时保留原有的缓存，避免zookeeper短暂不可用时所有调用都失败
+            logger.error("获取接口[{}]的服务提供者列表失败，继续使用本地缓存...", interfaceName);
+            logger.error(e.getMessage());
+            if (!providerCache.containsKey(interfaceName)) {
+                providerCache.put(interfaceName, Collections.<Provider>emptyList());
+            }
+        }
+    }
+
+    /**
+     * 获取接口的监听器，同一个接口只创建一个，zookeeper对同一个节点上的同一个监听器只会通知一次
+     */
+    private Watcher getWatcher(final String interfaceName) {
+        Watcher watcher = watcherMap.get(interfaceName);
+        if (watcher == null) {
+            watcher = new Watcher() {
+
+                @Override
+                public void process(WatchedEvent event) {
+                    // 只处理节点事件，连接状态的变化由建立连接时的监听器处理
+                    if (event.getType() != Event.EventType.None) {
+                        logger.info("接口[{}]的节点发生变化[{}: {}]，准备刷新本地缓存...",
+                                interfaceName, event.getType(), event.getPath());
+                        refreshProviders(interfaceName);
+                    }
+                }
+            };
+            watcherMap.put(interfaceName, watcher);
+        }
+        return watcher;
+    }
+
+    /**
+     * 等待一批异步操作完成
+     */
+    private void await(CountDownLatch done, String operation) {
+        try {
+            if (!done.await(operationTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("在" + operationTimeout + "毫秒内没有完成" + operation + "的zookeeper操作");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待" + operation + "的zookeeper操作完成时被中断", e);
+        }
+    }
+
+    /**
+     * 注册的参数
+     */
+    private static class Registration {
+
+        final String serverAddress;
+        final List<String> interfaceNames;
+        final int weight;
+
+        Registration(String serverAddress, List<String> interfaceNames, int weight) {
+            this.serverAddress = serverAddress;
+            this.interfaceNames = interfaceNames;
+            this.weight = weight;
+        }
+    }
+
+}
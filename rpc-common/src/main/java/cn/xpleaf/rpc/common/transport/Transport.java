@@ -0,0 +1,159 @@
+package cn.xpleaf.rpc.common.transport;
+
+import java.util.concurrent.ThreadFactory;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 网络传输层的抽象，屏蔽NIO和epoll两种实现的差异，RPC服务端和客户端通过它创建线程组和指定Channel类型
+ *
+ * 1.nio：基于JDK的Selector，所有平台都可以使用
+ * 2.epoll：Netty的Linux原生传输，使用边缘触发（edge-triggered）模式，减少了JDK NIO的对象分配和系统调用，
+ *   并且支持SO_REUSEPORT，服务端可以在同一个端口上绑定多个监听Channel，由内核把新连接分散到多个accept线程
+ * 3.auto：epoll可用（Linux并且成功加载了native库）时使用epoll，否则使用nio
+ *
+ * 指定了epoll但当前平台不可用时，会记录警告并退回到nio，而不是启动失败
+ *
+ * @author yeyonghao
+ */
+public final class Transport {
+
+    // 自动选择传输实现
+    public static final String AUTO = "auto";
+    // JDK NIO传输
+    public static final String NIO = "nio";
+    // Linux原生epoll传输
+    public static final String EPOLL = "epoll";
+    // 池化的ByteBuf分配器
+    public static final String POOLED = "pooled";
+    // 非池化的ByteBuf分配器
+    public static final String UNPOOLED = "unpooled";
+
+    // 是否使用epoll
+    private final boolean epoll;
+
+    private Transport(boolean epoll) {
+        this.epoll = epoll;
+    }
+
+    /**
+     * 根据类型创建传输实现
+     *
+     * @param type auto、nio或者epoll
+     * @return 实际使用的传输实现
+     */
+    public static Transport create(String type) {
+        if (NIO.equals(type)) {
+            return new Transport(false);
+        }
+        if (AUTO.equals(type)) {
+            return new Transport(Epoll.isAvailable());
+        }
+        if (EPOLL.equals(type)) {
+            if (!Epoll.isAvailable()) {
+                Logger logger = LoggerFactory.getLogger(Transport.class);
+                logger.warn("当前平台不支持epoll，退回到nio传输: {}", Epoll.unavailabilityCause().toString());
+                return new Transport(false);
+            }
+            return new Transport(true);
+        }
+        throw new IllegalArgumentException("不支持的传输类型[" + type + "]，可选值为auto、nio、epoll");
+    }
+
+    /**
+     * 根据类型获取ByteBuf分配器
+     *
+     * @param type pooled或者unpooled
+     */
+    public static ByteBufAllocator allocator(String type) {
+        if (POOLED.equals(type)) {
+            return PooledByteBufAllocator.DEFAULT;
+        }
+        if (UNPOOLED.equals(type)) {
+            return UnpooledByteBufAllocator.DEFAULT;
+        }
+        throw new IllegalArgumentException("不支持的分配器类型[" + type + "]，可选值为pooled、unpooled");
+    }
+
+    /**
+     * 传输实现的名称，nio或者epoll
+     */
+    public String getName() {
+        return epoll ? EPOLL : NIO;
+    }
+
+    /**
+     * 是否支持SO_REUSEPORT，支持时服务端可以在同一个端口上绑定多个监听Channel
+     */
+    public boolean isReusePortSupported() {
+        return epoll;
+    }
+
+    /**
+     * 创建线程组
+     *
+     * @param threads       线程数，0表示使用Netty的默认值（CPU核数的2倍）
+     * @param threadFactory 线程工厂
+     */
+    public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        return epoll ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * 服务端监听Channel的类型
+     */
+    public Class<? extends ServerChannel> serverChannelClass() {
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * 客户端连接Channel的类型
+     */
+    public Class<? extends SocketChannel> socketChannelClass() {
+        return epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * 设置服务端与传输实现相关的选项，epoll时使用边缘触发模式，reusePort为true时开启SO_REUSEPORT
+     */
+    public void configure(ServerBootstrap b, boolean reusePort) {
+        if (epoll) {
+            b.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+            if (reusePort) {
+                b.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+        }
+    }
+
+    /**
+     * 设置客户端与传输实现相关的选项，epoll时使用边缘触发模式
+     */
+    public void configure(Bootstrap b) {
+        if (epoll) {
+            b.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
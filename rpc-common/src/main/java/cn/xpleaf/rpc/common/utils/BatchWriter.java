@@ -0,0 +1,129 @@
+package cn.xpleaf.rpc.common.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * 批量写出器，将多个线程向同一条连接写出的消息合并起来，在I/O线程上批量写出，并且只在每一批结束时flush一次
+ *
+ * 直接在业务线程中调用channel.writeAndFlush时，每个消息都会向I/O线程提交一个任务，并各自执行一次flush（即一次系统调用），
+ * 高并发时大部分时间都消耗在系统调用上。使用批量写出器后，消息先放入队列，只有队列从空变为非空时才向I/O线程提交一次写出任务，
+ * 写出任务执行前到达的消息都会在同一批中写出：
+ *
+ * 1.空闲时，一个消息到达就立即提交写出任务，与writeAndFlush相比没有额外的延迟
+ * 2.负载高时，I/O线程忙于处理其它事件，写出任务执行前会积累更多的消息，一次flush写出的消息也就更多，
+ *   所以flush的频率会随着负载自动降低，而不需要设置固定的等待时间
+ *
+ * 每一批最多写出maxBatch个消息，剩余的消息留到下一个写出任务，避免写出任务长时间占用I/O线程而影响读取
+ *
+ * @author yeyonghao
+ */
+public class BatchWriter implements Runnable {
+
+    // 默认每一批最多写出的消息数
+    public static final int DEFAULT_MAX_BATCH = 128;
+
+    // 写出消息的连接
+    private final Channel channel;
+    // 每一批最多写出的消息数
+    private final int maxBatch;
+    // 等待写出的消息
+    private final Queue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    // 是否已经向I/O线程提交了写出任务
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public BatchWriter(Channel channel) {
+        this(channel, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param channel  写出消息的连接
+     * @param maxBatch 每一批最多写出的消息数
+     */
+    public BatchWriter(Channel channel, int maxBatch) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch必须大于0: " + maxBatch);
+        }
+        this.channel = channel;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * 写出消息，该方法可以在任意线程中调用，不会阻塞
+     *
+     * @param msg 需要写出的消息
+     * @return 消息写出的结果，写出失败时（如连接已经断开）会以异常完成
+     */
+    public ChannelFuture write(Object msg) {
+        ChannelPromise promise = channel.newPromise();
+        queue.offer(new PendingWrite(msg, promise));
+        // 只有队列从空变为非空时才需要提交写出任务，其余情况由已经提交的写出任务负责写出
+        if (scheduled.compareAndSet(false, true)) {
+            schedule();
+        }
+        return promise;
+    }
+
+    /**
+     * 向I/O线程提交写出任务，I/O线程已经关闭时，队列中的消息都不会再被写出，直接让其失败
+     */
+    private void schedule() {
+        try {
+            channel.eventLoop().execute(this);
+        } catch (RejectedExecutionException e) {
+            // 先清除标记再让队列中的消息失败，与run中的顺序相同：清除标记之后放入队列的消息会再次提交写出任务，
+            // 再次被拒绝后由那个线程让其失败，不会有消息永远留在队列中
+            scheduled.set(false);
+            PendingWrite pending;
+            while ((pending = queue.poll()) != null) {
+                ReferenceCountUtil.release(pending.msg);
+                pending.promise.tryFailure(e);
+            }
+        }
+    }
+
+    /**
+     * 在I/O线程上执行的写出任务，写出一批消息并flush一次
+     */
+    @Override
+    public void run() {
+        // 先清除标记再取出消息，标记清除之后放入队列的消息会提交新的写出任务，保证不会有消息被遗漏
+        scheduled.set(false);
+        int written = 0;
+        PendingWrite pending;
+        while (written < maxBatch && (pending = queue.poll()) != null) {
+            channel.write(pending.msg, pending.promise);
+            written++;
+        }
+        if (written > 0) {
+            channel.flush();
+        }
+        // 这一批没有写完，提交下一个写出任务
+        if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            schedule();
+        }
+    }
+
+    /**
+     * 等待写出的消息及其写出结果
+     */
+    private static final class PendingWrite {
+
+        final Object msg;
+        final ChannelPromise promise;
+
+        PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cn.xpleaf.rpc.common.utils;
+
+import java.io.IOException;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 压缩算法SPI，RPCEncoder对超过阈值的消息体进行压缩，RPCDecoder根据消息头中的压缩算法编号进行解压
+ *
+ * 使用哪种压缩算法由客户端和服务端在握手时协商，每个压缩算法都有一个唯一的编号，编号会写入到消息头中，
+ * 自定义的压缩算法可以通过CompressorFactory.register注册，也可以通过java.util.ServiceLoader的方式，
+ * 在META-INF/services/cn.xpleaf.rpc.common.utils.Compressor文件中声明实现类
+ *
+ * @author yeyonghao
+ */
+public interface Compressor {
+
+    /**
+     * 压缩算法的编号，会写入到消息头中，不同的压缩算法编号不能相同，0表示没有压缩
+     */
+    byte getCode();
+
+    /**
+     * 压缩算法的名称，用于配置和握手协商，如deflate、snappy
+     */
+    String getName();
+
+    /**
+     * 压缩数据
+     *
+     * @param in  需要压缩的数据，即in中所有可读的字节
+     * @param out 压缩后的数据写入的位置
+     * @throws IOException
+     */
+    void compress(ByteBuf in, ByteBuf out) throws IOException;
+
+    /**
+     * 解压数据
+     *
+     * @param in  需要解压的数据，即in中所有可读的字节
+     * @param out 解压后的数据写入的位置，其最大容量限制了解压后的长度
+     * @throws IOException               数据格式不正确时抛出
+     * @throws IndexOutOfBoundsException 解压后的数据超过out的最大容量时抛出，实现类不应将其转换为其它异常
+     */
+    void decompress(ByteBuf in, ByteBuf out) throws IOException;
+}
@@ -0,0 +1,65 @@
+package cn.xpleaf.rpc.common.utils;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 压缩算法工厂，按编号或名称获取压缩算法
+ *
+ * 内置了deflate和snappy两种压缩算法，同时会通过java.util.ServiceLoader加载classpath中声明的自定义压缩算法
+ *
+ * @author yeyonghao
+ */
+public final class CompressorFactory {
+
+    // 按编号索引的压缩算法，消息头中的编号为一个字节，所以直接使用数组即可
+    private static final AtomicReferenceArray<Compressor> COMPRESSORS_BY_CODE = new AtomicReferenceArray<>(256);
+    // 按名称索引的压缩算法
+    private static final Map<String, Compressor> COMPRESSORS_BY_NAME = new ConcurrentHashMap<>();
+
+    static {
+        register(new DeflateCompressor());
+        register(new SnappyCompressor());
+        for (Compressor compressor : ServiceLoader.load(Compressor.class)) {
+            register(compressor);
+        }
+    }
+
+    private CompressorFactory() {
+    }
+
+    /**
+     * 注册压缩算法，编号或名称与已有的压缩算法相同时会覆盖已有的压缩算法
+     *
+     * @param compressor 压缩算法
+     */
+    public static synchronized void register(Compressor compressor) {
+        if (compressor.getCode() == 0) {
+            throw new IllegalArgumentException("压缩算法编号0表示没有压缩: " + compressor.getName());
+        }
+        COMPRESSORS_BY_CODE.set(compressor.getCode() & 0xFF, compressor);
+        COMPRESSORS_BY_NAME.put(compressor.getName(), compressor);
+    }
+
+    /**
+     * 根据编号获取压缩算法
+     *
+     * @param code 压缩算法编号
+     * @return 对应的压缩算法，不存在则返回null
+     */
+    public static Compressor getCompressor(byte code) {
+        return COMPRESSORS_BY_CODE.get(code & 0xFF);
+    }
+
+    /**
+     * 根据名称获取压缩算法
+     *
+     * @param name 压缩算法名称
+     * @return 对应的压缩算法，不存在则返回null，握手时对方提出的压缩算法本端不支持是正常的情况
+     */
+    public static Compressor getCompressor(String name) {
+        return name == null ? null : COMPRESSORS_BY_NAME.get(name);
+    }
+}
@@ -0,0 +1,165 @@
+package cn.xpleaf.rpc.common.utils;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * 基于JDK自带zlib（Deflater/Inflater）的压缩算法，压缩率高，但比snappy更消耗CPU，
+ * 适合带宽比CPU更紧张的场景，如跨机房调用
+ *
+ * 默认使用最快的压缩级别，对于重复度高的数据，更高的压缩级别带来的收益通常抵不上多消耗的CPU
+ *
+ * Deflater和Inflater每次创建都要分配zlib的本地内存（deflate约几百KB），所以每个线程缓存一份，连同缓冲区一起复用，
+ * 编解码器只在I/O线程上执行，实际上每个I/O线程只有一份；缓存保存在FastThreadLocal中，
+ * Netty的线程退出时会调用end()释放本地内存，其它线程退出后由Deflater和Inflater自身的finalize释放
+ *
+ * @author yeyonghao
+ */
+public class DeflateCompressor implements Compressor {
+
+    // 压缩算法编号
+    public static final byte CODE = 1;
+    // 压缩算法名称
+    public static final String NAME = "deflate";
+    // 每次压缩或解压时使用的缓冲区大小
+    private static final int BUFFER_SIZE = 8192;
+
+    // 复用Deflater和Inflater时用来清除对上一次输入数据的引用
+    private static final byte[] EMPTY = new byte[0];
+
+    // 压缩级别，0到9
+    private final int level;
+    // 每个线程缓存的Deflater、Inflater和缓冲区
+    private final FastThreadLocal<Zlib> zlib = new FastThreadLocal<Zlib>() {
+
+        @Override
+        protected Zlib initialValue() {
+            return new Zlib();
+        }
+
+        @Override
+        protected void onRemoval(Zlib value) {
+            value.end();
+        }
+    };
+
+    public DeflateCompressor() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param level 压缩级别，0到9，越大压缩率越高，也越消耗CPU
+     */
+    public DeflateCompressor(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("压缩级别必须在0到9之间: " + level);
+        }
+        this.level = level;
+    }
+
+    @Override
+    public byte getCode() {
+        return CODE;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) throws IOException {
+        // JDK8的Deflater只支持byte数组，堆内存的ByteBuf直接使用其底层数组
+        Zlib zlib = this.zlib.get();
+        Deflater deflater = zlib.deflater();
+        try {
+            if (in.hasArray()) {
+                deflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+            } else {
+                deflater.setInput(ByteBufUtil.getBytes(in));
+            }
+            deflater.finish();
+            byte[] buffer = zlib.buffer;
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.writeBytes(buffer, 0, n);
+            }
+            in.skipBytes(in.readableBytes());
+        } finally {
+            // 复用之前重置状态，无论本次是否成功
+            deflater.setInput(EMPTY);
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) throws IOException {
+        Zlib zlib = this.zlib.get();
+        Inflater inflater = zlib.inflater();
+        try {
+            if (in.hasArray()) {
+                inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes());
+            } else {
+                inflater.setInput(ByteBufUtil.getBytes(in));
+            }
+            byte[] buffer = zlib.buffer;
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("压缩数据不完整");
+                }
+                out.writeBytes(buffer, 0, n);
+            }
+            in.skipBytes(in.readableBytes());
+        } catch (DataFormatException e) {
+            throw new IOException("压缩数据格式不正确", e);
+        } finally {
+            inflater.setInput(EMPTY);
+            inflater.reset();
+        }
+    }
+
+    /**
+     * 一个线程使用的Deflater、Inflater和缓冲区，Deflater和Inflater在第一次使用时才创建
+     */
+    private final class Zlib {
+
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        private Deflater deflater;
+        private Inflater inflater;
+
+        Deflater deflater() {
+            if (deflater == null) {
+                deflater = new Deflater(level);
+            }
+            return deflater;
+        }
+
+        Inflater inflater() {
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+            return inflater;
+        }
+
+        /**
+         * 释放zlib占用的本地内存
+         */
+        void end() {
+            if (deflater != null) {
+                deflater.end();
+            }
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+}
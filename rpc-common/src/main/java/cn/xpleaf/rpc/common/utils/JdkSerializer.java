@@ -0,0 +1,150 @@
+package cn.xpleaf.rpc.common.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于JDK自带序列化机制的序列化器，参数和返回值对象需要实现java.io.Serializable接口
+ *
+ * 性能和数据大小都不如Protostuff，但能完整地保留对象的类型信息（如集合的具体实现类、自定义的readObject/writeObject逻辑），
+ * 适合对兼容性要求高于性能的服务
+ *
+ * 反序列化网络上收到的任意数据是典型的远程代码执行漏洞，所以该序列化器默认不注册，需要通过SerializerFactory.register显式开启，
+ * 并且反序列化时只允许白名单中的类：java.lang、java.util、java.math、java.time包中的类，minidubbo自身的类，
+ * 以及构造时传入的包名（或者类名）前缀，其余的类一律拒绝（JDK 8中没有java.io.ObjectInputFilter，所以在resolveClass中检查）
+ *
+ * @author yeyonghao
+ */
+public class JdkSerializer implements Serializer {
+
+    // 序列化器编号
+    public static final byte CODE = 2;
+    // 序列化器名称
+    public static final String NAME = "jdk";
+    // 默认允许反序列化的类的前缀
+    private static final List<String> DEFAULT_ALLOWED = Arrays.asList("java.lang.", "java.util.", "java.math.",
+            "java.time.", "cn.xpleaf.rpc.common.");
+    // 即使在白名单的包中也不允许反序列化的类的前缀，反射和方法句柄相关的类可以用来构造利用链
+    private static final List<String> DENIED = Arrays.asList("java.lang.invoke.", "java.lang.reflect.");
+
+    // 允许反序列化的类的前缀
+    private final List<String> allowed;
+
+    /**
+     * 构造方法，只允许反序列化默认白名单中的类
+     */
+    public JdkSerializer() {
+        this(new String[0]);
+    }
+
+    /**
+     * 构造方法，在默认白名单之外再允许给定前缀的类，通常是服务接口的参数和返回值所在的包，如com.example.model.
+     *
+     * @param allowedPrefixes 允许反序列化的包名或者类名前缀
+     */
+    public JdkSerializer(String... allowedPrefixes) {
+        List<String> allowed = new ArrayList<>(DEFAULT_ALLOWED);
+        allowed.addAll(Arrays.asList(allowedPrefixes));
+        this.allowed = Collections.unmodifiableList(allowed);
+    }
+
+    @Override
+    public byte getCode() {
+        return CODE;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void serialize(Object obj, OutputStream out) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(obj);
+        // 只需要将缓冲的数据刷新到底层输出流，底层输出流由调用方负责关闭
+        oos.flush();
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> clazz) throws IOException {
+        ObjectInputStream ois = new AllowListObjectInputStream(in);
+        try {
+            return clazz.cast(ois.readObject());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("反序列化对象失败，找不到对应的类: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] data, int offset, int length, Class<T> clazz) throws IOException {
+        return deserialize(new ByteArrayInputStream(data, offset, length), clazz);
+    }
+
+    /**
+     * 判断类是否在白名单中，数组按其元素类型判断，基本类型的数组总是允许
+     *
+     * @param className ObjectStreamClass中的类名，数组为[Ljava.lang.String;这样的形式
+     */
+    boolean isAllowed(String className) {
+        int dimensions = 0;
+        while (dimensions < className.length() && className.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions > 0) {
+            if (className.charAt(dimensions) != 'L') {
+                return true;
+            }
+            className = className.substring(dimensions + 1, className.length() - 1);
+        }
+        for (String prefix : DENIED) {
+            if (className.startsWith(prefix)) {
+                return false;
+            }
+        }
+        for (String prefix : allowed) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在加载类之前检查白名单的输入流，不在白名单中的类在其readObject等方法执行之前就被拒绝
+     */
+    private final class AllowListObjectInputStream extends ObjectInputStream {
+
+        AllowListObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "不在JdkSerializer的反序列化白名单中");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            for (String name : interfaces) {
+                if (!isAllowed(name)) {
+                    throw new InvalidClassException(name, "不在JdkSerializer的反序列化白名单中");
+                }
+            }
+            return super.resolveProxyClass(interfaces);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package cn.xpleaf.rpc.common.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.dyuproject.protostuff.GraphIOUtil;
+import com.dyuproject.protostuff.LinkedBuffer;
+import com.dyuproject.protostuff.runtime.RuntimeSchema;
+
+/**
+ * 基于Protostuff对象图（graph）格式的序列化器
+ *
+ * 与ProtostuffSerializer的区别是，同一个对象被多次引用时只会序列化一次，其余位置只写入引用，
+ * 适合包含大量共享引用或者循环引用的数据，如树、图结构，或者列表中大量元素引用了同一个对象
+ *
+ * @author yeyonghao
+ */
+public class ProtostuffGraphSerializer implements Serializer {
+
+    // 序列化器编号
+    public static final byte CODE = 3;
+    // 序列化器名称
+    public static final String NAME = "protostuff-graph";
+
+    // 每个线程复用的LinkedBuffer对象
+    private static final ThreadLocal<LinkedBuffer> BUFFER = new ThreadLocal<LinkedBuffer>() {
+
+        @Override
+        protected LinkedBuffer initialValue() {
+            return LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+        }
+    };
+
+    @Override
+    public byte getCode() {
+        return CODE;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void serialize(Object obj, OutputStream out) throws IOException {
+        RuntimeSchema<Object> schema = SerializationUtil.getSchema((Class<Object>) obj.getClass());
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            GraphIOUtil.writeTo(out, obj, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> clazz) throws IOException {
+        RuntimeSchema<T> schema = SerializationUtil.getSchema(clazz);
+        T message = schema.newMessage();
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            GraphIOUtil.mergeFrom(in, message, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
+        return message;
+    }
+
+    @Override
+    public <T> T deserialize(byte[] data, int offset, int length, Class<T> clazz) {
+        RuntimeSchema<T> schema = SerializationUtil.getSchema(clazz);
+        T message = schema.newMessage();
+        GraphIOUtil.mergeFrom(data, offset, length, message, schema);
+        return message;
+    }
+}
@@ -0,0 +1,45 @@
+package cn.xpleaf.rpc.common.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 基于Protostuff的序列化器，也是minidubbo默认的序列化器，schema会被缓存，具体实现见SerializationUtil
+ *
+ * 适合字段较多、结构固定的POJO，序列化后的数据小，速度快，但不支持对象之间的循环引用
+ *
+ * @author yeyonghao
+ */
+public class ProtostuffSerializer implements Serializer {
+
+    // 序列化器编号
+    public static final byte CODE = 1;
+    // 序列化器名称
+    public static final String NAME = "protostuff";
+
+    @Override
+    public byte getCode() {
+        return CODE;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void serialize(Object obj, OutputStream out) throws IOException {
+        SerializationUtil.serialize(obj, out);
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, Class<T> clazz) throws IOException {
+        return SerializationUtil.deserialize(in, clazz);
+    }
+
+    @Override
+    public <T> T deserialize(byte[] data, int offset, int length, Class<T> clazz) {
+        return SerializationUtil.deserialize(data, offset, length, clazz);
+    }
+}
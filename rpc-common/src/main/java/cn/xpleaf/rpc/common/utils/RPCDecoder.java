@@ -1,47 +1,346 @@
 package cn.xpleaf.rpc.common.utils;
 
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 
+import cn.xpleaf.rpc.common.pojo.Blob;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * RPCDecoder继承自Netty中的MessageToMessageDecoder类，
- * 并重写抽象方法decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out)
- * 首先从数据报msg（数据类型取决于继承MessageToMessageDecoder时填写的泛型类型）中获取需要解码的byte数组
- * 然后调用使用序列化工具类将其反序列化（解码）为Object对象 将解码后的对象加入到解码列表out中，这样就完成了解码操作
+ * RPCDecoder继承自Netty中的LengthFieldBasedFrameDecoder类，负责按照RPCProtocol定义的协议解码消息
+ *
+ * TCP是流式协议，一次读取到的数据可能只是半个消息，也可能包含多个消息（拆包和粘包），
+ * 所以先由LengthFieldBasedFrameDecoder根据消息头中的length字段切分出一个完整的消息帧，
+ * 再校验魔数和版本号，然后根据消息类型和序列化器编号将消息体直接从ByteBuf中反序列化（解码）为Object对象，
+ * 整个过程中不会将消息体复制到额外的byte数组中；消息体被压缩过时，先按消息头中的压缩算法编号解压再反序列化，
+ * 只接受握手时协商好的压缩算法（见setCompressor），解压后的长度同样不能超过最大消息帧长度，避免解压炸弹耗尽内存；
+ * 直接内存中的消息体通过复用的输入流读取，每个消息不再创建新的流对象
+ *
+ * 服务端可以限定允许对方使用的序列化器，其余编号的消息直接拒绝，不会交给对应的序列化器反序列化；
+ * 编号0（默认的序列化器）总是允许
+ *
+ * 消息中带有Blob附件时，先暂存消息，等其后的附件帧都到达之后再一起交给后面的handler，
+ * 附件帧的消息体直接以切片的方式引用累积缓冲区，拆分为多个附件帧的附件以CompositeByteBuf组合起来，都不复制数据；
+ * 附件的长度由对方声明，附件帧到达之前数据都保存在累积缓冲区中，所以解码出消息时就检查其所有附件的长度之和，
+ * 超过允许的最大长度（见setMaxAttachmentLength）时抛出TooLongFrameException，不会为其接收任何附件数据
  *
  * @author yeyonghao
  */
-public class RPCDecoder extends MessageToMessageDecoder<ByteBuf> {
+public class RPCDecoder extends LengthFieldBasedFrameDecoder {
 
-    // 需要反序列对象所属的类型
-    private Class<?> genericClass;
+    // 等待附件数据的消息，null表示没有
+    private Object pendingMessage;
+    // 等待数据的消息中的附件
+    private List<Blob> pendingBlobs;
+    // 正在接收数据的附件在pendingBlobs中的下标
+    private int blobIndex;
+    // 正在接收数据的附件已经收到的数据
+    private ByteBuf blobContent;
+    // 正在接收数据的附件已经收到的长度
+    private int blobReceived;
+    // 允许的最大消息帧长度，解压后的消息体也不能超过该长度
+    private final int maxFrameLength;
+    // 允许一个消息的所有附件加起来的最大长度
+    private volatile long maxAttachmentLength = RPCProtocol.DEFAULT_MAX_ATTACHMENT_LENGTH;
+    // 握手时协商好的压缩算法，null表示没有协商，此时收到压缩过的消息会被拒绝
+    private volatile Compressor compressor;
+    // 允许对方使用的序列化器，下标为序列化器编号，null表示允许所有已注册的序列化器
+    private final boolean[] allowedSerializers;
+    // 复用的输入流，反序列化直接内存中的消息体时使用
+    private final ByteBufInput input = new ByteBufInput();
     // log4j日志记录
     private Logger logger = LoggerFactory.getLogger(RPCDecoder.class);
 
-    // 构造方法，传入需要反序列化对象的类型
-    public RPCDecoder(Class<?> genericClass) {
-        this.genericClass = genericClass;
+    public RPCDecoder() {
+        this(RPCProtocol.DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param maxFrameLength 允许的最大消息帧长度，超过该长度会抛出TooLongFrameException
+     */
+    public RPCDecoder(int maxFrameLength) {
+        this(maxFrameLength, null);
+    }
+
+    /**
+     * 构造方法，只接受使用给定序列化器的消息，服务端使用，避免对方选择一个不安全的序列化器
+     *
+     * @param maxFrameLength 允许的最大消息帧长度，超过该长度会抛出TooLongFrameException
+     * @param serializers    允许对方使用的序列化器，null表示允许所有已注册的序列化器
+     */
+    public RPCDecoder(int maxFrameLength, Collection<Serializer> serializers) {
+        super(maxFrameLength, RPCProtocol.LENGTH_FIELD_OFFSET, RPCProtocol.LENGTH_FIELD_LENGTH, 0, 0);
+        this.maxFrameLength = maxFrameLength;
+        if (serializers == null) {
+            this.allowedSerializers = null;
+        } else {
+            this.allowedSerializers = new boolean[256];
+            for (Serializer serializer : serializers) {
+                this.allowedSerializers[serializer.getCode() & 0xFF] = true;
+            }
+        }
+    }
+
+    /**
+     * 设置握手时协商好的压缩算法，之后只接受使用该压缩算法压缩的消息，握手协商成功后调用
+     *
+     * @param compressor 压缩算法，null表示不接受压缩过的消息
+     */
+    public void setCompressor(Compressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * 设置允许一个消息的所有附件加起来的最大长度，默认为256MB
+     *
+     * @param maxAttachmentLength 附件的最大总长度（字节）
+     */
+    public void setMaxAttachmentLength(long maxAttachmentLength) {
+        if (maxAttachmentLength < 0) {
+            throw new IllegalArgumentException("maxAttachmentLength不能小于0: " + maxAttachmentLength);
+        }
+        this.maxAttachmentLength = maxAttachmentLength;
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        // 只要读到了魔数就先校验，非法的数据不必等到整个消息帧都到达
+        if (in.readableBytes() >= 2 && in.getShort(in.readerIndex()) != RPCProtocol.MAGIC) {
+            throw new CorruptedFrameException("非法的魔数: " + in.getShort(in.readerIndex()));
+        }
+        // 切分出一个完整的消息帧，数据还不完整时返回null，等待更多的数据到达
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
+        }
+        try {
+            frame.skipBytes(2);
+            byte version = frame.readByte();
+            if (version != RPCProtocol.VERSION) {
+                throw new CorruptedFrameException("不支持的协议版本: " + version);
+            }
+            byte type = frame.readByte();
+            if (type == RPCProtocol.TYPE_ATTACHMENT) {
+                frame.skipBytes(2);
+                int length = frame.readInt();
+                return readAttachment(ctx, frame.readRetainedSlice(length));
+            }
+            if (pendingMessage != null) {
+                throw new CorruptedFrameException("消息的附件还没有接收完毕，却收到了类型为" + type + "的消息");
+            }
+            Class<?> genericClass = RPCProtocol.classOf(type);
+            if (genericClass == null) {
+                throw new CorruptedFrameException("未知的消息类型: " + type);
+            }
+            byte code = frame.readByte();
+            if (code != 0 && allowedSerializers != null && !allowedSerializers[code & 0xFF]) {
+                throw new CorruptedFrameException("不允许使用的序列化器编号: " + code);
+            }
+            Serializer serializer = SerializerFactory.getSerializer(code);
+            if (serializer == null) {
+                throw new CorruptedFrameException("不支持的序列化器编号: " + code);
+            }
+            byte compressorCode = frame.readByte();
+            Compressor compressor = null;
+            if (compressorCode != 0) {
+                compressor = this.compressor;
+                if (compressor == null || compressor.getCode() != compressorCode) {
+                    throw new CorruptedFrameException("没有协商过的压缩算法编号: " + compressorCode);
+                }
+            }
+            int length = frame.readInt();
+
+            logger.debug("准备使用[{}]反序列化对象...", serializer.getName());
+            Object obj;
+            if (compressor == null) {
+                obj = deserialize(serializer, frame, length, genericClass);
+            } else {
+                // 解压到堆内存中，反序列化时可以直接使用其底层数组，最大容量限制为最大消息帧长度
+                ByteBuf body = ctx.alloc().heapBuffer((int) Math.min(length * 2L, maxFrameLength), maxFrameLength);
+                try {
+                    try {
+                        compressor.decompress(frame.slice(frame.readerIndex(), length), body);
+                    } catch (IndexOutOfBoundsException e) {
+                        throw new TooLongFrameException("解压后的消息体超过了最大长度: " + maxFrameLength);
+                    }
+                    obj = deserialize(serializer, body, body.readableBytes(), genericClass);
+                } finally {
+                    body.release();
+                }
+            }
+            // 记录对方使用的序列化器，服务端回写响应时沿用
+            RPCProtocol.setSerializer(obj, code);
+            RPCProtocol.setSize(obj, length);
+            logger.debug("反序列化对象完毕...");
+            // 消息带有附件时，等待附件帧到达
+            List<Blob> blobs = RPCProtocol.attachmentsOf(obj);
+            if (blobs != null) {
+                checkAttachmentLength(blobs);
+                pendingMessage = obj;
+                pendingBlobs = blobs;
+                blobIndex = 0;
+                return nextPendingBlob();
+            }
+            return obj;
+        } finally {
+            // 消息帧是从累积缓冲区中切分出来的，使用完毕后需要释放
+            frame.release();
+        }
     }
 
+    /**
+     * 检查消息中所有附件声明的长度之和，在接收附件数据之前拒绝超过最大长度的消息
+     */
+    private void checkAttachmentLength(List<Blob> blobs) {
+        long total = 0;
+        for (Blob blob : blobs) {
+            if (blob.length() < 0) {
+                throw new CorruptedFrameException("附件的长度不正确: " + blob.length());
+            }
+            total += blob.length();
+        }
+        if (total > maxAttachmentLength) {
+            throw new TooLongFrameException("附件的总长度" + total + "超过了最大长度: " + maxAttachmentLength);
+        }
+    }
+
+    /**
+     * 读取附件帧，附件的数据全部到达后切换到下一个附件
+     *
+     * @param data 附件帧的消息体，是累积缓冲区的切片
+     * @return 所有附件都接收完毕时返回暂存的消息，否则返回null
+     */
+    private Object readAttachment(ChannelHandlerContext ctx, ByteBuf data) {
+        if (pendingMessage == null) {
+            data.release();
+            throw new CorruptedFrameException("收到了不属于任何消息的附件帧");
+        }
+        Blob blob = pendingBlobs.get(blobIndex);
+        if (blobReceived + data.readableBytes() > blob.length()) {
+            data.release();
+            throw new CorruptedFrameException("附件的数据超过了其声明的长度: " + blob.length());
+        }
+        if (blobContent == null) {
+            blobContent = data;
+        } else {
+            if (!(blobContent instanceof CompositeByteBuf)) {
+                CompositeByteBuf composite = ctx.alloc().compositeBuffer(
+                        blob.length() / RPCProtocol.ATTACHMENT_CHUNK_SIZE + 1);
+                composite.addComponent(true, blobContent);
+                blobContent = composite;
+            }
+            ((CompositeByteBuf) blobContent).addComponent(true, data);
+        }
+        blobReceived += data.readableBytes();
+        if (blobReceived < blob.length()) {
+            return null;
+        }
+        blob.setContent(blobContent);
+        blobContent = null;
+        blobReceived = 0;
+        blobIndex++;
+        return nextPendingBlob();
+    }
+
+    /**
+     * 跳过长度为0的附件（它们没有附件帧），所有附件都接收完毕时返回暂存的消息
+     */
+    private Object nextPendingBlob() {
+        while (blobIndex < pendingBlobs.size() && pendingBlobs.get(blobIndex).length() == 0) {
+            pendingBlobs.get(blobIndex++).setContent(Unpooled.EMPTY_BUFFER);
+        }
+        if (blobIndex < pendingBlobs.size()) {
+            return null;
+        }
+        Object msg = pendingMessage;
+        pendingMessage = null;
+        pendingBlobs = null;
+        return msg;
+    }
+
+    /**
+     * 解码器被移除（连接关闭）时，释放尚未交出去的消息中已经收到的附件数据
+     */
     @Override
-    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
-        // ByteBuf的长度
-        int length = msg.readableBytes();
-        // 构建length长度的字节数组
-        byte[] array = new byte[length];
-        // 将ByteBuf数据复制到字节数组中
-        msg.readBytes(array);
-        // 反序列化对象
-        logger.info("准备反序列化对象...");
-        Object obj = SerializationUtil.deserialize(array, this.genericClass);
-        // 添加到反序列化对象结果列表
-        logger.info("反序列化对象完毕，准备将其添加到反序列化对象结果列表...");
-        out.add(obj);
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        if (blobContent != null) {
+            blobContent.release();
+            blobContent = null;
+        }
+        if (pendingMessage != null) {
+            RPCProtocol.releaseAttachments(pendingMessage);
+            pendingMessage = null;
+            pendingBlobs = null;
+        }
+        super.handlerRemoved0(ctx);
+    }
+
+    /**
+     * 反序列化对象，堆内存的ByteBuf直接使用其底层数组，直接内存的ByteBuf则以流的方式读取
+     */
+    private Object deserialize(Serializer serializer, ByteBuf buf, int length, Class<?> clazz) throws Exception {
+        if (buf.hasArray()) {
+            return serializer.deserialize(buf.array(), buf.arrayOffset() + buf.readerIndex(), length, clazz);
+        }
+        input.buf = buf;
+        input.end = buf.readerIndex() + length;
+        try {
+            return serializer.deserialize(input, clazz);
+        } finally {
+            input.buf = null;
+        }
+    }
+
+    /**
+     * 读取ByteBuf中指定长度数据的输入流，与ByteBufInputStream不同，可以更换读取的ByteBuf，所以每个解码器只需要一个
+     */
+    private static final class ByteBufInput extends InputStream {
+
+        ByteBuf buf;
+        // 可以读取的数据的结束位置
+        int end;
+
+        @Override
+        public int read() {
+            if (buf.readerIndex() >= end) {
+                return -1;
+            }
+            return buf.readByte() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int available = available();
+            if (available == 0) {
+                return len == 0 ? 0 : -1;
+            }
+            len = Math.min(available, len);
+            buf.readBytes(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.min(available(), Math.max(n, 0));
+            buf.skipBytes(skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return end - buf.readerIndex();
+        }
     }
 
 }
@@ -1,32 +1,179 @@
 package cn.xpleaf.rpc.common.utils;
 
+import java.io.OutputStream;
+import java.util.List;
+
+import cn.xpleaf.rpc.common.pojo.Blob;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.concurrent.PromiseCombiner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * RPCEncoder继承自Netty中的MessageToByteEncoder类，
  * 并重写抽象方法encode(ChannelHandlerContext ctx, Object msg, ByteBuf out)
- * 它负责将Object类型的POJO对象编码为byte数组，然后写入到ByteBuf中
+ * 它负责按照RPCProtocol定义的协议，先写入消息头，再使用消息对象指定的序列化器将Object类型的POJO对象直接序列化到ByteBuf中
+ *
+ * MessageToByteEncoder默认会从池化的直接内存中分配ByteBuf，序列化时不再生成中间的byte数组，
+ * 数据直接写入最终要发送出去的ByteBuf；编码器只在所属连接的I/O线程上执行，包装ByteBuf的输出流也只创建一次，每个消息复用
+ *
+ * 握手协商了压缩算法之后，消息体超过压缩阈值时会被压缩，压缩后没有变小则仍然发送原始数据，
+ * 每条连接都有自己的编码器，所以压缩设置只对这条连接有效
+ *
+ * 消息中带有Blob附件时，消息帧之后紧跟着写出附件帧，附件的数据不经过序列化器，也不压缩：
+ * 文件附件以FileRegion写出（支持时使用sendfile），其余附件以ByteBuf切片写出，都不复制数据
  *
  * @author yeyonghao
  */
 public class RPCEncoder extends MessageToByteEncoder<Object> {
 
+    // 协商好的压缩算法，null表示不压缩
+    private volatile Compressor compressor;
+    // 压缩阈值，消息体小于该长度时不压缩
+    private volatile int compressThreshold = RPCProtocol.DEFAULT_COMPRESS_THRESHOLD;
+    // 复用的输出流，序列化器通过它将消息体写入ByteBuf
+    private final ByteBufOutput output = new ByteBufOutput();
     // log4j日志记录
     private Logger logger = LoggerFactory.getLogger(RPCEncoder.class);
 
+    /**
+     * 设置压缩算法和压缩阈值，握手协商成功后调用
+     *
+     * @param compressor        压缩算法，null表示不压缩
+     * @param compressThreshold 压缩阈值，消息体小于该长度时不压缩
+     */
+    public void setCompression(Compressor compressor, int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+        this.compressor = compressor;
+    }
+
+    /**
+     * 写出消息，带有附件时在消息帧之后写出所有的附件帧，所有的帧都写出成功后promise才成功
+     *
+     * 消息帧在super.write中同步编码，编码失败（如序列化失败）时直接让promise失败，不写出任何附件帧，
+     * 否则对端会把这些附件帧当作下一个消息的附件，整条连接的帧都会错位。此时还没有为附件创建任何切片，
+     * Blob本身由其所有者在promise失败后释放（服务端的响应和流式元素由服务端释放，客户端的请求参数由调用方释放）
+     */
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        List<Blob> blobs = RPCProtocol.attachmentsOf(msg);
+        if (blobs == null) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+        ChannelPromise messagePromise = ctx.newPromise();
+        try {
+            super.write(ctx, msg, messagePromise);
+        } catch (Throwable t) {
+            promise.tryFailure(t);
+            return;
+        }
+        if (messagePromise.isDone() && !messagePromise.isSuccess()) {
+            promise.tryFailure(messagePromise.cause());
+            return;
+        }
+        PromiseCombiner combiner = new PromiseCombiner();
+        combiner.add((ChannelFuture) messagePromise);
+        for (Blob blob : blobs) {
+            int length = blob.length();
+            for (int offset = 0; offset < length; offset += RPCProtocol.ATTACHMENT_CHUNK_SIZE) {
+                int count = Math.min(RPCProtocol.ATTACHMENT_CHUNK_SIZE, length - offset);
+                ByteBuf header = ctx.alloc().buffer(RPCProtocol.HEADER_LENGTH);
+                header.writeShort(RPCProtocol.MAGIC);
+                header.writeByte(RPCProtocol.VERSION);
+                header.writeByte(RPCProtocol.TYPE_ATTACHMENT);
+                header.writeByte(0);
+                header.writeByte(0);
+                header.writeInt(count);
+                combiner.add(ctx.write(header));
+                combiner.add(ctx.write(blob.newPayload(offset, count)));
+            }
+        }
+        combiner.finish(promise);
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+        // 写入消息头，length字段先占位，等消息体写完之后再回填
+        out.writeShort(RPCProtocol.MAGIC);
+        out.writeByte(RPCProtocol.VERSION);
+        out.writeByte(RPCProtocol.typeOf(msg));
+        Serializer serializer = SerializerFactory.getSerializer(RPCProtocol.serializerOf(msg));
+        if (serializer == null) {
+            throw new IllegalArgumentException("不存在编号为[" + RPCProtocol.serializerOf(msg) + "]的序列化器");
+        }
+        out.writeByte(serializer.getCode());
+        int compressorIndex = out.writerIndex();
+        out.writeByte(0);
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+
         // 直接生成序列化对象
         // 需要注意的是，使用protostuff序列化时，不需要知道pojo对象的具体类型也可以进行序列化的
         // 在反序列化时，只要提供序列化后的字节数组和原来pojo对象的类型即可完成反序列化
-        logger.info("准备序列化对象...");
-        byte[] array = SerializationUtil.serialize(msg);
-        logger.info("序列化对象完毕，准备将其写入到ByteBuf中...");
-        out.writeBytes(array);
+        logger.debug("准备使用[{}]序列化对象...", serializer.getName());
+        int bodyIndex = out.writerIndex();
+        output.buf = out;
+        try {
+            serializer.serialize(msg, output);
+        } finally {
+            output.buf = null;
+        }
+        int length = out.writerIndex() - bodyIndex;
+        // 超过阈值的消息体进行压缩
+        Compressor compressor = this.compressor;
+        if (compressor != null && length >= compressThreshold) {
+            length = compress(ctx, out, bodyIndex, length, compressor, compressorIndex);
+        }
+        // 回填消息体的长度
+        out.setInt(lengthIndex, length);
+        RPCProtocol.setSize(msg, length);
+        logger.debug("序列化对象完毕，已写入到ByteBuf中...");
+    }
+
+    /**
+     * 压缩消息体，压缩后变小才替换原始数据，并在消息头中写入压缩算法编号
+     *
+     * @return 消息体最终的长度
+     */
+    private int compress(ChannelHandlerContext ctx, ByteBuf out, int bodyIndex, int length, Compressor compressor,
+                         int compressorIndex) throws Exception {
+        ByteBuf compressed = ctx.alloc().buffer(length / 2);
+        try {
+            compressor.compress(out.slice(bodyIndex, length), compressed);
+            int compressedLength = compressed.readableBytes();
+            if (compressedLength >= length) {
+                return length;
+            }
+            out.writerIndex(bodyIndex);
+            out.writeBytes(compressed);
+            out.setByte(compressorIndex, compressor.getCode());
+            return compressedLength;
+        } finally {
+            compressed.release();
+        }
+    }
+
+    /**
+     * 写入ByteBuf的输出流，与ByteBufOutputStream不同，可以更换写入的ByteBuf，所以每个编码器只需要一个
+     */
+    private static final class ByteBufOutput extends OutputStream {
+
+        ByteBuf buf;
+
+        @Override
+        public void write(int b) {
+            buf.writeByte(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buf.writeBytes(b, off, len);
+        }
     }
 
 }
@@ -0,0 +1,258 @@
+package cn.xpleaf.rpc.common.utils;
+
+import cn.xpleaf.rpc.common.pojo.Blob;
+import cn.xpleaf.rpc.common.pojo.RPCHandshake;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import cn.xpleaf.rpc.common.pojo.RPCStreamCredit;
+import cn.xpleaf.rpc.common.pojo.RPCStreamElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * minidubbo的传输协议定义，RPCEncoder和RPCDecoder按照该协议对消息进行编解码
+ *
+ * 每一个消息帧都由定长的消息头和变长的消息体组成，消息头的格式如下（共10个字节）：
+ *
+ * <pre>
+ * +-----------+------------+---------+---------------+---------------+------------+
+ * | magic (2) | version(1) | type(1) | serializer(1) | compressor(1) | length (4) |
+ * +-----------+------------+---------+---------------+---------------+------------+
+ * |     body (length个字节，由serializer指定的序列化器序列化、compressor指定的算法压缩的对象)    |
+ * +-------------------------------------------------------------------------------+
+ * </pre>
+ *
+ * magic用于快速识别非法的连接数据，version用于后续协议的升级，type表示消息体对象的类型，
+ * serializer为消息体使用的序列化器编号（见SerializerFactory），compressor为消息体使用的压缩算法编号（见CompressorFactory），
+ * 0表示没有压缩，length为消息体（压缩后）的长度
+ *
+ * 连接建立后，客户端首先发送一个握手消息（RPCHandshake），服务端回复其所有服务方法的签名，
+ * 签名在列表中的位置加1即为该方法在这条连接上的编号，之后的请求只需要携带方法编号；
+ * 握手时还会协商压缩算法，协商成功后双方对超过各自阈值的消息体进行压缩，小消息不压缩
+ *
+ * 返回类型为Iterator的方法为流式调用：服务端把每个元素作为一个单独的RPCStreamElement消息帧发送，
+ * 最后以一个普通的RPCResponse结束，客户端通过RPCStreamCredit消息补充信用或者取消流
+ *
+ * 消息中的Blob附件（见Blob）不经过序列化器，消息帧之后紧跟着每个附件的数据，每个附件按ATTACHMENT_CHUNK_SIZE拆分为若干个附件帧，
+ * 附件帧的消息头与普通消息帧相同，type为TYPE_ATTACHMENT，serializer和compressor都为0，消息体就是附件的原始数据，
+ * 接收方收到消息之后，等到其所有附件的数据都到达之后才把消息交给后面的handler
+ *
+ * @author yeyonghao
+ */
+public final class RPCProtocol {
+
+    // 魔数，即字符"md"（minidubbo）
+    public static final short MAGIC = 0x6D64;
+    // 协议版本号，版本2在消息头中增加了压缩算法编号
+    public static final byte VERSION = 2;
+
+    // 消息类型：RPC请求
+    public static final byte TYPE_REQUEST = 1;
+    // 消息类型：RPC响应
+    public static final byte TYPE_RESPONSE = 2;
+    // 消息类型：握手，用于协商方法编号
+    public static final byte TYPE_HANDSHAKE = 3;
+    // 消息类型：流式调用的元素
+    public static final byte TYPE_STREAM_ELEMENT = 4;
+    // 消息类型：流式调用的信用
+    public static final byte TYPE_STREAM_CREDIT = 5;
+    // 消息类型：附件的原始数据
+    public static final byte TYPE_ATTACHMENT = 6;
+
+    // 消息头中length字段的偏移量
+    public static final int LENGTH_FIELD_OFFSET = 6;
+    // 消息头中length字段的长度
+    public static final int LENGTH_FIELD_LENGTH = 4;
+    // 消息头的长度
+    public static final int HEADER_LENGTH = LENGTH_FIELD_OFFSET + LENGTH_FIELD_LENGTH;
+    // 默认允许的最大消息帧长度，64MB
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+    // 附件帧的最大长度，更大的附件会被拆分为多个附件帧，需要小于接收方允许的最大消息帧长度
+    public static final int ATTACHMENT_CHUNK_SIZE = 8 * 1024 * 1024;
+    // 默认允许一个消息的所有附件加起来的最大长度，256MB
+    public static final long DEFAULT_MAX_ATTACHMENT_LENGTH = 256L * 1024 * 1024;
+    // 默认的压缩阈值，消息体小于该长度时不压缩，压缩小消息节省的带宽抵不上消耗的CPU
+    public static final int DEFAULT_COMPRESS_THRESHOLD = 8 * 1024;
+
+    private RPCProtocol() {
+    }
+
+    /**
+     * 根据消息对象获取消息类型
+     *
+     * @param msg 需要编码的消息对象
+     * @return 消息类型
+     */
+    public static byte typeOf(Object msg) {
+        if (msg instanceof RPCRequest) {
+            return TYPE_REQUEST;
+        }
+        if (msg instanceof RPCResponse) {
+            return TYPE_RESPONSE;
+        }
+        if (msg instanceof RPCHandshake) {
+            return TYPE_HANDSHAKE;
+        }
+        if (msg instanceof RPCStreamElement) {
+            return TYPE_STREAM_ELEMENT;
+        }
+        if (msg instanceof RPCStreamCredit) {
+            return TYPE_STREAM_CREDIT;
+        }
+        throw new IllegalArgumentException("不支持编码的消息类型: " + msg.getClass().getName());
+    }
+
+    /**
+     * 获取消息对象指定的序列化器编号，0表示使用默认的序列化器
+     *
+     * @param msg 需要编码的消息对象
+     * @return 序列化器编号
+     */
+    public static byte serializerOf(Object msg) {
+        if (msg instanceof RPCRequest) {
+            return ((RPCRequest) msg).getSerializer();
+        }
+        if (msg instanceof RPCResponse) {
+            return ((RPCResponse) msg).getSerializer();
+        }
+        if (msg instanceof RPCStreamElement) {
+            return ((RPCStreamElement) msg).getSerializer();
+        }
+        return 0;
+    }
+
+    /**
+     * 将接收到的消息头中的序列化器编号设置到消息对象上，服务端回写响应时会沿用该序列化器
+     *
+     * @param msg        解码后的消息对象
+     * @param serializer 序列化器编号
+     */
+    public static void setSerializer(Object msg, byte serializer) {
+        if (msg instanceof RPCRequest) {
+            ((RPCRequest) msg).setSerializer(serializer);
+        } else if (msg instanceof RPCResponse) {
+            ((RPCResponse) msg).setSerializer(serializer);
+        } else if (msg instanceof RPCStreamElement) {
+            ((RPCStreamElement) msg).setSerializer(serializer);
+        }
+    }
+
+    /**
+     * 将消息体序列化后的大小设置到消息对象上，用于统计消息的大小
+     *
+     * @param msg  编码或者解码的消息对象
+     * @param size 消息体的大小
+     */
+    public static void setSize(Object msg, int size) {
+        if (msg instanceof RPCRequest) {
+            ((RPCRequest) msg).setSize(size);
+        } else if (msg instanceof RPCResponse) {
+            ((RPCResponse) msg).setSize(size);
+        }
+    }
+
+    /**
+     * 根据消息类型获取消息体对象的类型
+     *
+     * @param type 消息类型
+     * @return 消息体对象的类型，未知的消息类型返回null
+     */
+    public static Class<?> classOf(byte type) {
+        switch (type) {
+            case TYPE_REQUEST:
+                return RPCRequest.class;
+            case TYPE_RESPONSE:
+                return RPCResponse.class;
+            case TYPE_HANDSHAKE:
+                return RPCHandshake.class;
+            case TYPE_STREAM_ELEMENT:
+                return RPCStreamElement.class;
+            case TYPE_STREAM_CREDIT:
+                return RPCStreamCredit.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 生成方法签名，如cn.xpleaf.service.UserService#getUser(java.lang.String,int)，
+     * 客户端和服务端使用相同的签名来协商方法编号
+     *
+     * @param interfaceName  接口名称
+     * @param methodName     方法名称
+     * @param parameterTypes 参数类型
+     * @return 方法签名
+     */
+    public static String signatureOf(String interfaceName, String methodName, Class<?>[] parameterTypes) {
+        StringBuilder sb = new StringBuilder(interfaceName).append('#').append(methodName).append('(');
+        if (parameterTypes != null) {
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(parameterTypes[i].getName());
+            }
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * 判断方法的返回类型是否为流式调用，客户端和服务端使用相同的判断方式
+     *
+     * @param returnType 方法的返回类型
+     * @return 返回类型为Iterator时为true
+     */
+    public static boolean isStreamType(Class<?> returnType) {
+        return returnType == Iterator.class;
+    }
+
+    /**
+     * 获取消息中的附件，只有请求的参数、响应的返回值和流式调用的元素本身可以是附件，
+     * 发送方和接收方按相同的顺序获取，附件帧也按该顺序发送
+     *
+     * @param msg 消息对象
+     * @return 消息中的附件，没有附件时返回null
+     */
+    public static List<Blob> attachmentsOf(Object msg) {
+        if (msg instanceof RPCRequest) {
+            Object[] parameters = ((RPCRequest) msg).getParameters();
+            if (parameters == null) {
+                return null;
+            }
+            List<Blob> blobs = null;
+            for (Object parameter : parameters) {
+                if (parameter instanceof Blob) {
+                    if (blobs == null) {
+                        blobs = new ArrayList<>();
+                    }
+                    blobs.add((Blob) parameter);
+                }
+            }
+            return blobs;
+        }
+        Object value = null;
+        if (msg instanceof RPCResponse) {
+            value = ((RPCResponse) msg).getResult();
+        } else if (msg instanceof RPCStreamElement) {
+            value = ((RPCStreamElement) msg).getElement();
+        }
+        return value instanceof Blob ? Collections.singletonList((Blob) value) : null;
+    }
+
+    /**
+     * 释放消息中所有附件的数据
+     *
+     * @param msg 消息对象
+     */
+    public static void releaseAttachments(Object msg) {
+        List<Blob> blobs = attachmentsOf(msg);
+        if (blobs != null) {
+            for (Blob blob : blobs) {
+                blob.close();
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package cn.xpleaf.rpc.common.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -9,6 +12,7 @@ import com.dyuproject.protostuff.runtime.RuntimeSchema;
 
 /**
  * 具备缓存功能的序列化工具类，基于Protostuff实现（其基于Google Protobuf实现）
+ * 每种类型的schema只通过反射创建一次，之后都从缓存中获取，序列化器SPI中的ProtostuffSerializer即基于本类实现
  *
  * 所以如果希望写好这个序列化工具类，下面几个方面的知识需要准备好：
  * 1.理解并能使用Google Protobuf
@@ -23,6 +27,14 @@ public class SerializationUtil {
 
     // 缓存schema对象的map
     private static Map<Class<?>, RuntimeSchema<?>> cachedSchema = new ConcurrentHashMap<Class<?>, RuntimeSchema<?>>();
+    // 每个线程复用的LinkedBuffer对象，避免每次序列化都重新分配缓冲区
+    private static final ThreadLocal<LinkedBuffer> BUFFER = new ThreadLocal<LinkedBuffer>() {
+
+        @Override
+        protected LinkedBuffer initialValue() {
+            return LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+        }
+    };
 
     /**
      * 根据获取相应类型的schema方法
@@ -30,8 +42,8 @@ public class SerializationUtil {
      * @param clazz
      * @return
      */
-    @SuppressWarnings({"unchecked", "unused"})
-    private <T> RuntimeSchema<T> getSchema(Class<T> clazz) {
+    @SuppressWarnings("unchecked")
+    public static <T> RuntimeSchema<T> getSchema(Class<T> clazz) {
         // 先尝试从缓存schema map中获取相应类型的schema
         RuntimeSchema<T> schema = (RuntimeSchema<T>) cachedSchema.get(clazz);
         // 如果没有获取到对应的schema，则创建一个该类型的schema
@@ -56,14 +68,40 @@ public class SerializationUtil {
     public static <T> byte[] serialize(T obj) {
         // 获取泛型对象的类型
         Class<T> clazz = (Class<T>) obj.getClass();
-        // 创建泛型对象的schema对象
-        RuntimeSchema<T> schema = RuntimeSchema.createFrom(clazz);
-        // 创建LinkedBuffer对象
-        LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
-        // 序列化
-        byte[] array = ProtostuffIOUtil.toByteArray(obj, schema, buffer);
-        // 返回序列化对象
-        return array;
+        // 获取泛型对象的schema对象，同一类型的schema只会创建一次
+        RuntimeSchema<T> schema = getSchema(clazz);
+        // 获取当前线程复用的LinkedBuffer对象
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // 序列化
+            return ProtostuffIOUtil.toByteArray(obj, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * 序列化方法，将对象直接序列化到输出流中（对象 ---> 输出流），不生成中间的字节数组
+     *
+     * @param obj
+     * @param out 输出流，如包装了ByteBuf的ByteBufOutputStream
+     * @return 写入的字节数
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> int serialize(T obj, OutputStream out) throws IOException {
+        // 获取泛型对象的类型
+        Class<T> clazz = (Class<T>) obj.getClass();
+        // 获取泛型对象的schema对象，同一类型的schema只会创建一次
+        RuntimeSchema<T> schema = getSchema(clazz);
+        // 获取当前线程复用的LinkedBuffer对象
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // 序列化
+            return ProtostuffIOUtil.writeTo(out, obj, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
     }
 
     /**
@@ -74,12 +112,50 @@ public class SerializationUtil {
      * @return
      */
     public static <T> T deserialize(byte[] data, Class<T> clazz) {
-        // 创建泛型对象的schema对象
-        RuntimeSchema<T> schema = RuntimeSchema.createFrom(clazz);
+        return deserialize(data, 0, data.length, clazz);
+    }
+
+    /**
+     * 反序列化方法，将字节数组中的指定部分反序列化为对象（字节数组 ---> 对象）
+     *
+     * @param data
+     * @param offset 数据在字节数组中的起始位置
+     * @param length 数据的长度
+     * @param clazz
+     * @return
+     */
+    public static <T> T deserialize(byte[] data, int offset, int length, Class<T> clazz) {
+        // 获取泛型对象的schema对象，同一类型的schema只会创建一次
+        RuntimeSchema<T> schema = getSchema(clazz);
         // 根据schema实例化对象
         T message = schema.newMessage();
         // 将字节数组中的数据反序列化到message对象
-        ProtostuffIOUtil.mergeFrom(data, message, schema);
+        ProtostuffIOUtil.mergeFrom(data, offset, length, message, schema);
+        // 返回反序列化对象
+        return message;
+    }
+
+    /**
+     * 反序列化方法，将输入流中的数据反序列化为对象（输入流 ---> 对象）
+     *
+     * @param in 输入流，如包装了ByteBuf的ByteBufInputStream
+     * @param clazz
+     * @return
+     * @throws IOException
+     */
+    public static <T> T deserialize(InputStream in, Class<T> clazz) throws IOException {
+        // 获取泛型对象的schema对象，同一类型的schema只会创建一次
+        RuntimeSchema<T> schema = getSchema(clazz);
+        // 根据schema实例化对象
+        T message = schema.newMessage();
+        // 获取当前线程复用的LinkedBuffer对象，作为读取输入流的缓冲区
+        LinkedBuffer buffer = BUFFER.get();
+        try {
+            // 将输入流中的数据反序列化到message对象
+            ProtostuffIOUtil.mergeFrom(in, message, schema, buffer);
+        } finally {
+            buffer.clear();
+        }
         // 返回反序列化对象
         return message;
     }
@@ -0,0 +1,60 @@
+package cn.xpleaf.rpc.common.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 序列化器SPI，RPCEncoder和RPCDecoder通过该接口对消息体进行编解码
+ *
+ * 每个序列化器都有一个唯一的编号，编号会写入到消息头中，接收方根据消息头中的编号选择对应的序列化器进行反序列化，
+ * 服务端回写响应时也会使用与请求相同的序列化器，所以客户端可以为每个服务单独选择最适合其数据特点的序列化器
+ *
+ * 自定义的序列化器可以通过SerializerFactory.register注册，也可以通过java.util.ServiceLoader的方式，
+ * 在META-INF/services/cn.xpleaf.rpc.common.utils.Serializer文件中声明实现类
+ *
+ * @author yeyonghao
+ */
+public interface Serializer {
+
+    /**
+     * 序列化器的编号，会写入到消息头中，不同的序列化器编号不能相同，0为保留值
+     */
+    byte getCode();
+
+    /**
+     * 序列化器的名称，用于配置，如protostuff、jdk
+     */
+    String getName();
+
+    /**
+     * 将对象直接序列化到输出流中
+     *
+     * @param obj 需要序列化的对象
+     * @param out 输出流
+     * @throws IOException
+     */
+    void serialize(Object obj, OutputStream out) throws IOException;
+
+    /**
+     * 将输入流中的数据反序列化为对象
+     *
+     * @param in    输入流
+     * @param clazz 对象的类型
+     * @return 反序列化后的对象
+     * @throws IOException
+     */
+    <T> T deserialize(InputStream in, Class<T> clazz) throws IOException;
+
+    /**
+     * 将字节数组中的指定部分反序列化为对象
+     *
+     * @param data   字节数组
+     * @param offset 数据在字节数组中的起始位置
+     * @param length 数据的长度
+     * @param clazz  对象的类型
+     * @return 反序列化后的对象
+     * @throws IOException
+     */
+    <T> T deserialize(byte[] data, int offset, int length, Class<T> clazz) throws IOException;
+}
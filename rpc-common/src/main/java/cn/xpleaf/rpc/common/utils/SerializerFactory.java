@@ -0,0 +1,87 @@
+package cn.xpleaf.rpc.common.utils;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 序列化器工厂，按编号或名称获取序列化器
+ *
+ * 内置了protostuff（默认）和protostuff-graph两种序列化器，
+ * 同时会通过java.util.ServiceLoader加载classpath中声明的自定义序列化器；
+ * jdk序列化器反序列化网络数据存在安全风险，默认不注册，需要时通过register(new JdkSerializer(...))显式开启
+ *
+ * @author yeyonghao
+ */
+public final class SerializerFactory {
+
+    // 默认的序列化器
+    private static final Serializer DEFAULT_SERIALIZER = new ProtostuffSerializer();
+    // 按编号索引的序列化器，消息头中的编号为一个字节，所以直接使用数组即可
+    private static final AtomicReferenceArray<Serializer> SERIALIZERS_BY_CODE = new AtomicReferenceArray<>(256);
+    // 按名称索引的序列化器
+    private static final Map<String, Serializer> SERIALIZERS_BY_NAME = new ConcurrentHashMap<>();
+
+    static {
+        register(DEFAULT_SERIALIZER);
+        register(new ProtostuffGraphSerializer());
+        for (Serializer serializer : ServiceLoader.load(Serializer.class)) {
+            register(serializer);
+        }
+    }
+
+    private SerializerFactory() {
+    }
+
+    /**
+     * 注册序列化器，编号或名称与已有的序列化器相同时会覆盖已有的序列化器
+     *
+     * @param serializer 序列化器
+     */
+    public static synchronized void register(Serializer serializer) {
+        if (serializer.getCode() == 0) {
+            throw new IllegalArgumentException("序列化器编号0为保留值: " + serializer.getName());
+        }
+        SERIALIZERS_BY_CODE.set(serializer.getCode() & 0xFF, serializer);
+        SERIALIZERS_BY_NAME.put(serializer.getName(), serializer);
+    }
+
+    /**
+     * 获取默认的序列化器
+     */
+    public static Serializer getDefault() {
+        return DEFAULT_SERIALIZER;
+    }
+
+    /**
+     * 根据编号获取序列化器，编号为0时返回默认的序列化器
+     *
+     * @param code 序列化器编号
+     * @return 对应的序列化器，不存在则返回null
+     */
+    public static Serializer getSerializer(byte code) {
+        if (code == 0) {
+            return DEFAULT_SERIALIZER;
+        }
+        return SERIALIZERS_BY_CODE.get(code & 0xFF);
+    }
+
+    /**
+     * 根据名称获取序列化器，名称为null时返回默认的序列化器
+     *
+     * @param name 序列化器名称
+     * @return 对应的序列化器
+     * @throws IllegalArgumentException 不存在该名称的序列化器
+     */
+    public static Serializer getSerializer(String name) {
+        if (name == null) {
+            return DEFAULT_SERIALIZER;
+        }
+        Serializer serializer = SERIALIZERS_BY_NAME.get(name);
+        if (serializer == null) {
+            throw new IllegalArgumentException("不存在名称为[" + name + "]的序列化器");
+        }
+        return serializer;
+    }
+}
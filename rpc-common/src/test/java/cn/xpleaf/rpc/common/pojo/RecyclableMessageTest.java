@@ -0,0 +1,97 @@
+package cn.xpleaf.rpc.common.pojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.exception.RPCException;
+
+/**
+ * RPCRequest和RPCResponse对象池的测试：回收时清空所有字段，直接创建的对象调用recycle没有任何效果
+ *
+ * @author yeyonghao
+ */
+public class RecyclableMessageTest {
+
+    @Test
+    public void recycledRequestIsCleared() {
+        RPCRequest request = RPCRequest.newInstance();
+        fill(request);
+
+        request.recycle();
+        assertEquals(0, request.getRequestId());
+        assertEquals(0, request.getMethodId());
+        assertEquals(0, request.getTimeout());
+        assertNull(request.getInterfaceName());
+        assertNull(request.getMethodName());
+        assertNull(request.getParameterTypes());
+        assertNull(request.getParameters());
+        assertEquals(0, request.getCredit());
+        assertEquals(0, request.getSerializer());
+        assertEquals(0, request.getSize());
+        assertNull(request.getSignature());
+    }
+
+    @Test
+    public void requestCreatedWithNewIsNotRecycled() {
+        RPCRequest request = new RPCRequest();
+        fill(request);
+
+        request.recycle();
+        assertEquals(1, request.getRequestId());
+        assertEquals("echo", request.getMethodName());
+        assertEquals(3, request.getCredit());
+    }
+
+    @Test
+    public void recycledResponseIsCleared() {
+        RPCResponse response = RPCResponse.newInstance();
+        fill(response);
+
+        response.recycle();
+        assertEquals(0, response.getRequestId());
+        assertFalse(response.isError());
+        assertNull(response.getErrorMessage());
+        assertNull(response.getError());
+        assertNull(response.getResult());
+        assertEquals(0, response.getSerializer());
+        assertEquals(0, response.getSize());
+    }
+
+    @Test
+    public void responseCreatedWithNewIsNotRecycled() {
+        RPCResponse response = new RPCResponse();
+        fill(response);
+        Throwable error = response.getError();
+
+        response.recycle();
+        assertEquals(1, response.getRequestId());
+        assertEquals(RPCException.TIMEOUT, response.getStatus());
+        assertSame(error, response.getError());
+    }
+
+    private static void fill(RPCRequest request) {
+        request.setRequestId(1);
+        request.setMethodId(2);
+        request.setTimeout(100);
+        request.setInterfaceName("cn.xpleaf.rpc.test.EchoService");
+        request.setMethodName("echo");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setParameters(new Object[]{"hello"});
+        request.setCredit(3);
+        request.setSerializer((byte) 1);
+        request.setSize(64);
+        request.setSignature("cn.xpleaf.rpc.test.EchoService#echo(java.lang.String)");
+    }
+
+    private static void fill(RPCResponse response) {
+        response.setRequestId(1);
+        response.setResult("hello");
+        response.setError(new RPCException(RPCException.TIMEOUT, "timeout"));
+        response.setSerializer((byte) 1);
+        response.setSize(64);
+    }
+}
@@ -0,0 +1,94 @@
+package cn.xpleaf.rpc.common.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+
+/**
+ * MemoryRegistry的测试：同一个命名空间下的对象共享注册的服务，不同命名空间互不影响，
+ * 注销只删除本对象注册的服务提供者，列表只在变化时被替换
+ *
+ * @author yeyonghao
+ */
+public class MemoryRegistryTest {
+
+    private static final String SERVICE = "cn.xpleaf.rpc.test.EchoService";
+    private static final String OTHER_SERVICE = "cn.xpleaf.rpc.test.UserService";
+
+    @Test
+    public void providersAreSharedWithinNamespace() {
+        MemoryRegistry server = new MemoryRegistry("shared");
+        MemoryRegistry client = new MemoryRegistry("shared");
+        MemoryRegistry isolated = new MemoryRegistry("isolated");
+        try {
+            assertTrue(client.getProviders(SERVICE).isEmpty());
+
+            server.register("127.0.0.1:20001", Arrays.asList(SERVICE, OTHER_SERVICE), 50);
+            List<Provider> providers = client.getProviders(SERVICE);
+            assertEquals(1, providers.size());
+            assertEquals("127.0.0.1:20001", providers.get(0).getAddress());
+            assertEquals(50, providers.get(0).getWeight());
+            assertEquals(1, client.getProviders(OTHER_SERVICE).size());
+            assertTrue(isolated.getProviders(SERVICE).isEmpty());
+        } finally {
+            server.close();
+        }
+        assertTrue(client.getProviders(SERVICE).isEmpty());
+        assertTrue(client.getProviders(OTHER_SERVICE).isEmpty());
+    }
+
+    @Test
+    public void unregisterRemovesOnlyOwnProviders() {
+        MemoryRegistry providerA = new MemoryRegistry("unregister");
+        MemoryRegistry providerB = new MemoryRegistry("unregister");
+        MemoryRegistry client = new MemoryRegistry("unregister");
+        providerA.register("127.0.0.1:20001", Collections.singletonList(SERVICE), Provider.DEFAULT_WEIGHT);
+        providerB.register("127.0.0.1:20002", Collections.singletonList(SERVICE), Provider.DEFAULT_WEIGHT);
+        assertEquals(2, client.getProviders(SERVICE).size());
+
+        providerA.unregister();
+        List<Provider> providers = client.getProviders(SERVICE);
+        assertEquals(1, providers.size());
+        assertEquals(20002, providers.get(0).getPort());
+        providerB.unregister();
+        assertTrue(client.getProviders(SERVICE).isEmpty());
+    }
+
+    @Test
+    public void snapshotIsReplacedOnlyOnChange() {
+        MemoryRegistry provider = new MemoryRegistry("snapshot");
+        MemoryRegistry client = new MemoryRegistry("snapshot");
+        try {
+            provider.register("127.0.0.1:20001", Collections.singletonList(SERVICE), Provider.DEFAULT_WEIGHT);
+            List<Provider> providers = client.getProviders(SERVICE);
+            assertSame(providers, client.getProviders(SERVICE));
+
+            new MemoryRegistry("snapshot").register("127.0.0.1:20002", Collections.singletonList(SERVICE),
+                    Provider.DEFAULT_WEIGHT);
+            assertNotSame(providers, client.getProviders(SERVICE));
+            assertEquals(1, providers.size());
+        } finally {
+            provider.close();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void providersAreImmutable() {
+        MemoryRegistry provider = new MemoryRegistry("immutable");
+        try {
+            provider.register("127.0.0.1:20001", Collections.singletonList(SERVICE), Provider.DEFAULT_WEIGHT);
+            provider.getProviders(SERVICE).clear();
+        } finally {
+            provider.close();
+        }
+    }
+}
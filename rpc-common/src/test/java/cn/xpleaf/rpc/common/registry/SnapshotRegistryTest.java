@@ -0,0 +1,199 @@
+package cn.xpleaf.rpc.common.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+
+/**
+ * SnapshotRegistry的测试：注册中心返回的服务提供者列表被写入快照文件，冷启动时先使用快照，
+ * 注册中心返回非空列表后改用注册中心的结果，注册中心不可用时继续使用快照
+ *
+ * @author yeyonghao
+ */
+public class SnapshotRegistryTest {
+
+    // 等待后台任务完成的最长时间（毫秒）
+    private static final long WAIT_TIMEOUT = 10000;
+    private static final String SERVICE = "cn.xpleaf.rpc.test.EchoService";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeRegistry delegate = new FakeRegistry();
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), "cache/registry.cache");
+    }
+
+    @Test
+    public void providersFromRegistryAreSaved() throws Exception {
+        SnapshotRegistry registry = new SnapshotRegistry(delegate, file.getPath());
+        try {
+            assertTrue(registry.getProviders(SERVICE).isEmpty());
+            delegate.providers = providers("127.0.0.1:20001", "127.0.0.1:20002?weight=50");
+            assertSame(delegate.providers, registry.getProviders(SERVICE));
+            waitForSnapshot("127.0.0.1:20001,127.0.0.1:20002?weight=50");
+
+            // 列表变化后重新写入
+            delegate.providers = providers("127.0.0.1:20003");
+            assertSame(delegate.providers, registry.getProviders(SERVICE));
+            waitForSnapshot("127.0.0.1:20003");
+        } finally {
+            registry.close();
+        }
+    }
+
+    @Test
+    public void coldStartUsesSnapshotUntilRegistryIsReady() throws Exception {
+        writeSnapshot("127.0.0.1:20001?weight=50");
+        SnapshotRegistry registry = new SnapshotRegistry(delegate, file.getPath());
+        try {
+            // 注册中心还没有返回服务提供者，使用快照中的列表
+            List<Provider> providers = registry.getProviders(SERVICE);
+            assertEquals(1, providers.size());
+            assertEquals("127.0.0.1:20001", providers.get(0).getAddress());
+            assertEquals(50, providers.get(0).getWeight());
+
+            // 注册中心返回非空列表后，由后台查询切换到注册中心的结果
+            delegate.providers = providers("127.0.0.1:20002");
+            long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+            while (registry.getProviders(SERVICE) != delegate.providers) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("没有切换为注册中心返回的服务提供者列表");
+                }
+                Thread.sleep(50);
+            }
+            waitForSnapshot("127.0.0.1:20002");
+        } finally {
+            registry.close();
+        }
+    }
+
+    @Test
+    public void snapshotIsUsedWhileRegistryFails() throws Exception {
+        writeSnapshot("127.0.0.1:20001");
+        delegate.failure = new IllegalStateException("zookeeper unavailable");
+        SnapshotRegistry registry = new SnapshotRegistry(delegate, file.getPath());
+        try {
+            List<Provider> providers = registry.getProviders(SERVICE);
+            assertEquals(1, providers.size());
+            // 等待后台查询失败之后仍然使用快照
+            long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+            while (delegate.queries == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(delegate.queries > 0);
+            assertSame(providers, registry.getProviders(SERVICE));
+        } finally {
+            registry.close();
+        }
+    }
+
+    @Test
+    public void registerIsDelegated() {
+        SnapshotRegistry registry = new SnapshotRegistry(delegate, file.getPath());
+        registry.register("127.0.0.1:20001", Collections.singletonList(SERVICE), Provider.DEFAULT_WEIGHT);
+        registry.unregister();
+        registry.close();
+        assertEquals(Arrays.asList("register 127.0.0.1:20001 [" + SERVICE + "]", "unregister", "close"),
+                delegate.events);
+    }
+
+    private void writeSnapshot(String data) throws Exception {
+        assertTrue(file.getParentFile().mkdirs());
+        Properties properties = new Properties();
+        properties.setProperty(SERVICE, data);
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, null);
+        }
+    }
+
+    /**
+     * 等待快照文件中接口的服务提供者数据变为给定值
+     */
+    private void waitForSnapshot(String data) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (true) {
+            if (file.exists()) {
+                Properties properties = new Properties();
+                try (InputStream in = new FileInputStream(file)) {
+                    properties.load(in);
+                }
+                if (data.equals(properties.getProperty(SERVICE))) {
+                    return;
+                }
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("快照文件没有写入" + data);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static List<Provider> providers(String... data) {
+        List<Provider> providers = new ArrayList<>();
+        for (String item : data) {
+            providers.add(Provider.parse(item));
+        }
+        return Collections.unmodifiableList(providers);
+    }
+
+    /**
+     * 返回给定服务提供者列表的注册中心，记录注册、注销和关闭的调用
+     */
+    private static class FakeRegistry implements Registry {
+
+        final List<String> events = new CopyOnWriteArrayList<>();
+        volatile List<Provider> providers = Collections.emptyList();
+        // 查询时抛出的异常，null表示查询成功
+        volatile RuntimeException failure;
+        volatile int queries;
+
+        @Override
+        public void register(String serverAddress, Collection<String> interfaceNames, int weight) {
+            events.add("register " + serverAddress + " " + interfaceNames);
+        }
+
+        @Override
+        public void unregister() {
+            events.add("unregister");
+        }
+
+        @Override
+        public List<Provider> getProviders(String interfaceName) {
+            queries++;
+            if (failure != null) {
+                throw failure;
+            }
+            return providers;
+        }
+
+        @Override
+        public void close() {
+            events.add("close");
+        }
+    }
+}
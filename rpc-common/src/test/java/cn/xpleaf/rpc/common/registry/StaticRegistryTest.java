@@ -0,0 +1,64 @@
+package cn.xpleaf.rpc.common.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+
+/**
+ * StaticRegistry的测试：解析逗号分隔的地址列表，单独指定的接口优先，注册和注销不影响地址列表
+ *
+ * @author yeyonghao
+ */
+public class StaticRegistryTest {
+
+    private static final String SERVICE = "cn.xpleaf.rpc.test.EchoService";
+    private static final String OTHER_SERVICE = "cn.xpleaf.rpc.test.UserService";
+
+    @Test
+    public void parsesAddressesForAllInterfaces() {
+        StaticRegistry registry = new StaticRegistry(" 192.168.1.101:21881, ,192.168.1.102:21881?weight=200");
+
+        List<Provider> providers = registry.getProviders(SERVICE);
+        assertEquals(2, providers.size());
+        assertEquals("192.168.1.101:21881", providers.get(0).getAddress());
+        assertEquals(Provider.DEFAULT_WEIGHT, providers.get(0).getWeight());
+        assertEquals("192.168.1.102:21881", providers.get(1).getAddress());
+        assertEquals(200, providers.get(1).getWeight());
+        assertEquals(providers, registry.getProviders(OTHER_SERVICE));
+    }
+
+    @Test
+    public void interfaceProvidersOverrideDefault() {
+        StaticRegistry registry = new StaticRegistry(null);
+        Map<String, String> providers = new HashMap<>();
+        providers.put(SERVICE, "192.168.1.103:21881");
+        registry.setProviders(providers);
+
+        assertEquals(1, registry.getProviders(SERVICE).size());
+        assertEquals("192.168.1.103:21881", registry.getProviders(SERVICE).get(0).getAddress());
+        assertTrue(registry.getProviders(OTHER_SERVICE).isEmpty());
+    }
+
+    @Test
+    public void registerDoesNotChangeProviders() {
+        StaticRegistry registry = new StaticRegistry("192.168.1.101:21881");
+        registry.register("127.0.0.1:20001", Collections.singletonList(SERVICE), Provider.DEFAULT_WEIGHT);
+        registry.unregister();
+
+        assertEquals(1, registry.getProviders(SERVICE).size());
+        assertEquals("192.168.1.101:21881", registry.getProviders(SERVICE).get(0).getAddress());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedAddress() {
+        new StaticRegistry("192.168.1.101");
+    }
+}
@@ -0,0 +1,226 @@
+package cn.xpleaf.rpc.common.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.server.NIOServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cn.xpleaf.rpc.common.pojo.Provider;
+
+/**
+ * ZooKeeperRegistry的测试，每个测试都启动一个进程内的zookeeper服务端：
+ * 服务提供者上线、下线后消费者的本地缓存能够通过监听刷新，服务提供者或者消费者的会话过期后能够重新注册、重新订阅
+ *
+ * @author yeyonghao
+ */
+public class ZooKeeperRegistryTest {
+
+    // 等待监听刷新本地缓存的最长时间（毫秒）
+    private static final long WAIT_TIMEOUT = 10000;
+    // 测试使用的接口名称
+    private static final String SERVICE = "cn.xpleaf.rpc.test.EchoService";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ZooKeeperServer zkServer;
+    private NIOServerCnxnFactory cnxnFactory;
+    private String address;
+    private final List<ZooKeeperRegistry> registries = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        zkServer = new ZooKeeperServer(folder.newFolder("snapshot"), folder.newFolder("log"), 500);
+        cnxnFactory = new NIOServerCnxnFactory();
+        cnxnFactory.configure(new InetSocketAddress("127.0.0.1", 0), 100);
+        cnxnFactory.startup(zkServer);
+        address = "127.0.0.1:" + cnxnFactory.getLocalPort();
+    }
+
+    @After
+    public void tearDown() {
+        for (ZooKeeperRegistry registry : registries) {
+            registry.close();
+        }
+        cnxnFactory.shutdown();
+        zkServer.shutdown();
+    }
+
+    @Test
+    public void providerAddedAndRemoved() throws Exception {
+        ZooKeeperRegistry consumer = newRegistry();
+        assertTrue(consumer.getProviders(SERVICE).isEmpty());
+
+        // 接口节点还不存在时，消费者监听的是接口节点的创建
+        ZooKeeperRegistry providerA = newRegistry();
+        providerA.register("127.0.0.1:20001", Collections.singletonList(SERVICE), Provider.DEFAULT_WEIGHT);
+        waitForPorts(consumer, 20001);
+
+        ZooKeeperRegistry providerB = newRegistry();
+        providerB.register("127.0.0.1:20002", Collections.singletonList(SERVICE), 50);
+        waitForPorts(consumer, 20001, 20002);
+        for (Provider provider : consumer.getProviders(SERVICE)) {
+            assertEquals(provider.getPort() == 20001 ? Provider.DEFAULT_WEIGHT : 50, provider.getWeight());
+        }
+
+        // 主动注销
+        providerB.unregister();
+        waitForPorts(consumer, 20001);
+
+        // 关闭连接，短暂节点被删除
+        providerA.close();
+        waitForPorts(consumer);
+    }
+
+    @Test
+    public void providerReregistersAfterSessionExpired() throws Exception {
+        ZooKeeperRegistry consumer = newRegistry();
+        consumer.getProviders(SERVICE);
+        ZooKeeper observer = connect();
+
+        Set<Long> sessions = sessions();
+        ZooKeeperRegistry provider = newRegistry();
+        provider.register("127.0.0.1:20001", Collections.singletonList(SERVICE), Provider.DEFAULT_WEIGHT);
+        waitForPorts(consumer, 20001);
+        long sessionId = newSession(sessions);
+        assertEquals(sessionId, ephemeralOwner(observer));
+
+        // 会话过期后短暂节点被删除，服务提供者重新连接并重新注册，消费者能够看到新的节点
+        zkServer.closeSession(sessionId);
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (true) {
+            List<String> children = observer.getChildren("/minidubbo/" + SERVICE, false);
+            if (children.size() == 1 && ephemeralOwner(observer) != sessionId) {
+                break;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("会话过期后服务提供者没有重新注册: " + children);
+            }
+            Thread.sleep(50);
+        }
+        assertNotEquals(sessionId, ephemeralOwner(observer));
+        waitForPorts(consumer, 20001);
+        observer.close();
+    }
+
+    @Test
+    public void consumerResubscribesAfterSessionExpired() throws Exception {
+        Set<Long> sessions = sessions();
+        ZooKeeperRegistry consumer = newRegistry();
+        assertTrue(consumer.getProviders(SERVICE).isEmpty());
+        long sessionId = newSession(sessions);
+
+        // 会话过期后原有的监听全部失效，消费者重新连接后需要重新订阅，之后上线的服务提供者仍然能够被发现
+        zkServer.closeSession(sessionId);
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (sessions().size() <= sessions.size() || sessions().contains(sessionId)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("会话过期后消费者没有重新连接");
+            }
+            Thread.sleep(50);
+        }
+
+        ZooKeeperRegistry provider = newRegistry();
+        provider.register("127.0.0.1:20002", Collections.singletonList(SERVICE), Provider.DEFAULT_WEIGHT);
+        waitForPorts(consumer, 20002);
+    }
+
+    private ZooKeeperRegistry newRegistry() {
+        ZooKeeperRegistry registry = new ZooKeeperRegistry(address);
+        registry.setSessionTimeout(2000);
+        registries.add(registry);
+        return registry;
+    }
+
+    /**
+     * 建立一个直接连接zookeeper的客户端，用于检查节点
+     */
+    private ZooKeeper connect() throws Exception {
+        final CountDownLatch connected = new CountDownLatch(1);
+        ZooKeeper zk = new ZooKeeper(address, 2000, new Watcher() {
+
+            @Override
+            public void process(WatchedEvent event) {
+                if (event.getState() == Event.KeeperState.SyncConnected) {
+                    connected.countDown();
+                }
+            }
+        });
+        assertTrue(connected.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+        return zk;
+    }
+
+    /**
+     * 获取接口下唯一的服务提供者节点所属的会话
+     */
+    private static long ephemeralOwner(ZooKeeper zk) throws Exception {
+        String node = "/minidubbo/" + SERVICE;
+        List<String> children = zk.getChildren(node, false);
+        assertEquals(1, children.size());
+        Stat stat = zk.exists(node + "/" + children.get(0), false);
+        return stat == null ? 0 : stat.getEphemeralOwner();
+    }
+
+    /**
+     * 获取服务端当前所有的会话
+     */
+    private Set<Long> sessions() {
+        return new HashSet<>(zkServer.getZKDatabase().getSessionWithTimeOuts().keySet());
+    }
+
+    /**
+     * 获取给定集合之外唯一的一个会话
+     */
+    private long newSession(Set<Long> before) {
+        Set<Long> sessions = sessions();
+        sessions.removeAll(before);
+        assertEquals(1, sessions.size());
+        return sessions.iterator().next();
+    }
+
+    /**
+     * 等待消费者的本地缓存刷新为给定端口的服务提供者列表
+     */
+    private static void waitForPorts(ZooKeeperRegistry registry, int... ports) throws InterruptedException {
+        Set<Integer> expected = new HashSet<>();
+        for (int port : ports) {
+            expected.add(port);
+        }
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (true) {
+            List<Provider> providers = registry.getProviders(SERVICE);
+            Set<Integer> actual = new HashSet<>();
+            for (Provider provider : providers) {
+                actual.add(provider.getPort());
+            }
+            if (actual.equals(expected) && providers.size() == ports.length) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("服务提供者列表没有刷新为" + expected + "，当前为" + providers);
+            }
+            Thread.sleep(20);
+        }
+    }
+}
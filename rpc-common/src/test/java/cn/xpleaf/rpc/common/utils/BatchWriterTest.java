@@ -0,0 +1,111 @@
+package cn.xpleaf.rpc.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * BatchWriter的测试：写出任务执行前积累的消息在同一批中写出并只flush一次，每一批不超过maxBatch个消息
+ *
+ * @author yeyonghao
+ */
+public class BatchWriterTest {
+
+    // 统计flush次数的handler
+    private int flushes;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+
+            @Override
+            public void flush(ChannelHandlerContext ctx) throws Exception {
+                flushes++;
+                super.flush(ctx);
+            }
+        });
+        // 忽略EmbeddedChannel注册时的flush
+        flushes = 0;
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void pendingWritesAreFlushedOnce() {
+        BatchWriter writer = new BatchWriter(channel);
+        List<ChannelFuture> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(writer.write("message-" + i));
+        }
+        // 写出任务还没有执行
+        assertNull(channel.readOutbound());
+
+        channel.runPendingTasks();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("message-" + i, channel.readOutbound());
+            assertTrue(futures.get(i).isSuccess());
+        }
+        assertEquals(1, flushes);
+    }
+
+    @Test
+    public void idleChannelFlushesEachWrite() {
+        BatchWriter writer = new BatchWriter(channel);
+        for (int i = 0; i < 3; i++) {
+            writer.write("message-" + i);
+            channel.runPendingTasks();
+            assertEquals("message-" + i, channel.readOutbound());
+        }
+        assertEquals(3, flushes);
+    }
+
+    @Test
+    public void batchIsBoundedByMaxBatch() {
+        BatchWriter writer = new BatchWriter(channel, 2);
+        for (int i = 0; i < 5; i++) {
+            writer.write("message-" + i);
+        }
+        // 剩余的消息由下一个写出任务写出
+        channel.runPendingTasks();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("message-" + i, channel.readOutbound());
+        }
+        assertEquals(3, flushes);
+    }
+
+    @Test
+    public void writeFailsAfterChannelClosed() {
+        BatchWriter writer = new BatchWriter(channel);
+        channel.close();
+        ByteBuf msg = Unpooled.buffer().writeInt(1);
+
+        ChannelFuture future = writer.write(msg);
+        channel.runPendingTasks();
+        assertFalse(future.isSuccess());
+        assertEquals(0, msg.refCnt());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveMaxBatch() {
+        new BatchWriter(channel, 0);
+    }
+}
@@ -0,0 +1,112 @@
+package cn.xpleaf.rpc.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+/**
+ * DeflateCompressor的测试：同一个线程复用的Deflater和Inflater在多次压缩、解压之间互不影响，
+ * 解压失败或者超过最大长度之后仍然可以继续使用，直接内存的ByteBuf同样可以压缩和解压
+ *
+ * @author yeyonghao
+ */
+public class DeflateCompressorTest {
+
+    private final DeflateCompressor compressor = new DeflateCompressor();
+
+    @Test
+    public void repeatedRoundTripsOnSameThread() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            // 长度不同、超过缓冲区大小的数据
+            byte[] data = data(1000 + i * 5000, i);
+            assertEquals(ByteBufUtil.hexDump(data), ByteBufUtil.hexDump(decompress(compress(data))));
+        }
+    }
+
+    @Test
+    public void reusableAfterCorruptedInput() throws Exception {
+        byte[] data = data(20000, 1);
+        ByteBuf corrupted = Unpooled.wrappedBuffer(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        try {
+            compressor.decompress(corrupted, Unpooled.buffer());
+            fail("格式不正确的数据应该解压失败");
+        } catch (IOException expected) {
+            // 压缩数据格式不正确
+        }
+        // 截断的压缩数据
+        byte[] compressed = compress(data);
+        byte[] truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        try {
+            compressor.decompress(Unpooled.wrappedBuffer(truncated), Unpooled.buffer());
+            fail("不完整的数据应该解压失败");
+        } catch (IOException expected) {
+            // 压缩数据不完整
+        }
+        assertEquals(ByteBufUtil.hexDump(data), ByteBufUtil.hexDump(decompress(compressed)));
+    }
+
+    @Test
+    public void reusableAfterOutputLimitExceeded() throws Exception {
+        byte[] data = data(50000, 2);
+        byte[] compressed = compress(data);
+        try {
+            compressor.decompress(Unpooled.wrappedBuffer(compressed), Unpooled.buffer(1024, 1024));
+            fail("解压后的长度超过最大容量时应该失败");
+        } catch (IndexOutOfBoundsException expected) {
+            // 由解码器转换为TooLongFrameException
+        }
+        assertEquals(ByteBufUtil.hexDump(data), ByteBufUtil.hexDump(decompress(compressed)));
+    }
+
+    @Test
+    public void directBuffers() throws Exception {
+        byte[] data = data(30000, 3);
+        ByteBuf in = Unpooled.directBuffer(data.length);
+        in.writeBytes(data);
+        ByteBuf compressed = Unpooled.directBuffer();
+        compressor.compress(in, compressed);
+        assertTrue(!in.isReadable());
+        assertTrue(compressed.readableBytes() < data.length);
+
+        ByteBuf out = Unpooled.directBuffer();
+        compressor.decompress(compressed, out);
+        assertEquals(ByteBufUtil.hexDump(data), ByteBufUtil.hexDump(out));
+        compressed.release();
+        out.release();
+        in.release();
+    }
+
+    private byte[] compress(byte[] data) throws IOException {
+        ByteBuf out = Unpooled.buffer();
+        compressor.compress(Unpooled.wrappedBuffer(data), out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    private byte[] decompress(byte[] data) throws IOException {
+        ByteBuf out = Unpooled.buffer();
+        compressor.decompress(Unpooled.wrappedBuffer(data), out);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    /**
+     * 生成可以压缩的数据：由少量字节组成的随机序列
+     */
+    private static byte[] data(int length, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,81 @@
+package cn.xpleaf.rpc.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InvalidClassException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * JdkSerializer的测试：白名单中的类可以正常反序列化，其余的类在加载之前就被拒绝
+ *
+ * @author yeyonghao
+ */
+public class JdkSerializerTest {
+
+    @Test
+    public void allowedClassesRoundTrip() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("list", new ArrayList<>(Arrays.asList(1, 2L, "3")));
+        map.put("array", new String[]{"a", "b"});
+        map.put("primitive", new int[]{1, 2});
+
+        JdkSerializer serializer = new JdkSerializer();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> decoded = roundTrip(serializer, map, Map.class);
+        assertEquals(map.get("list"), decoded.get("list"));
+        assertEquals("b", ((String[]) decoded.get("array"))[1]);
+        assertEquals(2, ((int[]) decoded.get("primitive"))[1]);
+    }
+
+    @Test
+    public void rejectsClassOutsideAllowList() throws Exception {
+        List<Object> list = new ArrayList<>();
+        list.add(new File("/tmp"));
+        try {
+            roundTrip(new JdkSerializer(), list, List.class);
+            fail("不在白名单中的类应当被拒绝");
+        } catch (InvalidClassException e) {
+            assertEquals(File.class.getName(), e.classname);
+        }
+    }
+
+    @Test
+    public void extraPrefixesAreAllowed() throws Exception {
+        File file = new File("/tmp");
+        assertEquals(file, roundTrip(new JdkSerializer("java.io.File"), file, File.class));
+    }
+
+    @Test
+    public void deniedPackagesOverrideAllowList() {
+        JdkSerializer serializer = new JdkSerializer("java.");
+        assertTrue(serializer.isAllowed("java.lang.String"));
+        assertTrue(serializer.isAllowed("[[Ljava.lang.String;"));
+        assertFalse(serializer.isAllowed("java.lang.reflect.Proxy"));
+        assertFalse(serializer.isAllowed("java.lang.invoke.SerializedLambda"));
+        assertFalse(serializer.isAllowed("[Ljava.lang.invoke.SerializedLambda;"));
+    }
+
+    @Test
+    public void notRegisteredByDefault() {
+        assertNull(SerializerFactory.getSerializer(JdkSerializer.CODE));
+    }
+
+    private static <T> T roundTrip(JdkSerializer serializer, Object obj, Class<T> clazz) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(obj, out);
+        byte[] data = out.toByteArray();
+        return serializer.deserialize(data, 0, data.length, clazz);
+    }
+}
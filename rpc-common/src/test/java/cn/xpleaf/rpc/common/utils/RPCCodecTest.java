@@ -0,0 +1,382 @@
+package cn.xpleaf.rpc.common.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.pojo.Blob;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * RPCEncoder和RPCDecoder的测试：消息帧的编解码和切分、序列化器编号的传递和白名单、压缩算法的协商和解压长度限制、附件帧的收发
+ *
+ * 编码器和解码器分别放在两个EmbeddedChannel中，编码器写出的所有ByteBuf合并之后再交给解码器，
+ * 可以按任意方式切分后写入，模拟TCP的拆包和粘包
+ *
+ * @author yeyonghao
+ */
+public class RPCCodecTest {
+
+    private final List<EmbeddedChannel> channels = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (EmbeddedChannel channel : channels) {
+            try {
+                channel.finishAndReleaseAll();
+            } catch (DecoderException e) {
+                // 被拒绝的消息帧仍然留在解码器的累积缓冲区中，关闭时会再次解码失败，测试中已经检查过该异常
+            }
+        }
+    }
+
+    @Test
+    public void requestRoundTrip() {
+        RPCRequest request = newRequest(1, "hello", 42);
+        ByteBuf data = encode(new RPCEncoder(), request);
+        // 消息头：魔数、版本号、消息类型、序列化器编号、压缩算法编号、消息体长度
+        assertEquals(RPCProtocol.MAGIC, data.getShort(0));
+        assertEquals(RPCProtocol.VERSION, data.getByte(2));
+        assertEquals(RPCProtocol.TYPE_REQUEST, data.getByte(3));
+        assertEquals(ProtostuffSerializer.CODE, data.getByte(4));
+        assertEquals(0, data.getByte(5));
+        int length = data.getInt(RPCProtocol.LENGTH_FIELD_OFFSET);
+        assertEquals(data.readableBytes() - RPCProtocol.HEADER_LENGTH, length);
+
+        RPCRequest decoded = (RPCRequest) decodeOne(new RPCDecoder(), data);
+        assertEquals(1, decoded.getRequestId());
+        assertEquals(request.getInterfaceName(), decoded.getInterfaceName());
+        assertEquals(request.getMethodName(), decoded.getMethodName());
+        assertArrayEquals(new Object[]{"hello", 42}, decoded.getParameters());
+    }
+
+    @Test
+    public void framesSplitAcrossReads() {
+        ByteBuf data = encode(new RPCEncoder(), newRequest(1, "message-1"), newRequest(2, "message-2"),
+                newRequest(3, "message-3"));
+        // 每次只写入一个字节，解码器需要等到消息帧完整之后才能解码
+        EmbeddedChannel channel = channel(new RPCDecoder());
+        while (data.isReadable()) {
+            channel.writeInbound(data.readRetainedSlice(1));
+        }
+        data.release();
+        for (int i = 1; i <= 3; i++) {
+            RPCRequest decoded = channel.readInbound();
+            assertEquals(i, decoded.getRequestId());
+            assertEquals("message-" + i, decoded.getParameters()[0]);
+        }
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void framesCoalescedInOneRead() {
+        ByteBuf data = encode(new RPCEncoder(), newRequest(1, "message-1"), newRequest(2, "message-2"),
+                newRequest(3, "message-3"));
+        EmbeddedChannel channel = channel(new RPCDecoder());
+        channel.writeInbound(data);
+        for (int i = 1; i <= 3; i++) {
+            RPCRequest decoded = channel.readInbound();
+            assertEquals(i, decoded.getRequestId());
+        }
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void directBufferFramesReuseInputStream() {
+        ByteBuf heap = encode(new RPCEncoder(), newRequest(1, "message-1"), newRequest(2, repeat('a', 4096)),
+                newRequest(3, "message-3"));
+        // 直接内存中的消息体通过解码器复用的输入流读取，每次只能读到本消息体的数据
+        ByteBuf data = Unpooled.directBuffer(heap.readableBytes());
+        data.writeBytes(heap);
+        heap.release();
+        EmbeddedChannel channel = channel(new RPCDecoder());
+        channel.writeInbound(data);
+        RPCRequest first = channel.readInbound();
+        assertEquals("message-1", first.getParameters()[0]);
+        RPCRequest second = channel.readInbound();
+        assertEquals(repeat('a', 4096), second.getParameters()[0]);
+        RPCRequest third = channel.readInbound();
+        assertEquals(3, third.getRequestId());
+        assertEquals("message-3", third.getParameters()[0]);
+        assertNull(channel.readInbound());
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsIllegalMagic() {
+        ByteBuf data = encode(new RPCEncoder(), newRequest(1, "hello"));
+        data.setShort(0, 0x1234);
+        channel(new RPCDecoder()).writeInbound(data);
+    }
+
+    @Test(expected = TooLongFrameException.class)
+    public void rejectsTooLongFrame() {
+        ByteBuf data = encode(new RPCEncoder(), newRequest(1, repeat('a', 4096)));
+        channel(new RPCDecoder(1024)).writeInbound(data);
+    }
+
+    @Test
+    public void rejectsSerializerNotAllowed() {
+        RPCRequest request = newRequest(1, "hello");
+        request.setSerializer(ProtostuffGraphSerializer.CODE);
+        ByteBuf data = encode(new RPCEncoder(), request);
+        RPCDecoder decoder = new RPCDecoder(RPCProtocol.DEFAULT_MAX_FRAME_LENGTH,
+                Collections.<Serializer>singletonList(new ProtostuffSerializer()));
+        try {
+            channel(decoder).writeInbound(data);
+            fail("使用不允许的序列化器的消息应当被拒绝");
+        } catch (CorruptedFrameException e) {
+            assertTrue(e.getMessage().contains("不允许使用的序列化器"));
+        }
+    }
+
+    @Test
+    public void serializerCodeIsCarriedInHeader() {
+        RPCRequest request = newRequest(1, "hello");
+        request.setSerializer(ProtostuffGraphSerializer.CODE);
+        ByteBuf data = encode(new RPCEncoder(), request);
+        assertEquals(ProtostuffGraphSerializer.CODE, data.getByte(4));
+
+        RPCRequest decoded = (RPCRequest) decodeOne(new RPCDecoder(), data);
+        assertEquals(ProtostuffGraphSerializer.CODE, decoded.getSerializer());
+        assertEquals("hello", decoded.getParameters()[0]);
+    }
+
+    @Test
+    public void compressedRoundTrip() {
+        String payload = repeat('a', 64 * 1024);
+        ByteBuf data = encode(deflateEncoder(1024), newRequest(1, payload));
+        assertEquals(DeflateCompressor.CODE, data.getByte(5));
+        assertTrue(data.readableBytes() < payload.length());
+
+        RPCDecoder decoder = new RPCDecoder();
+        decoder.setCompressor(new DeflateCompressor());
+        RPCRequest decoded = (RPCRequest) decodeOne(decoder, data);
+        assertEquals(payload, decoded.getParameters()[0]);
+    }
+
+    @Test
+    public void smallMessageNotCompressed() {
+        ByteBuf data = encode(deflateEncoder(1024), newRequest(1, "hello"));
+        assertEquals(0, data.getByte(5));
+        data.release();
+    }
+
+    @Test
+    public void rejectsCompressorNotNegotiated() {
+        String payload = repeat('a', 4096);
+
+        // 没有协商压缩算法
+        try {
+            channel(new RPCDecoder()).writeInbound(encode(deflateEncoder(0), newRequest(1, payload)));
+            fail("没有协商压缩算法时，压缩过的消息应当被拒绝");
+        } catch (CorruptedFrameException e) {
+            assertTrue(e.getMessage().contains("没有协商过的压缩算法"));
+        }
+        // 协商的是另一种压缩算法
+        RPCDecoder decoder = new RPCDecoder();
+        decoder.setCompressor(new SnappyCompressor());
+        try {
+            channel(decoder).writeInbound(encode(deflateEncoder(0), newRequest(2, payload)));
+            fail("使用没有协商过的压缩算法的消息应当被拒绝");
+        } catch (CorruptedFrameException e) {
+            assertTrue(e.getMessage().contains("没有协商过的压缩算法"));
+        }
+    }
+
+    @Test
+    public void decompressedSizeIsBounded() {
+        // 1MB的重复数据压缩后只有几KB，消息帧本身没有超过限制，但解压后超过了
+        ByteBuf data = encode(deflateEncoder(0), newRequest(1, repeat('a', 1024 * 1024)));
+        int maxFrameLength = 16 * 1024;
+        assertTrue(data.readableBytes() < maxFrameLength);
+
+        RPCDecoder decoder = new RPCDecoder(maxFrameLength);
+        decoder.setCompressor(new DeflateCompressor());
+        try {
+            channel(decoder).writeInbound(data);
+            fail("解压后超过最大长度的消息应当被拒绝");
+        } catch (TooLongFrameException e) {
+            assertTrue(e.getMessage().contains("解压后的消息体超过了最大长度"));
+        }
+    }
+
+    @Test
+    public void attachmentRoundTrip() throws Exception {
+        byte[] first = new byte[100 * 1024];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = (byte) i;
+        }
+        byte[] second = "second".getBytes("UTF-8");
+        RPCRequest request = newRequest(1, "upload", Blob.of(first), Blob.of(new byte[0]), Blob.of(second));
+
+        EmbeddedChannel encoderChannel = channel(new RPCEncoder());
+        ChannelFuture future = encoderChannel.writeAndFlush(request);
+        assertTrue(future.isSuccess());
+        // 消息帧之后是两个非空附件的附件帧，每个附件帧由消息头和数据两部分组成，空附件没有附件帧
+        List<ByteBuf> outbound = new ArrayList<>();
+        ByteBuf buf;
+        while ((buf = encoderChannel.readOutbound()) != null) {
+            outbound.add(buf);
+        }
+        assertEquals(1 + 2 * 2, outbound.size());
+        assertEquals(RPCProtocol.TYPE_ATTACHMENT, outbound.get(1).getByte(3));
+        assertEquals(first.length, outbound.get(1).getInt(RPCProtocol.LENGTH_FIELD_OFFSET));
+
+        // 在附件帧到达之前不会交出消息
+        EmbeddedChannel decoderChannel = channel(new RPCDecoder());
+        decoderChannel.writeInbound(outbound.get(0));
+        assertNull(decoderChannel.readInbound());
+        for (int i = 1; i < outbound.size(); i++) {
+            decoderChannel.writeInbound(outbound.get(i));
+        }
+        RPCRequest decoded = decoderChannel.readInbound();
+        Object[] parameters = decoded.getParameters();
+        assertEquals("upload", parameters[0]);
+        assertArrayEquals(first, bytesOf((Blob) parameters[1]));
+        assertEquals(0, ((Blob) parameters[2]).length());
+        assertArrayEquals(second, bytesOf((Blob) parameters[3]));
+        RPCProtocol.releaseAttachments(decoded);
+    }
+
+    @Test
+    public void attachmentTotalLengthIsBounded() {
+        RPCRequest request = newRequest(1, Blob.of(new byte[600]), Blob.of(new byte[600]));
+        EmbeddedChannel encoderChannel = channel(new RPCEncoder());
+        assertTrue(encoderChannel.writeAndFlush(request).isSuccess());
+        ByteBuf message = encoderChannel.readOutbound();
+
+        // 每个附件都没有超过限制，但加起来超过了，在附件帧到达之前就拒绝
+        RPCDecoder decoder = new RPCDecoder();
+        decoder.setMaxAttachmentLength(1000);
+        try {
+            channel(decoder).writeInbound(message.retainedDuplicate());
+            fail("附件的总长度超过限制的消息应当被拒绝");
+        } catch (TooLongFrameException e) {
+            assertTrue(e.getMessage().contains("附件的总长度1200"));
+        }
+
+        // 总长度等于限制时正常接收
+        decoder = new RPCDecoder();
+        decoder.setMaxAttachmentLength(1200);
+        EmbeddedChannel decoderChannel = channel(decoder);
+        decoderChannel.writeInbound(message);
+        ByteBuf buf;
+        while ((buf = encoderChannel.readOutbound()) != null) {
+            decoderChannel.writeInbound(buf);
+        }
+        RPCRequest decoded = decoderChannel.readInbound();
+        assertEquals(600, ((Blob) decoded.getParameters()[1]).length());
+        RPCProtocol.releaseAttachments(decoded);
+    }
+
+    @Test
+    public void noAttachmentFramesWhenEncodeFails() {
+        ByteBuf content = Unpooled.copiedBuffer(new byte[1024]);
+        RPCRequest request = newRequest(1, Blob.of(content));
+        // 不存在的序列化器，消息帧编码失败
+        request.setSerializer((byte) 99);
+
+        EmbeddedChannel channel = channel(new RPCEncoder());
+        ChannelFuture future = channel.writeAndFlush(request);
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof IllegalArgumentException
+                || future.cause().getCause() instanceof IllegalArgumentException);
+        // 没有写出任何帧，也没有为附件创建切片，附件仍然由调用方持有
+        assertNull(channel.readOutbound());
+        assertEquals(1, content.refCnt());
+        content.release();
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void rejectsOrphanAttachmentFrame() {
+        ByteBuf data = Unpooled.buffer();
+        data.writeShort(RPCProtocol.MAGIC);
+        data.writeByte(RPCProtocol.VERSION);
+        data.writeByte(RPCProtocol.TYPE_ATTACHMENT);
+        data.writeByte(0);
+        data.writeByte(0);
+        data.writeInt(4);
+        data.writeInt(0);
+        channel(new RPCDecoder()).writeInbound(data);
+    }
+
+    private EmbeddedChannel channel(ChannelHandler handler) {
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        channels.add(channel);
+        return channel;
+    }
+
+    /**
+     * 依次编码给定的消息，返回合并后的所有帧
+     */
+    private ByteBuf encode(RPCEncoder encoder, Object... msgs) {
+        EmbeddedChannel channel = channel(encoder);
+        for (Object msg : msgs) {
+            assertTrue(channel.writeOutbound(msg));
+        }
+        ByteBuf data = Unpooled.buffer();
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null) {
+            data.writeBytes(buf);
+            buf.release();
+        }
+        return data;
+    }
+
+    private static RPCEncoder deflateEncoder(int compressThreshold) {
+        RPCEncoder encoder = new RPCEncoder();
+        encoder.setCompression(new DeflateCompressor(), compressThreshold);
+        return encoder;
+    }
+
+    private Object decodeOne(RPCDecoder decoder, ByteBuf data) {
+        EmbeddedChannel channel = channel(decoder);
+        assertTrue(channel.writeInbound(data));
+        Object msg = channel.readInbound();
+        assertNull(channel.readInbound());
+        return msg;
+    }
+
+    private static RPCRequest newRequest(long requestId, Object... parameters) {
+        RPCRequest request = new RPCRequest();
+        request.setRequestId(requestId);
+        request.setInterfaceName("cn.xpleaf.rpc.test.EchoService");
+        request.setMethodName("echo");
+        request.setParameterTypes(new Class<?>[]{Object[].class});
+        request.setParameters(parameters);
+        return request;
+    }
+
+    private static byte[] bytesOf(Blob blob) throws Exception {
+        ByteBuffer buffer = blob.asByteBuffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
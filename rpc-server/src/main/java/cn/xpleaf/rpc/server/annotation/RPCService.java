@@ -19,4 +19,13 @@ public @interface RPCService {
 
     // 自定义注解的参数类型为类型对象，使用该注解时，需要传入实现类的接口对象
     Class<?> value();
+
+    // 服务独立线程池的线程数，大于0时该服务使用独立的线程池，与其它服务隔离，默认使用RPCServer的共享线程池
+    int threads() default 0;
+
+    // 服务独立线程池的队列长度，为0时不排队，没有空闲线程即拒绝请求，只在threads大于0时有效
+    int queues() default 0;
+
+    // 是否开启自适应并发限制，开启后服务端会根据请求耗时估算该服务能够承受的并发数，超过的请求会被立即拒绝
+    boolean adaptiveLimit() default false;
 }
@@ -0,0 +1,182 @@
+package cn.xpleaf.rpc.server.executor;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 服务方法的业务线程池，使服务方法不在Netty的I/O线程上执行，一个慢服务不会阻塞同一个I/O线程上的其它连接
+ *
+ * 支持以下几种线程池类型：
+ * 1.shared：所有服务共享一个固定大小的线程池（默认）
+ * 2.virtual：每个请求一个虚拟线程，需要JDK 21及以上版本，低版本JDK会退化为shared
+ * 3.direct：直接在I/O线程上执行，只适用于执行时间极短且不会阻塞的服务
+ *
+ * 另外，每个服务还可以通过@RPCService的threads属性指定一个独立的线程池，与其它服务隔离
+ *
+ * 所有的线程池都是有界的，队列满时会立即抛出RejectedExecutionException，由RPCServerHandler返回SERVER_BUSY响应，
+ * 而不是让请求无限排队，导致所有服务的延迟一起上升
+ *
+ * @author yeyonghao
+ */
+public class ServiceExecutors {
+
+    // 线程池类型：所有服务共享一个固定大小的线程池
+    public static final String SHARED = "shared";
+    // 线程池类型：每个请求一个虚拟线程
+    public static final String VIRTUAL = "virtual";
+    // 线程池类型：直接在I/O线程上执行
+    public static final String DIRECT = "direct";
+
+    // 默认的线程池，direct类型时为null
+    private Executor defaultExecutor;
+    // 服务独立的线程池，key为接口名称
+    private Map<String, Executor> isolatedExecutors = new HashMap<>();
+    // log4j日志记录
+    private Logger logger = LoggerFactory.getLogger(ServiceExecutors.class);
+
+    /**
+     * 构造方法
+     *
+     * @param type    线程池类型，shared、virtual或者direct
+     * @param threads 线程数，virtual类型时为允许同时执行的最大请求数
+     * @param queues  队列长度，为0时不排队，没有空闲线程即拒绝
+     */
+    public ServiceExecutors(String type, int threads, int queues) {
+        if (DIRECT.equals(type)) {
+            logger.info("服务方法将直接在I/O线程上执行...");
+            defaultExecutor = null;
+        } else if (VIRTUAL.equals(type)) {
+            defaultExecutor = newVirtualThreadExecutor(threads + queues);
+            if (defaultExecutor == null) {
+                logger.warn("当前JDK不支持虚拟线程，退化为共享线程池...");
+                defaultExecutor = newThreadPool("minidubbo-server", threads, queues);
+            }
+        } else if (SHARED.equals(type)) {
+            defaultExecutor = newThreadPool("minidubbo-server", threads, queues);
+        } else {
+            throw new IllegalArgumentException("不支持的线程池类型: " + type);
+        }
+    }
+
+    /**
+     * 为指定的服务创建独立的线程池
+     *
+     * @param interfaceName 接口名称
+     * @param threads       线程数
+     * @param queues        队列长度
+     */
+    public void isolate(String interfaceName, int threads, int queues) {
+        logger.info("为服务[{}]创建独立的线程池，线程数[{}]，队列长度[{}]...", interfaceName, threads, queues);
+        isolatedExecutors.put(interfaceName, newThreadPool("minidubbo-" + interfaceName, threads, queues));
+    }
+
+    /**
+     * 获取执行指定服务方法的线程池
+     *
+     * @param interfaceName 接口名称
+     * @return 线程池，返回null时表示直接在I/O线程上执行
+     */
+    public Executor getExecutor(String interfaceName) {
+        Executor executor = isolatedExecutors.get(interfaceName);
+        return executor != null ? executor : defaultExecutor;
+    }
+
+    /**
+     * 关闭所有线程池
+     */
+    public void shutdown() {
+        shutdown(defaultExecutor);
+        for (Executor executor : isolatedExecutors.values()) {
+            shutdown(executor);
+        }
+    }
+
+    private static void shutdown(Executor executor) {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        } else if (executor instanceof BoundedExecutor) {
+            ((BoundedExecutor) executor).delegate.shutdown();
+        }
+    }
+
+    /**
+     * 创建固定大小、有界队列的线程池，队列满时直接拒绝
+     */
+    private static ExecutorService newThreadPool(String name, int threads, int queues) {
+        BlockingQueue<Runnable> queue = queues > 0 ? new ArrayBlockingQueue<Runnable>(queues)
+                : new SynchronousQueue<Runnable>();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                new DefaultThreadFactory(name, true), new ThreadPoolExecutor.AbortPolicy());
+        // 空闲的线程会被回收，服务刚启动或者请求很少时不会占用太多线程
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，源码需要兼容JDK 8，所以不能直接调用
+     *
+     * @param maxConcurrency 允许同时执行的最大请求数
+     * @return 虚拟线程执行器，当前JDK不支持时返回null
+     */
+    private static Executor newVirtualThreadExecutor(int maxConcurrency) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) method.invoke(null);
+            return new BoundedExecutor(executor, maxConcurrency);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 限制同时执行任务数量的执行器，虚拟线程执行器本身是无界的，需要通过信号量来限制
+     */
+    private static class BoundedExecutor implements Executor {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        BoundedExecutor(ExecutorService delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency);
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("同时执行的请求数已达到上限");
+            }
+            try {
+                delegate.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            command.run();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package cn.xpleaf.rpc.server.filter;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.server.invoker.MethodInvoker;
+
+/**
+ * 服务端调用过滤器SPI，在RPCServerHandler调用服务方法的前后加入统计、链路追踪、限流、缓存等横切逻辑，
+ * 通过RPCServer.setFilters配置，按配置的顺序执行，排在前面的过滤器包在外层
+ *
+ * 过滤器在执行服务方法的线程上调用（业务线程池，direct类型时为I/O线程），此时请求已经通过了并发限制和超时检查，
+ * 抛出的异常与服务方法抛出的异常一样回写给客户端；实现类需要是线程安全的，同一个实例会被所有连接共享
+ *
+ * @author yeyonghao
+ */
+public interface ServerFilter {
+
+    /**
+     * 处理一次调用
+     *
+     * @param invoker 请求对应的方法调用器，可以通过它获取服务接口、方法签名和调用统计
+     * @param request 请求对象
+     * @param chain   后续的过滤器，调用chain.proceed(invoker, request)继续调用，不调用则不会执行服务方法
+     * @return 服务方法的返回值，异步方法为CompletionStage，流式调用的方法为Iterator
+     * @throws Throwable 服务方法或者过滤器抛出的异常
+     */
+    Object invoke(MethodInvoker invoker, RPCRequest request, ServerFilterChain chain) throws Throwable;
+}
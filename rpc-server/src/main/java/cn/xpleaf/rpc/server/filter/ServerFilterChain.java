@@ -0,0 +1,67 @@
+package cn.xpleaf.rpc.server.filter;
+
+import java.util.List;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.server.invoker.MethodInvoker;
+
+/**
+ * 服务端过滤器链，所有过滤器保存在一个数组中，最后一个元素调用服务方法
+ *
+ * 过滤器链在服务端启动时构建一次，所有连接共享，数组中的每个位置对应一个共享同一个数组的ServerFilterChain，
+ * 保存的只是下标，proceed按下标调用过滤器，并把下一个位置的ServerFilterChain交给它，所以每次调用不会再创建对象；
+ * 没有配置过滤器时不构建过滤器链，RPCServerHandler直接调用服务方法，与没有过滤器功能时完全一样
+ *
+ * @author yeyonghao
+ */
+public final class ServerFilterChain {
+
+    // 最后一个过滤器，调用服务方法
+    private static final ServerFilter INVOKE = new ServerFilter() {
+
+        @Override
+        public Object invoke(MethodInvoker invoker, RPCRequest request, ServerFilterChain chain) throws Throwable {
+            return invoker.invoke(request.getParameters());
+        }
+    };
+
+    // 按顺序执行的所有过滤器，最后一个调用服务方法
+    private final ServerFilter[] filters;
+    // 每个位置对应的过滤器链，与filters的长度相同
+    private final ServerFilterChain[] chains;
+    // 当前位置的下标
+    private final int index;
+
+    private ServerFilterChain(ServerFilter[] filters, ServerFilterChain[] chains, int index) {
+        this.filters = filters;
+        this.chains = chains;
+        this.index = index;
+    }
+
+    /**
+     * 构建过滤器链
+     *
+     * @param filters 按顺序执行的过滤器
+     * @return 过滤器链，没有过滤器时返回null
+     */
+    public static ServerFilterChain build(List<ServerFilter> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return null;
+        }
+        ServerFilter[] array = filters.toArray(new ServerFilter[filters.size() + 1]);
+        array[filters.size()] = INVOKE;
+        ServerFilterChain[] chains = new ServerFilterChain[array.length];
+        for (int i = 0; i < array.length; i++) {
+            chains[i] = new ServerFilterChain(array, chains, i);
+        }
+        return chains[0];
+    }
+
+    /**
+     * 交给当前位置的过滤器处理
+     */
+    public Object proceed(MethodInvoker invoker, RPCRequest request) throws Throwable {
+        int next = index + 1;
+        return filters[index].invoke(invoker, request, next < chains.length ? chains[next] : null);
+    }
+}
@@ -0,0 +1,118 @@
+package cn.xpleaf.rpc.server.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import cn.xpleaf.rpc.common.local.LocalInvoker;
+import cn.xpleaf.rpc.common.metrics.MethodMetrics;
+import cn.xpleaf.rpc.common.metrics.RPCMetrics;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+
+/**
+ * 方法调用器，在服务启动时为服务接口的每一个方法预先构建好，处理请求时直接调用，不再需要每次都通过反射查找方法
+ *
+ * 内部使用的是已经绑定了服务实现类对象的MethodHandle，并统一适配为(Object[])Object的形式，
+ * 调用时只有一次invokeExact，JIT可以将其优化到接近直接调用的开销，
+ * 另外与Method.invoke不同，服务方法抛出的异常会原样抛出，而不是被包装为InvocationTargetException
+ *
+ * 同一个JVM中的消费者开启本地调用时，也通过LocalServices获取并直接调用
+ *
+ * @author yeyonghao
+ */
+public class MethodInvoker implements LocalInvoker {
+
+    // 统一适配后的方法签名，即(Object[])Object
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    // 服务接口名称
+    private final String interfaceName;
+    // 接口中的方法
+    private final Method method;
+    // 方法的参数类型
+    private final Class<?>[] parameterTypes;
+    // 方法签名，只在构建时拼接一次
+    private final String signature;
+    // 绑定了服务实现类对象，并适配为(Object[])Object的MethodHandle
+    private final MethodHandle handle;
+    // 方法在服务端的调用统计
+    private final MethodMetrics metrics;
+    // 是否为流式调用的方法，即返回类型为Iterator
+    private final boolean stream;
+
+    /**
+     * 构造方法
+     *
+     * @param interfaceName 服务接口名称
+     * @param method        接口中的方法
+     * @param serviceBean   服务实现类对象
+     * @throws IllegalAccessException 方法不可访问时抛出
+     */
+    public MethodInvoker(String interfaceName, Method method, Object serviceBean) throws IllegalAccessException {
+        this.interfaceName = interfaceName;
+        this.method = method;
+        this.parameterTypes = method.getParameterTypes();
+        this.signature = RPCProtocol.signatureOf(interfaceName, method.getName(), parameterTypes);
+        this.handle = MethodHandles.publicLookup().unreflect(method)
+                .bindTo(serviceBean)
+                .asSpreader(Object[].class, parameterTypes.length)
+                .asType(INVOKER_TYPE);
+        this.metrics = RPCMetrics.server().get(signature);
+        this.stream = RPCProtocol.isStreamType(method.getReturnType());
+    }
+
+    /**
+     * 调用服务方法
+     *
+     * @param parameters 方法的参数值，没有参数时可以为null
+     * @return 方法的返回值，void方法返回null
+     * @throws Throwable 服务方法抛出的异常
+     */
+    @Override
+    public Object invoke(Object[] parameters) throws Throwable {
+        return (Object) handle.invokeExact(parameters);
+    }
+
+    /**
+     * 判断参数类型是否与本方法一致
+     */
+    public boolean matches(Class<?>[] types) {
+        int length = types == null ? 0 : types.length;
+        if (length != parameterTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (types[i] != parameterTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 方法签名，用于与客户端协商方法编号，见RPCProtocol.signatureOf
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * 是否为流式调用的方法，见RPCProtocol.isStreamType
+     */
+    public boolean isStream() {
+        return stream;
+    }
+
+    public MethodMetrics getMetrics() {
+        return metrics;
+    }
+
+    public String getInterfaceName() {
+        return interfaceName;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+}
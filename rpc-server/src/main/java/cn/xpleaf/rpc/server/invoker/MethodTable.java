@@ -0,0 +1,61 @@
+package cn.xpleaf.rpc.server.invoker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 方法表，为服务端所有服务接口的所有方法分配编号，编号从1开始，0表示没有编号
+ *
+ * 客户端在连接建立时通过握手获取所有方法的签名，签名在数组中的下标加1即为方法编号，
+ * 之后的请求只携带方法编号，服务端直接以编号为下标从数组中取出方法调用器，不再需要按接口名、方法名和参数类型查找
+ *
+ * 服务启动时一次性构建完毕，之后只读，所以可以被多个线程安全地共享
+ *
+ * @author yeyonghao
+ */
+public class MethodTable {
+
+    // 方法调用器，下标为方法编号，下标0不使用
+    private final MethodInvoker[] invokers;
+    // 方法签名，下标加1为方法编号，握手时发送给客户端
+    private final String[] signatures;
+
+    /**
+     * 构造方法，为所有服务接口的所有方法分配编号
+     *
+     * @param serviceInvokerMap key为接口名称，value为该接口的服务调用器
+     */
+    public MethodTable(Map<String, ServiceInvoker> serviceInvokerMap) {
+        List<MethodInvoker> list = new ArrayList<>();
+        for (ServiceInvoker serviceInvoker : serviceInvokerMap.values()) {
+            list.addAll(serviceInvoker.getMethodInvokers());
+        }
+        invokers = new MethodInvoker[list.size() + 1];
+        signatures = new String[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            invokers[i + 1] = list.get(i);
+            signatures[i] = list.get(i).getSignature();
+        }
+    }
+
+    /**
+     * 根据方法编号获取方法调用器
+     *
+     * @param methodId 方法编号
+     * @return 对应的方法调用器，编号不存在则返回null
+     */
+    public MethodInvoker get(int methodId) {
+        if (methodId <= 0 || methodId >= invokers.length) {
+            return null;
+        }
+        return invokers[methodId];
+    }
+
+    /**
+     * 获取所有方法的签名，下标加1为方法编号
+     */
+    public String[] getSignatures() {
+        return signatures;
+    }
+}
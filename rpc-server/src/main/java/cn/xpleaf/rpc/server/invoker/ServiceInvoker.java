@@ -0,0 +1,95 @@
+package cn.xpleaf.rpc.server.invoker;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cn.xpleaf.rpc.common.local.LocalService;
+
+/**
+ * 服务调用器，保存了某一个服务接口所有方法的MethodInvoker
+ *
+ * 服务启动时根据接口和服务实现类对象一次性构建完毕，之后只读，所以可以被多个线程安全地共享，
+ * 处理请求时先按方法名查找，再在同名的重载方法（通常只有一个）中按参数类型匹配
+ *
+ * 服务端启动后登记在LocalServices中，供同一个JVM中的消费者本地调用
+ *
+ * @author yeyonghao
+ */
+public class ServiceInvoker implements LocalService {
+
+    // 服务接口
+    private final Class<?> interfaceClass;
+    // 服务实现类对象
+    private final Object serviceBean;
+    // 方法调用器，key为方法名，value为同名的重载方法
+    private final Map<String, MethodInvoker[]> invokerMap = new HashMap<>();
+
+    /**
+     * 构造方法，为接口的每一个方法构建MethodInvoker
+     *
+     * @param interfaceClass 服务接口
+     * @param serviceBean    服务实现类对象
+     * @throws IllegalAccessException 接口方法不可访问时抛出
+     */
+    public ServiceInvoker(Class<?> interfaceClass, Object serviceBean) throws IllegalAccessException {
+        this.interfaceClass = interfaceClass;
+        this.serviceBean = serviceBean;
+        for (Method method : interfaceClass.getMethods()) {
+            MethodInvoker[] overloads = invokerMap.get(method.getName());
+            MethodInvoker[] invokers;
+            if (overloads == null) {
+                invokers = new MethodInvoker[1];
+            } else {
+                invokers = new MethodInvoker[overloads.length + 1];
+                System.arraycopy(overloads, 0, invokers, 0, overloads.length);
+            }
+            invokers[invokers.length - 1] = new MethodInvoker(interfaceClass.getName(), method, serviceBean);
+            invokerMap.put(method.getName(), invokers);
+        }
+    }
+
+    /**
+     * 根据方法名和参数类型查找方法调用器
+     *
+     * @param methodName     方法名
+     * @param parameterTypes 参数类型
+     * @return 对应的方法调用器，不存在则返回null
+     */
+    @Override
+    public MethodInvoker getMethodInvoker(String methodName, Class<?>[] parameterTypes) {
+        MethodInvoker[] invokers = invokerMap.get(methodName);
+        if (invokers == null) {
+            return null;
+        }
+        for (MethodInvoker invoker : invokers) {
+            if (invoker.matches(parameterTypes)) {
+                return invoker;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取所有的方法调用器
+     */
+    public List<MethodInvoker> getMethodInvokers() {
+        List<MethodInvoker> list = new ArrayList<>();
+        for (MethodInvoker[] invokers : invokerMap.values()) {
+            Collections.addAll(list, invokers);
+        }
+        return list;
+    }
+
+    public Class<?> getInterfaceClass() {
+        return interfaceClass;
+    }
+
+    @Override
+    public Object getServiceBean() {
+        return serviceBean;
+    }
+}
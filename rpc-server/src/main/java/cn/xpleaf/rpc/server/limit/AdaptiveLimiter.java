@@ -0,0 +1,179 @@
+package cn.xpleaf.rpc.server.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 自适应并发限制器，根据观测到的请求耗时估算服务能够承受的并发数，超过限制的请求会被立即拒绝
+ *
+ * 采用TCP Vegas拥塞控制的思路：没有排队时的耗时为rttNoLoad，当前的耗时为rtt，
+ * 则当前并发数limit中约有 queue = limit * (1 - rttNoLoad / rtt) 个请求是在排队的，
+ * 排队的请求少于alpha时说明还有余量，增大limit；多于beta时说明已经过载，减小limit；介于两者之间时保持不变，
+ * alpha和beta随limit的对数增长，limit越大，调整的幅度也越大
+ *
+ * rtt取每个统计窗口内的最小耗时，对偶发的慢请求不敏感；rttNoLoad取历史窗口的最小值，
+ * 并且每隔PROBE_WINDOWS个窗口重置一次，使服务的基准耗时发生变化（如依赖的下游变慢）后能重新学习
+ *
+ * 获取和释放许可都只是一次原子操作，只有窗口结束时才由一个线程计算新的limit，不需要加锁
+ *
+ * @author yeyonghao
+ */
+public class AdaptiveLimiter {
+
+    // 统计窗口的时长
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // 一个窗口内至少需要的样本数，样本太少时不调整limit
+    private static final int MIN_SAMPLES = 10;
+    // 每隔多少个窗口重置一次rttNoLoad
+    private static final int PROBE_WINDOWS = 600;
+
+    // 接口名称，用于日志
+    private final String name;
+    // limit的下限
+    private final int minLimit;
+    // limit的上限
+    private final int maxLimit;
+    // 当前的并发限制
+    private volatile int limit;
+    // 正在执行的请求数
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // 当前窗口内的最小耗时
+    private final AtomicLong windowMinRtt = new AtomicLong(Long.MAX_VALUE);
+    // 当前窗口内的样本数
+    private final AtomicInteger windowSamples = new AtomicInteger();
+    // 当前窗口内正在执行的请求数的最大值，请求数远小于limit时说明并发不是瓶颈，不需要增大limit
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    // 当前窗口的结束时间
+    private volatile long windowEnd = System.nanoTime() + WINDOW_NANOS;
+    // 是否有线程正在计算新的limit
+    private final AtomicBoolean updating = new AtomicBoolean();
+    // 没有排队时的耗时，0表示还没有样本，只在计算新的limit时访问
+    private long rttNoLoad;
+    // 已经结束的窗口数，只在计算新的limit时访问
+    private long windows;
+    // log4j日志记录
+    private Logger logger = LoggerFactory.getLogger(AdaptiveLimiter.class);
+
+    /**
+     * 构造方法
+     *
+     * @param name         接口名称，用于日志
+     * @param initialLimit 初始的并发限制
+     * @param minLimit     并发限制的下限
+     * @param maxLimit     并发限制的上限
+     */
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("并发限制的参数不正确: initialLimit=" + initialLimit + ", minLimit="
+                    + minLimit + ", maxLimit=" + maxLimit);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * 尝试获取许可
+     *
+     * @return 获取成功返回true，正在执行的请求数已经达到限制时返回false，请求应当被立即拒绝
+     */
+    public boolean tryAcquire() {
+        int current = inFlight.incrementAndGet();
+        if (current > limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        int max = windowMaxInFlight.get();
+        if (current > max) {
+            windowMaxInFlight.compareAndSet(max, current);
+        }
+        return true;
+    }
+
+    /**
+     * 释放许可，请求没有被执行（如被业务线程池拒绝）时调用，不计入样本
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 释放许可，并记录本次请求的耗时
+     *
+     * @param rttNanos 请求的耗时（纳秒）
+     */
+    public void release(long rttNanos) {
+        inFlight.decrementAndGet();
+        long min = windowMinRtt.get();
+        while (rttNanos < min && !windowMinRtt.compareAndSet(min, rttNanos)) {
+            min = windowMinRtt.get();
+        }
+        int samples = windowSamples.incrementAndGet();
+        long now = System.nanoTime();
+        if (now - windowEnd >= 0 && samples >= MIN_SAMPLES && updating.compareAndSet(false, true)) {
+            try {
+                update(now);
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    /**
+     * 窗口结束，根据窗口内的最小耗时计算新的limit，并开始下一个窗口
+     */
+    private void update(long now) {
+        long rtt = windowMinRtt.getAndSet(Long.MAX_VALUE);
+        int maxInFlight = windowMaxInFlight.getAndSet(0);
+        windowSamples.set(0);
+        windowEnd = now + WINDOW_NANOS;
+        if (rtt == Long.MAX_VALUE) {
+            return;
+        }
+        // 窗口计数总是递增，不能放在短路的条件中，否则rtt持续变小时探测的周期会被打乱
+        windows++;
+        if (rttNoLoad == 0 || rtt < rttNoLoad || windows % PROBE_WINDOWS == 0) {
+            rttNoLoad = rtt;
+        }
+
+        int current = limit;
+        double log = Math.max(1, Math.log10(current));
+        double queue = current * (1 - (double) rttNoLoad / rtt);
+        int newLimit = current;
+        if (queue <= 3 * log) {
+            // 只有并发数接近limit时才增大，否则limit会在低负载时无限增长
+            if (maxInFlight * 2 >= current) {
+                newLimit = (int) (current + log);
+            }
+        } else if (queue >= 6 * log) {
+            newLimit = (int) (current - log);
+        }
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        if (newLimit != current) {
+            limit = newLimit;
+            logger.info("服务[{}]的并发限制调整为{}（rtt={}us，rttNoLoad={}us）", name, newLimit,
+                    TimeUnit.NANOSECONDS.toMicros(rtt), TimeUnit.NANOSECONDS.toMicros(rttNoLoad));
+        }
+    }
+
+    /**
+     * 当前的并发限制
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 正在执行的请求数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
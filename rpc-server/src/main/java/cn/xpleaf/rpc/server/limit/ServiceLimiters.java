@@ -0,0 +1,59 @@
+package cn.xpleaf.rpc.server.limit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 各个服务的自适应并发限制器，key为接口名称，没有开启自适应并发限制的服务不限制并发
+ *
+ * 服务启动时创建完毕，之后只读，所以可以被多个线程安全地共享
+ *
+ * @author yeyonghao
+ */
+public class ServiceLimiters {
+
+    // 默认的初始并发限制
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    // 默认的并发限制下限
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    // 默认的并发限制上限
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+
+    // 各个服务的并发限制器，key为接口名称
+    private Map<String, AdaptiveLimiter> limiters = new HashMap<>();
+    // 并发限制的上限
+    private int maxLimit;
+
+    public ServiceLimiters() {
+        this(DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param maxLimit 并发限制的上限，通常不需要超过业务线程池的线程数与队列长度之和
+     */
+    public ServiceLimiters(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * 为指定的服务开启自适应并发限制
+     *
+     * @param interfaceName 接口名称
+     */
+    public void enable(String interfaceName) {
+        int initialLimit = Math.min(DEFAULT_INITIAL_LIMIT, maxLimit);
+        limiters.put(interfaceName, new AdaptiveLimiter(interfaceName, initialLimit, DEFAULT_MIN_LIMIT, maxLimit));
+    }
+
+    /**
+     * 获取服务的并发限制器
+     *
+     * @param interfaceName 接口名称
+     * @return 并发限制器，没有开启自适应并发限制时返回null
+     */
+    public AdaptiveLimiter getLimiter(String interfaceName) {
+        return limiters.get(interfaceName);
+    }
+}
@@ -1,57 +1,154 @@
 package cn.xpleaf.rpc.server.netty;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.FatalBeanException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 
-import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.local.LocalServices;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.registry.Registry;
+import cn.xpleaf.rpc.common.transport.Transport;
+import cn.xpleaf.rpc.common.utils.ProtostuffGraphSerializer;
+import cn.xpleaf.rpc.common.utils.ProtostuffSerializer;
 import cn.xpleaf.rpc.common.utils.RPCDecoder;
 import cn.xpleaf.rpc.common.utils.RPCEncoder;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import cn.xpleaf.rpc.common.utils.Serializer;
+import cn.xpleaf.rpc.common.utils.SerializerFactory;
 import cn.xpleaf.rpc.server.annotation.RPCService;
-import cn.xpleaf.rpc.server.registry.ServiceRegistry;
+import cn.xpleaf.rpc.server.executor.ServiceExecutors;
+import cn.xpleaf.rpc.server.filter.ServerFilter;
+import cn.xpleaf.rpc.server.filter.ServerFilterChain;
+import cn.xpleaf.rpc.server.invoker.MethodTable;
+import cn.xpleaf.rpc.server.invoker.ServiceInvoker;
+import cn.xpleaf.rpc.server.limit.ServiceLimiters;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
 
 /**
  * RPCServer主要完成下面几个功能：
  * 1.将需要发布的服务保存到一个map中
  * 2.启动netty服务端程序
- * 3.向zookeeper注册需要发布的服务
+ * 3.向注册中心（通常为zookeeper）注册需要发布的服务
+ * 4.在LocalServices中登记需要发布的服务，同一个JVM中的消费者可以直接调用，不经过网络
+ *
+ * 在Linux上默认使用Netty的原生epoll传输，并通过SO_REUSEPORT在同一个端口上绑定多个监听Channel，
+ * 每个监听Channel由独立的accept线程处理，新连接由内核分散到各个监听Channel上，其它平台退回到NIO，见Transport
+ *
+ * 启动不会无限期地阻塞spring的初始化线程：afterPropertiesSet发起端口绑定，全部绑定成功后在registry线程中
+ * 一次批量注册所有服务，完成后getStartFuture返回的future结束，afterPropertiesSet最多等待startTimeout，
+ * 启动失败或者超时时抛出异常，spring的初始化随之失败（startTimeout为0时不等待，由调用方通过getStartFuture获取启动结果）。
+ * 任何一个监听Channel绑定失败或者服务注册失败时，已经绑定的端口和已经登记的服务都会被撤销，不会留下一个半启动的服务端。关闭时（spring销毁bean时调用destroy）的顺序为：
+ * 先从zookeeper注销，等待消费者收到通知，再拒绝新请求（SHUTTING_DOWN，客户端可以安全地重试其它服务提供者），
+ * 关闭监听端口，等待已经接收的请求处理完毕，最后关闭连接和线程池，所以发布新版本时不会有请求失败
  *
  * @author yeyonghao
  */
-public class RPCServer implements ApplicationContextAware, InitializingBean {
+public class RPCServer implements ApplicationContextAware, InitializingBean, DisposableBean {
+
+    // 默认允许客户端使用的序列化器
+    public static final String DEFAULT_SERIALIZERS = ProtostuffSerializer.NAME + "," + ProtostuffGraphSerializer.NAME;
 
     // 用来保存用户服务实现类对象，key为实现类的接口名称，value为实现类对象
     private Map<String, Object> serviceBeanMap = new HashMap<>();
+    // 用来保存预先构建好的服务调用器，key为实现类的接口名称，value为该接口的服务调用器
+    private Map<String, ServiceInvoker> serviceInvokerMap = new HashMap<>();
     // 运行netty程序的服务端地址，用于绑定到netty服务端程序中
     private String serverAddress;
-    // 向zookeeper注册的注册类对象
-    private ServiceRegistry serviceRegistry;
+    // 注册服务的注册中心，通常为zookeeper，见Registry
+    private Registry registry;
+    // 执行服务方法的线程池类型，shared、virtual或者direct，见ServiceExecutors
+    private String threadPool = ServiceExecutors.SHARED;
+    // 共享线程池的线程数
+    private int threads = 200;
+    // 共享线程池的队列长度
+    private int queues = 1000;
+    // 服务提供者的权重，客户端进行负载均衡时使用
+    private int weight = Provider.DEFAULT_WEIGHT;
+    // 是否与客户端协商压缩算法，开启后客户端要求压缩时对超过阈值的响应进行压缩
+    private boolean compression = true;
+    // 响应的压缩阈值，消息体小于该长度时不压缩
+    private int compressThreshold = RPCProtocol.DEFAULT_COMPRESS_THRESHOLD;
+    // 传输类型，auto、nio或者epoll，见Transport
+    private String transport = Transport.AUTO;
+    // 监听Channel（accept线程）的数量，0表示支持SO_REUSEPORT时使用CPU核数，否则为1
+    private int acceptors = 0;
+    // 处理连接读写的I/O线程数，0表示使用Netty的默认值（CPU核数的2倍）
+    private int ioThreads = 0;
+    // ByteBuf分配器类型，pooled或者unpooled
+    private String allocator = Transport.POOLED;
+    // 允许客户端使用的序列化器名称，以逗号分隔，使用其它序列化器的请求会被拒绝
+    private String serializers = DEFAULT_SERIALIZERS;
+    // 允许一个请求的所有附件加起来的最大长度（字节）
+    private long maxAttachmentLength = RPCProtocol.DEFAULT_MAX_ATTACHMENT_LENGTH;
+    // 是否为所有服务开启自适应并发限制，为false时只有标注了adaptiveLimit的服务开启
+    private boolean adaptiveLimit = false;
+    // 服务端的过滤器，按顺序执行，见ServerFilter
+    private List<ServerFilter> filters = Collections.emptyList();
+    // 关闭时等待正在处理的请求完成的最长时间（毫秒）
+    private long drainTimeout = 10000;
+    // 关闭时从zookeeper注销后，等待消费者收到通知的时间（毫秒）
+    private long deregisterDelay = 1000;
+    // afterPropertiesSet等待启动完成的最长时间（毫秒），0表示不等待
+    private long startTimeout = 30000;
+    // 服务端启动完成（端口绑定成功并且服务注册完毕）时结束的future
+    private final CompletableFuture<Void> startFuture = new CompletableFuture<>();
+    // 正在处理的请求计数，所有连接共享
+    private final RequestTracker requestTracker = new RequestTracker();
+    // 已经接收的客户端连接，关闭时统一关闭
+    private final ChannelGroup childChannels = new DefaultChannelGroup("minidubbo-clients", GlobalEventExecutor.INSTANCE);
+    // 监听Channel
+    private final List<Channel> serverChannels = new ArrayList<>();
+    // 是否已经关闭
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private ServiceExecutors serviceExecutors;
+    // 执行服务注册和注销的线程，zookeeper操作不能在netty的I/O线程中等待
+    private ExecutorService registryExecutor;
     // log4j日志记录
     private Logger logger = LoggerFactory.getLogger(RPCServer.class);
 
     /**
      * RPCServer的构造方法
      *
-     * @param serverAddress   服务提供者的地址信息，格式为 host:port
-     * @param serviceRegistry zookeeper服务注册类对象
+     * @param serverAddress 服务提供者的地址信息，格式为 host:port
+     * @param registry      注册中心，如zookeeper服务注册类对象ServiceRegistry
      */
-    public RPCServer(String serverAddress, ServiceRegistry serviceRegistry) {
+    public RPCServer(String serverAddress, Registry registry) {
         this.serverAddress = serverAddress;
-        this.serviceRegistry = serviceRegistry;
+        this.registry = registry;
     }
 
     /**
@@ -71,10 +168,17 @@ public class RPCServer implements ApplicationContextAware, InitializingBean {
             // 获取实现类对象的接口名称，思路是，实现类中标注了RPCService注解，同时其参数为实现类的接口类型
             // 说明：实际上可以通过serviceBean.getClass().getInterfaces()的方式来获取其接口名称的
             // 只是如果是实现多个接口的情况下需要进行判断，这点后面再做具体的实现
-            String interfaceName = serviceBean.getClass().getAnnotation(RPCService.class).value().getName();
+            Class<?> interfaceClass = serviceBean.getClass().getAnnotation(RPCService.class).value();
+            String interfaceName = interfaceClass.getName();
 
             // 保存到serviceBeanMap中
             serviceBeanMap.put(interfaceName, serviceBean);
+            // 为接口的每一个方法预先构建调用器，处理请求时就不需要再通过反射查找方法
+            try {
+                serviceInvokerMap.put(interfaceName, new ServiceInvoker(interfaceClass, serviceBean));
+            } catch (IllegalAccessException e) {
+                throw new FatalBeanException("构建服务[" + interfaceName + "]的调用器失败", e);
+            }
         }
         logger.info("用户服务接口和实现类对象保存完毕...");
 
@@ -82,59 +186,408 @@ public class RPCServer implements ApplicationContextAware, InitializingBean {
 
     /**
      * 由于本类实现了InitializingBean接口，spring在构造完所有对象之后会调用afterPropertiesSet方法
-     * 在该方法中，将服务注册到zookeeper，同时启动netty服务端程序，该方法中主要是netty框架的代码
+     * 在该方法中，启动netty服务端程序，端口绑定成功后将服务注册到zookeeper，该方法中主要是netty框架的代码
+     *
+     * 端口绑定和服务注册都是异步进行的，本方法最多等待startTimeout，启动失败或者超时时抛出异常，
+     * startTimeout为0时不等待，启动结果见getStartFuture
      *
-     * @throws Exception
+     * @throws Exception 启动失败或者在startTimeout内没有启动完成
      */
     @Override
     public void afterPropertiesSet() throws Exception {
 
         logger.info("准备构建RPC服务端，监听来自RPC客户端的请求...");
 
-        // 配置服务端NIO线程组
-        EventLoopGroup bossGroup = new NioEventLoopGroup();
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        // 创建执行服务方法的业务线程池，标注了threads属性的服务使用独立的线程池
+        final ServiceExecutors serviceExecutors = new ServiceExecutors(threadPool, threads, queues);
+        for (Map.Entry<String, Object> entry : serviceBeanMap.entrySet()) {
+            RPCService rpcService = entry.getValue().getClass().getAnnotation(RPCService.class);
+            if (rpcService.threads() > 0) {
+                serviceExecutors.isolate(entry.getKey(), rpcService.threads(), rpcService.queues());
+            }
+        }
+        this.serviceExecutors = serviceExecutors;
 
-        try {
-            ServerBootstrap b = new ServerBootstrap();
-            b.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class).option(ChannelOption.SO_BACKLOG, 1024)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
+        // 创建自适应并发限制器，并发限制不需要超过线程池能够容纳的请求数
+        final ServiceLimiters serviceLimiters = new ServiceLimiters(
+                threads + queues > 0 ? threads + queues : ServiceLimiters.DEFAULT_MAX_LIMIT);
+        for (Map.Entry<String, Object> entry : serviceBeanMap.entrySet()) {
+            RPCService rpcService = entry.getValue().getClass().getAnnotation(RPCService.class);
+            if (adaptiveLimit || rpcService.adaptiveLimit()) {
+                serviceLimiters.enable(entry.getKey());
+            }
+        }
+
+        // 为所有服务方法分配编号，客户端握手时获取
+        final MethodTable methodTable = new MethodTable(serviceInvokerMap);
+
+        // 构建过滤器链，所有连接共享，没有配置过滤器时为null
+        final ServerFilterChain filterChain = ServerFilterChain.build(filters);
+
+        // 允许客户端使用的序列化器，序列化器不存在时抛出IllegalArgumentException，启动失败
+        final List<Serializer> allowedSerializers = new ArrayList<>();
+        for (String name : serializers.split(",")) {
+            allowedSerializers.add(SerializerFactory.getSerializer(name.trim()));
+        }
+
+        // 配置服务端线程组，每个监听Channel绑定到bossGroup中的一个线程上
+        Transport transport = Transport.create(this.transport);
+        int acceptors = this.acceptors > 0 ? this.acceptors
+                : transport.isReusePortSupported() ? Runtime.getRuntime().availableProcessors() : 1;
+        if (acceptors > 1 && !transport.isReusePortSupported()) {
+            logger.warn("[{}]传输不支持SO_REUSEPORT，只使用一个监听Channel", transport);
+            acceptors = 1;
+        }
+        bossGroup = transport.newEventLoopGroup(acceptors, new DefaultThreadFactory("minidubbo-boss"));
+        workerGroup = transport.newEventLoopGroup(ioThreads, new DefaultThreadFactory("minidubbo-io"));
+        registryExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("minidubbo-registry", true));
+        ByteBufAllocator allocator = Transport.allocator(this.allocator);
+
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup).channel(transport.serverChannelClass())
+                .option(ChannelOption.SO_BACKLOG, 1024)
+                .option(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.ALLOCATOR, allocator)
+                // 客户端与服务端之间是长连接，关闭Nagle算法以降低小包的延迟
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        // 记录连接，关闭时统一关闭，连接断开时自动移除
+                        childChannels.add(ch);
+                        // 添加解码器（同时负责切分消息帧），RPC服务端需要解码的是RPCRequest对象，因为需要接收客户端发送过来的请求
+                        // 只接受允许的序列化器，并限制附件的总长度
+                        RPCDecoder decoder = new RPCDecoder(RPCProtocol.DEFAULT_MAX_FRAME_LENGTH, allowedSerializers);
+                        decoder.setMaxAttachmentLength(maxAttachmentLength);
+                        ch.pipeline().addLast(decoder);
+                        // 添加编码器
+                        ch.pipeline().addLast(new RPCEncoder());
+                        // 添加业务处理handler
+                        ch.pipeline().addLast(new RPCServerHandler(serviceInvokerMap, methodTable, serviceExecutors,
+                                serviceLimiters, compression ? compressThreshold : -1, requestTracker, filterChain));
+                    }
+                });
+        transport.configure(b, acceptors > 1);
+
+        // 解析serverAddress中的host和port，与注册到注册中心的地址使用同样的格式
+        Provider address = Provider.parse(serverAddress);
+        String host = address.getHost();
+        int port = address.getPort();
+
+        // 异步绑定端口，全部绑定成功后再注册服务
+        // 开启了SO_REUSEPORT时，同一个端口绑定多次，bossGroup按轮询为每个监听Channel分配不同的线程
+        logger.info("准备使用[{}]传输绑定服务提供者地址和端口[{}:{}]，监听Channel数量为{}", transport, host, port, acceptors);
+        final AtomicInteger pending = new AtomicInteger(acceptors);
+        ChannelFutureListener bindListener = new ChannelFutureListener() {
+
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    logger.error("绑定服务提供者地址和端口[{}]失败", serverAddress, future.cause());
+                    startFailed(future.cause());
+                    return;
+                }
+                synchronized (serverChannels) {
+                    // 其它监听Channel绑定失败时服务端已经关闭，之后才绑定成功的监听Channel直接关闭
+                    if (closed.get()) {
+                        future.channel().close();
+                        return;
+                    }
+                    serverChannels.add(future.channel());
+                }
+                if (pending.decrementAndGet() == 0) {
+                    registryExecutor.execute(new Runnable() {
 
                         @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            // 添加编码器，RPC服务端需要解码的是RPCRequest对象，因为需要接收客户端发送过来的请求
-                            ch.pipeline().addLast(new RPCDecoder(RPCRequest.class));
-                            // 添加解码器
-                            ch.pipeline().addLast(new RPCEncoder());
-                            // 添加业务处理handler
-                            ch.pipeline().addLast(new RPCServerHandler(serviceBeanMap));
+                        public void run() {
+                            register();
                         }
                     });
+                }
+            }
+        };
+        for (int i = 0; i < acceptors; i++) {
+            b.bind(host, port).addListener(bindListener);
+        }
 
-            // 解析serverAddress中的host和port
-            String[] array = serverAddress.split(":");
-            String host = array[0];
-            int port = Integer.valueOf(array[1]);
+        if (startTimeout > 0) {
+            try {
+                startFuture.get(startTimeout, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw new FatalBeanException("RPC服务端[" + serverAddress + "]启动失败", e.getCause());
+            } catch (TimeoutException e) {
+                shutdown();
+                throw new FatalBeanException("RPC服务端[" + serverAddress + "]在" + startTimeout + "毫秒内没有启动完成", e);
+            }
+        }
+    }
 
-            // 绑定端口，同步等待成功，该方法是同步阻塞的，绑定成功后返回一个ChannelFuture
-            logger.info("准备绑定服务提供者地址和端口[{}:{}]", host, port);
-            ChannelFuture f = b.bind(host, port).sync();
+    /**
+     * 启动失败，在registry线程中关闭服务端，撤销已经绑定的端口和已经登记的服务，然后再让startFuture异常结束，
+     * 所以等待startFuture的调用方看到失败时，服务端已经清理完毕。绑定监听的回调在I/O线程中执行，不能在其中等待端口关闭
+     */
+    private void startFailed(final Throwable cause) {
+        try {
+            registryExecutor.execute(new Runnable() {
 
-            // 向zookeeper注册
-            logger.info("绑定服务提供者地址和端口成功，准备向zookeeper注册服务...");
-            for (String interfaceName : serviceBeanMap.keySet()) {
-                serviceRegistry.registerService(serverAddress, interfaceName);
-            }
+                @Override
+                public void run() {
+                    close(cause);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 服务端已经关闭
+            startFuture.completeExceptionally(cause);
+        }
+    }
 
-            // 等待服务端监听端口关闭，阻塞，等待服务端链路关闭之后main函数才退出
+    /**
+     * 端口全部绑定成功后，登记本地服务，并向zookeeper批量注册所有服务
+     */
+    private void register() {
+        if (closed.get()) {
+            startFuture.completeExceptionally(new IllegalStateException("服务端已经关闭"));
+            return;
+        }
+        try {
+            // 登记为本地服务，同一个JVM中的消费者直接调用，注册失败时由close撤销
+            for (Map.Entry<String, ServiceInvoker> entry : serviceInvokerMap.entrySet()) {
+                LocalServices.export(entry.getKey(), entry.getValue());
+            }
+            // 向zookeeper注册，所有服务一次批量注册
+            logger.info("绑定服务提供者地址和端口成功，准备向zookeeper注册{}个服务...", serviceBeanMap.size());
+            registry.register(serverAddress, serviceBeanMap.keySet(), weight);
             logger.info("向zookeeper注册服务成功，正在监听来自RPC客户端的请求连接...");
-            f.channel().closeFuture().sync();
-        } finally {
-            // 优雅退出，释放线程池资源
+            startFuture.complete(null);
+        } catch (Exception e) {
+            logger.error("向zookeeper注册服务失败，准备关闭服务端", e);
+            close(e);
+        }
+    }
+
+    /**
+     * 服务端启动完成时结束的future，端口绑定或者服务注册失败时异常结束
+     */
+    public CompletableFuture<Void> getStartFuture() {
+        return startFuture;
+    }
+
+    /**
+     * 由于本类实现了DisposableBean接口，spring关闭容器时会调用destroy方法，优雅关闭服务端
+     */
+    @Override
+    public void destroy() throws Exception {
+        shutdown();
+    }
+
+    /**
+     * 优雅关闭服务端，重复调用时只有第一次有效：
+     * 1.从LocalServices和zookeeper中注销服务，并等待消费者收到通知，不再向本服务端发送新的请求
+     * 2.拒绝新的请求，关闭监听端口
+     * 3.等待已经接收的请求（包括流式调用）处理完毕，最长等待drainTimeout
+     * 4.关闭所有连接，释放线程池资源
+     */
+    public void shutdown() throws InterruptedException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        doShutdown(new IllegalStateException("服务端已经关闭"));
+    }
+
+    /**
+     * 启动失败时关闭服务端，关闭完成后startFuture以启动失败的原因异常结束
+     */
+    private void close(Throwable cause) {
+        if (!closed.compareAndSet(false, true)) {
+            startFuture.completeExceptionally(cause);
+            return;
+        }
+        try {
+            doShutdown(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            startFuture.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 关闭服务端，startFuture还没有结束时以给定的原因异常结束
+     */
+    private void doShutdown(Throwable cause) throws InterruptedException {
+        boolean started = startFuture.isDone() && !startFuture.isCompletedExceptionally();
+        logger.info("准备关闭RPC服务端，先从zookeeper注销服务...");
+        for (Map.Entry<String, ServiceInvoker> entry : serviceInvokerMap.entrySet()) {
+            LocalServices.unexport(entry.getKey(), entry.getValue());
+        }
+        try {
+            // 注册失败时可能已经注册了一部分，同样需要注销，没有注册过时注销不做任何事情
+            registry.unregister();
+            if (started) {
+                // 消费者通过watch得知服务提供者下线需要一定时间，这段时间内仍然正常处理请求
+                Thread.sleep(deregisterDelay);
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.warn("从zookeeper注销服务失败", e);
+        }
+
+        // 拒绝新的请求，并关闭监听端口，不再接收新的连接
+        requestTracker.startDraining();
+        synchronized (serverChannels) {
+            for (Channel channel : serverChannels) {
+                channel.close().awaitUninterruptibly();
+            }
+        }
+        logger.info("等待{}个正在处理的请求完成...", requestTracker.getInFlight());
+        if (!requestTracker.awaitDrained(drainTimeout)) {
+            logger.warn("在{}毫秒内仍有{}个请求没有处理完毕，强制关闭", drainTimeout, requestTracker.getInFlight());
+        }
+
+        // 关闭连接，此前已经写出的响应会先于关闭操作发送
+        childChannels.close().awaitUninterruptibly();
+        // 优雅退出，释放线程池资源
+        if (bossGroup != null) {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            serviceExecutors.shutdown();
+            registryExecutor.shutdown();
         }
+        logger.info("RPC服务端已经关闭...");
+        startFuture.completeExceptionally(cause);
+    }
+
+    /**
+     * 设置执行服务方法的线程池类型，可以通过spring注入
+     *
+     * @param threadPool shared、virtual或者direct
+     */
+    public void setThreadPool(String threadPool) {
+        this.threadPool = threadPool;
+    }
+
+    /**
+     * 设置共享线程池的线程数，virtual类型时为允许同时执行的最大请求数（与队列长度之和）
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * 设置共享线程池的队列长度，为0时不排队，没有空闲线程即拒绝请求
+     */
+    public void setQueues(int queues) {
+        this.queues = queues;
+    }
+
+    /**
+     * 设置服务提供者的权重，默认为100，机器配置较高的服务提供者可以设置更大的权重
+     */
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * 设置传输类型，默认为auto，即Linux上使用epoll，其它平台使用nio
+     *
+     * @param transport auto、nio或者epoll
+     */
+    public void setTransport(String transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * 设置监听Channel（accept线程）的数量，大于1时需要epoll传输支持SO_REUSEPORT，默认为CPU核数
+     */
+    public void setAcceptors(int acceptors) {
+        this.acceptors = acceptors;
+    }
+
+    /**
+     * 设置处理连接读写的I/O线程数，默认为CPU核数的2倍
+     */
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * 设置ByteBuf分配器类型，默认为pooled
+     *
+     * @param allocator pooled或者unpooled
+     */
+    public void setAllocator(String allocator) {
+        this.allocator = allocator;
+    }
 
+    /**
+     * 设置是否与客户端协商压缩算法，默认开启，客户端没有要求压缩时不会压缩
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * 设置响应的压缩阈值，消息体小于该长度时不压缩，默认为8KB
+     */
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * 设置允许客户端使用的序列化器，默认为protostuff和protostuff-graph，使用其它序列化器的请求会被拒绝并断开连接，
+     * 使用jdk序列化器时需要先通过SerializerFactory.register(new JdkSerializer(...))注册
+     *
+     * @param serializers 序列化器名称，以逗号分隔，如protostuff,jdk
+     */
+    public void setSerializers(String serializers) {
+        this.serializers = serializers;
+    }
+
+    /**
+     * 设置允许一个请求的所有附件加起来的最大长度（字节），默认为256MB，超过时断开连接
+     */
+    public void setMaxAttachmentLength(long maxAttachmentLength) {
+        this.maxAttachmentLength = maxAttachmentLength;
+    }
+
+    /**
+     * 设置是否为所有服务开启自适应并发限制，默认只有标注了adaptiveLimit的服务开启
+     */
+    public void setAdaptiveLimit(boolean adaptiveLimit) {
+        this.adaptiveLimit = adaptiveLimit;
+    }
+
+    /**
+     * 设置服务端的过滤器，可以通过spring注入，按列表的顺序执行，需要在服务端启动之前设置
+     *
+     * @param filters 服务端的过滤器
+     */
+    public void setFilters(List<ServerFilter> filters) {
+        this.filters = new ArrayList<>(filters);
+    }
+
+    /**
+     * 设置关闭时等待正在处理的请求完成的最长时间（毫秒），默认为10秒
+     */
+    public void setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * 设置关闭时从zookeeper注销后等待消费者收到通知的时间（毫秒），默认为1秒
+     */
+    public void setDeregisterDelay(long deregisterDelay) {
+        this.deregisterDelay = deregisterDelay;
+    }
+
+    /**
+     * 设置afterPropertiesSet等待启动完成（端口绑定并且服务注册完毕）的最长时间（毫秒），默认为30秒，
+     * 启动失败或者超时时afterPropertiesSet抛出异常，spring的初始化随之失败；
+     * 设置为0时不等待，启动失败时服务端同样会自行关闭，调用方需要通过getStartFuture获取启动结果
+     */
+    public void setStartTimeout(long startTimeout) {
+        this.startTimeout = startTimeout;
     }
 
 }
@@ -1,10 +1,39 @@
 package cn.xpleaf.rpc.server.netty;
 
-import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.metrics.MethodMetrics;
+import cn.xpleaf.rpc.common.pojo.RPCHandshake;
 import cn.xpleaf.rpc.common.pojo.RPCRequest;
 import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import cn.xpleaf.rpc.common.pojo.RPCStreamCredit;
+import cn.xpleaf.rpc.common.utils.BatchWriter;
+import cn.xpleaf.rpc.common.utils.Compressor;
+import cn.xpleaf.rpc.common.utils.CompressorFactory;
+import cn.xpleaf.rpc.common.utils.RPCDecoder;
+import cn.xpleaf.rpc.common.utils.RPCEncoder;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import cn.xpleaf.rpc.server.executor.ServiceExecutors;
+import cn.xpleaf.rpc.server.filter.ServerFilterChain;
+import cn.xpleaf.rpc.server.invoker.MethodInvoker;
+import cn.xpleaf.rpc.server.invoker.MethodTable;
+import cn.xpleaf.rpc.server.invoker.ServiceInvoker;
+import cn.xpleaf.rpc.server.limit.AdaptiveLimiter;
+import cn.xpleaf.rpc.server.limit.ServiceLimiters;
+import cn.xpleaf.rpc.server.stream.ServerStream;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.slf4j.Logger;
@@ -12,93 +41,483 @@ import org.slf4j.LoggerFactory;
 
 /**
  * RPCServerHandler主要用于处理用户的请求，并返回响应结果
- * 主要是在Netty的模板代码（ChannelInboundHandlerAdapter）中嵌入反射调用方法的代码，并封装结果
+ * 主要是在Netty的模板代码（ChannelInboundHandlerAdapter）中嵌入调用服务方法的代码，并封装结果
+ *
+ * 流式调用的方法返回Iterator，由ServerStream按客户端授予的信用逐个发送元素，最后回写一个表示流结束的响应
+ *
+ * 配置了过滤器时，服务方法通过ServerFilterChain调用，没有配置时直接调用
  *
  * @author yeyonghao
  */
 public class RPCServerHandler extends ChannelInboundHandlerAdapter {
 
-    // 用来保存用户服务实现类对象，key为实现类的接口名称，value为实现类对象
-    Map<String, Object> serviceBeanMap = null;
+    // 用来保存预先构建好的服务调用器，key为实现类的接口名称，value为该接口的服务调用器
+    Map<String, ServiceInvoker> serviceInvokerMap = null;
+    // 方法表，根据客户端协商好的方法编号直接找到方法调用器
+    MethodTable methodTable = null;
+    // 执行服务方法的业务线程池
+    ServiceExecutors serviceExecutors = null;
+    // 各个服务的自适应并发限制器
+    ServiceLimiters serviceLimiters = null;
+    // 响应的压缩阈值，小于0时不与客户端协商压缩算法
+    int compressThreshold;
+    // 批量写出器，业务线程回写的响应会合并起来写出，减少flush的次数
+    BatchWriter batchWriter = null;
+    // 服务端正在处理的请求计数，所有连接共享，优雅关闭时使用
+    RequestTracker requestTracker = null;
+    // 服务端的过滤器链，所有连接共享，没有配置过滤器时为null
+    ServerFilterChain filterChain = null;
+    // 这条连接上正在发送的流式调用，key为requestId
+    Map<Long, ServerStream> streams = new ConcurrentHashMap<>();
+    // I/O线程是否正在读取数据，读取期间在I/O线程上回写的响应会在channelReadComplete时统一flush，只在I/O线程上访问
+    boolean reading = false;
     // log4j日志记录
     Logger logger = LoggerFactory.getLogger(RPCServerHandler.class);
 
     /**
-     * 构造方法传入保存了key-value为interfaceName-bean的map
+     * 构造方法传入保存了key-value为interfaceName-ServiceInvoker的map、方法表、执行服务方法的业务线程池，
+     * 各个服务的自适应并发限制器，以及响应的压缩阈值
+     *
+     * @param serviceInvokerMap
+     * @param methodTable
+     * @param serviceExecutors
+     * @param serviceLimiters
+     * @param compressThreshold 响应的消息体小于该长度时不压缩，小于0时不压缩任何响应
+     */
+    public RPCServerHandler(Map<String, ServiceInvoker> serviceInvokerMap, MethodTable methodTable,
+                            ServiceExecutors serviceExecutors, ServiceLimiters serviceLimiters,
+                            int compressThreshold) {
+        this(serviceInvokerMap, methodTable, serviceExecutors, serviceLimiters, compressThreshold,
+                new RequestTracker());
+    }
+
+    /**
+     * 构造方法，并传入服务端所有连接共享的请求计数，RPCServer优雅关闭时通过它拒绝新的请求并等待正在处理的请求完成
+     *
+     * @param requestTracker 服务端正在处理的请求计数
+     */
+    public RPCServerHandler(Map<String, ServiceInvoker> serviceInvokerMap, MethodTable methodTable,
+                            ServiceExecutors serviceExecutors, ServiceLimiters serviceLimiters,
+                            int compressThreshold, RequestTracker requestTracker) {
+        this(serviceInvokerMap, methodTable, serviceExecutors, serviceLimiters, compressThreshold, requestTracker,
+                null);
+    }
+
+    /**
+     * 构造方法，并传入服务端的过滤器链
      *
-     * @param serviceBeanMap
+     * @param filterChain 服务端的过滤器链，没有配置过滤器时为null
      */
-    public RPCServerHandler(Map<String, Object> serviceBeanMap) {
-        this.serviceBeanMap = serviceBeanMap;
+    public RPCServerHandler(Map<String, ServiceInvoker> serviceInvokerMap, MethodTable methodTable,
+                            ServiceExecutors serviceExecutors, ServiceLimiters serviceLimiters,
+                            int compressThreshold, RequestTracker requestTracker, ServerFilterChain filterChain) {
+        this.serviceInvokerMap = serviceInvokerMap;
+        this.methodTable = methodTable;
+        this.serviceExecutors = serviceExecutors;
+        this.serviceLimiters = serviceLimiters;
+        this.compressThreshold = compressThreshold;
+        this.requestTracker = requestTracker;
+        this.filterChain = filterChain;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        batchWriter = new BatchWriter(ctx.channel());
     }
 
     /**
-     * 接收消息，处理消息，返回结果
+     * 接收消息，将请求交给业务线程池处理，不阻塞I/O线程
      */
     @Override
-    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    public void channelRead(final ChannelHandlerContext ctx, Object msg) throws Exception {
+        reading = true;
+
+        logger.debug("接收到来自RPC客户端的连接请求...");
+
+        // 客户端在连接建立后发送的握手消息，回复所有服务方法的签名和选择的压缩算法
+        if (msg instanceof RPCHandshake) {
+            Compressor compressor = negotiateCompressor((RPCHandshake) msg);
+            RPCHandshake handshake = new RPCHandshake();
+            handshake.setMethods(methodTable.getSignatures());
+            handshake.setCompressor(compressor != null ? compressor.getName() : null);
+            logger.info("接收到RPC客户端的握手消息，回复{}个方法的签名...", methodTable.getSignatures().length);
+            ctx.write(handshake);
+            // 握手回复写出之后再开启压缩，客户端收到回复后才会知道协商的结果，解码器只接受协商好的压缩算法
+            if (compressor != null) {
+                ctx.pipeline().get(RPCDecoder.class).setCompressor(compressor);
+                ctx.pipeline().get(RPCEncoder.class).setCompression(compressor, compressThreshold);
+                logger.info("与RPC客户端协商使用压缩算法[{}]", compressor.getName());
+            }
+            return;
+        }
 
-        logger.info("接收到来自RPC客户端的连接请求...");
+        // 客户端补充流式调用的信用，或者取消流
+        if (msg instanceof RPCStreamCredit) {
+            RPCStreamCredit credit = (RPCStreamCredit) msg;
+            ServerStream stream = streams.get(credit.getRequestId());
+            if (stream == null) {
+                // 流已经结束，客户端补充信用的消息晚到了
+                return;
+            }
+            if (credit.isCancel()) {
+                stream.cancel();
+            } else {
+                stream.addCredit(credit.getCredit());
+            }
+            return;
+        }
 
         // 接收到的对象的类型为RPCRequest
-        RPCRequest request = (RPCRequest) msg;
-        RPCResponse response = new RPCResponse();
-        // 设置requestId
-        response.setRequestId(response.getRequestId());
+        final RPCRequest request = (RPCRequest) msg;
+        // 先在I/O线程上找到方法调用器，才能知道请求属于哪一个服务，从而选择对应的业务线程池
+        final MethodInvoker methodInvoker;
         try {
-            logger.info("准备调用handle方法处理request请求对象...");
-            // 调用handle方法处理request
-            Object result = handleRequest(request);
-            // 设置返回结果
-            response.setResult(result);
-        } catch (Throwable e) {
-            // 如果有异常，则设置异常信息
+            methodInvoker = findMethodInvoker(request);
+        } catch (Exception e) {
+            logger.error("找不到请求[{}]对应的服务方法...", request.getRequestId(), e);
+            RPCProtocol.releaseAttachments(request);
+            RPCResponse response = newResponse(request);
             response.setError(e);
+            writeAndRecycle(ctx, response);
+            return;
+        }
+        // 服务端正在关闭，拒绝新的请求，请求没有被执行，客户端可以安全地重试其它服务提供者
+        if (!requestTracker.tryBegin()) {
+            logger.warn("服务端正在关闭，拒绝请求[{}]...", request.getRequestId());
+            RPCProtocol.releaseAttachments(request);
+            RPCResponse response = newResponse(request);
+            response.setError(new RPCException(RPCException.SHUTTING_DOWN,
+                    "服务端正在关闭，请求被拒绝: " + methodInvoker.getInterfaceName()));
+            writeAndRecycle(ctx, response);
+            return;
+        }
+        // 调用统计，耗时从请求解码完毕开始计算，包括在业务线程池中排队的时间
+        final long start = System.nanoTime();
+        methodInvoker.getMetrics().beginCall();
+        methodInvoker.getMetrics().recordRequestSize(request.getSize());
+
+        String interfaceName = methodInvoker.getInterfaceName();
+        // 并发数超过自适应估算的限制时立即拒绝，不进入业务线程池排队，避免排队时间拖慢所有请求
+        final AdaptiveLimiter limiter = serviceLimiters.getLimiter(interfaceName);
+        if (limiter != null && !limiter.tryAcquire()) {
+            logger.warn("服务[{}]的并发数超过限制[{}]，拒绝请求[{}]...", interfaceName, limiter.getLimit(),
+                    request.getRequestId());
+            RPCProtocol.releaseAttachments(request);
+            RPCResponse response = newResponse(request);
+            response.setError(new RPCException(RPCException.OVERLOADED,
+                    "服务端并发数超过限制，请求被拒绝: " + interfaceName));
+            finishRequest(ctx, response, methodInvoker.getMetrics(), start, null);
+            return;
         }
 
-        logger.info("请求处理完毕，准备回写response对象...");
-        ctx.writeAndFlush(response);
+        Executor executor = serviceExecutors.getExecutor(interfaceName);
+        if (executor == null) {
+            // direct类型，直接在I/O线程上处理
+            processRequest(ctx, request, methodInvoker, start, limiter);
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    processRequest(ctx, request, methodInvoker, start, limiter);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，立即拒绝，让客户端可以尽快重试其它服务提供者，而不是在这里排队等待
+            logger.warn("服务[{}]的线程池已满，拒绝请求[{}]...", interfaceName, request.getRequestId());
+            // 请求没有被执行，耗时不能作为并发限制的样本
+            if (limiter != null) {
+                limiter.release();
+            }
+            RPCProtocol.releaseAttachments(request);
+            RPCResponse response = newResponse(request);
+            response.setError(new RPCException(RPCException.SERVER_BUSY,
+                    "服务端线程池已满，请求被拒绝: " + interfaceName));
+            finishRequest(ctx, response, methodInvoker.getMetrics(), start, null);
+        }
     }
 
     /**
-     * 对request进行处理，其实就是通过反射进行调用的过程
+     * 从客户端希望使用的压缩算法中选择第一个服务端支持的
      *
-     * @param request
-     * @return
-     * @throws Throwable
+     * @return 选择的压缩算法，不压缩时返回null
      */
-    public Object handleRequest(RPCRequest request) throws Throwable {
-        // 拿到类名
-        String interfaceName = request.getInterfaceName();
+    private Compressor negotiateCompressor(RPCHandshake handshake) {
+        String[] compressors = handshake.getCompressors();
+        if (compressThreshold < 0 || compressors == null) {
+            return null;
+        }
+        for (String name : compressors) {
+            Compressor compressor = CompressorFactory.getCompressor(name);
+            if (compressor != null) {
+                return compressor;
+            }
+        }
+        return null;
+    }
 
-        // 根据接口名拿到其实现类对象
-        Object serviceBean = serviceBeanMap.get(interfaceName);
+    /**
+     * 处理请求，返回结果
+     */
+    private void processRequest(final ChannelHandlerContext ctx, final RPCRequest request,
+                                MethodInvoker methodInvoker, final long start, final AdaptiveLimiter limiter) {
+        final MethodMetrics metrics = methodInvoker.getMetrics();
+        final RPCResponse response = newResponse(request);
+        // 异步方法在完成时才释放请求中的附件
+        boolean async = false;
+        try {
+            // 请求在业务线程池中排队时已经超过了客户端的超时时间，客户端不会再等待结果，不再执行
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(request.getTimeout());
+            if (timeoutNanos > 0 && System.nanoTime() - start > timeoutNanos) {
+                logger.warn("请求[{}]在服务端排队时已经超时，不再执行...", request.getRequestId());
+                response.setError(new RPCException(RPCException.TIMEOUT,
+                        "请求在服务端排队时已经超时: " + methodInvoker.getSignature()));
+                finishRequest(ctx, response, metrics, start, limiter);
+                return;
+            }
+            // 流式调用需要客户端授予初始信用，否则服务端无法发送元素
+            if (methodInvoker.isStream() && request.getCredit() <= 0) {
+                response.setError(new RPCException(RPCException.UNKNOWN,
+                        "流式调用的请求没有携带信用: " + methodInvoker.getSignature()));
+                finishRequest(ctx, response, metrics, start, limiter);
+                return;
+            }
+            try {
+                logger.debug("准备调用方法[{}]处理request请求对象...", methodInvoker.getSignature());
+                // 调用方法，没有配置过滤器时直接调用，不经过过滤器链
+                ServerFilterChain filterChain = this.filterChain;
+                Object result = filterChain == null ? methodInvoker.invoke(request.getParameters())
+                        : filterChain.proceed(methodInvoker, request);
+                // 流式调用的方法，由ServerStream逐个发送Iterator中的元素
+                if (methodInvoker.isStream()) {
+                    startStream(ctx, request, methodInvoker, (Iterator<?>) result, start, limiter);
+                    return;
+                }
+                // 如果服务方法是异步方法（返回CompletionStage），则等其完成后再回写结果，不阻塞当前线程
+                if (result instanceof CompletionStage) {
+                    async = true;
+                    ((CompletionStage<?>) result).whenComplete(new BiConsumer<Object, Throwable>() {
 
-        // 拿到要调用的方法名、参数类型、参数值
-        String methodName = request.getMethodName();
-        Class<?>[] parameterTypes = request.getParameterTypes();
-        Object[] parameters = request.getParameters();
+                        @Override
+                        public void accept(Object value, Throwable error) {
+                            RPCProtocol.releaseAttachments(request);
+                            if (error != null) {
+                                response.setError(error);
+                            } else {
+                                response.setResult(value);
+                            }
+                            logger.debug("异步请求处理完毕，准备回写response对象...");
+                            finishRequest(ctx, response, metrics, start, limiter);
+                        }
+                    });
+                    return;
+                }
+                // 设置返回结果
+                response.setResult(result);
+            } catch (Throwable e) {
+                // 如果有异常，则设置异常信息
+                logger.error("处理请求[{}]时出现异常...", request.getRequestId(), e);
+                response.setError(e);
+            }
+
+            logger.debug("请求处理完毕，准备回写response对象...");
+            finishRequest(ctx, response, metrics, start, limiter);
+        } finally {
+            // 服务方法已经返回，请求中的附件引用的是接收时的缓冲区，需要及时释放
+            if (!async) {
+                RPCProtocol.releaseAttachments(request);
+            }
+        }
+    }
+
+    /**
+     * 开始发送流式调用的元素，流结束后回写一个响应，客户端收到该响应即知道流已经结束
+     *
+     * 并发许可在服务方法返回Iterator时就释放，流可能持续很久，不能一直占用许可，也不能作为并发限制的耗时样本，
+     * 调用统计的耗时则包括整个流的发送时间
+     */
+    private void startStream(ChannelHandlerContext ctx, RPCRequest request, MethodInvoker methodInvoker,
+                             Iterator<?> iterator, final long start, AdaptiveLimiter limiter) {
+        if (limiter != null) {
+            limiter.release(System.nanoTime() - start);
+        }
+        final MethodMetrics metrics = methodInvoker.getMetrics();
+        final RPCResponse response = newResponse(request);
+        final long requestId = request.getRequestId();
+        // 取元素可能会阻塞，在服务的业务线程池中进行，direct类型时在I/O线程上进行
+        Executor executor = serviceExecutors.getExecutor(methodInvoker.getInterfaceName());
+        if (executor == null) {
+            executor = ctx.executor();
+        }
+        if (iterator == null) {
+            iterator = Collections.emptyIterator();
+        }
+        ServerStream stream = new ServerStream(requestId, request.getSerializer(), iterator, request.getCredit(),
+                executor, ctx.channel(), batchWriter, new Consumer<Throwable>() {
+
+            @Override
+            public void accept(Throwable error) {
+                streams.remove(requestId);
+                requestTracker.end();
+                boolean cancelled = error instanceof CancellationException;
+                metrics.endCall(System.nanoTime() - start, error != null && !cancelled);
+                if (cancelled) {
+                    // 客户端已经不再等待，不需要回写响应
+                    return;
+                }
+                if (error != null) {
+                    response.setError(error);
+                }
+                // 元素都是通过批量写出器写出的，结束响应也必须通过它写出，保证在所有元素之后到达客户端
+                batchWriter.write(response).addListener(new ChannelFutureListener() {
 
-        // 拿到接口类对象
-        Class<?> clazz = Class.forName(interfaceName);
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        response.recycle();
+                    }
+                });
+            }
+        });
+        streams.put(requestId, stream);
+        stream.start();
+    }
+
+    /**
+     * 请求处理完毕，记录调用统计、释放并发许可并回写响应，响应编码后再记录其大小，然后回收响应对象
+     *
+     * @param limiter 请求占用的并发限制器，没有占用许可时为null
+     */
+    private void finishRequest(ChannelHandlerContext ctx, final RPCResponse response, final MethodMetrics metrics,
+                               long start, AdaptiveLimiter limiter) {
+        long elapsed = System.nanoTime() - start;
+        if (limiter != null) {
+            limiter.release(elapsed);
+        }
+        metrics.endCall(elapsed, response.isError());
+        requestTracker.end();
+        writeResponse(ctx, response).addListener(new ChannelFutureListener() {
 
-        // 拿到实现类对象的指定方法
-        Method method = clazz.getMethod(methodName, parameterTypes);
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (future.isSuccess()) {
+                    metrics.recordResponseSize(response.getSize());
+                }
+                // 返回值中的附件已经写出，由服务端负责释放
+                RPCProtocol.releaseAttachments(response);
+                response.recycle();
+            }
+        });
+    }
+
+    /**
+     * 回写没有进入调用统计的响应（找不到服务方法、服务端正在关闭），与finishRequest一样在写出之后释放附件并回收响应对象
+     */
+    private void writeAndRecycle(ChannelHandlerContext ctx, final RPCResponse response) {
+        writeResponse(ctx, response).addListener(new ChannelFutureListener() {
+
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                RPCProtocol.releaseAttachments(response);
+                response.recycle();
+            }
+        });
+    }
 
-        // 通过反射调用方法
-        logger.info("准备通过反射调用方法[{}]...", interfaceName);
-        Object result = method.invoke(serviceBean, parameters);
+    /**
+     * 回写响应，I/O线程读取期间产生的响应只写出不flush，由channelReadComplete统一flush，
+     * 其余情况（业务线程、读取结束后才完成的异步方法）交给批量写出器合并flush
+     */
+    private ChannelFuture writeResponse(ChannelHandlerContext ctx, RPCResponse response) {
+        if (ctx.executor().inEventLoop() && reading) {
+            return ctx.write(response);
+        } else {
+            return batchWriter.write(response);
+        }
+    }
 
-        logger.info("通过反射调用方法完毕...");
-        // 返回结果
-        return result;
+    /**
+     * 创建与请求对应的响应对象，响应对象从对象池中获取，通过finishRequest或者writeAndRecycle写出之后回收
+     */
+    private RPCResponse newResponse(RPCRequest request) {
+        RPCResponse response = RPCResponse.newInstance();
+        // 设置requestId，客户端的连接是多路复用的，需要依靠requestId将响应与请求对应起来
+        response.setRequestId(request.getRequestId());
+        // 使用与请求相同的序列化器回写响应，序列化器由客户端按服务选择
+        response.setSerializer(request.getSerializer());
+        return response;
     }
 
+    /**
+     * 根据request找到服务启动时预先构建好的方法调用器，
+     * 协商了方法编号的请求直接从方法表中取出，否则根据接口名和方法签名查找
+     *
+     * @param request
+     * @return 方法调用器
+     * @throws Exception 服务或者方法不存在时抛出
+     */
+    public MethodInvoker findMethodInvoker(RPCRequest request) throws Exception {
+        int methodId = request.getMethodId();
+        if (methodId != 0) {
+            MethodInvoker methodInvoker = methodTable.get(methodId);
+            if (methodInvoker == null) {
+                throw new NoSuchMethodException("方法编号[" + methodId + "]不存在");
+            }
+            return methodInvoker;
+        }
+
+        // 拿到类名
+        String interfaceName = request.getInterfaceName();
+
+        // 根据接口名拿到其服务调用器
+        ServiceInvoker serviceInvoker = serviceInvokerMap.get(interfaceName);
+        if (serviceInvoker == null) {
+            throw new ClassNotFoundException("服务[" + interfaceName + "]不存在");
+        }
+
+        // 根据方法名和参数类型拿到方法调用器
+        String methodName = request.getMethodName();
+        MethodInvoker methodInvoker = serviceInvoker.getMethodInvoker(methodName, request.getParameterTypes());
+        if (methodInvoker == null) {
+            throw new NoSuchMethodException(interfaceName + "." + methodName);
+        }
+        return methodInvoker;
+    }
+
+    /**
+     * 一次读取结束，读取期间在I/O线程上回写的响应一起flush
+     */
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        reading = false;
         ctx.flush();
     }
 
+    /**
+     * 连接恢复可写，继续发送因为发送缓冲区已满而暂停的流
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            for (ServerStream stream : streams.values()) {
+                stream.resume();
+            }
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * 连接断开，正在发送的流都不会再被客户端接收，取消它们以便关闭Iterator
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (ServerStream stream : streams.values()) {
+            stream.cancel();
+        }
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         ctx.close();
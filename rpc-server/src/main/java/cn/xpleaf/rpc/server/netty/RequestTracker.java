@@ -0,0 +1,83 @@
+package cn.xpleaf.rpc.server.netty;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务端正在处理的请求计数，用于优雅关闭时等待正在处理的请求完成
+ *
+ * 开始关闭（startDraining）之后，新的请求不再被接收，由RPCServerHandler以SHUTTING_DOWN拒绝，
+ * 被拒绝的请求没有被执行，客户端可以安全地重试其它服务提供者；已经接收的请求（包括流式调用）则继续处理直到完成
+ *
+ * @author yeyonghao
+ */
+public class RequestTracker {
+
+    // 正在处理的请求数
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 是否已经开始关闭
+    private volatile boolean draining;
+
+    /**
+     * 开始处理一个请求
+     *
+     * @return 服务端已经开始关闭时返回false，请求应当被拒绝
+     */
+    public boolean tryBegin() {
+        if (draining) {
+            return false;
+        }
+        inFlight.incrementAndGet();
+        // 计数之后再检查一次，避免与startDraining并发时漏掉这个请求
+        if (draining) {
+            end();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 一个请求处理完毕，只有tryBegin返回true的请求才需要调用
+     */
+    public void end() {
+        if (inFlight.decrementAndGet() == 0 && draining) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 开始关闭，之后的请求都会被拒绝
+     */
+    public void startDraining() {
+        draining = true;
+    }
+
+    /**
+     * 等待正在处理的请求全部完成
+     *
+     * @param timeoutMillis 最长等待时间（毫秒）
+     * @return 全部完成时返回true，超时返回false
+     * @throws InterruptedException
+     */
+    public synchronized boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (inFlight.get() > 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
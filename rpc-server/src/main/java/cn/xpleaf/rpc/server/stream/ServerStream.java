@@ -0,0 +1,225 @@
+package cn.xpleaf.rpc.server.stream;
+
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.pojo.Blob;
+import cn.xpleaf.rpc.common.pojo.RPCStreamElement;
+import cn.xpleaf.rpc.common.utils.BatchWriter;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 服务端的流式调用，负责从服务方法返回的Iterator中逐个取出元素并发送给客户端
+ *
+ * 发送受两个条件限制：
+ * 1.客户端授予的信用，每发送一个元素消耗一个信用，信用用完后暂停，收到客户端补充的信用后继续
+ * 2.连接的可写状态，Netty的发送缓冲区超过高水位时暂停，恢复可写后继续，避免网络比服务端慢时元素在发送缓冲区中堆积
+ *
+ * 取元素可能会阻塞（如从数据库游标中读取），所以发送在服务的业务线程池中进行，
+ * 并且同一时刻最多只有一个线程在发送，暂停和恢复都只是修改计数，不会占用线程等待
+ *
+ * 流结束、出现异常或者被取消时，如果Iterator实现了AutoCloseable，会关闭它，以便及时释放游标等资源
+ *
+ * @author yeyonghao
+ */
+public class ServerStream implements Runnable {
+
+    // 流式调用请求的ID
+    private final long requestId;
+    // 元素使用的序列化器编号，与请求相同
+    private final byte serializer;
+    // 服务方法返回的Iterator
+    private final Iterator<?> iterator;
+    // 取元素并发送的线程池
+    private final Executor executor;
+    // 与客户端之间的连接
+    private final Channel channel;
+    // 连接的批量写出器
+    private final BatchWriter batchWriter;
+    // 流结束时的回调，参数为流中途出现的异常，正常结束时为null，被取消时为CancellationException
+    private final Consumer<Throwable> onComplete;
+    // 剩余的信用
+    private final AtomicLong credit = new AtomicLong();
+    // 需要处理的发送信号数，不为0时说明已经有线程在发送
+    private final AtomicInteger wip = new AtomicInteger();
+    // 已经发送的元素数
+    private long sent;
+    // 是否已经被取消
+    private volatile boolean cancelled;
+    // 是否已经结束，只在发送线程中访问
+    private boolean done;
+    // log4j日志记录
+    private Logger logger = LoggerFactory.getLogger(ServerStream.class);
+
+    /**
+     * 构造方法
+     *
+     * @param requestId   流式调用请求的ID
+     * @param serializer  元素使用的序列化器编号
+     * @param iterator    服务方法返回的Iterator
+     * @param credit      客户端授予的初始信用
+     * @param executor    取元素并发送的线程池
+     * @param channel     与客户端之间的连接
+     * @param batchWriter 连接的批量写出器
+     * @param onComplete  流结束时的回调
+     */
+    public ServerStream(long requestId, byte serializer, Iterator<?> iterator, int credit, Executor executor,
+                        Channel channel, BatchWriter batchWriter, Consumer<Throwable> onComplete) {
+        this.requestId = requestId;
+        this.serializer = serializer;
+        this.iterator = iterator;
+        this.executor = executor;
+        this.channel = channel;
+        this.batchWriter = batchWriter;
+        this.onComplete = onComplete;
+        this.credit.set(credit);
+    }
+
+    /**
+     * 开始发送
+     */
+    public void start() {
+        signal();
+    }
+
+    /**
+     * 客户端补充了信用，继续发送
+     *
+     * @param n 补充的信用
+     */
+    public void addCredit(int n) {
+        if (n > 0) {
+            credit.addAndGet(n);
+            signal();
+        }
+    }
+
+    /**
+     * 连接恢复可写，继续发送
+     */
+    public void resume() {
+        signal();
+    }
+
+    /**
+     * 取消流，客户端取消或者连接断开时调用，之后不会再发送元素，onComplete的参数为CancellationException
+     */
+    public void cancel() {
+        cancelled = true;
+        signal();
+    }
+
+    /**
+     * 通知发送线程有新的状态变化，没有线程在发送时才向线程池提交发送任务
+     */
+    private void signal() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，无法继续发送，流以异常结束
+            logger.warn("流式调用[{}]的线程池已满，终止发送...", requestId);
+            finish(new RPCException(RPCException.SERVER_BUSY, "服务端线程池已满，流式调用被终止"));
+        }
+    }
+
+    /**
+     * 发送任务，发送期间收到的信号会让发送任务再循环一次，而不是再提交一个任务
+     */
+    @Override
+    public void run() {
+        int missed = 1;
+        for (;;) {
+            drain();
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 在信用和连接可写状态允许的范围内尽可能多地发送元素
+     */
+    private void drain() {
+        while (!done) {
+            if (cancelled) {
+                logger.info("流式调用[{}]已被取消，共发送了{}个元素", requestId, sent);
+                finish(new CancellationException("流式调用[" + requestId + "]已被取消"));
+                return;
+            }
+            if (credit.get() <= 0 || !channel.isWritable()) {
+                return;
+            }
+            Object element;
+            try {
+                if (!iterator.hasNext()) {
+                    logger.info("流式调用[{}]发送完毕，共发送了{}个元素", requestId, sent);
+                    finish(null);
+                    return;
+                }
+                element = iterator.next();
+            } catch (Throwable e) {
+                logger.error("流式调用[{}]读取元素时出现异常...", requestId, e);
+                finish(e);
+                return;
+            }
+            credit.decrementAndGet();
+            sent++;
+            final RPCStreamElement message = new RPCStreamElement(requestId, element, serializer);
+            ChannelFuture future = batchWriter.write(message);
+            if (element instanceof Blob) {
+                // 附件类型的元素写出之后由服务端负责释放
+                future.addListener(new ChannelFutureListener() {
+
+                    @Override
+                    public void operationComplete(ChannelFuture f) throws Exception {
+                        RPCProtocol.releaseAttachments(message);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * 流结束，关闭Iterator并回调onComplete
+     */
+    private void finish(Throwable error) {
+        if (done) {
+            return;
+        }
+        done = true;
+        close();
+        onComplete.accept(error);
+    }
+
+    /**
+     * 关闭实现了AutoCloseable的Iterator
+     */
+    private void close() {
+        if (iterator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) iterator).close();
+            } catch (Exception e) {
+                logger.warn("关闭流式调用[{}]的Iterator时出现异常[{}]", requestId, e.toString());
+            }
+        }
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+}
@@ -0,0 +1,139 @@
+package cn.xpleaf.rpc.server.executor;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * ServiceExecutors的测试：线程池有界、队列满时立即拒绝、独立线程池与共享线程池互不影响
+ *
+ * @author yeyonghao
+ */
+public class ServiceExecutorsTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ServiceExecutors executors;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (executors != null) {
+            executors.shutdown();
+        }
+    }
+
+    @Test
+    public void directRunsOnCallerThread() {
+        executors = new ServiceExecutors(ServiceExecutors.DIRECT, 0, 0);
+        assertNull(executors.getExecutor("cn.xpleaf.rpc.test.EchoService"));
+    }
+
+    @Test
+    public void sharedRunsOffCallerThread() throws Exception {
+        executors = new ServiceExecutors(ServiceExecutors.SHARED, 2, 0);
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        executors.getExecutor("cn.xpleaf.rpc.test.EchoService").execute(new Runnable() {
+
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread());
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), thread.get());
+        assertTrue(thread.get().getName().startsWith("minidubbo-server"));
+    }
+
+    @Test
+    public void sharedRejectsWhenThreadsAndQueueAreFull() throws Exception {
+        executors = new ServiceExecutors(ServiceExecutors.SHARED, 1, 1);
+        Executor executor = executors.getExecutor("cn.xpleaf.rpc.test.EchoService");
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(blockingTask(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 线程已被占用，第二个任务进入队列，第三个任务被拒绝
+        executor.execute(blockingTask(new CountDownLatch(1)));
+        assertRejected(executor);
+    }
+
+    @Test
+    public void isolatedPoolDoesNotAffectOtherServices() throws Exception {
+        executors = new ServiceExecutors(ServiceExecutors.SHARED, 1, 0);
+        executors.isolate("cn.xpleaf.rpc.test.SlowService", 1, 0);
+        Executor slow = executors.getExecutor("cn.xpleaf.rpc.test.SlowService");
+        Executor other = executors.getExecutor("cn.xpleaf.rpc.test.EchoService");
+        assertNotSame(slow, other);
+
+        CountDownLatch started = new CountDownLatch(1);
+        slow.execute(blockingTask(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertRejected(slow);
+
+        // 慢服务的线程池已满，其它服务仍然可以执行
+        CountDownLatch done = new CountDownLatch(1);
+        other.execute(countDown(done));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void virtualIsBoundedOrFallsBackToShared() throws Exception {
+        executors = new ServiceExecutors(ServiceExecutors.VIRTUAL, 1, 0);
+        Executor executor = executors.getExecutor("cn.xpleaf.rpc.test.EchoService");
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(blockingTask(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 无论是否支持虚拟线程，同时执行的请求数都受到限制
+        assertRejected(executor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownType() {
+        new ServiceExecutors("cached", 1, 0);
+    }
+
+    private Runnable blockingTask(final CountDownLatch started) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private static Runnable countDown(final CountDownLatch latch) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+    }
+
+    private static void assertRejected(Executor executor) {
+        try {
+            executor.execute(countDown(new CountDownLatch(1)));
+            fail("线程池已满时应当立即拒绝");
+        } catch (RejectedExecutionException expected) {
+            // 由RPCServerHandler转换为SERVER_BUSY响应
+        }
+    }
+}
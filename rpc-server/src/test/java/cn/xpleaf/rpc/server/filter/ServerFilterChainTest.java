@@ -0,0 +1,125 @@
+package cn.xpleaf.rpc.server.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.server.invoker.MethodInvoker;
+
+/**
+ * ServerFilterChain的测试：过滤器按配置的顺序包在外层，最后调用服务方法，
+ * 过滤器可以不调用chain直接返回结果，服务方法抛出的异常经过过滤器传给调用方，没有过滤器时不构建过滤器链
+ *
+ * @author yeyonghao
+ */
+public class ServerFilterChainTest {
+
+    public interface EchoService {
+
+        String echo(String value);
+    }
+
+    // 记录过滤器和服务方法的执行顺序
+    private final List<String> events = new ArrayList<>();
+    private MethodInvoker invoker;
+
+    @Before
+    public void setUp() throws Exception {
+        EchoService serviceBean = new EchoService() {
+
+            @Override
+            public String echo(String value) {
+                events.add("echo");
+                if ("boom".equals(value)) {
+                    throw new IllegalStateException(value);
+                }
+                return value;
+            }
+        };
+        invoker = new MethodInvoker(EchoService.class.getName(),
+                EchoService.class.getMethod("echo", String.class), serviceBean);
+    }
+
+    @Test
+    public void filtersRunInOrderAroundServiceMethod() throws Throwable {
+        ServerFilterChain chain = ServerFilterChain.build(Arrays.asList(recording("a"), recording("b")));
+
+        assertEquals("hello", chain.proceed(invoker, newRequest("hello")));
+        assertEquals(Arrays.asList("a before", "b before", "echo", "b after", "a after"), events);
+    }
+
+    @Test
+    public void filterCanShortCircuit() throws Throwable {
+        ServerFilter reject = new ServerFilter() {
+
+            @Override
+            public Object invoke(MethodInvoker invoker, RPCRequest request, ServerFilterChain chain) {
+                return "cached";
+            }
+        };
+        ServerFilterChain chain = ServerFilterChain.build(Arrays.asList(recording("a"), reject, recording("b")));
+
+        assertEquals("cached", chain.proceed(invoker, newRequest("hello")));
+        assertEquals(Arrays.asList("a before", "a after"), events);
+    }
+
+    @Test
+    public void serviceExceptionPassesThroughFilters() throws Throwable {
+        ServerFilterChain chain = ServerFilterChain.build(Collections.singletonList(recording("a")));
+        try {
+            chain.proceed(invoker, newRequest("boom"));
+            fail("服务方法抛出的异常应该传给调用方");
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertEquals(Arrays.asList("a before", "echo", "a failed"), events);
+    }
+
+    @Test
+    public void noChainWithoutFilters() {
+        assertNull(ServerFilterChain.build(null));
+        assertNull(ServerFilterChain.build(Collections.<ServerFilter>emptyList()));
+    }
+
+    /**
+     * 记录调用前后事件的过滤器，并检查传入的方法调用器
+     */
+    private ServerFilter recording(final String name) {
+        return new ServerFilter() {
+
+            @Override
+            public Object invoke(MethodInvoker methodInvoker, RPCRequest request, ServerFilterChain chain)
+                    throws Throwable {
+                assertSame(invoker, methodInvoker);
+                events.add(name + " before");
+                try {
+                    Object result = chain.proceed(methodInvoker, request);
+                    events.add(name + " after");
+                    return result;
+                } catch (Throwable e) {
+                    events.add(name + " failed");
+                    throw e;
+                }
+            }
+        };
+    }
+
+    private static RPCRequest newRequest(String value) {
+        RPCRequest request = new RPCRequest();
+        request.setInterfaceName(EchoService.class.getName());
+        request.setMethodName("echo");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setParameters(new Object[]{value});
+        return request;
+    }
+}
@@ -0,0 +1,113 @@
+package cn.xpleaf.rpc.server.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ServiceInvoker和MethodInvoker的测试：按方法名和参数类型选择重载方法、基本类型的装箱拆箱、异常原样抛出
+ *
+ * @author yeyonghao
+ */
+public class ServiceInvokerTest {
+
+    public interface CalculatorService {
+
+        int add(int a, int b);
+
+        long add(long a, long b);
+
+        String add(String a, String b);
+
+        void reset();
+
+        String fail(String message) throws IOException;
+    }
+
+    private ServiceInvoker invoker;
+    private int resets;
+
+    @Before
+    public void setUp() throws Exception {
+        invoker = new ServiceInvoker(CalculatorService.class, new CalculatorService() {
+
+            @Override
+            public int add(int a, int b) {
+                return a + b;
+            }
+
+            @Override
+            public long add(long a, long b) {
+                return a + b + 1000L;
+            }
+
+            @Override
+            public String add(String a, String b) {
+                return a + b;
+            }
+
+            @Override
+            public void reset() {
+                resets++;
+            }
+
+            @Override
+            public String fail(String message) throws IOException {
+                throw new IOException(message);
+            }
+        });
+    }
+
+    @Test
+    public void selectsOverloadByParameterTypes() throws Throwable {
+        MethodInvoker ints = invoker.getMethodInvoker("add", new Class<?>[]{int.class, int.class});
+        MethodInvoker longs = invoker.getMethodInvoker("add", new Class<?>[]{long.class, long.class});
+        MethodInvoker strings = invoker.getMethodInvoker("add", new Class<?>[]{String.class, String.class});
+
+        assertEquals(3, ints.invoke(new Object[]{1, 2}));
+        assertEquals(1003L, longs.invoke(new Object[]{1L, 2L}));
+        assertEquals("ab", strings.invoke(new Object[]{"a", "b"}));
+        assertEquals(int.class, ints.getMethod().getReturnType());
+    }
+
+    @Test
+    public void unknownMethodOrSignatureReturnsNull() {
+        assertNull(invoker.getMethodInvoker("subtract", new Class<?>[]{int.class, int.class}));
+        // 参数类型按类型对象本身比较，包装类型与基本类型不匹配
+        assertNull(invoker.getMethodInvoker("add", new Class<?>[]{Integer.class, Integer.class}));
+        assertNull(invoker.getMethodInvoker("add", new Class<?>[]{int.class}));
+    }
+
+    @Test
+    public void noArgumentMethodAcceptsNullParameters() throws Throwable {
+        MethodInvoker reset = invoker.getMethodInvoker("reset", null);
+        assertNotNull(reset);
+        assertNull(reset.invoke(null));
+        assertNull(reset.invoke(new Object[0]));
+        assertEquals(2, resets);
+    }
+
+    @Test
+    public void serviceExceptionIsThrownUnwrapped() throws Throwable {
+        MethodInvoker fail = invoker.getMethodInvoker("fail", new Class<?>[]{String.class});
+        try {
+            fail.invoke(new Object[]{"boom"});
+            fail("服务方法抛出的异常应当原样抛出");
+        } catch (IOException e) {
+            assertEquals("boom", e.getMessage());
+        }
+    }
+
+    @Test
+    public void exposesInterfaceAndBean() {
+        assertSame(CalculatorService.class, invoker.getInterfaceClass());
+        assertNotNull(invoker.getServiceBean());
+    }
+}
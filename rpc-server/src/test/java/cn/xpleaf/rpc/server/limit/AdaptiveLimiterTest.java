@@ -0,0 +1,116 @@
+package cn.xpleaf.rpc.server.limit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * AdaptiveLimiter的测试：超过限制的请求被拒绝，没有排队时增大限制，排队严重时减小限制
+ *
+ * 限制只在统计窗口（100毫秒）结束后的下一次释放时调整，所以每一轮请求之后都等待一个窗口
+ *
+ * @author yeyonghao
+ */
+public class AdaptiveLimiterTest {
+
+    // 等待的时间略长于一个统计窗口
+    private static final long WINDOW_MILLIS = 110;
+
+    @Test
+    public void rejectsBeyondLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("EchoService", 2, 1, 10);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        // 释放之后可以再次获取，被拒绝的请求不占用许可
+        limiter.release();
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void growsWithoutQueueing() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("EchoService", 10, 1, 100);
+        // 耗时稳定说明没有排队，并发数达到限制时逐步增大限制
+        for (int i = 0; i < 5; i++) {
+            round(limiter, limiter.getLimit(), 1);
+        }
+        assertTrue("limit=" + limiter.getLimit(), limiter.getLimit() > 10);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void notGrowingWhenUnderused() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("EchoService", 50, 1, 100);
+        // 并发数远小于限制时，即使没有排队也不增大限制
+        for (int i = 0; i < 5; i++) {
+            round(limiter, 10, 1);
+        }
+        assertEquals(50, limiter.getLimit());
+    }
+
+    @Test
+    public void shrinksWhenQueueing() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("EchoService", 50, 1, 100);
+        // 先学习到没有排队时的耗时，之后耗时变为10倍，说明大部分请求都在排队
+        round(limiter, 50, 1);
+        for (int i = 0; i < 5; i++) {
+            round(limiter, 50, 10);
+        }
+        assertTrue("limit=" + limiter.getLimit(), limiter.getLimit() < 50);
+    }
+
+    @Test
+    public void limitStaysWithinBounds() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("EchoService", 10, 9, 11);
+        for (int i = 0; i < 5; i++) {
+            round(limiter, limiter.getLimit(), 1);
+        }
+        assertEquals(11, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            round(limiter, limiter.getLimit(), 100);
+        }
+        assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    public void rejectsIllegalArguments() {
+        assertIllegal(10, 0, 100);
+        assertIllegal(10, 20, 100);
+        assertIllegal(0, 1, 100);
+        assertIllegal(200, 1, 100);
+    }
+
+    /**
+     * 同时获取permits个许可，再以给定的耗时全部释放，然后等待窗口结束
+     */
+    private static void round(AdaptiveLimiter limiter, int permits, long rttMillis) throws InterruptedException {
+        int acquired = 0;
+        for (int i = 0; i < permits; i++) {
+            if (limiter.tryAcquire()) {
+                acquired++;
+            }
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+        }
+        Thread.sleep(WINDOW_MILLIS);
+    }
+
+    private static void assertIllegal(int initialLimit, int minLimit, int maxLimit) {
+        try {
+            new AdaptiveLimiter("EchoService", initialLimit, minLimit, maxLimit);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("参数不正确时应当抛出IllegalArgumentException: initialLimit=" + initialLimit
+                + ", minLimit=" + minLimit + ", maxLimit=" + maxLimit);
+    }
+}
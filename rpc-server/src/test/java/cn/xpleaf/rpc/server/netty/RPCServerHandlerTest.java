@@ -0,0 +1,457 @@
+package cn.xpleaf.rpc.server.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.exception.RPCException;
+import cn.xpleaf.rpc.common.pojo.RPCHandshake;
+import cn.xpleaf.rpc.common.pojo.RPCRequest;
+import cn.xpleaf.rpc.common.pojo.RPCResponse;
+import cn.xpleaf.rpc.common.utils.DeflateCompressor;
+import cn.xpleaf.rpc.common.utils.RPCDecoder;
+import cn.xpleaf.rpc.common.utils.RPCEncoder;
+import cn.xpleaf.rpc.common.utils.RPCProtocol;
+import cn.xpleaf.rpc.common.utils.SnappyCompressor;
+import cn.xpleaf.rpc.server.executor.ServiceExecutors;
+import cn.xpleaf.rpc.server.filter.ServerFilter;
+import cn.xpleaf.rpc.server.filter.ServerFilterChain;
+import cn.xpleaf.rpc.server.invoker.MethodInvoker;
+import cn.xpleaf.rpc.server.invoker.MethodTable;
+import cn.xpleaf.rpc.server.invoker.ServiceInvoker;
+import cn.xpleaf.rpc.server.limit.ServiceLimiters;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+/**
+ * RPCServerHandler的测试：同步方法直接回写结果，异步方法在其完成后回写结果本身而不是future，
+ * 找不到服务或方法时返回对应的异常，业务线程池已满时返回SERVER_BUSY，超过服务的并发限制时返回OVERLOADED，
+ * 在业务线程池中排队时已经超时的请求不再执行，服务端关闭时返回SHUTTING_DOWN，握手时协商压缩算法，握手时回复方法签名，请求可以只携带方法编号，配置了过滤器时服务方法通过过滤器链调用，响应写出后回收到对象池中
+ *
+ * @author yeyonghao
+ */
+public class RPCServerHandlerTest {
+
+    public interface EchoService {
+
+        String echo(String value);
+
+        CompletableFuture<String> echoAsync(String value);
+    }
+
+    // requestId生成器
+    private static final AtomicLong REQUEST_ID = new AtomicLong();
+
+    // blockingServices中业务方法被调用的次数
+    private final AtomicInteger invocations = new AtomicInteger();
+    // 异步方法返回的future，由测试代码决定何时完成
+    private CompletableFuture<String> pending = new CompletableFuture<>();
+    private Map<String, ServiceInvoker> serviceInvokerMap;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        EchoService serviceBean = new EchoService() {
+
+            @Override
+            public String echo(String value) {
+                return value;
+            }
+
+            @Override
+            public CompletableFuture<String> echoAsync(String value) {
+                return pending;
+            }
+        };
+        serviceInvokerMap = new HashMap<>();
+        serviceInvokerMap.put(EchoService.class.getName(), new ServiceInvoker(EchoService.class, serviceBean));
+        // direct类型在I/O线程上执行，EmbeddedChannel中写入请求后即可读到响应
+        channel = channel(newHandler(serviceInvokerMap,
+                new ServiceExecutors(ServiceExecutors.DIRECT, 0, 0)));
+    }
+
+    @Test
+    public void syncMethodWritesResult() {
+        RPCRequest request = newRequest("echo", String.class, "hello");
+        channel.writeInbound(request);
+
+        RPCResponse response = channel.readOutbound();
+        assertEquals(request.getRequestId(), response.getRequestId());
+        assertEquals("hello", response.getResult());
+    }
+
+    @Test
+    public void asyncMethodWritesResultWhenCompleted() {
+        RPCRequest request = newRequest("echoAsync", String.class, "hello");
+        channel.writeInbound(request);
+        assertNull(channel.readOutbound());
+
+        pending.complete("world");
+        channel.runPendingTasks();
+        RPCResponse response = channel.readOutbound();
+        assertEquals(request.getRequestId(), response.getRequestId());
+        assertFalse(response.isError());
+        assertEquals("world", response.getResult());
+    }
+
+    @Test
+    public void asyncMethodFailureIsReturnedAsError() {
+        channel.writeInbound(newRequest("echoAsync", String.class, "hello"));
+        IllegalStateException cause = new IllegalStateException("boom");
+
+        pending.completeExceptionally(cause);
+        channel.runPendingTasks();
+        RPCResponse response = channel.readOutbound();
+        assertTrue(response.isError());
+        assertSame(cause, response.getError());
+    }
+
+    @Test
+    public void unknownMethodIsReturnedAsError() {
+        channel.writeInbound(newRequest("echo", Integer.class, 1));
+
+        RPCResponse response = channel.readOutbound();
+        assertTrue(response.getError() instanceof NoSuchMethodException);
+    }
+
+    @Test
+    public void unknownServiceIsReturnedAsError() {
+        RPCRequest request = newRequest("echo", String.class, "hello");
+        request.setInterfaceName("cn.xpleaf.rpc.test.UnknownService");
+        channel.writeInbound(request);
+
+        RPCResponse response = channel.readOutbound();
+        assertTrue(response.getError() instanceof ClassNotFoundException);
+    }
+
+    @Test
+    public void rejectsWithServerBusyWhenPoolIsFull() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Map<String, ServiceInvoker> serviceInvokerMap = blockingServices(started, release);
+        // 只有一个线程并且不排队，第一个请求占住线程后，第二个请求会被立即拒绝
+        ServiceExecutors executors = new ServiceExecutors(ServiceExecutors.SHARED, 1, 0);
+        EmbeddedChannel busyChannel = channel(newHandler(serviceInvokerMap, executors));
+        try {
+            busyChannel.writeInbound(newRequest("echo", String.class, "first"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            RPCRequest rejected = newRequest("echo", String.class, "second");
+            busyChannel.writeInbound(rejected);
+            RPCResponse response = busyChannel.readOutbound();
+            assertEquals(rejected.getRequestId(), response.getRequestId());
+            assertEquals(RPCException.SERVER_BUSY, response.getStatus());
+            assertTrue(((RPCException) response.getError()).isRejected());
+        } finally {
+            release.countDown();
+            executors.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectsWithOverloadedWhenLimitIsReached() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Map<String, ServiceInvoker> serviceInvokerMap = blockingServices(started, release);
+        // 线程池还有空闲线程，但服务的并发限制只有1，第二个请求在进入线程池之前就被拒绝
+        ServiceExecutors executors = new ServiceExecutors(ServiceExecutors.SHARED, 4, 0);
+        ServiceLimiters limiters = new ServiceLimiters(1);
+        limiters.enable(EchoService.class.getName());
+        EmbeddedChannel limitedChannel = channel(newHandler(serviceInvokerMap, executors, limiters));
+        try {
+            limitedChannel.writeInbound(newRequest("echo", String.class, "first"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            RPCRequest rejected = newRequest("echo", String.class, "second");
+            limitedChannel.writeInbound(rejected);
+            RPCResponse response = limitedChannel.readOutbound();
+            assertEquals(rejected.getRequestId(), response.getRequestId());
+            assertEquals(RPCException.OVERLOADED, response.getStatus());
+            assertTrue(((RPCException) response.getError()).isRejected());
+            assertEquals(1, limiters.getLimiter(EchoService.class.getName()).getInFlight());
+        } finally {
+            release.countDown();
+            executors.shutdown();
+        }
+    }
+
+    @Test
+    public void expiredRequestIsNotExecuted() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Map<String, ServiceInvoker> serviceInvokerMap = blockingServices(started, release);
+        // 只有一个线程，第二个请求在队列中等待，等待的时间超过了它的超时时间
+        ServiceExecutors executors = new ServiceExecutors(ServiceExecutors.SHARED, 1, 1);
+        EmbeddedChannel queuedChannel = channel(newHandler(serviceInvokerMap, executors));
+        queuedChannel.writeInbound(newRequest("echo", String.class, "first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        RPCRequest expired = newRequest("echo", String.class, "second");
+        expired.setTimeout(10);
+        queuedChannel.writeInbound(expired);
+        Thread.sleep(50);
+
+        release.countDown();
+        ExecutorService executor = (ExecutorService) executors.getExecutor(EchoService.class.getName());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        // 业务线程回写的响应由I/O线程批量写出
+        queuedChannel.runPendingTasks();
+
+        RPCResponse first = queuedChannel.readOutbound();
+        assertEquals("first", first.getResult());
+        RPCResponse response = queuedChannel.readOutbound();
+        assertEquals(expired.getRequestId(), response.getRequestId());
+        assertEquals(RPCException.TIMEOUT, ((RPCException) response.getError()).getCode());
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void rejectsWithShuttingDownWhenDraining() {
+        RequestTracker tracker = new RequestTracker();
+        EmbeddedChannel drainingChannel = channel(new RPCServerHandler(serviceInvokerMap,
+                new MethodTable(serviceInvokerMap), new ServiceExecutors(ServiceExecutors.DIRECT, 0, 0),
+                new ServiceLimiters(), -1, tracker));
+        // 异步方法在future完成之前一直计入正在处理的请求
+        drainingChannel.writeInbound(newRequest("echoAsync", String.class, "hello"));
+        assertEquals(1, tracker.getInFlight());
+
+        tracker.startDraining();
+        RPCRequest rejected = newRequest("echo", String.class, "hello");
+        drainingChannel.writeInbound(rejected);
+        RPCResponse response = drainingChannel.readOutbound();
+        assertEquals(rejected.getRequestId(), response.getRequestId());
+        assertEquals(RPCException.SHUTTING_DOWN, response.getStatus());
+        assertTrue(response.isRejected());
+
+        // 已经接收的请求仍然正常完成
+        pending.complete("world");
+        drainingChannel.runPendingTasks();
+        response = drainingChannel.readOutbound();
+        assertEquals("world", response.getResult());
+        assertEquals(0, tracker.getInFlight());
+    }
+
+    @Test
+    public void handshakeRepliesMethodSignatures() {
+        channel.writeInbound(new RPCHandshake());
+
+        RPCHandshake reply = channel.readOutbound();
+        List<String> methods = Arrays.asList(reply.getMethods());
+        assertEquals(2, methods.size());
+        assertTrue(methods.contains(RPCProtocol.signatureOf(EchoService.class.getName(), "echo",
+                new Class<?>[]{String.class})));
+        assertTrue(methods.contains(RPCProtocol.signatureOf(EchoService.class.getName(), "echoAsync",
+                new Class<?>[]{String.class})));
+    }
+
+    @Test
+    public void handshakeNegotiatesCompression() {
+        EmbeddedChannel codecChannel = new EmbeddedChannel(new RPCDecoder(), new RPCEncoder(),
+                new RPCServerHandler(serviceInvokerMap, new MethodTable(serviceInvokerMap),
+                        new ServiceExecutors(ServiceExecutors.DIRECT, 0, 0), new ServiceLimiters(), 1024));
+        RPCHandshake handshake = new RPCHandshake();
+        // 选择第一个服务端支持的压缩算法
+        handshake.setCompressors(new String[]{"unknown", SnappyCompressor.NAME, DeflateCompressor.NAME});
+        codecChannel.writeInbound(handshake);
+        ByteBuf data = codecChannel.readOutbound();
+        // 握手回复本身没有压缩
+        assertEquals(0, data.getByte(5));
+        RPCHandshake reply = (RPCHandshake) decode(new RPCDecoder(), data);
+        assertEquals(SnappyCompressor.NAME, reply.getCompressor());
+
+        // 之后超过压缩阈值的响应使用协商好的压缩算法
+        String value = new String(new char[4096]).replace('\0', 'a');
+        codecChannel.writeInbound(newRequest("echo", String.class, value));
+        data = codecChannel.readOutbound();
+        assertEquals(SnappyCompressor.CODE, data.getByte(5));
+        RPCDecoder decoder = new RPCDecoder();
+        decoder.setCompressor(new SnappyCompressor());
+        assertEquals(value, ((RPCResponse) decode(decoder, data)).getResult());
+        codecChannel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void compressionIsNotNegotiatedWhenDisabled() {
+        EmbeddedChannel codecChannel = new EmbeddedChannel(new RPCDecoder(), new RPCEncoder(),
+                new RPCServerHandler(serviceInvokerMap, new MethodTable(serviceInvokerMap),
+                        new ServiceExecutors(ServiceExecutors.DIRECT, 0, 0), new ServiceLimiters(), -1));
+        RPCHandshake handshake = new RPCHandshake();
+        handshake.setCompressors(new String[]{SnappyCompressor.NAME});
+        codecChannel.writeInbound(handshake);
+
+        RPCHandshake reply = (RPCHandshake) decode(new RPCDecoder(), (ByteBuf) codecChannel.readOutbound());
+        assertNull(reply.getCompressor());
+        codecChannel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void requestWithMethodIdIsDispatched() {
+        channel.writeInbound(new RPCHandshake());
+        RPCHandshake reply = channel.readOutbound();
+        int methodId = Arrays.asList(reply.getMethods()).indexOf(RPCProtocol.signatureOf(
+                EchoService.class.getName(), "echo", new Class<?>[]{String.class})) + 1;
+
+        // 协商了方法编号的请求只携带方法编号和参数值
+        RPCRequest request = new RPCRequest();
+        request.setRequestId(REQUEST_ID.incrementAndGet());
+        request.setMethodId(methodId);
+        request.setParameters(new Object[]{"hello"});
+        channel.writeInbound(request);
+
+        RPCResponse response = channel.readOutbound();
+        assertEquals(request.getRequestId(), response.getRequestId());
+        assertEquals("hello", response.getResult());
+    }
+
+    @Test
+    public void unknownMethodIdIsReturnedAsError() {
+        RPCRequest request = new RPCRequest();
+        request.setRequestId(REQUEST_ID.incrementAndGet());
+        request.setMethodId(100);
+        request.setParameters(new Object[]{"hello"});
+        channel.writeInbound(request);
+
+        RPCResponse response = channel.readOutbound();
+        assertTrue(response.getError() instanceof NoSuchMethodException);
+    }
+
+    @Test
+    public void filterChainWrapsServiceMethod() {
+        ServerFilter filter = new ServerFilter() {
+
+            @Override
+            public Object invoke(MethodInvoker invoker, RPCRequest request, ServerFilterChain chain)
+                    throws Throwable {
+                if ("reject".equals(request.getParameters()[0])) {
+                    throw new IllegalArgumentException("rejected by filter");
+                }
+                return chain.proceed(invoker, request) + "-filtered";
+            }
+        };
+        EmbeddedChannel filteredChannel = channel(new RPCServerHandler(serviceInvokerMap,
+                new MethodTable(serviceInvokerMap), new ServiceExecutors(ServiceExecutors.DIRECT, 0, 0),
+                new ServiceLimiters(), -1, new RequestTracker(),
+                ServerFilterChain.build(Collections.singletonList(filter))));
+
+        filteredChannel.writeInbound(newRequest("echo", String.class, "hello"));
+        RPCResponse response = filteredChannel.readOutbound();
+        assertEquals("hello-filtered", response.getResult());
+
+        // 过滤器抛出的异常与服务方法抛出的异常一样回写给客户端
+        filteredChannel.writeInbound(newRequest("echo", String.class, "reject"));
+        response = filteredChannel.readOutbound();
+        assertEquals(RPCException.SERVICE_ERROR, response.getStatus());
+        assertTrue(response.getError() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void responseIsRecycledAfterWrite() {
+        // 没有复制响应的管道中，读出的是已经写出并回收到对象池中的响应
+        EmbeddedChannel rawChannel = new EmbeddedChannel(newHandler(serviceInvokerMap,
+                new ServiceExecutors(ServiceExecutors.DIRECT, 0, 0)));
+        RPCRequest request = newRequest("echo", String.class, "hello");
+        rawChannel.writeInbound(request);
+
+        RPCResponse recycled = rawChannel.readOutbound();
+        assertEquals(0, recycled.getRequestId());
+        assertNull(recycled.getResult());
+        rawChannel.finishAndReleaseAll();
+    }
+
+    /**
+     * 创建测试使用的EmbeddedChannel，响应写出后会被回收，所以在写出之前由ResponseCopier复制一份交给测试读取，
+     * 与真实管道中编码器在写出完成之前就已经序列化了响应的效果相同
+     */
+    private static EmbeddedChannel channel(RPCServerHandler handler) {
+        return new EmbeddedChannel(new ResponseCopier(), handler);
+    }
+
+    private static class ResponseCopier extends MessageToMessageEncoder<RPCResponse> {
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, RPCResponse response, List<Object> out) {
+            RPCResponse copy = new RPCResponse();
+            copy.setRequestId(response.getRequestId());
+            copy.setResult(response.getResult());
+            copy.setSerializer(response.getSerializer());
+            if (response.isError()) {
+                copy.setError(response.getError());
+            }
+            out.add(copy);
+        }
+    }
+
+    // 业务方法阻塞到release被释放为止的服务
+    private Map<String, ServiceInvoker> blockingServices(final CountDownLatch started,
+                                                         final CountDownLatch release) throws Exception {
+        EchoService blocking = new EchoService() {
+
+            @Override
+            public String echo(String value) {
+                invocations.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return value;
+            }
+
+            @Override
+            public CompletableFuture<String> echoAsync(String value) {
+                return pending;
+            }
+        };
+        Map<String, ServiceInvoker> serviceInvokerMap = new HashMap<>();
+        serviceInvokerMap.put(EchoService.class.getName(), new ServiceInvoker(EchoService.class, blocking));
+        return serviceInvokerMap;
+    }
+
+    private static RPCServerHandler newHandler(Map<String, ServiceInvoker> serviceInvokerMap,
+                                               ServiceExecutors executors) {
+        return newHandler(serviceInvokerMap, executors, new ServiceLimiters());
+    }
+
+    private static RPCServerHandler newHandler(Map<String, ServiceInvoker> serviceInvokerMap,
+                                               ServiceExecutors executors, ServiceLimiters limiters) {
+        return new RPCServerHandler(serviceInvokerMap, new MethodTable(serviceInvokerMap), executors, limiters, -1);
+    }
+
+    private static Object decode(RPCDecoder decoder, ByteBuf data) {
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(decoder);
+        assertTrue(decoderChannel.writeInbound(data));
+        Object msg = decoderChannel.readInbound();
+        decoderChannel.finishAndReleaseAll();
+        return msg;
+    }
+
+    private static RPCRequest newRequest(String methodName, Class<?> parameterType, Object parameter) {
+        RPCRequest request = new RPCRequest();
+        request.setRequestId(REQUEST_ID.incrementAndGet());
+        request.setInterfaceName(EchoService.class.getName());
+        request.setMethodName(methodName);
+        request.setParameterTypes(new Class<?>[]{parameterType});
+        request.setParameters(new Object[]{parameter});
+        return request;
+    }
+}
@@ -0,0 +1,199 @@
+package cn.xpleaf.rpc.server.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.FatalBeanException;
+import org.springframework.context.support.StaticApplicationContext;
+
+import cn.xpleaf.rpc.common.local.LocalService;
+import cn.xpleaf.rpc.common.local.LocalServices;
+import cn.xpleaf.rpc.common.pojo.Provider;
+import cn.xpleaf.rpc.common.registry.Registry;
+import cn.xpleaf.rpc.server.annotation.RPCService;
+
+/**
+ * RPCServer启动和关闭的测试：端口绑定成功后才批量注册服务，绑定或者注册失败时启动失败并撤销已经完成的步骤，
+ * 关闭时先注销服务再关闭端口
+ *
+ * @author yeyonghao
+ */
+public class RPCServerTest {
+
+    public interface EchoService {
+
+        String echo(String value);
+    }
+
+    @RPCService(EchoService.class)
+    public static class EchoServiceImpl implements EchoService {
+
+        @Override
+        public String echo(String value) {
+            return value;
+        }
+    }
+
+    /**
+     * 不连接注册中心的Registry，记录注册和注销的调用
+     */
+    private static class RecordingRegistry implements Registry {
+
+        final List<String> events = new CopyOnWriteArrayList<>();
+        // 注册时抛出的异常，null表示注册成功
+        volatile RuntimeException failure;
+
+        @Override
+        public void register(String serverAddress, Collection<String> interfaceNames, int weight) {
+            events.add("register " + serverAddress + " " + new ArrayList<>(interfaceNames));
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        @Override
+        public void unregister() {
+            events.add("unregister");
+        }
+
+        @Override
+        public List<Provider> getProviders(String interfaceName) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private RecordingRegistry registry = new RecordingRegistry();
+    private StaticApplicationContext applicationContext = new StaticApplicationContext();
+    private int port;
+    private RPCServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        applicationContext.registerSingleton("echoService", EchoServiceImpl.class);
+        applicationContext.refresh();
+        port = freePort();
+        server = newServer(port);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        applicationContext.close();
+    }
+
+    @Test
+    public void startRegistersServicesAfterBind() throws Throwable {
+        server.afterPropertiesSet();
+
+        assertTrue(server.getStartFuture().isDone());
+        assertEquals(1, registry.events.size());
+        assertEquals("register 127.0.0.1:" + port + " [" + EchoService.class.getName() + "]",
+                registry.events.get(0));
+        // 登记的是预先构建的服务调用器，同一个JVM中的消费者通过其方法调用器直接调用
+        LocalService localService = LocalServices.get(EchoService.class.getName());
+        assertTrue(localService.getServiceBean() instanceof EchoServiceImpl);
+        assertEquals("hello", localService.getMethodInvoker("echo", new Class<?>[]{String.class})
+                .invoke(new Object[]{"hello"}));
+        assertTrue(canConnect(port));
+    }
+
+    @Test
+    public void shutdownUnregistersAndClosesPort() throws Exception {
+        server.afterPropertiesSet();
+
+        server.shutdown();
+        assertEquals("unregister", registry.events.get(1));
+        assertNull(LocalServices.get(EchoService.class.getName()));
+        assertTrue(!canConnect(port));
+        assertTrue(server.getStartFuture().isDone());
+        // 重复关闭不做任何事情
+        server.shutdown();
+        assertEquals(2, registry.events.size());
+    }
+
+    @Test
+    public void bindFailureFailsStartup() throws Exception {
+        ServerSocket occupied = new ServerSocket(port);
+        try {
+            server.afterPropertiesSet();
+            fail("端口被占用时应该启动失败");
+        } catch (FatalBeanException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        } finally {
+            occupied.close();
+        }
+        assertTrue(server.getStartFuture().isCompletedExceptionally());
+        // 没有注册过服务，也没有登记本地服务
+        for (String event : registry.events) {
+            assertTrue(event, !event.startsWith("register"));
+        }
+        assertNull(LocalServices.get(EchoService.class.getName()));
+    }
+
+    @Test
+    public void registrationFailureReleasesPort() throws Exception {
+        IllegalStateException failure = new IllegalStateException("zookeeper unavailable");
+        registry.failure = failure;
+        try {
+            server.afterPropertiesSet();
+            fail("服务注册失败时应该启动失败");
+        } catch (FatalBeanException e) {
+            assertSame(failure, e.getCause());
+        }
+        // 启动失败时已经撤销了本地服务和端口绑定，注册了一部分的服务也已经注销
+        assertTrue(registry.events.contains("unregister"));
+        assertNull(LocalServices.get(EchoService.class.getName()));
+        new ServerSocket(port).close();
+    }
+
+    private RPCServer newServer(int port) {
+        RPCServer server = new RPCServer("127.0.0.1:" + port, registry);
+        server.setApplicationContext(applicationContext);
+        server.setTransport("nio");
+        server.setAcceptors(1);
+        server.setIoThreads(1);
+        server.setThreads(2);
+        server.setQueues(0);
+        server.setDeregisterDelay(0);
+        server.setDrainTimeout(1000);
+        server.setStartTimeout(5000);
+        return server;
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static boolean canConnect(int port) {
+        try {
+            new Socket("127.0.0.1", port).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
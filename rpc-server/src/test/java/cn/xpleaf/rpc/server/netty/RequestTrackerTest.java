@@ -0,0 +1,79 @@
+package cn.xpleaf.rpc.server.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * RequestTracker的测试：开始关闭后拒绝新的请求，等待已经接收的请求处理完毕，超时后返回false
+ *
+ * @author yeyonghao
+ */
+public class RequestTrackerTest {
+
+    @Test
+    public void rejectsNewRequestsAfterDraining() {
+        RequestTracker tracker = new RequestTracker();
+        assertTrue(tracker.tryBegin());
+        assertEquals(1, tracker.getInFlight());
+
+        tracker.startDraining();
+        assertTrue(tracker.isDraining());
+        assertFalse(tracker.tryBegin());
+        // 被拒绝的请求不计入正在处理的请求
+        assertEquals(1, tracker.getInFlight());
+    }
+
+    @Test
+    public void awaitDrainedReturnsWhenInFlightRequestsEnd() throws Exception {
+        final RequestTracker tracker = new RequestTracker();
+        assertTrue(tracker.tryBegin());
+        assertTrue(tracker.tryBegin());
+        tracker.startDraining();
+
+        final CountDownLatch drained = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (tracker.awaitDrained(5000)) {
+                        drained.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        waiter.start();
+
+        tracker.end();
+        assertFalse(drained.await(100, TimeUnit.MILLISECONDS));
+        tracker.end();
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+
+    @Test
+    public void awaitDrainedTimesOut() throws Exception {
+        RequestTracker tracker = new RequestTracker();
+        assertTrue(tracker.tryBegin());
+        tracker.startDraining();
+
+        long start = System.nanoTime();
+        assertFalse(tracker.awaitDrained(100));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    public void awaitDrainedWithoutRequestsReturnsImmediately() throws Exception {
+        RequestTracker tracker = new RequestTracker();
+        tracker.startDraining();
+        assertTrue(tracker.awaitDrained(0));
+    }
+}
@@ -0,0 +1,196 @@
+package cn.xpleaf.rpc.server.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cn.xpleaf.rpc.common.pojo.RPCStreamElement;
+import cn.xpleaf.rpc.common.utils.BatchWriter;
+import cn.xpleaf.rpc.common.utils.ProtostuffSerializer;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * ServerStream的测试：发送的元素数不超过客户端授予的信用，补充信用后继续发送，
+ * 流结束、出现异常或者被取消时关闭Iterator并回调onComplete
+ *
+ * @author yeyonghao
+ */
+public class ServerStreamTest {
+
+    // 在调用线程上直接执行发送任务
+    private static final Executor DIRECT = new Executor() {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private EmbeddedChannel channel;
+    private BatchWriter batchWriter;
+    // onComplete的回调次数和参数
+    private int completions;
+    private Throwable completedWith;
+    private final Consumer<Throwable> onComplete = new Consumer<Throwable>() {
+
+        @Override
+        public void accept(Throwable error) {
+            completions++;
+            completedWith = error;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel();
+        batchWriter = new BatchWriter(channel);
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void sendsUpToCreditAndResumesWhenCreditIsAdded() {
+        CountingIterator iterator = new CountingIterator(10, -1);
+        ServerStream stream = new ServerStream(1, ProtostuffSerializer.CODE, iterator, 3, DIRECT, channel,
+                batchWriter, onComplete);
+
+        stream.start();
+        assertEquals(list(0, 1, 2), elements());
+        assertEquals(0, completions);
+
+        stream.addCredit(4);
+        assertEquals(list(3, 4, 5, 6), elements());
+        assertEquals(0, completions);
+
+        // 信用超过剩余的元素数，流正常结束
+        stream.addCredit(10);
+        assertEquals(list(7, 8, 9), elements());
+        assertEquals(1, completions);
+        assertNull(completedWith);
+        assertTrue(iterator.closed);
+    }
+
+    @Test
+    public void nonPositiveCreditIsIgnored() {
+        CountingIterator iterator = new CountingIterator(10, -1);
+        ServerStream stream = new ServerStream(1, ProtostuffSerializer.CODE, iterator, 1, DIRECT, channel,
+                batchWriter, onComplete);
+        stream.start();
+        assertEquals(list(0), elements());
+
+        stream.addCredit(0);
+        stream.addCredit(-5);
+        assertEquals(list(), elements());
+        assertEquals(0, completions);
+    }
+
+    @Test
+    public void cancelClosesIterator() {
+        CountingIterator iterator = new CountingIterator(10, -1);
+        ServerStream stream = new ServerStream(1, ProtostuffSerializer.CODE, iterator, 2, DIRECT, channel,
+                batchWriter, onComplete);
+        stream.start();
+        assertEquals(list(0, 1), elements());
+
+        stream.cancel();
+        assertEquals(1, completions);
+        assertTrue(completedWith instanceof CancellationException);
+        assertTrue(iterator.closed);
+
+        // 取消之后补充信用也不会再发送
+        stream.addCredit(5);
+        assertEquals(list(), elements());
+        assertEquals(1, completions);
+    }
+
+    @Test
+    public void iteratorFailureEndsStream() {
+        CountingIterator iterator = new CountingIterator(10, 2);
+        ServerStream stream = new ServerStream(1, ProtostuffSerializer.CODE, iterator, 5, DIRECT, channel,
+                batchWriter, onComplete);
+        stream.start();
+
+        assertEquals(list(0, 1), elements());
+        assertEquals(1, completions);
+        assertSame(iterator.failure, completedWith);
+        assertTrue(iterator.closed);
+    }
+
+    /**
+     * 执行批量写出任务，返回这段时间写出的所有元素
+     */
+    private List<Object> elements() {
+        channel.runPendingTasks();
+        List<Object> elements = new ArrayList<>();
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            RPCStreamElement element = (RPCStreamElement) msg;
+            assertEquals(1, element.getRequestId());
+            assertEquals(ProtostuffSerializer.CODE, element.getSerializer());
+            elements.add(element.getElement());
+        }
+        return elements;
+    }
+
+    private static List<Object> list(Object... elements) {
+        List<Object> list = new ArrayList<>();
+        for (Object element : elements) {
+            list.add(element);
+        }
+        return list;
+    }
+
+    /**
+     * 依次返回0到count-1的Iterator，取到第failAt个元素时抛出异常（小于0时不抛出），记录是否被关闭
+     */
+    private static class CountingIterator implements Iterator<Integer>, AutoCloseable {
+
+        final int count;
+        final int failAt;
+        final IllegalStateException failure = new IllegalStateException("cursor closed");
+        int next;
+        boolean closed;
+
+        CountingIterator(int count, int failAt) {
+            this.count = count;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        @Override
+        public Integer next() {
+            if (next == failAt) {
+                throw failure;
+            }
+            if (next >= count) {
+                throw new NoSuchElementException();
+            }
+            return next++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}